@@ -31,10 +31,15 @@ import gov.nasa.worldwind.util.Logging;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Point;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import javax.media.opengl.GL;
 import Satellite.AbstractSatellite;
+import Satellite.SatelliteState;
 import Shapes.SphereObject;
+import Utilities.FrameProfiler;
 
 
 /**
@@ -43,8 +48,10 @@ import Shapes.SphereObject;
 public class ECEFModelRenderable implements Renderable
 {
     
-    // hash of sat props
-    Hashtable<String,AbstractSatellite> satHash;
+    private static final FrameProfiler.Stage RENDER_STAGE = FrameProfiler.getStage("ECEF satellites render");
+    
+    // prepared render records of the satellites (shared with the ECI renderable)
+    SatelliteFramePreparer framePreparer;
 
     
     // save globe
@@ -60,14 +67,21 @@ public class ECEFModelRenderable implements Renderable
     // annotation
     //GlobeAnnotation annotation;
     
+    // frustum culling and level of detail
+    SatelliteVisibility visibility = new SatelliteVisibility();
+    
+    // bounding spheres of each satellite's ground track and orbit trace (kept until the track changes)
+    Map<AbstractSatellite,TrackBounds> trackBounds = new HashMap<AbstractSatellite,TrackBounds>();
+    int frame = 0; // bounds of satellites not drawn in a frame are dropped
+    
     
     /** Creates a new instance of OrbitModel
-     * @param satHash
+     * @param framePreparer
      * @param globe 
      */
-    public ECEFModelRenderable(Hashtable<String,AbstractSatellite> satHash, Globe globe)
+    public ECEFModelRenderable(SatelliteFramePreparer framePreparer, Globe globe)
     {
-        this.satHash = satHash;
+        this.framePreparer = framePreparer;
         this.globe = globe;
         
      }
@@ -83,6 +97,7 @@ public class ECEFModelRenderable implements Renderable
             throw new IllegalArgumentException(msg);
         }
         
+        long t0 = FrameProfiler.start();
         javax.media.opengl.GL gl = dc.getGL();
         
         //gl.glEnable(GL.GL_TEXTURE_2D); // removed so the sun shading wouldn't effect line colors
@@ -91,92 +106,62 @@ public class ECEFModelRenderable implements Renderable
 
         // Added so that the colors wouldn't depend on sun shading
         gl.glDisable(GL.GL_TEXTURE_2D);
+        
+        visibility.begin(dc, 0); // ECEF layer isn't rotated
               
-        // for each satellite
-        for(AbstractSatellite sat : satHash.values() ) // search through all sat nodes
+        // for each satellite (records prepared once per time step, not changed while drawing)
+        for(SatelliteRenderRecord rec : framePreparer.getFrame().getRecords() ) // search through all sat nodes
         {
+            boolean showGroundTrack = rec.isDrawGroundTrack();
+            boolean showOrbitTrace = rec.isDrawEcefTrace();
+            if(!showGroundTrack && !showOrbitTrace)
+            {
+                continue;
+            }
+            SatelliteState sat = rec.getState();
+            
             // set color
-            Color satColor = sat.getSatColor();
-            gl.glColor3f( satColor.getRed()/255.0f , satColor.getGreen()/255.0f , satColor.getBlue()/255.0f ); // COLOR
+            float[] rgb = rec.getRGB();
+            gl.glColor3f( rgb[0] , rgb[1] , rgb[2] ); // COLOR
+            
+            TrackBounds bounds = getTrackBounds(sat);
             
             // GROUND TRACK
-            if (sat.isShowGroundTrack3d())
+            if (showGroundTrack)
             {
-                
-                //System.out.println("here");
-                
-                Vec4 ptLoc;
-                // ground trace - lag
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLagPts(); i++)
-                {
-                    // add next Mean of Date lla
-                    double[] lla = sat.getGroundTrackLlaLagPt(i);
-                    
-                    ptLoc = globe.computePointFromPosition(
-                    Angle.fromRadiansLatitude(lla[0]), 
-                    Angle.fromRadiansLongitude(lla[1]), groundTrackAlt);
-                    
-                    gl.glVertex3f( (float)ptLoc.x, (float)ptLoc.y , (float)ptLoc.z);
-                    
-                }
-                gl.glEnd();
-
-                // plot lead orbit ground track
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLeadPts(); i++)
+                // culled if off screen, fewer points if small
+                int step = bounds.ground.getDecimation(visibility, sat.getNumGroundTrackLagPts() + sat.getNumGroundTrackLeadPts());
+                if(step > 0)
                 {
-                    // add next Mean of Date lla
-                    double[] lla = sat.getGroundTrackLlaLeadPt(i);
-                    
-                    ptLoc = globe.computePointFromPosition(
-                    Angle.fromRadiansLatitude(lla[0]), 
-                    Angle.fromRadiansLongitude(lla[1]), groundTrackAlt);
-                    
-                    gl.glVertex3f( (float)ptLoc.x, (float)ptLoc.y , (float)ptLoc.z);
+                    // ground trace - lag, then lead
+                    drawTrack(gl, sat.getLatLongLag(), true, step);
+                    drawTrack(gl, sat.getLatLongLead(), true, step);
                 }
-                gl.glEnd();
             } // show ground trace
             
             // ECEF ORBIT TRACE
-            if (sat.isShow3DOrbitTrace() && !sat.isShow3DOrbitTraceECI() )
+            if (showOrbitTrace)
             {
-                Vec4 ptLoc;
-                // ground trace - lag
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLagPts(); i++)
-                {
-                    // add next Mean of Date lla
-                    double[] lla = sat.getGroundTrackLlaLagPt(i);
-                    
-                    ptLoc = globe.computePointFromPosition(
-                    Angle.fromRadiansLatitude(lla[0]), 
-                    Angle.fromRadiansLongitude(lla[1]), lla[2]);
-                    
-                    gl.glVertex3f( (float)ptLoc.x, (float)ptLoc.y , (float)ptLoc.z);
-                    
-                }
-                gl.glEnd();
-
-                // plot lead orbit ground track
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLeadPts(); i++)
+                int step = bounds.orbit.getDecimation(visibility, sat.getNumGroundTrackLagPts() + sat.getNumGroundTrackLeadPts());
+                if(step > 0)
                 {
-                    // add next Mean of Date lla
-                    double[] lla = sat.getGroundTrackLlaLeadPt(i);
-                    
-                    ptLoc = globe.computePointFromPosition(
-                    Angle.fromRadiansLatitude(lla[0]), 
-                    Angle.fromRadiansLongitude(lla[1]), lla[2]);
-                    
-                    gl.glVertex3f( (float)ptLoc.x, (float)ptLoc.y , (float)ptLoc.z);
+                    drawTrack(gl, sat.getLatLongLag(), false, step);
+                    drawTrack(gl, sat.getLatLongLead(), false, step);
                 }
-                gl.glEnd();
-                
             } // ecef orbit trace
             
             
         } // for each sat
+        
+        // drop bounds of satellites that weren't drawn
+        for(Iterator<TrackBounds> it = trackBounds.values().iterator(); it.hasNext();)
+        {
+            if(it.next().frame != frame)
+            {
+                it.remove();
+            }
+        }
+        frame++;
 
         // for each GroundStation
         // for each satellite
@@ -210,9 +195,108 @@ public class ECEFModelRenderable implements Renderable
 //        
         gl.glPopAttrib();
         
+        RENDER_STAGE.stop(t0);
      } // render
     
     
+    // one line strip through every step-th point of a ground track (and its last point)
+    private void drawTrack(GL gl, double[][] lla, boolean atGroundTrackAlt, int step)
+    {
+        if(lla == null || lla.length == 0)
+        {
+            return;
+        }
+        
+        gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
+        int last = lla.length - 1;
+        for (int i = 0; i <= last; i += step)
+        {
+            // add next Mean of Date lla
+            trackVertex(gl, lla[i], atGroundTrackAlt);
+        }
+        if (last % step != 0)
+        {
+            trackVertex(gl, lla[last], atGroundTrackAlt); // keep the end point
+        }
+        gl.glEnd();
+    } // drawTrack
+    
+    private void trackVertex(GL gl, double[] lla, boolean atGroundTrackAlt)
+    {
+        Vec4 ptLoc = globe.computePointFromPosition(
+                Angle.fromRadiansLatitude(lla[0]), 
+                Angle.fromRadiansLongitude(lla[1]), atGroundTrackAlt ? groundTrackAlt : lla[2]);
+        
+        gl.glVertex3f( (float)ptLoc.x, (float)ptLoc.y , (float)ptLoc.z);
+    }
+    
+    // bounds of a satellite's tracks, recomputed if its ground track changed
+    private TrackBounds getTrackBounds(SatelliteState sat)
+    {
+        TrackBounds bounds = trackBounds.get(sat.getSatellite());
+        if(bounds == null || bounds.lag != sat.getLatLongLag() || bounds.lead != sat.getLatLongLead())
+        {
+            bounds = new TrackBounds(sat.getLatLongLag(), sat.getLatLongLead());
+            trackBounds.put(sat.getSatellite(), bounds);
+        }
+        bounds.frame = frame;
+        return bounds;
+    } // getTrackBounds
+    
+    // bounding spheres of the ground track and the orbit trace of one track
+    private class TrackBounds
+    {
+        final double[][] lag; // track arrays the bounds are for
+        final double[][] lead;
+        final Bounds ground;
+        final Bounds orbit;
+        int frame;
+        
+        TrackBounds(double[][] lag, double[][] lead)
+        {
+            this.lag = lag;
+            this.lead = lead;
+            ground = new Bounds(lag, lead, true);
+            orbit = new Bounds(lag, lead, false);
+        }
+    } // TrackBounds
+    
+    private class Bounds
+    {
+        SphereObject sphere = null; // null if there are no points
+        
+        Bounds(double[][] lag, double[][] lead, boolean atGroundTrackAlt)
+        {
+            ArrayList<Vec4> pts = new ArrayList<Vec4>();
+            for(double[][] lla : new double[][][] {lag, lead})
+            {
+                for(int i = 0; lla != null && i < lla.length; i++)
+                {
+                    if(!Double.isNaN(lla[i][0]))
+                    {
+                        pts.add(globe.computePointFromPosition(Angle.fromRadiansLatitude(lla[i][0]),
+                                Angle.fromRadiansLongitude(lla[i][1]), atGroundTrackAlt ? groundTrackAlt : lla[i][2]));
+                    }
+                }
+            }
+            if(!pts.isEmpty())
+            {
+                sphere = SphereObject.createBoundingSphere(pts.toArray(new Vec4[pts.size()]));
+            }
+        }
+        
+        // 0 if culled, else draw every n-th point
+        int getDecimation(SatelliteVisibility visibility, int numPoints)
+        {
+            if(sphere == null)
+            {
+                return 0;
+            }
+            Vec4 c = sphere.getCenter();
+            return visibility.getTraceDecimation(c.x, c.y, c.z, sphere.getRadius(), numPoints);
+        }
+    } // Bounds
+    
     private AnnotationAttributes createFontAttribs(Color textColor)
     {
         AnnotationAttributes geoAttr = new AnnotationAttributes();
@@ -25,7 +25,11 @@ import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.Renderable;
 import gov.nasa.worldwind.view.orbit.OrbitView;
 import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
 import Utilities.AstroConst;
 
 /**
@@ -49,6 +53,19 @@ public class ECIRadialGrid implements Renderable
     private float axisLength = 10000000f;
     
 
+    // retained geometry in units of the major ring spacing (scaled to the zoom when drawn), rebuilt when dirty
+    private volatile boolean geometryDirty = true;
+    private FloatBuffer geometry = null; // x,y,z: radial lines, major rings, minor rings (all GL_LINES)
+    private int numSpokeVertices = 0;
+    private int numMajorVertices = 0;
+    private int numMinorVertices = 0;
+
+    // buffer object holding the geometry (0 = none), it belongs to one GL context
+    private GLContext context = null;
+    private boolean useVbo = false;
+    private int vbo = 0;
+    private boolean vboDirty = true;
+
     @Override
     public void render(DrawContext dc)
     {
@@ -58,6 +75,13 @@ public class ECIRadialGrid implements Renderable
         }
 
         javax.media.opengl.GL gl = dc.getGL();
+
+        if(geometryDirty)
+        {
+            buildGeometry();
+        }
+        checkContext(gl);
+
         gl.glPushAttrib(javax.media.opengl.GL.GL_TEXTURE_BIT | javax.media.opengl.GL.GL_ENABLE_BIT | javax.media.opengl.GL.GL_CURRENT_BIT);
 
         // Added so that the colors wouldn't depend on sun shading
@@ -102,82 +126,144 @@ public class ECIRadialGrid implements Renderable
         // set line width
         gl.glLineWidth(1f);
 
-        // draw radial lines
+        gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+        gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+        if(useVbo)
+        {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo);
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, 0L);
+        }
+        else
+        {
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, geometry);
+        }
 
-        float length = (float)Math.pow(10, minPowerRings)*numMajorSectionsDrawn;
-        
+        // the geometry is in units of the major ring spacing
+        double scale = Math.pow(10, minPowerRings);
+        gl.glMatrixMode(GL.GL_MODELVIEW);
+        gl.glPushMatrix();
+        gl.glScaled(scale, scale, scale);
 
+        // radial lines and major rings
         gl.glColor4ub((byte) getColor().getRed(), (byte) getColor().getGreen(), (byte) getColor().getBlue(), (byte) getColor().getAlpha());
-        gl.glBegin(GL.GL_LINES); //GL_LINE_STRIP
-        for(int i=0;i<numRadialSegments;i++)
+        gl.glDrawArrays(GL.GL_LINES, 0, numSpokeVertices + numMajorVertices);
+
+        // minor rings, fading out as the eye moves out
+        int alpha = (int)Math.round(255*Math.pow(percent,blendExponent)); // blending, works great!  1.5 is not bad either
+        if(alpha > 0 && numMinorVertices > 0)
         {
-            double angle = i*(2.0*Math.PI/(numRadialSegments));
-            float z = 0.0f;
-            float x = (float)(length*Math.sin(angle));
-            float y = (float)(length*Math.cos(angle));
+            gl.glColor4ub((byte) getColor().getRed(), (byte) getColor().getGreen(), (byte) getColor().getBlue(), (byte) (alpha));
+            gl.glDrawArrays(GL.GL_LINES, numSpokeVertices + numMajorVertices, numMinorVertices);
+        }
 
-            gl.glVertex3f(  0f,  0f, 0f );
-            gl.glVertex3f(  x,  z, y );  //x
+        gl.glPopMatrix();
 
+        if(useVbo)
+        {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
         }
-        gl.glEnd();
+        gl.glPopClientAttrib();
 
-        // radial circles
-       
-        //float radRadius = 6378137.0f * 1.2f;
-        float radRadius = (float)(Math.pow(10, minPowerRings));
-        float deltaR = radRadius;
+        gl.glPopAttrib();
+    } // render
 
-        // Draw major sections!
-        for(int j = 0; j < numMajorSectionsDrawn; j++)
-        {
-            gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-            for(int i = 0; i < circleSegments+1; i++) // +1 loops back to orginal point
-            {
-                double angle = i * (2.0 * Math.PI / (circleSegments));
-                float z = 0.0f;
-                float x = (float)(radRadius * Math.sin(angle));
-                float y = (float)(radRadius * Math.cos(angle));
+    // builds the radial lines and rings for a major ring spacing of 1
+    private void buildGeometry()
+    {
+        geometryDirty = false; // a setter called while building marks it dirty again
 
-                //gl.glVertex3f(  0f,  0f, 0f );
-                gl.glVertex3f(x, z, y);  //x
+        int numMajor = numMajorSectionsDrawn;
+        int numMinor = numMinorSectionsDrawn;
+        int segments = circleSegments;
+        int numRadial = numRadialSegments;
 
-            }
-            gl.glEnd();
-            radRadius += deltaR;
+        numSpokeVertices = 2 * numRadial;
+        numMajorVertices = 2 * segments * numMajor;
+        numMinorVertices = 2 * segments * 9 * numMinor;
+
+        int size = 3 * (numSpokeVertices + numMajorVertices + numMinorVertices);
+        if(geometry == null || geometry.capacity() < size)
+        {
+            geometry = ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder()).asFloatBuffer();
         }
+        geometry.clear();
 
-        // draw all the minor rings
-        radRadius = (float)(Math.pow(10, minPowerRings)/10.0);
-        deltaR = radRadius;
+        // radial lines
+        double length = numMajor;
+        for(int i = 0; i < numRadial; i++)
+        {
+            double angle = i*(2.0*Math.PI/(numRadial));
+            geometry.put(0f).put(0f).put(0f);
+            geometry.put((float)(length*Math.sin(angle))).put(0f).put((float)(length*Math.cos(angle)));
+        }
 
-        int alpha = (int)Math.round(255*Math.pow(percent,blendExponent)); // blending, works great!  1.5 is not bad either
-        gl.glColor4ub((byte) getColor().getRed(), (byte) getColor().getGreen(), (byte) getColor().getBlue(), (byte) (alpha));
+        // major rings, radius 1 to numMajor
+        for(int j = 1; j <= numMajor; j++)
+        {
+            putCircle(j, segments);
+        }
 
-        for(int j = 0; j < numMinorSectionsDrawn; j++)
+        // minor rings, every tenth of the spacing skipping the major rings
+        for(int j = 0; j < numMinor; j++)
         {
             for(int k = 1; k < 10; k++)
             {
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for(int i = 0; i < circleSegments + 1; i++) // +1 loops back to orginal point
-                {
-                    double angle = i * (2.0 * Math.PI / (circleSegments));
-                    float z = 0.0f;
-                    float x = (float)(radRadius * Math.sin(angle));
-                    float y = (float)(radRadius * Math.cos(angle));
-
-                    //gl.glVertex3f(  0f,  0f, 0f );
-                    gl.glVertex3f(x, z, y);  //x
-
-                } // i
-                gl.glEnd();
-                radRadius += deltaR;
-            } // k
-            radRadius += deltaR; // skip the major line
-        } // j
+                putCircle(j + k / 10.0, segments);
+            }
+        }
 
-        gl.glPopAttrib();
-    }
+        geometry.flip();
+        vboDirty = true;
+    } // buildGeometry
+
+    // one ring in the x-z plane as line segments
+    private void putCircle(double radius, int segments)
+    {
+        float x0 = 0f;
+        float y0 = (float)radius;
+        for(int i = 1; i < segments + 1; i++) // +1 loops back to orginal point
+        {
+            double angle = i * (2.0 * Math.PI / (segments));
+            float x = (float)(radius * Math.sin(angle));
+            float y = (float)(radius * Math.cos(angle));
+
+            geometry.put(x0).put(0f).put(y0);
+            geometry.put(x).put(0f).put(y);
+            x0 = x;
+            y0 = y;
+        }
+    } // putCircle
+
+    // uploads the geometry to a buffer object when supported and changed
+    private void checkContext(GL gl)
+    {
+        GLContext current = GLContext.getCurrent();
+        if(current != context)
+        {
+            context = current; // old buffer went with the old context
+            useVbo = gl.isFunctionAvailable("glGenBuffers") && gl.isFunctionAvailable("glBindBuffer")
+                    && gl.isFunctionAvailable("glBufferData") && gl.isFunctionAvailable("glDeleteBuffers");
+            vbo = 0;
+            vboDirty = true;
+        }
+
+        if(!useVbo || !vboDirty)
+        {
+            return;
+        }
+
+        if(vbo == 0)
+        {
+            int[] ids = new int[1];
+            gl.glGenBuffers(1, ids, 0);
+            vbo = ids[0];
+        }
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vbo);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, 4 * geometry.limit(), geometry, GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+        vboDirty = false;
+    } // checkContext
 
     /**
      * @return the showGrid
@@ -241,6 +327,7 @@ public class ECIRadialGrid implements Renderable
     public void setNumMajorSectionsDrawn(int numMajorSectionsDrawn)
     {
         this.numMajorSectionsDrawn = numMajorSectionsDrawn;
+        geometryDirty = true;
     }
 
     /**
@@ -257,6 +344,7 @@ public class ECIRadialGrid implements Renderable
     public void setNumMinorSectionsDrawn(int numMinorSectionsDrawn)
     {
         this.numMinorSectionsDrawn = numMinorSectionsDrawn;
+        geometryDirty = true;
     }
 
     /**
@@ -273,6 +361,7 @@ public class ECIRadialGrid implements Renderable
     public void setCircleSegments(int circleSegments)
     {
         this.circleSegments = circleSegments;
+        geometryDirty = true;
     }
 
     /**
@@ -289,6 +378,7 @@ public class ECIRadialGrid implements Renderable
     public void setNumRadialSegments(int numRadialSegments)
     {
         this.numRadialSegments = numRadialSegments;
+        geometryDirty = true;
     }
 
     /**
@@ -20,6 +20,7 @@
  */
 package Layers;
 
+import Utilities.FrameProfiler;
 import gov.nasa.worldwind.layers.RenderableLayer;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.Renderable;
@@ -51,6 +52,8 @@ public class ECIRenderableLayer extends RenderableLayer
     public static final double offsetRotdeg = -90.0; // jogl coordinate Greenwich to ECI x-axis offset
     private double rotateECIdeg = 280.46061837+offsetRotdeg; // rotation in degrees (default j2k)
     private double currentMJD = 51544.5; // current modified julian date, universal time (default J2k)
+    
+    private static final FrameProfiler.Stage RENDER_STAGE = FrameProfiler.getStage("ECI layer render");
 
     
     // SEG added -------------
@@ -87,6 +90,7 @@ public class ECIRenderableLayer extends RenderableLayer
     //  This method has been modified to include rotating for ECI coordinates based on current MJD
     protected void doRender(DrawContext dc)
     {
+        long t0 = FrameProfiler.start();
         javax.media.opengl.GL gl = dc.getGL();
         
         // this line must be before matrix push - otherwise when coverage is off, an ECI is on EFEF lines don't show
@@ -107,6 +111,8 @@ public class ECIRenderableLayer extends RenderableLayer
         
         gl.glPopMatrix(); // pop matrix rotatex for ECI
         
+        RENDER_STAGE.stop(t0);
+        
     } // do Render
 
 
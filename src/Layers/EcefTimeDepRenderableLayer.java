@@ -26,6 +26,7 @@ package Layers;
 
 import gov.nasa.worldwind.layers.RenderableLayer;
 import gov.nasa.worldwind.render.Renderable;
+import Utilities.FrameProfiler;
 import Utilities.SunTerminatorPolyLineTimeDep;
 import Utilities.TimeDepRenderable;
 import Bodies.Sun;
@@ -39,6 +40,8 @@ import Bodies.Sun;
 public class EcefTimeDepRenderableLayer extends RenderableLayer
 {
     private double currentMJD = 51544.5; // current modified julian date, universal time (default J2k)
+    
+    private static final FrameProfiler.Stage UPDATE_STAGE = FrameProfiler.getStage("ECEF time dep. update");
     private boolean showTerminatorLine = false;
     private Sun sun;
 
@@ -99,6 +102,7 @@ public class EcefTimeDepRenderableLayer extends RenderableLayer
      */
     public void setCurrentMJD(double currentMJD)
     {
+        long t0 = FrameProfiler.start();
         this.currentMJD = currentMJD;
 
         // set ECI angle to all OrbitModelRenderables
@@ -110,6 +114,7 @@ public class EcefTimeDepRenderableLayer extends RenderableLayer
             }//TimeDepRenderable
         } // for renderables
 
+        UPDATE_STAGE.stop(t0);
     } // setCurrentMJD
 
     /**
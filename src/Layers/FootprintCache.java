@@ -0,0 +1,252 @@
+/*
+ * FootprintCache.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Footprint cones of the satellites in the 3D view. Cone sizes come from the
+ * prepared render records (SatelliteFramePreparer only resizes a cone when the
+ * altitude moves by more than a tolerance), each satellite keeps its fill color
+ * here so it is only rebuilt when the color changes. All cones are drawn from one
+ * shared unit ConeMesh: per cone a single matrix (pointing the cone's axis at the
+ * Earth's center and scaling it) replaces Cone's position lookup, five rotations
+ * and new gluCylinder / gluDisk geometry.
+ *
+ * Must only be used on the rendering thread.
+ *
+ */
+
+package Layers;
+
+import Satellite.AbstractSatellite;
+import Shapes.ConeMesh;
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.media.opengl.GL;
+
+public class FootprintCache
+{
+    private double heightFactor = 0.990; // cones are a little short, because of rendering artifacts
+    private int slices = 30;
+    private int alpha = 122; // fill transparency 0-255
+
+    private final Map<AbstractSatellite,Footprint> footprints = new HashMap<AbstractSatellite,Footprint>();
+    private int frame = 0; // footprints not used in a frame are dropped
+
+    // cones queued for drawing: x,y,z of the tip, ground range, height and the footprint
+    private static final int FIELDS = 5;
+    private double[] queuedCones = new double[FIELDS * 64];
+    private Footprint[] queued = new Footprint[64];
+    private int numQueued = 0;
+
+    private final double[] matrix = new double[16]; // column major (OpenGL)
+
+    /**
+     * Footprint cone size from an altitude (spherical Earth)
+     * @param earthRadius Earth radius (meters)
+     * @param alt altitude (meters)
+     * @return radius of the cone base and height of the cone (meters)
+     */
+    public static double[] calcConeRadiusHeight(double earthRadius, double alt)
+    {
+        double[] rh = new double[2];
+
+        double lambda0 = Math.acos(earthRadius/(earthRadius+alt));
+
+        // projection length radius)
+        rh[0] = earthRadius*Math.sin(lambda0);
+
+        // height
+        rh[1] = earthRadius+alt-earthRadius*Math.cos(lambda0);
+
+        return rh;
+    } // calcConeRadiusHeight
+
+    /**
+     * Queues a satellite's footprint cone
+     * @param rec satellite's render record (with a footprint)
+     * @param x cone tip (satellite position) in the layer's coordinates
+     * @param y
+     * @param z
+     */
+    public void add(SatelliteRenderRecord rec, double x, double y, double z)
+    {
+        if(numQueued == queued.length)
+        {
+            Footprint[] biggerQueued = new Footprint[2 * queued.length];
+            System.arraycopy(queued, 0, biggerQueued, 0, numQueued);
+            queued = biggerQueued;
+
+            double[] biggerCones = new double[FIELDS * biggerQueued.length];
+            System.arraycopy(queuedCones, 0, biggerCones, 0, FIELDS * numQueued);
+            queuedCones = biggerCones;
+        }
+
+        int k = FIELDS * numQueued;
+        queued[numQueued] = getFootprint(rec);
+        queuedCones[k] = x;
+        queuedCones[k+1] = y;
+        queuedCones[k+2] = z;
+        queuedCones[k+3] = rec.getFootprint()[0];
+        queuedCones[k+4] = rec.getFootprint()[1];
+        numQueued++;
+    } // add
+
+    /**
+     * Draws the queued cones and drops footprints of satellites not used since the last draw
+     * @param gl current GL
+     */
+    public void draw(GL gl)
+    {
+        if(numQueued > 0)
+        {
+            ConeMesh mesh = ConeMesh.get(slices);
+            int fan = mesh.getFanSize();
+
+            gl.glPushAttrib(GL.GL_TEXTURE_BIT | GL.GL_ENABLE_BIT | GL.GL_CURRENT_BIT | GL.GL_COLOR_BUFFER_BIT);
+            gl.glDisable(GL.GL_TEXTURE_2D);
+            gl.glEnable(GL.GL_BLEND);
+            gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+            gl.glEnable(GL.GL_DEPTH_TEST);
+
+            gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+            gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, mesh.getVertices());
+
+            gl.glMatrixMode(GL.GL_MODELVIEW);
+            for(int i = 0; i < numQueued; i++)
+            {
+                Footprint f = queued[i];
+                Color c = f.color;
+                gl.glColor4ub((byte)c.getRed(), (byte)c.getGreen(), (byte)c.getBlue(), (byte)c.getAlpha());
+
+                gl.glPushMatrix();
+                int k = FIELDS * i;
+                computeMatrix(queuedCones[k], queuedCones[k+1], queuedCones[k+2], queuedCones[k+3], queuedCones[k+4] * heightFactor);
+                gl.glMultMatrixd(matrix, 0);
+                gl.glDrawArrays(GL.GL_TRIANGLE_FAN, 0, fan);   // side
+                gl.glDrawArrays(GL.GL_TRIANGLE_FAN, fan, fan); // base
+                gl.glPopMatrix();
+
+                queued[i] = null;
+            }
+
+            gl.glPopClientAttrib();
+            gl.glPopAttrib();
+            numQueued = 0;
+        }
+
+        // drop footprints of satellites no longer drawn
+        for(Iterator<Footprint> it = footprints.values().iterator(); it.hasNext();)
+        {
+            if(it.next().frame != frame)
+            {
+                it.remove();
+            }
+        }
+        frame++;
+    } // draw
+
+    // unit cone -> cone with its tip at (x,y,z) and its axis toward the Earth's center
+    private void computeMatrix(double x, double y, double z, double radius, double height)
+    {
+        double r = Math.sqrt(x*x + y*y + z*z);
+
+        // axis (cone z) points down
+        double wx = -x / r, wy = -y / r, wz = -z / r;
+
+        // any unit vector perpendicular to the axis (the cone is round)
+        double ux, uy, uz;
+        if(Math.abs(wy) < 0.9)
+        {
+            // cross(w, y axis)
+            ux = -wz; uy = 0; uz = wx;
+        }
+        else
+        {
+            // cross(w, x axis)
+            ux = 0; uy = wz; uz = -wy;
+        }
+        double ul = Math.sqrt(ux*ux + uy*uy + uz*uz);
+        ux /= ul; uy /= ul; uz /= ul;
+
+        // v = w x u
+        double vx = wy*uz - wz*uy;
+        double vy = wz*ux - wx*uz;
+        double vz = wx*uy - wy*ux;
+
+        matrix[0] = ux*radius; matrix[1] = uy*radius; matrix[2] = uz*radius; matrix[3] = 0;
+        matrix[4] = vx*radius; matrix[5] = vy*radius; matrix[6] = vz*radius; matrix[7] = 0;
+        matrix[8] = wx*height; matrix[9] = wy*height; matrix[10] = wz*height; matrix[11] = 0;
+        matrix[12] = x;        matrix[13] = y;        matrix[14] = z;         matrix[15] = 1;
+    } // computeMatrix
+
+    // record of a satellite, fill color updated when the satellite color changes
+    private Footprint getFootprint(SatelliteRenderRecord rec)
+    {
+        Footprint f = footprints.get(rec.getSatellite());
+        if(f == null)
+        {
+            f = new Footprint();
+            footprints.put(rec.getSatellite(), f);
+        }
+
+        Color satColor = rec.getColor();
+        if(!satColor.equals(f.satColor) || f.color.getAlpha() != alpha)
+        {
+            f.satColor = satColor;
+            f.color = new Color(satColor.getRed(), satColor.getGreen(), satColor.getBlue(), alpha);
+        }
+
+        f.frame = frame;
+        return f;
+    } // getFootprint
+
+    public int getSlices()
+    {
+        return slices;
+    }
+
+    public void setSlices(int slices)
+    {
+        this.slices = slices;
+    }
+
+    public int getAlpha()
+    {
+        return alpha;
+    }
+
+    /**
+     * @param alpha fill transparency 0-255
+     */
+    public void setAlpha(int alpha)
+    {
+        this.alpha = alpha;
+    }
+
+    // cached footprint of one satellite
+    private static class Footprint
+    {
+        Color satColor = null;
+        Color color = null; // fill color (satellite color with alpha)
+        int frame;
+    } // Footprint
+
+} // FootprintCache
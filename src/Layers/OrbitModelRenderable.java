@@ -25,24 +25,21 @@
 
 package Layers;
 
-import gov.nasa.worldwind.geom.Angle;
-import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Matrix;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
-import gov.nasa.worldwind.render.AnnotationAttributes;
 import gov.nasa.worldwind.render.DrawContext;
-import gov.nasa.worldwind.render.FrameFactory;
-import gov.nasa.worldwind.render.GlobeAnnotation;
 import gov.nasa.worldwind.render.Renderable;
 import gov.nasa.worldwind.util.Logging;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.Point;
-import java.util.Hashtable;
 import javax.media.opengl.GL;
-import Satellite.AbstractSatellite;
+import Satellite.SatelliteState;
+import Utilities.FrameProfiler;
 import Utilities.MathUtils;
-import Shapes.Cone;
+import Utilities.PointGridIndex;
+import java.util.ArrayList;
+import java.util.List;
+import Shapes.SphereMarkerBatch;
 import Shapes.SphereObject;
 
 
@@ -52,15 +49,18 @@ import Shapes.SphereObject;
 public class OrbitModelRenderable implements Renderable
 {
     
-    // hash of sat props
-    Hashtable<String,AbstractSatellite> satHash;
+    private static final FrameProfiler.Stage RENDER_STAGE = FrameProfiler.getStage("ECI satellites render");
+    
+    // prepared render records of the satellites (shared with the ECEF renderable)
+    SatelliteFramePreparer framePreparer;
     
     // Sphere Object
     double sphereRadius = 100000;
-    SphereObject sphere = new SphereObject(new Vec4(0,0,0,0), sphereRadius, true);
+    SphereObject sphere = new SphereObject(new Vec4(0,0,0,0), sphereRadius, true); // size, color and style of the markers
+    SphereMarkerBatch markers = new SphereMarkerBatch(); // all spheres drawn from one shared mesh
     // lat long placement
     //SurfaceCircle surfCirc; 
-    Cone cone;
+    FootprintCache footprints; // footprint cones drawn from one shared mesh, resized only when the altitude changes by more than a tolerance
     
     // fill transparency
     int circleViewTransparency = 122; //0-255
@@ -68,22 +68,38 @@ public class OrbitModelRenderable implements Renderable
     // save globe
     Globe globe;
     
+    // packed orbit traces, rebuilt only when a ground track changes
+    OrbitTraceCache traceCache = new OrbitTraceCache();
+    
+    // satellite name labels
+    SatelliteLabelManager labels = new SatelliteLabelManager();
+    
+    // frustum culling and level of detail
+    SatelliteVisibility visibility = new SatelliteVisibility();
+    double eciRotDeg = 0; // rotation of the ECI layer (set in updateMJD)
+    float pointSize = 4.0f; // size of satellites too small for a sphere (pixels)
+    
+    // view and records of the last frame, the pick index is only built from them when a pick is asked for
+    volatile PickView pickView = null;
+    PickView pickIndexView = null; // view the index below was built for (guarded by this)
+    PointGridIndex<SatelliteRenderRecord> pickIndex = null;
+    double pickCellSize = 32; // pixels
+    
     
     /** Creates a new instance of OrbitModel
-     * @param satHash
+     * @param framePreparer
      * @param globe 
      */
-    public OrbitModelRenderable(Hashtable<String,AbstractSatellite> satHash, Globe globe)
+    public OrbitModelRenderable(SatelliteFramePreparer framePreparer, Globe globe)
     {
-        this.satHash = satHash;
+        this.framePreparer = framePreparer;
         this.globe = globe;
         
         //surfCirc = new SurfaceCircle(globe,LatLon.fromRadians(0.0,0.0),1.0,32);
 
         
-        Color transGreen = new Color(0.0f,1.0f,0.0f,circleViewTransparency/255.0f);
-        cone = new Cone(globe, 45, -90, 1000000, 2000000, Angle.fromDegrees(0), Angle.fromDegrees(-90), transGreen);
-        //Cone(Globe globe, double lat, double lon, double mGroundRange, double mCeiling, Angle orientation, Angle elevation, Color theColor)
+        footprints = new FootprintCache();
+        footprints.setAlpha(circleViewTransparency);
     }
     
     
@@ -97,133 +113,114 @@ public class OrbitModelRenderable implements Renderable
             throw new IllegalArgumentException(msg);
         }
         
+        long t0 = FrameProfiler.start();
         javax.media.opengl.GL gl = dc.getGL();
         
 //        gl.glEnable(GL.GL_TEXTURE_2D); // removed - sun shading disabeled below
-        gl.glPushAttrib(javax.media.opengl.GL.GL_TEXTURE_BIT | javax.media.opengl.GL.GL_ENABLE_BIT | javax.media.opengl.GL.GL_CURRENT_BIT);
+        gl.glPushAttrib(javax.media.opengl.GL.GL_TEXTURE_BIT | javax.media.opengl.GL.GL_ENABLE_BIT | javax.media.opengl.GL.GL_CURRENT_BIT | javax.media.opengl.GL.GL_POINT_BIT);
         gl.glMatrixMode(javax.media.opengl.GL.GL_MODELVIEW);
 
         // Added so that the colors wouldn't depend on sun shading
         gl.glDisable(GL.GL_TEXTURE_2D);
-              
-        // for each satellite
-        for(AbstractSatellite sat : satHash.values() ) // search through all sat nodes
+        
+        // the ECI layer rotates everything by -eciRotDeg
+        visibility.begin(dc, -eciRotDeg);
+        
+        // for each satellite (records prepared once per time step, not changed while drawing)
+        List<SatelliteRenderRecord> records = framePreparer.getFrame().getRecords();
+        for(SatelliteRenderRecord rec : records ) // search through all sat nodes
         {
+            SatelliteState sat = rec.getState();
+            
             // set color
-            Color satColor = sat.getSatColor();
-            gl.glColor3f( satColor.getRed()/255.0f , satColor.getGreen()/255.0f , satColor.getBlue()/255.0f ); // COLOR
-            Double nanDbl = new Double(Double.NaN);
+            float[] rgb = rec.getRGB();
+            gl.glColor3f( rgb[0] , rgb[1] , rgb[2] ); // COLOR
             
-            if (sat.isShow3DOrbitTrace() && sat.isShow3DOrbitTraceECI())
+            if (rec.isDrawEciTrace())
             {
-                // plot lag orbit
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLagPts(); i++)
-                {
-                    // add next Mean of Date vertex
-                    double[] xyz = sat.getGroundTrackXyzLagPt(i);
-                    if(!nanDbl.equals(xyz[0])) // NaN check
-                    {
-                        gl.glVertex3f((float)-xyz[0], (float)xyz[2], (float)xyz[1]);
-                    }
-                }
-                gl.glEnd();
-
-                // plot lead orbit
-                gl.glBegin(GL.GL_LINE_STRIP); //GL_LINE_STRIP
-                for (int i = 0; i < sat.getNumGroundTrackLeadPts(); i++)
+                // plot lag and lead orbit (cached, broken where points are NaN), fewer points when small on screen
+                int decimation = visibility.getTraceDecimation(traceCache.getGeometry(gl, sat));
+                if(decimation > 0)
                 {
-                    // add next Mean of Date vertex
-                    double[] xyz = sat.getGroundTrackXyzLeadPt(i);
-                    if(!nanDbl.equals(xyz[0])) // NaN check
-                    {
-                        gl.glVertex3f((float)-xyz[0], (float)xyz[2], (float)xyz[1]);
-                    }
+                    traceCache.draw(gl, sat, decimation);
                 }
-                gl.glEnd();
             } // show orbit trace
             
             // plot position 
-            double[] xyz = sat.getTEMEPos();
-            if(xyz != null)
+            double[] pos = rec.getEciPoint();
+            if(pos == null)
             {
-                // 3D model is rendered Here
-                if(sat.isUse3dModel())
-                {
-                    // custom 3D object
-                    if(sat.getThreeDModel() != null) // make sure it is not null
-                    {
-                       //- 
-                        sat.getThreeDModel().render(dc); // render model
-                    }
-                }
-                else
+                continue; // not propagated (outside ephemeris), nothing else to draw
+            }
+            
+            // level of detail from size on screen (none if outside the view)
+            int lod = visibility.getMarkerLod(pos[0], pos[1], pos[2], sphereRadius, rec.isDrawModel());
+            if(lod == SatelliteVisibility.LOD_MODEL)
+            {
+                // custom 3D object
+                if(sat.getThreeDModel() != null) // make sure it is not null
                 {
-                    // default "sphere" for model
-                    sphere.setCenter(-xyz[0], xyz[2], xyz[1]);
-                    sphere.render(dc);
+                    sat.getThreeDModel().render(dc); // render model
                 }
-            } // if pos is not null
+            }
+            else if(lod == SatelliteVisibility.LOD_SPHERE)
+            {
+                // default "sphere" for model (drawn with the others after the loop)
+                markers.add(pos[0], pos[1], pos[2], sphere.getRadius(), sphere.getColor());
+            }
+            else if(lod == SatelliteVisibility.LOD_POINT)
+            {
+                // too small for a sphere, just a dot
+                gl.glPointSize(pointSize);
+                gl.glBegin(GL.GL_POINTS);
+                gl.glVertex3d(pos[0], pos[1], pos[2]);
+                gl.glEnd();
+            }
             
             // draw name
-            if(sat.isShow3DName())
+            if(rec.getLabel() != null && lod != SatelliteVisibility.LOD_NONE)
             {
-                // this may be REALLY slow creating this every repaint! - maybe store in sat object and update its position?
-                AnnotationAttributes geoAttr = createFontAttribs(sat.getSatColor());
-                GlobeAnnotation an = new GlobeAnnotation(sat.getName(), Position.fromRadians(sat.getLatitude(), sat.getLongitude(), sat.getAltitude()), geoAttr);
-                
-                // annotation - without any attribs, gives a bubble box
-                // annotation doesn't strech well in GLCanvas
-                //GlobeAnnotation an = new GlobeAnnotation(gs.getStationName(), Position.fromDegrees(gs.getLatitude(), gs.getLongitude(), gs.getAltitude()));
-                an.render(dc);
-                
+                // one annotation kept per satellite, only its position is updated
+                labels.render(dc, rec);
             }
             
             // draw earth footprint
-            if (sat.isShow3DFootprint())
+            double[] rh = rec.getFootprint();
+            // cone fits in a sphere around the satellite reaching its rim
+            if (rh != null && visibility.isVisible(pos[0], pos[1], pos[2], Math.sqrt(rh[0]*rh[0] + rh[1]*rh[1])))
             {
-                double[] lla = sat.getLLA();
-                if (lla != null)
-                {
-//                    surfCirc.setCenter(LatLon.fromRadians(lla[0], lla[1]));
-//                    surfCirc.setRadius(calcFootPrintRadiusFromAlt(lla[2]));
-//                    surfCirc.setBorderColor(satColor);
-//                    surfCirc.setPaint(new Color(satColor.getRed(), satColor.getGreen(), satColor.getBlue(), circleViewTransparency)); // sets interior color
-//                    surfCirc.render(dc);
-                    
-                    // test cone 
-                    //cone.setLatLonRadians( lla[0] , lla[1], lla[2] );
-                    cone.setVertexPosition(-xyz[0], xyz[2], xyz[1]);
-                    double[] rh = calcConeRadiusHeightFromAlt(lla[2]);
-                    cone.setGroundRange(rh[0]);
-                    cone.setHeight(rh[1]*0.990); // minus a little because of rendering artifacts
-                    cone.setColor( new Color(satColor.getRed(), satColor.getGreen(), satColor.getBlue(), circleViewTransparency) );
-                    cone.render(dc);
-                }
+//                surfCirc.setCenter(LatLon.fromRadians(lla[0], lla[1]));
+//                surfCirc.setRadius(calcFootPrintRadiusFromAlt(lla[2]));
+//                surfCirc.setBorderColor(satColor);
+//                surfCirc.setPaint(new Color(satColor.getRed(), satColor.getGreen(), satColor.getBlue(), circleViewTransparency)); // sets interior color
+//                surfCirc.render(dc);
+                
+                // cone drawn with the others after the loop
+                footprints.add(rec, pos[0], pos[1], pos[2]);
             }
             
             
         } // for each sat
+        
+        // all sphere markers at once
+        markers.setNumDivisions(sphere.getNumDivisions());
+        markers.setFilled(sphere.isSphereFilled());
+        markers.setPlotFixedAxis(sphere.isPlotFixedAxis());
+        markers.draw(gl);
+        
+        // all footprint cones at once (transparent, after the markers)
+        footprints.draw(gl);
 
+        pickView = new PickView(dc.getView(), -eciRotDeg, records); // picked against this frame
+        
+        traceCache.endFrame(gl); // free traces no longer drawn
+        labels.endFrame(); // drop labels no longer drawn
         
         gl.glPopAttrib();
         
+        RENDER_STAGE.stop(t0);
      } // render
     
-    private AnnotationAttributes createFontAttribs(Color textColor)
-    {
-        AnnotationAttributes geoAttr = new AnnotationAttributes();
-            geoAttr.setFrameShape(FrameFactory.SHAPE_NONE);  // No frame
-            geoAttr.setFont(Font.decode("Arial-ITALIC-12"));
-            geoAttr.setTextColor(textColor);
-//            geoAttr.setTextAlign(MultiLineTextRenderer.ALIGN_CENTER);
-            geoAttr.setDrawOffset(new Point(0, 5)); // centered just above
-//            geoAttr.setEffect(MultiLineTextRenderer.EFFECT_OUTLINE);  // Black outline
-            geoAttr.setBackgroundColor(Color.BLACK);
-            
-            return geoAttr;
-    } //createFontAttribs
-    
     public double calcFootPrintRadiusFromAlt(double alt) // double lat, double lon, 
     {
         double earthRad = globe.getEquatorialRadius();
@@ -244,37 +241,125 @@ public class OrbitModelRenderable implements Renderable
     
     public double[] calcConeRadiusHeightFromAlt(double alt)
     {
-        double[] rh = new double[2];
-        
-        double earthRad = globe.getEquatorialRadius();
-        double lambda0 = Math.acos(earthRad/(earthRad+alt));
-        
-        // projection length radius)
-        rh[0] = earthRad*Math.sin(lambda0);
+        return FootprintCache.calcConeRadiusHeight(globe.getEquatorialRadius(), alt);
+    }
+    
+    /**
+     * Satellite in view nearest to a screen position in the last frame (any thread)
+     * @param x pixels from the left of the 3D view (mouse coordinates)
+     * @param y pixels from the top
+     * @param maxPixels farthest away to look
+     * @return render record of the satellite, null if none is close enough
+     */
+    public SatelliteRenderRecord pickSatellite(double x, double y, double maxPixels)
+    {
+        PointGridIndex<SatelliteRenderRecord> index = getPickIndex();
+        return (index == null) ? null : index.nearest(x, y, maxPixels);
+    }
+    
+    /**
+     * Satellites in view inside a screen rectangle in the last frame (any thread)
+     * @param rect rectangle in mouse coordinates
+     * @return render records of the satellites (empty if none)
+     */
+    public List<SatelliteRenderRecord> pickSatellites(java.awt.Rectangle rect)
+    {
+        PointGridIndex<SatelliteRenderRecord> index = getPickIndex();
+        if(index == null)
+        {
+            return new ArrayList<SatelliteRenderRecord>();
+        }
+        return index.inRectangle(rect.getMinX(), rect.getMinY(), rect.getMaxX(), rect.getMaxY());
+    }
+    
+    // screen positions of the satellites in the last frame, projected when first asked for after a frame
+    private synchronized PointGridIndex<SatelliteRenderRecord> getPickIndex()
+    {
+        PickView v = pickView;
+        if(v == null)
+        {
+            return null;
+        }
+        if(v != pickIndexView)
+        {
+            PointGridIndex<SatelliteRenderRecord> index = new PointGridIndex<SatelliteRenderRecord>(0, 0, v.viewport.width, v.viewport.height, pickCellSize, v.records.size());
+            double[] screenPt = new double[2];
+            for(SatelliteRenderRecord rec : v.records)
+            {
+                double[] pos = rec.getEciPoint();
+                if(pos != null && v.project(pos, screenPt))
+                {
+                    index.add(screenPt[0], screenPt[1], rec);
+                }
+            }
+            pickIndex = index.build();
+            pickIndexView = v;
+        }
+        return pickIndex;
+    } // getPickIndex
+    
+    // what a frame was drawn with, enough to project its satellites later on another thread
+    static class PickView
+    {
+        final Matrix modelview, projection; // world wind matrices are immutable
+        final java.awt.Rectangle viewport;
+        final double cosRot, sinRot; // layer rotation about the JOGL y axis
+        final List<SatelliteRenderRecord> records;
         
-        // height
-        rh[1] = earthRad+alt-earthRad*Math.cos(lambda0);
+        PickView(View view, double layerRotDeg, List<SatelliteRenderRecord> records)
+        {
+            modelview = view.getModelviewMatrix();
+            projection = view.getProjectionMatrix();
+            viewport = new java.awt.Rectangle(view.getViewport());
+            double a = Math.toRadians(layerRotDeg);
+            cosRot = Math.cos(a);
+            sinRot = Math.sin(a);
+            this.records = records;
+        }
         
-        return rh;
-    }
+        // x, y in pixels from the top left of the viewport (like mouse events), false if off the screen or behind the eye
+        boolean project(double[] pos, double[] out)
+        {
+            if(modelview == null || projection == null)
+            {
+                return false;
+            }
+            Vec4 p = new Vec4(cosRot*pos[0] + sinRot*pos[2], pos[1], -sinRot*pos[0] + cosRot*pos[2], 1);
+            Vec4 clip = p.transformBy4(modelview).transformBy4(projection);
+            if(clip.w <= 0)
+            {
+                return false;
+            }
+            double nx = clip.x / clip.w, ny = clip.y / clip.w, nz = clip.z / clip.w;
+            if(nx < -1 || nx > 1 || ny < -1 || ny > 1 || nz < -1 || nz > 1)
+            {
+                return false;
+            }
+            out[0] = viewport.width * (nx + 1) / 2.0;
+            out[1] = viewport.height * (1 - ny) / 2.0; // OpenGL y is up from the bottom
+            return true;
+        } // project
+    } // PickView
     
     public void updateMJD(double MJD, double eciRotDeg)
     {
-        for (AbstractSatellite sat : satHash.values()) // search through all sat nodes
+        this.eciRotDeg = eciRotDeg;
+        
+        for (SatelliteRenderRecord rec : framePreparer.getFrame().getRecords()) // search through all sat nodes
         {
+            SatelliteState sat = rec.getState();
+            
             // set position 
             // DIES HERE IF NO 3D MODEL  - I.E. 3D model not selected either!
-            if(sat.isUse3dModel())
+            if(rec.isDrawModel() && rec.getPosition() != null)
             {
                 if(sat.getThreeDModel() != null)
                 {
-                    sat.getThreeDModel().setPosition(new Position(Angle.fromRadians(sat.getLatitude()),
-                            Angle.fromRadians(sat.getLongitude()),
-                            sat.getAltitude()));
+                    sat.getThreeDModel().setPosition(rec.getPosition());
                     // set roll pitch yaw (assume user wants LVLH, velcorty aligned)
 
                     // calculate TEME velocity and set rotation angles and axis
-                    if(sat.getTEMEPos() != null)
+                    if(sat.getTEMEPos() != null && sat.getTEMEVelocity() != null)
                     {
                         sat.getThreeDModel().setMainRotationAngleAxis(sat.getTEMEVelocity(), sat.getTEMEPos());
 
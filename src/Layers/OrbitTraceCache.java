@@ -0,0 +1,228 @@
+/*
+ * OrbitTraceCache.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Keeps the packed ECI orbit trace of each satellite (OrbitTraceGeometry) so it
+ * is only rebuilt when the satellite's ground track is recomputed (the track
+ * arrays are replaced as a whole, so a different array means a new track).
+ * The vertices are uploaded to a vertex buffer object when the card supports them
+ * (otherwise drawn from the direct buffer) and each trace is drawn with one
+ * glMultiDrawArrays call. Decimated copies (every 2nd, 4th, ... point) are made
+ * as they are asked for, for traces that are small on the screen.
+ *
+ * Must only be used on the rendering thread (with the GL context current).
+ *
+ */
+
+package Layers;
+
+import Satellite.AbstractSatellite;
+import Satellite.SatelliteState;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+public class OrbitTraceCache
+{
+    public static final int MAX_DECIMATION = 8; // most points skipped (power of 2)
+    private static final int NUM_LEVELS = 4; // decimation 1, 2, 4, 8
+
+    private final Map<AbstractSatellite,Entry> entries = new HashMap<AbstractSatellite,Entry>();
+
+    // context the buffers were made in (buffer ids mean nothing in another one)
+    private GLContext context = null;
+    private boolean useVbo = false;
+    private boolean useMultiDraw = false;
+
+    private int frame = 0; // counts endFrame calls, traces not drawn in a frame are freed
+
+    /**
+     * Full resolution trace of a satellite (e.g. for its bounds), rebuilt if the ground track changed
+     * @param gl current GL
+     * @param sat satellite state
+     * @return packed trace
+     */
+    public OrbitTraceGeometry getGeometry(GL gl, SatelliteState sat)
+    {
+        return getEntry(gl, sat).levels[0];
+    }
+
+    /**
+     * Draws a satellite's lag and lead orbit trace (color must already be set)
+     * @param gl current GL
+     * @param sat satellite state
+     * @param decimation draw every decimation-th point (1, 2, 4 or 8)
+     */
+    public void draw(GL gl, SatelliteState sat, int decimation)
+    {
+        Entry entry = getEntry(gl, sat);
+
+        // level = log2(decimation)
+        int level = 0;
+        while(level < NUM_LEVELS - 1 && (1 << (level + 1)) <= decimation)
+        {
+            level++;
+        }
+        if(entry.levels[level] == null)
+        {
+            entry.levels[level] = entry.levels[0].decimate(1 << level);
+        }
+
+        OrbitTraceGeometry geometry = entry.levels[level];
+        int numRuns = geometry.getNumRuns();
+        if(numRuns == 0)
+        {
+            return;
+        }
+
+        gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+        gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+
+        if(useVbo)
+        {
+            if(entry.vbo[level] == 0)
+            {
+                int[] id = new int[1];
+                gl.glGenBuffers(1, id, 0);
+                entry.vbo[level] = id[0];
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, id[0]);
+                gl.glBufferData(GL.GL_ARRAY_BUFFER, 4 * 3 * geometry.getNumVertices(), geometry.getVertices(), GL.GL_STATIC_DRAW);
+            }
+            else
+            {
+                gl.glBindBuffer(GL.GL_ARRAY_BUFFER, entry.vbo[level]);
+            }
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, 0L);
+        }
+        else
+        {
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, geometry.getVertices());
+        }
+
+        if(useMultiDraw)
+        {
+            gl.glMultiDrawArrays(GL.GL_LINE_STRIP, geometry.getRunFirst(), 0, geometry.getRunCount(), 0, numRuns);
+        }
+        else
+        {
+            int[] first = geometry.getRunFirst();
+            int[] count = geometry.getRunCount();
+            for(int i = 0; i < numRuns; i++)
+            {
+                gl.glDrawArrays(GL.GL_LINE_STRIP, first[i], count[i]);
+            }
+        }
+
+        if(useVbo)
+        {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0); // others may use client side arrays
+        }
+        gl.glPopClientAttrib();
+    } // draw
+
+    // trace of a satellite, rebuilt if the ground track changed, marked as used this frame
+    private Entry getEntry(GL gl, SatelliteState sat)
+    {
+        checkContext(gl);
+
+        double[][] lag = sat.getTemePosLag();
+        double[][] lead = sat.getTemePosLead();
+
+        Entry entry = entries.get(sat.getSatellite());
+        if(entry == null || entry.lag != lag || entry.lead != lead)
+        {
+            // new or recomputed ground track
+            if(entry != null)
+            {
+                entry.release(gl);
+            }
+            entry = new Entry(lag, lead, new OrbitTraceGeometry(lag, lead));
+            entries.put(sat.getSatellite(), entry);
+        }
+        entry.frame = frame;
+        return entry;
+    } // getEntry
+
+    /**
+     * Called once all satellites have been drawn, frees the traces of satellites
+     * that weren't drawn (removed, or trace turned off)
+     * @param gl current GL
+     */
+    public void endFrame(GL gl)
+    {
+        checkContext(gl);
+
+        for(Iterator<Entry> it = entries.values().iterator(); it.hasNext();)
+        {
+            Entry entry = it.next();
+            if(entry.frame != frame)
+            {
+                entry.release(gl);
+                it.remove();
+            }
+        }
+        frame++;
+    } // endFrame
+
+    // drop everything if the GL context changed (e.g. the canvas was recreated)
+    private void checkContext(GL gl)
+    {
+        GLContext current = GLContext.getCurrent();
+        if(current != context)
+        {
+            entries.clear(); // old buffers went with the old context
+            context = current;
+            useVbo = gl.isFunctionAvailable("glGenBuffers") && gl.isFunctionAvailable("glBindBuffer")
+                    && gl.isFunctionAvailable("glBufferData") && gl.isFunctionAvailable("glDeleteBuffers");
+            useMultiDraw = gl.isFunctionAvailable("glMultiDrawArrays");
+        }
+    } // checkContext
+
+    // trace of one satellite
+    private static class Entry
+    {
+        final double[][] lag; // track arrays the geometry was built from
+        final double[][] lead;
+        final OrbitTraceGeometry[] levels = new OrbitTraceGeometry[NUM_LEVELS]; // full, then decimated (made when needed)
+        final int[] vbo = new int[NUM_LEVELS]; // 0 = not uploaded
+        int frame;
+
+        Entry(double[][] lag, double[][] lead, OrbitTraceGeometry geometry)
+        {
+            this.lag = lag;
+            this.lead = lead;
+            levels[0] = geometry;
+        }
+
+        void release(GL gl)
+        {
+            for(int i = 0; i < NUM_LEVELS; i++)
+            {
+                if(vbo[i] != 0)
+                {
+                    gl.glDeleteBuffers(1, new int[] {vbo[i]}, 0);
+                    vbo[i] = 0;
+                }
+            }
+        }
+    } // Entry
+
+} // OrbitTraceCache
@@ -0,0 +1,248 @@
+/*
+ * OrbitTraceGeometry.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Vertices of one satellite's lag and lead orbit trace packed into a single float
+ * buffer (x,y,z per point, already in the ECI layer's axes: -x, z, y). Points
+ * that are NaN (outside the ephemeris) are left out and split the trace into
+ * runs, each run is drawn as its own line strip. Has no OpenGL calls so it can
+ * be built (and checked) without a display.
+ *
+ * A decimated copy (every n-th point of each run, plus its last point) is used
+ * when the trace is small on the screen, the bounding sphere is for culling.
+ *
+ */
+
+package Layers;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+public class OrbitTraceGeometry
+{
+    private final FloatBuffer vertices; // direct, native order (ready for glVertexPointer / glBufferData)
+    private final int numVertices;
+    private final int[] runFirst; // first vertex of each run
+    private final int[] runCount; // vertices in each run (always 2 or more)
+
+    // bounding sphere of the vertices (center of their bounding box)
+    private double centerX, centerY, centerZ;
+    private double radius;
+
+    /**
+     * Packs a trace (the lag points are drawn first, then the lead points, each is its own strip)
+     * @param temePosLag lagging TEME points [point][x,y,z] (may be null)
+     * @param temePosLead leading TEME points [point][x,y,z] (may be null)
+     */
+    public OrbitTraceGeometry(double[][] temePosLag, double[][] temePosLead)
+    {
+        int maxPts = length(temePosLag) + length(temePosLead);
+        int maxRuns = maxPts / 2 + 2; // a run needs at least 2 points
+
+        vertices = ByteBuffer.allocateDirect(4 * 3 * Math.max(1, maxPts)).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        int[] first = new int[maxRuns];
+        int[] count = new int[maxRuns];
+
+        int numRuns = pack(temePosLag, first, count, 0);
+        numRuns = pack(temePosLead, first, count, numRuns);
+
+        numVertices = vertices.position() / 3;
+        vertices.flip();
+
+        runFirst = new int[numRuns];
+        runCount = new int[numRuns];
+        System.arraycopy(first, 0, runFirst, 0, numRuns);
+        System.arraycopy(count, 0, runCount, 0, numRuns);
+
+        computeBounds();
+    } // constructor
+
+    // every step-th vertex of each run of another trace, plus the run's last vertex
+    private OrbitTraceGeometry(OrbitTraceGeometry full, int step)
+    {
+        int numRuns = full.getNumRuns();
+        int maxPts = 0;
+        for(int r = 0; r < numRuns; r++)
+        {
+            maxPts += (full.runCount[r] - 1) / step + 2;
+        }
+
+        vertices = ByteBuffer.allocateDirect(4 * 3 * Math.max(1, maxPts)).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        runFirst = new int[numRuns];
+        runCount = new int[numRuns];
+
+        FloatBuffer src = full.vertices;
+        for(int r = 0; r < numRuns; r++)
+        {
+            int first = full.runFirst[r];
+            int last = first + full.runCount[r] - 1;
+            runFirst[r] = vertices.position() / 3;
+
+            for(int i = first; i <= last; i += step)
+            {
+                vertices.put(src.get(3*i)).put(src.get(3*i+1)).put(src.get(3*i+2));
+            }
+            if((last - first) % step != 0)
+            {
+                vertices.put(src.get(3*last)).put(src.get(3*last+1)).put(src.get(3*last+2)); // keep the end point
+            }
+
+            runCount[r] = vertices.position() / 3 - runFirst[r];
+        }
+
+        numVertices = vertices.position() / 3;
+        vertices.flip();
+
+        centerX = full.centerX;
+        centerY = full.centerY;
+        centerZ = full.centerZ;
+        radius = full.radius;
+    } // constructor
+
+    /**
+     * @param step keep every step-th point (2 or more)
+     * @return trace with fewer points (same runs, each keeps its first and last point)
+     */
+    public OrbitTraceGeometry decimate(int step)
+    {
+        return new OrbitTraceGeometry(this, Math.max(1, step));
+    }
+
+    private void computeBounds()
+    {
+        if(numVertices == 0)
+        {
+            return;
+        }
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for(int i = 0; i < 3 * numVertices; i += 3)
+        {
+            double x = vertices.get(i), y = vertices.get(i+1), z = vertices.get(i+2);
+            minX = Math.min(minX, x); maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y); maxY = Math.max(maxY, y);
+            minZ = Math.min(minZ, z); maxZ = Math.max(maxZ, z);
+        }
+
+        centerX = (minX + maxX) / 2.0;
+        centerY = (minY + maxY) / 2.0;
+        centerZ = (minZ + maxZ) / 2.0;
+
+        // farthest vertex from the center
+        double r2 = 0;
+        for(int i = 0; i < 3 * numVertices; i += 3)
+        {
+            double dx = vertices.get(i) - centerX, dy = vertices.get(i+1) - centerY, dz = vertices.get(i+2) - centerZ;
+            r2 = Math.max(r2, dx*dx + dy*dy + dz*dz);
+        }
+        radius = Math.sqrt(r2);
+    } // computeBounds
+
+    // adds the points of one strip, returns the new number of runs
+    private int pack(double[][] pts, int[] first, int[] count, int numRuns)
+    {
+        if(pts == null)
+        {
+            return numRuns;
+        }
+
+        int runStart = vertices.position() / 3;
+        for(int i = 0; i <= pts.length; i++)
+        {
+            boolean gap = (i == pts.length) || Double.isNaN(pts[i][0]);
+            if(gap)
+            {
+                int n = vertices.position() / 3 - runStart;
+                if(n >= 2)
+                {
+                    first[numRuns] = runStart;
+                    count[numRuns] = n;
+                    numRuns++;
+                }
+                else if(n == 1)
+                {
+                    vertices.position(3 * runStart); // single point isn't a line, drop it
+                }
+                runStart = vertices.position() / 3;
+            }
+            else
+            {
+                vertices.put((float)-pts[i][0]);
+                vertices.put((float)pts[i][2]);
+                vertices.put((float)pts[i][1]);
+            }
+        }
+        return numRuns;
+    } // pack
+
+    private static int length(double[][] pts)
+    {
+        return (pts == null) ? 0 : pts.length;
+    }
+
+    /**
+     * @return x,y,z of every vertex (position 0, limit 3*getNumVertices(), do not change)
+     */
+    public FloatBuffer getVertices()
+    {
+        return vertices;
+    }
+
+    public int getNumVertices()
+    {
+        return numVertices;
+    }
+
+    /**
+     * @return center of the bounding sphere, x,y,z in the same axes as the vertices
+     */
+    public double[] getBoundingCenter()
+    {
+        return new double[] {centerX, centerY, centerZ};
+    }
+
+    public double getBoundingRadius()
+    {
+        return radius;
+    }
+
+    public int getNumRuns()
+    {
+        return runFirst.length;
+    }
+
+    /**
+     * @return first vertex of each run (do not change)
+     */
+    public int[] getRunFirst()
+    {
+        return runFirst;
+    }
+
+    /**
+     * @return number of vertices in each run (do not change)
+     */
+    public int[] getRunCount()
+    {
+        return runCount;
+    }
+
+} // OrbitTraceGeometry
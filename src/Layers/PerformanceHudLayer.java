@@ -0,0 +1,159 @@
+/*
+ * PerformanceHudLayer.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Overlay listing the FrameProfiler stages (median, 99th percentile and max
+ * times) in the top left corner of the 3D view, and timing the interval between
+ * 3D frames. Add it as the last layer so it is drawn on top.
+ *
+ */
+
+package Layers;
+
+import Utilities.FrameProfiler;
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.render.DrawContext;
+import com.sun.opengl.util.j2d.TextRenderer;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.util.List;
+import java.util.Locale;
+import javax.media.opengl.GLContext;
+
+public class PerformanceHudLayer extends AbstractLayer
+{
+    private static final FrameProfiler.Stage FRAME_STAGE = FrameProfiler.getStage("3D frame interval");
+
+    private Font font = Font.decode("Monospaced-PLAIN-12");
+    private Color textColor = Color.YELLOW;
+    private int xOffset = 10; // pixels from the left
+    private int yOffset = 10; // pixels from the top
+    private long refreshMillis = 500; // text is only rebuilt this often
+
+    // text renderer belongs to one GL context
+    private TextRenderer textRenderer = null;
+    private GLContext context = null;
+
+    private long lastFrameNanos = 0;
+    private long lastTextMillis = 0;
+    private String[] lines = new String[0];
+
+    public PerformanceHudLayer()
+    {
+        setName("Performance HUD");
+        setPickEnabled(false);
+    }
+
+    @Override
+    protected void doRender(DrawContext dc)
+    {
+        // time since the last frame this layer drew
+        long now = System.nanoTime();
+        if(lastFrameNanos != 0 && FrameProfiler.isEnabled())
+        {
+            FRAME_STAGE.record(now - lastFrameNanos);
+        }
+        lastFrameNanos = now;
+
+        long nowMillis = System.currentTimeMillis();
+        if(nowMillis - lastTextMillis >= refreshMillis)
+        {
+            lines = buildLines();
+            lastTextMillis = nowMillis;
+        }
+
+        GLContext current = GLContext.getCurrent();
+        if(textRenderer == null || current != context)
+        {
+            textRenderer = new TextRenderer(font, true, false); // old one went with its context
+            context = current;
+        }
+
+        Rectangle viewport = dc.getView().getViewport();
+        int lineHeight = font.getSize() + 3;
+
+        textRenderer.beginRendering(viewport.width, viewport.height);
+        textRenderer.setColor(textColor);
+        int y = viewport.height - yOffset - lineHeight;
+        for(String line : lines)
+        {
+            textRenderer.draw(line, xOffset, y);
+            y -= lineHeight;
+        }
+        textRenderer.endRendering();
+    } // doRender
+
+    // one line per stage
+    private String[] buildLines()
+    {
+        List<FrameProfiler.Summary> summaries = FrameProfiler.getSummaries();
+        String[] text = new String[summaries.size() + 1];
+        text[0] = String.format(Locale.US, "%-24s %8s %8s %8s", "stage (ms)", "p50", "p99", "max");
+        for(int i = 0; i < summaries.size(); i++)
+        {
+            FrameProfiler.Summary s = summaries.get(i);
+            text[i + 1] = String.format(Locale.US, "%-24s %8.2f %8.2f %8.2f", s.getName(), s.getP50Millis(), s.getP99Millis(), s.getWindowMaxMillis());
+        }
+        return text;
+    } // buildLines
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        super.setEnabled(enabled);
+        lastFrameNanos = 0; // don't count the time it was off as a frame
+    }
+
+    public Color getTextColor()
+    {
+        return textColor;
+    }
+
+    public void setTextColor(Color textColor)
+    {
+        this.textColor = textColor;
+    }
+
+    public Font getFont()
+    {
+        return font;
+    }
+
+    public void setFont(Font font)
+    {
+        this.font = font;
+        textRenderer = null; // new font needs a new renderer
+    }
+
+    /**
+     * @param refreshMillis how often the numbers are updated (ms)
+     */
+    public void setRefreshMillis(long refreshMillis)
+    {
+        this.refreshMillis = refreshMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Performance HUD";
+    }
+
+} // PerformanceHudLayer
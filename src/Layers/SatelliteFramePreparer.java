@@ -0,0 +1,216 @@
+/*
+ * SatelliteFramePreparer.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Prepare stage shared by the ECI and ECEF renderables: turns the satellite
+ * states published by FleetPropagator into one SatelliteRenderRecord per
+ * satellite (positions in both layers, colors, labels, footprint sizes, what to
+ * draw). Done once per published state, right after it is propagated (on the
+ * simulation clock thread while playing, the records are split across the
+ * propagation threads), so the GL thread only reads the newest frame and
+ * switching between ECI and ECEF doesn't redo any of it.
+ *
+ */
+
+package Layers;
+
+import Satellite.AbstractSatellite;
+import Satellite.FleetPropagator;
+import Satellite.SatelliteState;
+import Satellite.SimulationClock;
+import Utilities.WorkerPool;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SatelliteFramePreparer implements SimulationClock.StatePreparer
+{
+    // a record is cheaper than propagating (copies and one coordinate transform), so chunks are twice the propagator's
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    private final WorkerPool workerPool; // null = prepare on the calling thread
+    private final Globe globe;
+
+    private volatile double altitudeTolerance = 1000.0; // meters, footprint cones are resized after this much altitude change
+
+    private volatile PreparedFrame frame; // newest prepared frame
+
+    /**
+     * @param fleetPropagator publishes the satellite states (the records are split across its threads)
+     * @param globe globe of the 3D view
+     */
+    public SatelliteFramePreparer(FleetPropagator fleetPropagator, Globe globe)
+    {
+        this.workerPool = fleetPropagator.getWorkerPool();
+        this.globe = globe;
+        frame = new PreparedFrame(fleetPropagator.getState(), null);
+    }
+
+    /**
+     * Prepares a state and publishes the result, call right after each propagate (or capture)
+     * @param state state that was just published
+     */
+    public synchronized void prepare(FleetPropagator.FleetState state)
+    {
+        PreparedFrame f = frame;
+        if(f.state != state)
+        {
+            frame = new PreparedFrame(state, f);
+        }
+    } // prepare
+
+    /**
+     * @return newest prepared frame (any thread)
+     */
+    public PreparedFrame getFrame()
+    {
+        return frame;
+    } // getFrame
+
+    public double getAltitudeTolerance()
+    {
+        return altitudeTolerance;
+    }
+
+    /**
+     * @param altitudeTolerance altitude change (meters) before a footprint cone is resized
+     */
+    public void setAltitudeTolerance(double altitudeTolerance)
+    {
+        this.altitudeTolerance = altitudeTolerance;
+    }
+
+    /**
+     * Render records of every satellite of one published state
+     */
+    public class PreparedFrame
+    {
+        private final FleetPropagator.FleetState state;
+        private final List<SatelliteRenderRecord> records;
+        private final Map<AbstractSatellite,SatelliteRenderRecord> recordMap = new HashMap<AbstractSatellite,SatelliteRenderRecord>();
+
+        // previous frame is only used to keep footprint sizes within the altitude tolerance (only read here)
+        private PreparedFrame(FleetPropagator.FleetState state, final PreparedFrame previous)
+        {
+            this.state = state;
+
+            final List<SatelliteState> states = state.getSatelliteStates();
+            final SatelliteRenderRecord[] recs = new SatelliteRenderRecord[states.size()];
+            WorkerPool.ChunkTask task = new WorkerPool.ChunkTask()
+            {
+                public void run(int start, int end)
+                {
+                    for(int i = start; i < end; i++)
+                    {
+                        SatelliteState sat = states.get(i);
+                        SatelliteRenderRecord old = (previous == null) ? null : previous.recordMap.get(sat.getSatellite());
+                        recs[i] = createRecord(sat, old);
+                    }
+                }
+            };
+            if(workerPool == null)
+            {
+                task.run(0, recs.length);
+            }
+            else
+            {
+                workerPool.runChunks(recs.length, MIN_CHUNK_SIZE, task);
+            }
+
+            ArrayList<SatelliteRenderRecord> list = new ArrayList<SatelliteRenderRecord>(recs.length);
+            for(SatelliteRenderRecord rec : recs)
+            {
+                list.add(rec);
+                recordMap.put(rec.getSatellite(), rec);
+            }
+            records = Collections.unmodifiableList(list);
+        } // constructor
+
+        private SatelliteRenderRecord createRecord(SatelliteState sat, SatelliteRenderRecord old)
+        {
+            double[] teme = sat.getTEMEPos();
+            double[] lla = sat.getLLA();
+
+            double[] eciPoint = null;
+            double[] ecefPoint = null;
+            Position position = null;
+            if(teme != null)
+            {
+                eciPoint = new double[] {-teme[0], teme[2], teme[1]}; // same axes the ECI layer draws in
+            }
+            if(lla != null)
+            {
+                position = Position.fromRadians(lla[0], lla[1], lla[2]);
+                Vec4 p = globe.computePointFromPosition(position);
+                ecefPoint = new double[] {p.x, p.y, p.z};
+            }
+
+            String label = (sat.isShow3DName() && position != null) ? sat.getName() : null;
+
+            double[] footprint = null;
+            double footprintAlt = 0;
+            if(sat.isShow3DFootprint() && lla != null)
+            {
+                if(old != null && old.getFootprint() != null && Math.abs(lla[2] - old.footprintAltitude) <= altitudeTolerance)
+                {
+                    footprint = old.getFootprint(); // size hasn't changed enough
+                    footprintAlt = old.footprintAltitude;
+                }
+                else
+                {
+                    footprint = FootprintCache.calcConeRadiusHeight(globe.getEquatorialRadius(), lla[2]);
+                    footprintAlt = lla[2];
+                }
+            }
+
+            return new SatelliteRenderRecord(sat, eciPoint, ecefPoint, position, label, footprint, footprintAlt);
+        } // createRecord
+
+        /**
+         * @return published state the frame was made from
+         */
+        public FleetPropagator.FleetState getFleetState()
+        {
+            return state;
+        }
+
+        /**
+         * @return one record per satellite, read only
+         */
+        public List<SatelliteRenderRecord> getRecords()
+        {
+            return records;
+        }
+
+        /**
+         * @param sat satellite
+         * @return its record, null if it isn't in this frame
+         */
+        public SatelliteRenderRecord getRecord(AbstractSatellite sat)
+        {
+            return recordMap.get(sat);
+        }
+    } // PreparedFrame
+
+} // SatelliteFramePreparer
@@ -0,0 +1,141 @@
+/*
+ * SatelliteLabelManager.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Name labels of the satellites in the 3D view. Each satellite keeps one
+ * GlobeAnnotation (only its position is changed each frame) and all labels of
+ * the same color share one set of attributes, instead of creating the font,
+ * attributes and annotation again on every repaint.
+ *
+ * Must only be used on the rendering thread.
+ *
+ */
+
+package Layers;
+
+import Satellite.AbstractSatellite;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.AnnotationAttributes;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.FrameFactory;
+import gov.nasa.worldwind.render.GlobeAnnotation;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Point;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class SatelliteLabelManager
+{
+    private static final Font LABEL_FONT = Font.decode("Arial-ITALIC-12");
+
+    // shared attributes by text color
+    private final Map<Color,AnnotationAttributes> attributes = new HashMap<Color,AnnotationAttributes>();
+
+    private final Map<AbstractSatellite,Label> labels = new HashMap<AbstractSatellite,Label>();
+
+    private int frame = 0; // counts endFrame calls, labels not drawn in a frame are dropped
+
+    /**
+     * Draws a satellite's name at its current position
+     * @param dc draw context
+     * @param rec satellite's render record (with a label)
+     */
+    public void render(DrawContext dc, SatelliteRenderRecord rec)
+    {
+        Position pos = rec.getPosition();
+
+        Label label = labels.get(rec.getSatellite());
+        if(label == null)
+        {
+            label = new Label(new GlobeAnnotation(rec.getLabel(), pos, getAttributes(rec.getColor())), rec.getLabel(), rec.getColor());
+            labels.put(rec.getSatellite(), label);
+        }
+        else
+        {
+            label.annotation.setPosition(pos);
+
+            // name or color changed
+            if(!label.name.equals(rec.getLabel()))
+            {
+                label.name = rec.getLabel();
+                label.annotation.setText(label.name);
+            }
+            if(!label.color.equals(rec.getColor()))
+            {
+                label.color = rec.getColor();
+                label.annotation.setAttributes(getAttributes(label.color));
+            }
+        }
+        label.frame = frame;
+
+        label.annotation.render(dc);
+    } // render
+
+    /**
+     * Called once all satellites have been drawn, drops the labels of satellites
+     * that weren't drawn (removed, or name turned off)
+     */
+    public void endFrame()
+    {
+        for(Iterator<Label> it = labels.values().iterator(); it.hasNext();)
+        {
+            if(it.next().frame != frame)
+            {
+                it.remove();
+            }
+        }
+        frame++;
+    } // endFrame
+
+    private AnnotationAttributes getAttributes(Color textColor)
+    {
+        AnnotationAttributes geoAttr = attributes.get(textColor);
+        if(geoAttr == null)
+        {
+            geoAttr = new AnnotationAttributes();
+            geoAttr.setFrameShape(FrameFactory.SHAPE_NONE);  // No frame
+            geoAttr.setFont(LABEL_FONT);
+            geoAttr.setTextColor(textColor);
+            geoAttr.setDrawOffset(new Point(0, 5)); // centered just above
+            geoAttr.setBackgroundColor(Color.BLACK);
+
+            attributes.put(textColor, geoAttr);
+        }
+        return geoAttr;
+    } // getAttributes
+
+    // label of one satellite
+    private static class Label
+    {
+        final GlobeAnnotation annotation;
+        String name;
+        Color color;
+        int frame;
+
+        Label(GlobeAnnotation annotation, String name, Color color)
+        {
+            this.annotation = annotation;
+            this.name = name;
+            this.color = color;
+        }
+    } // Label
+
+} // SatelliteLabelManager
@@ -0,0 +1,166 @@
+/*
+ * SatelliteRenderRecord.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Everything the ECI and ECEF renderables need to draw one satellite, worked out
+ * once per time step by SatelliteFramePreparer: position in both layers'
+ * coordinates, color, label, footprint cone size and what to draw. Read only.
+ *
+ */
+
+package Layers;
+
+import Satellite.AbstractSatellite;
+import Satellite.SatelliteState;
+import gov.nasa.worldwind.geom.Position;
+import java.awt.Color;
+
+public class SatelliteRenderRecord
+{
+    private final SatelliteState state;
+
+    // positions (null if the satellite has not been propagated)
+    private final double[] eciPoint;  // ECI layer coordinates (-x, z, y of TEME)
+    private final double[] ecefPoint; // globe model coordinates (ECEF layer)
+    private final Position position;  // lat, long, altitude
+
+    private final Color color;
+    private final float[] rgb; // color 0-1
+    private final String label; // null if the name isn't drawn
+
+    private final double[] footprint; // cone ground range and height (null if not drawn)
+    final double footprintAltitude;   // altitude the footprint was sized for
+
+    // what to draw
+    private final boolean drawEciTrace;
+    private final boolean drawEcefTrace;
+    private final boolean drawGroundTrack;
+    private final boolean drawModel;
+
+    SatelliteRenderRecord(SatelliteState state, double[] eciPoint, double[] ecefPoint, Position position,
+            String label, double[] footprint, double footprintAltitude)
+    {
+        this.state = state;
+        this.eciPoint = eciPoint;
+        this.ecefPoint = ecefPoint;
+        this.position = position;
+
+        color = state.getSatColor();
+        rgb = color.getRGBColorComponents(null);
+        this.label = label;
+
+        this.footprint = footprint;
+        this.footprintAltitude = footprintAltitude;
+
+        drawEciTrace = state.isShow3DOrbitTrace() && state.isShow3DOrbitTraceECI();
+        drawEcefTrace = state.isShow3DOrbitTrace() && !state.isShow3DOrbitTraceECI();
+        drawGroundTrack = state.isShowGroundTrack3d();
+        drawModel = state.isUse3dModel();
+    } // constructor
+
+    /**
+     * @return published state the record was made from
+     */
+    public SatelliteState getState()
+    {
+        return state;
+    }
+
+    public AbstractSatellite getSatellite()
+    {
+        return state.getSatellite();
+    }
+
+    /**
+     * @return x,y,z in the ECI layer's coordinates, null if not propagated, do not change
+     */
+    public double[] getEciPoint()
+    {
+        return eciPoint;
+    }
+
+    /**
+     * @return x,y,z in the globe's (ECEF layer's) coordinates, null if not propagated, do not change
+     */
+    public double[] getEcefPoint()
+    {
+        return ecefPoint;
+    }
+
+    /**
+     * @return geographic position, null if not propagated
+     */
+    public Position getPosition()
+    {
+        return position;
+    }
+
+    public Color getColor()
+    {
+        return color;
+    }
+
+    /**
+     * @return red, green, blue 0-1, do not change
+     */
+    public float[] getRGB()
+    {
+        return rgb;
+    }
+
+    /**
+     * @return name to draw, null if the name isn't shown
+     */
+    public String getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * @return footprint cone ground range and height (meters), null if not shown, do not change
+     */
+    public double[] getFootprint()
+    {
+        return footprint;
+    }
+
+    public boolean isDrawEciTrace()
+    {
+        return drawEciTrace;
+    }
+
+    public boolean isDrawEcefTrace()
+    {
+        return drawEcefTrace;
+    }
+
+    public boolean isDrawGroundTrack()
+    {
+        return drawGroundTrack;
+    }
+
+    /**
+     * @return true to draw the 3D model instead of a marker (nothing if it isn't loaded)
+     */
+    public boolean isDrawModel()
+    {
+        return drawModel;
+    }
+
+} // SatelliteRenderRecord
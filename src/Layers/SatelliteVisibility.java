@@ -0,0 +1,223 @@
+/*
+ * SatelliteVisibility.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Visibility pass for the satellite renderables: bounding spheres given in the
+ * layer's coordinates (rotated by the ECI angle for the ECI layer) are tested
+ * against the view frustum, and their size on the screen picks the level of
+ * detail: 3D model, sphere, point or nothing for markers, and how many points of
+ * an orbit trace are drawn.
+ *
+ * Call begin once per frame before using it.
+ *
+ */
+
+package Layers;
+
+import Shapes.SphereObject;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Frustum;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.render.DrawContext;
+
+public class SatelliteVisibility
+{
+    // marker levels of detail
+    public static final int LOD_NONE = 0;
+    public static final int LOD_POINT = 1;
+    public static final int LOD_SPHERE = 2;
+    public static final int LOD_MODEL = 3;
+
+    // marker radius on the screen (pixels) needed for each level
+    private double modelMinPixels = 6.0;
+    private double sphereMinPixels = 1.5;
+    private double pointMinPixels = 0.05;
+
+    // shortest trace segment wanted on the screen (pixels), sets the trace decimation
+    private double traceSegmentPixels = 4.0;
+
+    // per frame
+    private View view;
+    private Frustum frustum;
+    private Vec4 eye;
+    private double cosRot = 1, sinRot = 0; // layer rotation about the JOGL y axis
+
+    private final SphereObject bounds = new SphereObject(new Vec4(0,0,0,0), 1, false); // reused for frustum tests
+
+    /**
+     * Gets the view for this frame
+     * @param dc draw context
+     * @param layerRotDeg rotation the layer applies about the JOGL y axis (glRotated angle, 0 for ECEF)
+     */
+    public void begin(DrawContext dc, double layerRotDeg)
+    {
+        view = dc.getView();
+        frustum = view.getFrustumInModelCoordinates();
+        eye = view.getEyePoint();
+
+        double a = Math.toRadians(layerRotDeg);
+        cosRot = Math.cos(a);
+        sinRot = Math.sin(a);
+    } // begin
+
+    /**
+     * @param x layer coordinates of the sphere center
+     * @param y
+     * @param z
+     * @param radius sphere radius (meters)
+     * @return true if the sphere is at least partly in the view frustum
+     */
+    public boolean isVisible(double x, double y, double z, double radius)
+    {
+        // same rotation as glRotated(layerRotDeg, 0, 1, 0)
+        bounds.setCenter(cosRot*x + sinRot*z, y, -sinRot*x + cosRot*z);
+        bounds.setRadius(Math.max(radius, 1.0));
+        return frustum.intersects(bounds);
+    }
+
+    /**
+     * @return radius of a sphere on the screen in pixels (sphere must be visible)
+     */
+    public double getPixelRadius(double x, double y, double z, double radius)
+    {
+        double wx = cosRot*x + sinRot*z;
+        double wz = -sinRot*x + cosRot*z;
+        double dx = wx - eye.x, dy = y - eye.y, dz = wz - eye.z;
+        double distance = Math.sqrt(dx*dx + dy*dy + dz*dz);
+
+        double pixelSize = view.computePixelSizeAtDistance(Math.max(distance - radius, 1.0)); // meters per pixel
+        return radius / pixelSize;
+    }
+
+    /**
+     * Level of detail of a satellite marker
+     * @param x layer coordinates of the marker center
+     * @param y
+     * @param z
+     * @param radius marker radius (meters)
+     * @param use3dModel if the satellite has a 3D model
+     * @return LOD_NONE (culled or too small), LOD_POINT, LOD_SPHERE or LOD_MODEL (only if use3dModel)
+     */
+    public int getMarkerLod(double x, double y, double z, double radius, boolean use3dModel)
+    {
+        if(!isVisible(x, y, z, radius))
+        {
+            return LOD_NONE;
+        }
+
+        double pixels = getPixelRadius(x, y, z, radius);
+        if(use3dModel && pixels >= modelMinPixels)
+        {
+            return LOD_MODEL;
+        }
+        else if(pixels >= sphereMinPixels)
+        {
+            return LOD_SPHERE;
+        }
+        else if(pixels >= pointMinPixels)
+        {
+            return LOD_POINT;
+        }
+        return LOD_NONE;
+    } // getMarkerLod
+
+    /**
+     * How many points of an orbit trace to draw
+     * @param trace packed trace (layer coordinates)
+     * @return 0 if the trace is culled, otherwise draw every n-th point (1 up to OrbitTraceCache.MAX_DECIMATION)
+     */
+    public int getTraceDecimation(OrbitTraceGeometry trace)
+    {
+        double[] c = trace.getBoundingCenter();
+        return getTraceDecimation(c[0], c[1], c[2], trace.getBoundingRadius(), trace.getNumVertices());
+    }
+
+    /**
+     * How many points of a line to draw
+     * @param x layer coordinates of the line's bounding sphere center
+     * @param y
+     * @param z
+     * @param r bounding sphere radius
+     * @param numPoints number of points in the line
+     * @return 0 if the line is culled, otherwise draw every n-th point (1 up to OrbitTraceCache.MAX_DECIMATION)
+     */
+    public int getTraceDecimation(double x, double y, double z, double r, int numPoints)
+    {
+        if(numPoints < 2 || !isVisible(x, y, z, r))
+        {
+            return 0;
+        }
+
+        // points needed so segments are about traceSegmentPixels long (trace length ~ pi * diameter)
+        double pixels = getPixelRadius(x, y, z, r);
+        if(pixels < pointMinPixels)
+        {
+            return 0;
+        }
+        double needed = Math.max(2.0 * Math.PI * pixels / traceSegmentPixels, 8.0);
+
+        int decimation = 1;
+        while(decimation < OrbitTraceCache.MAX_DECIMATION && numPoints / (2.0 * decimation) >= needed)
+        {
+            decimation *= 2;
+        }
+        return decimation;
+    } // getTraceDecimation
+
+    public double getModelMinPixels()
+    {
+        return modelMinPixels;
+    }
+
+    public void setModelMinPixels(double modelMinPixels)
+    {
+        this.modelMinPixels = modelMinPixels;
+    }
+
+    public double getSphereMinPixels()
+    {
+        return sphereMinPixels;
+    }
+
+    public void setSphereMinPixels(double sphereMinPixels)
+    {
+        this.sphereMinPixels = sphereMinPixels;
+    }
+
+    public double getPointMinPixels()
+    {
+        return pointMinPixels;
+    }
+
+    public void setPointMinPixels(double pointMinPixels)
+    {
+        this.pointMinPixels = pointMinPixels;
+    }
+
+    public double getTraceSegmentPixels()
+    {
+        return traceSegmentPixels;
+    }
+
+    public void setTraceSegmentPixels(double traceSegmentPixels)
+    {
+        this.traceSegmentPixels = traceSegmentPixels;
+    }
+
+} // SatelliteVisibility
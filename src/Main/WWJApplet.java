@@ -24,11 +24,19 @@ import Layers.*;
 import Utilities.Time;
 import Satellite.AbstractSatellite;
 import java.util.Hashtable;
-import Satellite.StkEphemerisReader;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import Satellite.EphemerisLoader;
+import Satellite.EphemerisRefresher;
+import Satellite.FleetPropagator;
+import Satellite.SimulationClock;
 import Utilities.OnlineInput;
 import Satellite.CustomSatellite;
 import java.util.Vector;
-import Utilities.StateVector;
+import Utilities.EphemerisTable;
+import Utilities.RedrawScheduler;
+import Utilities.FrameProfiler;
+import Utilities.WorkerPool;
 import java.util.GregorianCalendar;
 import Satellite.JSatTrakTimeDependent;
 import Bodies.*;
@@ -39,6 +47,10 @@ import gov.nasa.worldwind.layers.Earth.*;
 import gov.nasa.worldwind.layers.StarsLayer;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import Utilities.AstroConst;
 import javax.swing.Timer;
 import TwoDImage.J2DEarthPanel;
@@ -82,17 +94,30 @@ public class WWJApplet extends JApplet
     private ECIRadialGrid eciRadialGrid = new ECIRadialGrid(); //Radial grid for ECI layer, good for testing to see if layer renders properly
     private ECEFRenderableLayer ecefLayer; //Earth Centered Earth Fixed layer
     private ECEFModelRenderable ecefModel; //Model for satellites and their orbits
+    private SatelliteFramePreparer framePreparer; //Prepares what the ECI and ECEF models draw once per time step
     private boolean viewModeECI = true; //Boolean controls if ECI or ECEF view (used in WWsetMJD)
     private EcefTimeDepRenderableLayer timeDepLayer; //Layer of time dependent objects in ECEF? Unsure whether this is useful.
     
     //Satellites
     private Hashtable<String,AbstractSatellite> satHash = new Hashtable<String,AbstractSatellite>(); //This table stores each satellite added to the program (Satellites MUST be added)
-    private StkEphemerisReader reader = new StkEphemerisReader(); //Reader for STK ephemeris files (only STK format)
+    private WorkerPool workerPool = new WorkerPool(); //The applet's background threads, shared by loading, propagation and drawing (shut down in stop/destroy)
+    private EphemerisLoader ephemerisLoader = new EphemerisLoader(workerPool.getExecutor()); //Reads STK ephemeris files (only STK format) in the background, several at a time
+    private FleetPropagator fleetPropagator = new FleetPropagator(workerPool); //Propagates all satellites at once, split across the processors
+    private RedrawScheduler redrawScheduler = new RedrawScheduler(); //Redraws changed views at most once per screen refresh, skips hidden views
+    private PerformanceHudLayer hudLayer = new PerformanceHudLayer(); //Stage timings over the 3D view (F2 toggles, F3 writes a CSV)
+    private static final FrameProfiler.Stage WWSETMJD_STAGE = FrameProfiler.getStage("WWsetMJD");
     private OnlineInput input; //Custom-made class to aquire user inputs (Currently html file as a test)
+    private static final String INPUT_LOCATION = "http://localhost:8080/parameters_test.html"; //User input file
     Vector<JSatTrakTimeDependent> timeDependentObjects = new Vector<JSatTrakTimeDependent>(); //Time dependent objects
     private boolean orbitShown = true; //Boolean to control whether orbit traces are shown
     private boolean update = false; //Boolean to control whether user input should automatically update or load only once (default is once)
-    Vector<StateVector> vector; //Vector to read in satellite information from the ephemeris reader (located in inputSatellites)
+    private boolean loadingSatellites = false; //True while ephemerides are being loaded in the background (inputSatellites)
+    private int numSatellitesLoaded = 0; //Satellites added so far by the current load
+    private double loadMaxTempTime = 0; //Latest ephemeris time (UTC) of the satellites loaded so far
+    private boolean refreshingSatellites = false; //True while loaded ephemerides are being checked for changes (refreshSatellites)
+    private volatile Thread refreshThread; //Thread of the last refreshSatellites, interrupted when the applet stops
+    private volatile boolean stopped = false; //True once the applet is stopped, results still arriving from background threads are dropped
+    private double playMaxTime = 0; //Latest ephemeris time (UTC) while playing, grows when ephemerides are appended to
     boolean timerOn = false; //Boolean to control whether real-time mode is on or off
     Timer eTimer; //Timer for automatic updating of user inputs
     private boolean ignoreOverride = false; //Ignore override of time if original user input time was incorrect: change time when corrected
@@ -114,7 +139,7 @@ public class WWJApplet extends JApplet
     private boolean end = false; //Boolean for end of ephemeris time (prevents scenario from running past the end of ephemeris)
     double[] steps = new double[] {1, 10, 30, 60, 120, 300, 1800, 3600, 7200, 86400}; //Step sizes
     int stepNumber = 3; //Index for the current step size in the array (starts at index of zero, so 3 corresponds to a step size of 60)
-    private Timer playTimer; //Timer for animation of scenario
+    private SimulationClock simClock = new SimulationClock(fleetPropagator, satHash.values()); //Steps and propagates the scenario on its own thread while playing
     private boolean twoDon = false; //Boolean to control 2D and 3D modes
     private boolean nonRealTime = true; //Boolean for whether scenario is in real time or non real time mode
     double tempStep = 60; //Temporary variable for step size- used in custom step size code
@@ -370,6 +395,10 @@ public class WWJApplet extends JApplet
                 }}));
             toolbar.add(eUpdate);
             
+            setUpRedrawScheduler(); //Views redrawn when forceRepainting marks them changed
+            setUpProfilerKeys(); //F2 performance HUD, F3 timings to CSV
+            setUpSatellitePicking(); //Middle click in the 3D view prints the satellite there
+            
             inputSatellites(); //Function that reads user input file and adds satellites
             
             //WORLD WIND APPLET CODE (UNMODIFIED)
@@ -415,10 +444,34 @@ public class WWJApplet extends JApplet
         {
         }
 
+        shutDownThreads();
+
         // Shut down World Wind when the browser stops this Applet.
         WorldWind.shutDown();
     }
 
+    @Override
+    public void destroy()
+    {
+        shutDownThreads(); // in case stop was not called
+    }
+
+    // Stops the simulation clock, the update timer and the worker threads (the plugin JVM outlives the applet)
+    private void shutDownThreads()
+    {
+        stopped = true;
+        if(refreshThread != null)
+        {
+            refreshThread.interrupt();
+        }
+        simClock.stop();
+        if(eTimer != null)
+        {
+            eTimer.stop();
+        }
+        workerPool.shutdown();
+    }
+
     /**
      * Adds a layer to WW current layerlist, before a named layer. Target name can be a part of the layer name
      *
@@ -589,10 +642,47 @@ public class WWJApplet extends JApplet
         
         CustomSatellite prop = new CustomSatellite(name,this.getScenarioEpochDate());
         
-        satHash.put(name, prop);
-
         // Set satellite time to current date
         prop.propogate2JulDate(this.getCurrentJulTime());
+
+        // added once it is set up
+        putSatellite(name, prop);
+    }
+
+    // Adds (or replaces) a satellite, on the clock thread while playing as it propagates the satellites in satHash
+    private void putSatellite(final String name, final AbstractSatellite sat)
+    {
+        simClock.changeSatellites(new Runnable()
+        {
+            public void run()
+            {
+                satHash.put(name, sat);
+            }
+        });
+    }
+
+    // Removes a satellite (on the clock thread while playing)
+    private void removeSatellite(final String name)
+    {
+        simClock.changeSatellites(new Runnable()
+        {
+            public void run()
+            {
+                satHash.remove(name);
+            }
+        });
+    }
+
+    // Removes every satellite (on the clock thread while playing)
+    private void clearSatellites()
+    {
+        simClock.changeSatellites(new Runnable()
+        {
+            public void run()
+            {
+                satHash.clear();
+            }
+        });
     }
     
     
@@ -618,6 +708,12 @@ public class WWJApplet extends JApplet
      public void setTime(long millisecs)
     {
     currentJulianDate.set(millisecs);
+
+        if(simClock.isRunning())
+        {
+            simClock.setTime(currentJulianDate.getJulianDate()); // clock thread continues from here
+            return;
+        }
         
         // update maps ----------------
         // set animation direction = 0
@@ -646,6 +742,11 @@ public class WWJApplet extends JApplet
         //Adds seconds (play direction should be 1 or 0)
         //This is where the actual Stepping occurs
         currentJulianDate.addSeconds( currentPlayDirection*animationSimStepSeconds );
+        if(simClock.isRunning())
+        {
+            simClock.setTime(currentJulianDate.getJulianDate()); // the clock thread propagates while playing
+            return;
+        }
         // Update sun position
         sun.setCurrentMJD(currentJulianDate.getMJD());
                 
@@ -655,15 +756,18 @@ public class WWJApplet extends JApplet
         checkTimeDiffResetGroundTracks(timeDiffDays);
 
                 
-        // Update Date Box:
-        dateDisplay.setText( currentJulianDate.getDateTimeStr() );//String.format("%tc",cal) );
-        
-        // Now propogate all satellites to the current time  
-        for (AbstractSatellite sat : satHash.values() )
-        {
-            sat.propogate2JulDate( currentJulianDate.getJulianDate() );
-        } // propgate each sat 
+        // Date box is updated by the redraw scheduler
         
+        // Now propogate all satellites to the current time (in parallel, returns when all are done)
+        fleetPropagator.propagate(satHash.values(), currentJulianDate.getJulianDate());
+
+        finishTimeUpdate();
+    } // update time
+
+    // Updates everything that follows the satellites (time dependent objects, ECI/ECEF layers) and repaints
+    // used by updateTime and showFrame
+    private void finishTimeUpdate()
+    {
         // Update any other time dependant objects
         for(JSatTrakTimeDependent tdo : timeDependentObjects)
         {
@@ -679,41 +783,204 @@ public class WWJApplet extends JApplet
             oldTime = currentJulianDate.getJulianDate();
         }
         forceRepainting(); // repaint 2d/3d earth
-    } // update time
+    } // finishTimeUpdate
     
  
     // Checks to see if the ground track needs to be reset
     // Not used in Applet
-     public void checkTimeDiffResetGroundTracks(double timeDiffDays)
+     public void checkTimeDiffResetGroundTracks(final double timeDiffDays)
     {
         if( timeDiffDays > 91.0/1440.0)
         {
-            // Big time jump
-            for (AbstractSatellite sat : satHash.values() )
+            // Big time jump (on the clock thread while playing)
+            simClock.changeSatellites(new Runnable()
             {
-                if(sat.getShowGroundTrack() && (sat.getPeriod() <= (timeDiffDays*24.0*60.0) ) )
+                public void run()
                 {
-                    sat.setGroundTrackIni2False();
-                    //System.out.println(sat.getName() +" - Groundtrack Initiated");
+                    for (AbstractSatellite sat : new ArrayList<AbstractSatellite>(satHash.values()) )
+                    {
+                        if(sat.getShowGroundTrack() && (sat.getPeriod() <= (timeDiffDays*24.0*60.0) ) )
+                        {
+                            sat.setGroundTrackIni2False();
+                            //System.out.println(sat.getName() +" - Groundtrack Initiated");
+                        }
+                    }
                 }
-            }
+            });
         }
     } // checkTimeDiffResetGroundTracks
     
     /*
      * Repaints the view, 2D and 3D
+     * Only marks the views as changed, the redraw scheduler redraws the ones showing
+     * (at most once per screen refresh)
      */
     public void forceRepainting()
     {
-        this.update(false);
+        // publish satellite changes (added, removed, options) for the views to draw
+        // while playing the clock thread publishes every step
+        if(!simClock.isRunning())
+        {
+            FleetPropagator.FleetState state = fleetPropagator.capture(satHash.values(), getCurrentJulTime());
+            if(framePreparer != null)
+            {
+                framePreparer.prepare(state); // what the ECI and ECEF layers draw, the clock thread does this while playing
+            }
+        }
+        redrawScheduler.invalidate(RedrawScheduler.ALL_VIEWS);
+    }// forceRepainting
+    
+    // Sets up what the redraw scheduler does for each view
+    private void setUpRedrawScheduler()
+    {
+        // 3D globe
+        redrawScheduler.setView(RedrawScheduler.VIEW_3D, new RedrawScheduler.View()
+        {
+            public boolean isShowing()
+            {
+                return wwd.isShowing();
+            }
+            public void redraw()
+            {
+                // the ECI and ECEF layers draw the frame prepared with the last published state
+                update(false); // sun shading
+                wwd.redraw();
+            }
+        });
+        
+        // 2D map
+        redrawScheduler.setView(RedrawScheduler.VIEW_2D, new RedrawScheduler.View()
+        {
+            public boolean isShowing()
+            {
+                return twoDpanel != null && twoDpanel.isShowing();
+            }
+            public void redraw()
+            {
+                twoDpanel.repaint();
+            }
+        });
+        
+        // date box, only set when the text changes
+        redrawScheduler.setView(RedrawScheduler.VIEW_DATE, new RedrawScheduler.View()
+        {
+            public boolean isShowing()
+            {
+                return dateDisplay.isShowing();
+            }
+            public void redraw()
+            {
+                String date = currentJulianDate.getDateTimeStr();
+                if(!date.equals(dateDisplay.getText()))
+                {
+                    dateDisplay.setText(date);
+                }
+            }
+        });
+    } // setUpRedrawScheduler
+    
+    // F2 shows/hides the performance HUD, F3 writes the stage timings to a CSV file
+    private void setUpProfilerKeys()
+    {
+        // 3D view (heavyweight canvas gets its own key events)
+        wwd.addKeyListener(new KeyAdapter()
+        {
+            @Override
+            public void keyPressed(KeyEvent e)
+            {
+                if(e.getKeyCode() == KeyEvent.VK_F2)
+                {
+                    togglePerformanceHud();
+                }
+                else if(e.getKeyCode() == KeyEvent.VK_F3)
+                {
+                    dumpProfilerCsv();
+                }
+            }
+        });
+        
+        // rest of the applet (2D map, toolbar)
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F2"), "togglePerformanceHud");
+        getRootPane().getActionMap().put("togglePerformanceHud", new AbstractAction()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                togglePerformanceHud();
+            }
+        });
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F3"), "dumpProfilerCsv");
+        getRootPane().getActionMap().put("dumpProfilerCsv", new AbstractAction()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                dumpProfilerCsv();
+            }
+        });
+    } // setUpProfilerKeys
+    
+    // middle button in the 3D view prints the satellite under the cursor (like the 2D map)
+    private void setUpSatellitePicking()
+    {
+        wwd.addMouseListener(new MouseAdapter()
+        {
+            @Override
+            public void mouseClicked(MouseEvent e)
+            {
+                if(e.getButton() != MouseEvent.BUTTON2 || orbitModel == null)
+                {
+                    return;
+                }
+                SatelliteRenderRecord rec = orbitModel.pickSatellite(e.getX(), e.getY(), 10);
+                System.out.println("Satellite: " + ((rec == null) ? "none" : rec.getState().getName()));
+            }
+        });
+    } // setUpSatellitePicking
+    
+    //Shows or hides the stage timings over the 3D view
+    public void togglePerformanceHud()
+    {
+        hudLayer.setEnabled(!hudLayer.isEnabled());
         wwd.redraw();
+    }
+    
+    //Writes the stage timings to jsattrak_profile.csv in the user's home (printed if that isn't allowed)
+    public void dumpProfilerCsv()
+    {
+        java.io.File file = null;
+        java.io.Writer out = null;
         try
         {
-        twoDpanel.repaint();
+            file = new java.io.File(System.getProperty("user.home"), "jsattrak_profile.csv");
+            out = new java.io.FileWriter(file);
+            FrameProfiler.writeCsv(out);
+            statusDisplay.setText("Timings written to " + file.getPath());
         }
-        catch(Exception e)
-        {}
-    }// forceRepainting
+        catch(Exception e) // no file access for unsigned applets
+        {
+            System.out.println("ERROR writing timings to " + file + ": " + e.toString());
+            try
+            {
+                java.io.StringWriter text = new java.io.StringWriter();
+                FrameProfiler.writeCsv(text);
+                System.out.println(text.toString());
+                statusDisplay.setText("Timings printed to the Java console");
+            }
+            catch(java.io.IOException ignore)
+            {}
+        }
+        finally
+        {
+            if(out != null)
+            {
+                try
+                {
+                    out.close();
+                }
+                catch(java.io.IOException ignore)
+                {}
+            }
+        }
+    } // dumpProfilerCsv
     
     // Update worldwind sun shading
     private void update(boolean redraw)
@@ -840,6 +1107,7 @@ public void stepUpButtonActionPerformed(ActionEvent e)
              statusDisplay.setText("Step Size Increased");
              stepNumber = stepNumber+1;
              tempStep = animationSimStepSeconds; //Save step size for switch between real-time and non-real time
+             simClock.setStepSeconds(animationSimStepSeconds); //Used from the next tick if playing
         }
         else
         {statusDisplay.setText("Real Time Mode");}
@@ -859,6 +1127,7 @@ public void stepDownButtonActionPerformed(ActionEvent e)
             statusDisplay.setText("Step Size Decreased");
             stepNumber = stepNumber-1;
             tempStep = animationSimStepSeconds; //Save step size for switch between real-time and non-real time
+            simClock.setStepSeconds(animationSimStepSeconds); //Used from the next tick if playing
         }
         else
         {statusDisplay.setText("Real Time Mode");}
@@ -905,6 +1174,7 @@ public void twoDButtonActionPerformed(ActionEvent e)
     this.setSize(this.getWidth()+1, this.getHeight());
     //Window on
     twoDon = true;
+    redrawScheduler.invalidate(RedrawScheduler.VIEW_2D); //Skipped while hidden
     statusDisplay.setText("2D View");
     }
 }
@@ -930,6 +1200,7 @@ public void threeDButtonActionPerformed(ActionEvent e)
     Content.add(wwd, BorderLayout.CENTER); //Add worldwind
     setUpLayers(); //Set up worldwind layers again
     twoDon = false; //3D view
+    redrawScheduler.invalidate(RedrawScheduler.VIEW_3D); //Skipped while hidden
     statusDisplay.setText("3D View");
     }
 }
@@ -954,6 +1225,7 @@ public void stepDisplayActionPerformed(ActionEvent e)
         if(nonRealTime)
         { //Change step size
             animationSimStepSeconds = tempStep;
+            simClock.setStepSeconds(animationSimStepSeconds); //Used from the next tick if playing
             statusDisplay.setText("Step Size Changed");
         }
         else //real-time mode, don't change step size
@@ -998,33 +1270,38 @@ private void orbitTraceActionPerformed(ActionEvent evt)
     {//Satellites are already added
     if(orbitShown)
     {//Orbit is already displayed, remove it
-    for(int i = 0; i<input.getSize(); i++)
-    {//For each satellite in scenario
-        if(satHash.get(input.getSatelliteName(i)).isDisplayed())
-        {//If satellite is currently being displayed, turn off orbits
-        satHash.get(input.getSatelliteName(i)).setShow3DOrbitTrace(false);
-        satHash.get(input.getSatelliteName(i)).setShow3DOrbitTraceECI(false);
-        satHash.get(input.getSatelliteName(i)).setShowGroundTrack(false);
-        }
-    }
+    setOrbitTracesShown(false);
     forceRepainting(); //Repaint
     orbitShown = false; //No orbits shown
     }
     else
     {//No orbits showing
-    for(int i = 0; i<input.getSize(); i++)
-    {//For each satellite in scenario
-        if(satHash.get(input.getSatelliteName(i)).isDisplayed())
-        {//If satellite is currently being displayed, turn on orbits
-        satHash.get(input.getSatelliteName(i)).setShow3DOrbitTrace(true);
-        satHash.get(input.getSatelliteName(i)).setShow3DOrbitTraceECI(true);
-        satHash.get(input.getSatelliteName(i)).setShowGroundTrack(true);
-        }
-    }
+    setOrbitTracesShown(true);
     forceRepainting(); //repaint
     orbitShown = true; //orbits shown
     }}
 }
+
+//Turns orbit traces (and ground tracks) on or off for each satellite currently being displayed
+//(on the clock thread while playing)
+private void setOrbitTracesShown(final boolean show)
+{
+    simClock.changeSatellites(new Runnable()
+    {
+        public void run()
+        {
+            for(AbstractSatellite sat : new ArrayList<AbstractSatellite>(satHash.values()))
+            {
+                if(sat.isDisplayed())
+                {
+                sat.setShow3DOrbitTrace(show);
+                sat.setShow3DOrbitTraceECI(show);
+                sat.setShowGroundTrack(show);
+                }
+            }
+        }
+    });
+}
 private void eUpdateActionPerformed(ActionEvent e)
 {
     if(update) //If automatic update is on, set off when clicked
@@ -1037,13 +1314,18 @@ private void eUpdateActionPerformed(ActionEvent e)
                 public void actionPerformed(ActionEvent event)
                 {
 //                    overrideTime = true; //Do not change time when re-reading input file
-                    if(update)
+                    if(update && !loadingSatellites && !refreshingSatellites) //If the last update is still loading wait for the next tick
                     { //Update scenario
-                    updating = true; //Do not repaint during this time 
-                    satHash.clear(); //Remove satellites
+                    if(inputSat && input != null && !satHash.isEmpty())
+                    {
+                    refreshSatellites(); //Only read what changed, satellites are updated in place
+                    }
+                    else
+                    {
+                    updating = true; //Do not repaint during this time (cleared when loading finishes)
+                    clearSatellites(); //Remove satellites
                     inputSatellites(); //Add satellites, but ignore changing time
-                    updating = false; //Can repaint
-                    statusDisplay.setText("Ephemeris Updated");
+                    }
                     displayed = false; //Variable for satus display: prevents update from constantly overriding other status messages
                     }
                     if(!update) //Stop updating!
@@ -1054,37 +1336,7 @@ private void eUpdateActionPerformed(ActionEvent e)
                         displayed = true; //Has been displayed
                         }
                     }
-                    try{
-                    if(orbitTrace.isSelected()) //If orbit traces were displayed, need to redraw
-                    {
-                        for(int i = 0; i<input.getSize(); i++)
-                        {
-                            if(satHash.get(input.getSatelliteName(i)).isDisplayed())
-                            {
-                            satHash.get(input.getSatelliteName(i)).setShow3DOrbitTrace(true);
-                            satHash.get(input.getSatelliteName(i)).setShow3DOrbitTraceECI(true);
-                            satHash.get(input.getSatelliteName(i)).setShowGroundTrack(true);
-                            }
-                        }
-                        forceRepainting();
-                        orbitShown = true;
-                    }
-                    else //Need to prevent orbit traces from showing if they aren't supposed to be
-                    {
-                        for(int i = 0; i<input.getSize(); i++)
-                        {
-                            if(satHash.get(input.getSatelliteName(i)).isDisplayed())
-                            {
-                            satHash.get(input.getSatelliteName(i)).setShow3DOrbitTrace(false);
-                            satHash.get(input.getSatelliteName(i)).setShow3DOrbitTraceECI(false);
-                            satHash.get(input.getSatelliteName(i)).setShowGroundTrack(false);
-                            }
-                        }
-                        orbitShown = false;
-                        forceRepainting(); 
-                    }}
-                    catch(Exception e)
-                    {}
+                    //Orbit traces are redrawn (or kept hidden) when loading finishes, see finishInputSatellites
                 }//Action performed
             }); //Timer
     if(update) //Start timer
@@ -1098,34 +1350,21 @@ private void animateApplet(boolean b) {
         {
         statusDisplay.setText("Scenario Running");
         //Hard Coded canBePlayed scenario
-        double date = this.getCurrentJulTime();
-        double currentMJDtime = date - AstroConst.JDminusMJD;
-        double deltaTT2UTC = Time.deltaT(currentMJDtime); // = TT - UTC
-        double maxTempTime = 0;
-        //Find the very last time in the very last ephemeris
-        for (int i = 1; i<=input.getSize(); i++ )
-        {
-            Vector<StateVector> ephemeris = satHash.get(input.getSatelliteName(i-1)).getEphemeris();
-            double tempTime = ephemeris.get(ephemeris.size()-1).state[0] - deltaTT2UTC;
-            if(tempTime > maxTempTime) //If this ephemeris time is greater than others
-            {
-                maxTempTime = tempTime; //Set as max ephemeris time
-            }
-        }
-        
-        final double maxTime =  maxTempTime;      
-        playTimer = new Timer(animationRefreshRateMs, new ActionListener()
-                {//Timer for playing scenario
-                @Override
-                    public void actionPerformed(ActionEvent event)
+        playMaxTime = getMaxEphemerisTime(); //Updated if ephemerides are appended to while playing
+        simClock.setStepSeconds(animationSimStepSeconds);
+        simClock.setTickMillis(animationRefreshRateMs);
+        simClock.start(getCurrentJulTime(), new SimulationClock.FrameListener()
+                {//Clock thread steps and propagates, frames are shown here (Swing thread)
+                    public void frameReady(SimulationClock.Frame frame)
                     {
+                    showFrame(frame); // show the new time step
                     //Ensure we're still within ephemeris time range
                     //include step size so orbit is still shown
                     //without this, the very first instant the orbit is gone will be the end point
                     double stepJulian = animationSimStepSeconds/86400;
-                    if(getCurrentJulTime() > (maxTime-stepJulian))
+                    if(getCurrentJulTime() > (playMaxTime-stepJulian))
                         {
-                            playTimer.stop(); //Stop playing!
+                            simClock.stop(); //Stop playing!
                             canBePlayed = true;
                             statusDisplay.setText("End of Scenario");
                         }
@@ -1137,31 +1376,66 @@ private void animateApplet(boolean b) {
                      if (difference >=10000)
                      {
                          currentJulianDate.update2CurrentTime();
-                         setTime(currentJulianDate.getJulianDate());
+                         simClock.setTime(currentJulianDate.getJulianDate()); //Catch up to real time
                                           }
                                }
-                    // take one time step in the animation
-                    currentPlayDirection = 1;
-                    updateTime(); // animate
                     }
                 });
-        playTimer.start();
     }
         else
         { //Should not play!
             if(canBePlayed)
             {}
             else
-            {if(playTimer != null) //If there is a timer created, stop it
-            {playTimer.stop();}
+            {simClock.stop(); //Stop the clock thread (waits for the current step)
             canBePlayed = true;
             }
         }
     }
 
+//Shows a frame from the simulation clock: satellites are already propagated to its time
+private void showFrame(SimulationClock.Frame frame)
+{
+        double prevJulDate = currentJulianDate.getJulianDate();
+        currentJulianDate.set(Time.convertJD2Calendar(frame.getJulianDate()).getTimeInMillis());
+        sun.setCurrentMJD(currentJulianDate.getMJD());
+        checkTimeDiffResetGroundTracks(Math.abs(currentJulianDate.getJulianDate()-prevJulDate));
+        finishTimeUpdate();
+}
+
+//Finds the very last time (UTC) in the very last ephemeris
+private double getMaxEphemerisTime()
+{
+        return getMaxEphemerisTime(new Hashtable<String,EphemerisTable>());
+}
+
+//Same, with ephemerides that were just handed to satellites (by name) used in place of the ones they have
+private double getMaxEphemerisTime(Hashtable<String,EphemerisTable> newEphemerides)
+{
+        double date = this.getCurrentJulTime();
+        double currentMJDtime = date - AstroConst.JDminusMJD;
+        double deltaTT2UTC = Time.deltaT(currentMJDtime); // = TT - UTC
+        double maxTempTime = 0;
+        for (AbstractSatellite sat : new ArrayList<AbstractSatellite>(satHash.values())) //Copy, the clock thread may change satHash
+        {
+            EphemerisTable ephemeris = newEphemerides.get(sat.getName());
+            if(ephemeris == null)
+            {
+                ephemeris = sat.getEphemeris();
+            }
+            double tempTime = ephemeris.getLastTime() - deltaTT2UTC;
+            if(tempTime > maxTempTime) //If this ephemeris time is greater than others
+            {
+                maxTempTime = tempTime; //Set as max ephemeris time
+            }
+        }
+        return maxTempTime;
+}
+
 //Adjusts ECI and ECEF views based on time
 public void WWsetMJD(double mjd)
     {
+        long t0 = FrameProfiler.start();
                
         if(viewModeECI)
         {
@@ -1230,6 +1504,7 @@ public void WWsetMJD(double mjd)
         // update layer that needs time updates
         timeDepLayer.setCurrentMJD(mjd);
         
+        WWSETMJD_STAGE.stop(t0);
     } // set MJD
 
     //Create 2D window
@@ -1238,6 +1513,8 @@ public void WWsetMJD(double mjd)
         
         // create 2D Earth Panel:
         J2DEarthPanel newPanel = new J2DEarthPanel(satHash, currentJulianDate, sun);
+        newPanel.setFleetPropagator(fleetPropagator); // draw the published satellite states
+        newPanel.setWorkerPool(workerPool); // day/night blend and footprints on the shared threads
 
         String windowName = "2D Earth Window";
         newPanel.setName(windowName);
@@ -1377,7 +1654,9 @@ public void WWsetMJD(double mjd)
             
             // add ECI Layer -- FOR SOME REASON IF BEFORE EFEF and turned off ECEF Orbits don't show up!! Coverage effecting this too, strange
             eciLayer = new ECIRenderableLayer(currentJulianDate.getMJD()); // create ECI layer
-            orbitModel = new OrbitModelRenderable(satHash, wwd.getModel().getGlobe());
+            framePreparer = new SatelliteFramePreparer(fleetPropagator, wwd.getModel().getGlobe());
+            simClock.setPreparer(framePreparer); //Prepared on the clock thread right after each step
+            orbitModel = new OrbitModelRenderable(framePreparer, wwd.getModel().getGlobe());
             eciLayer.addRenderable(orbitModel); // add renderable object
             eciLayer.setCurrentMJD(currentJulianDate.getMJD()); // update time again after adding renderable
             eciRadialGrid.setShowGrid(false); //turn off grid
@@ -1386,7 +1665,7 @@ public void WWsetMJD(double mjd)
             
             // add ECEF Layer
             ecefLayer = new ECEFRenderableLayer(); // create ECEF layer
-            ecefModel = new ECEFModelRenderable(satHash, wwd.getModel().getGlobe());
+            ecefModel = new ECEFModelRenderable(framePreparer, wwd.getModel().getGlobe());
             ecefLayer.addRenderable(ecefModel); // add renderable object
             ecefLayer.setEnabled(false); //Default ECI not ECEF
             m.getLayers().add(ecefLayer); // add ECEF Layer
@@ -1395,6 +1674,13 @@ public void WWsetMJD(double mjd)
             timeDepLayer = new EcefTimeDepRenderableLayer(currentJulianDate.getMJD(),sun);
             m.getLayers().add(timeDepLayer);
             
+            // performance HUD, last so it is drawn on top (off until F2)
+            if(!m.getLayers().contains(hudLayer))
+            {
+                hudLayer.setEnabled(false);
+                m.getLayers().add(hudLayer);
+            }
+            
             // Add the status bar
             StatusBar statusBar = new StatusBar();
             this.getContentPane().add(statusBar, BorderLayout.PAGE_END);
@@ -1445,90 +1731,208 @@ public void WWsetMJD(double mjd)
     }
     
     //Adds user inputs to scenario, including satellites as well as scenario time if needed
+    //The input file and the ephemerides are read in the background (several at once), each satellite is added as soon as its ephemeris is read
     public void inputSatellites()
+    {
+            if(loadingSatellites)
+            {
+                return; //Still loading the last request
+            }
+            loadingSatellites = true;
+            updating = true; //Do not change satellite properties while loading
+
+            try
+            {
+                workerPool.getExecutor().execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        OnlineInput newInput = null;
+                        try
+                        {
+                            ephemerisLoader.getRefresher().isModified(INPUT_LOCATION); //Remember the input file's version for later refreshes
+                            newInput = new OnlineInput(INPUT_LOCATION);
+                        }
+                        catch(Exception e)
+                        {
+                            //Input file could not be read
+                        }
+
+                        final OnlineInput readInput = newInput;
+                        SwingUtilities.invokeLater(new Runnable()
+                        {
+                            public void run()
+                            {
+                                loadSatellites(readInput);
+                            }
+                        });
+                    }
+                });
+            }
+            catch(RejectedExecutionException e)
+            {
+                loadingSatellites = false; //Stopped
+            }
+    }
+
+    //Starts reading the ephemerides of a newly read input file (called on the Swing thread)
+    private void loadSatellites(OnlineInput newInput)
     {
             //Read satellites
             try{
 
-            input = new OnlineInput("http://localhost:8080/parameters_test.html");
+            if(newInput == null)
+            {
+                throw new Exception("Input file could not be read");
+            }
+            input = newInput;
             int n = input.getSize();
 
+            String[] names = new String[n];
+            String[] locations = new String[n];
+            final String[] colors = new String[n];
             for (int i = 0; i <n; i++)
             {
-                addCustomSat(input.getSatelliteName(i)); //Add each satellite
+                names[i] = input.getSatelliteName(i);
+                locations[i] = input.getEphemerisLocation(i);
+                colors[i] = input.getColor(i);
             }
-            reader = new StkEphemerisReader(); //initialize ephemeris reader
-            double tempTime;
-            double maxTempTime = 0;
-            double date = this.getCurrentJulTime();
-            double currentMJDtime = date - AstroConst.JDminusMJD;
-            double deltaTT2UTC = Time.deltaT(currentMJDtime); // = TT - UTC
-            for (int i = 0; i <n; i++)
-            {	//For each satellite
-                    AbstractSatellite S = satHash.get(input.getSatelliteName(i));
-                    S.setGroundTrackIni2False(); 
-                    S.setPlot2DFootPrint(false); //No footprints (ugly)
-                    S.setShow3DFootprint(false);
-                    //Set color
-                    if (input.getColor(i).startsWith("b"))
-                    {
-                            S.setSatColor(Color.BLUE);
-                    }
-                    else if (input.getColor(i).startsWith("g"))
-                    {
-                            S.setSatColor(Color.GREEN);
-                    }
-                    else if (input.getColor(i).startsWith("r"))
-                    {
-                            S.setSatColor(Color.RED);
-                    }
-                    else if (input.getColor(i).startsWith("y"))
-                    {
-                            S.setSatColor(Color.YELLOW);
-                    }
-                    else if (input.getColor(i).startsWith("w"))
-                    {
-                            S.setSatColor(Color.WHITE);
-                    }
-                    else if (input.getColor(i).startsWith("p"))
-                    {
-                            S.setSatColor(Color.PINK);
-                    }
-                    else if (input.getColor(i).startsWith("o"))
-                    {
-                            S.setSatColor(Color.ORANGE);
-                    }
-                    else
-                    {
-                            S.setSatColor(Color.MAGENTA);
-                    }
-                    vector = reader.readStkEphemeris(input.getEphemerisLocation(i)); //Read ephemeris into vector
-                    tempTime = StkEphemerisReader.convertScenarioTimeString2JulianDate(reader.getScenarioEpoch() + " UTC"); //Save ephemeris time
-                    if(!overrideTime || ignoreOverride) //If not override time, then time needs to be updated
+
+            numSatellitesLoaded = 0;
+            loadMaxTempTime = 0;
+            statusDisplay.setText("Loading Ephemerides: 0/" + n);
+
+            ephemerisLoader.loadAll(names, locations, new EphemerisLoader.LoadListener()
+            {
+                public void ephemerisLoaded(final EphemerisLoader.LoadResult result, final int completed, final int total)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
                     {
-                        if(tempTime < time) //If earlier ephemeris time
+                        public void run()
                         {
-                            time = tempTime; //Set time to earlier time
+                            installSatellite(result, colors[result.getIndex()], completed, total);
                         }
-                    }
-                    tempTime = vector.get(vector.size()-1).state[0] - deltaTT2UTC;
-                    if(tempTime > maxTempTime) //If this ephemeris time is greater than others
-                    {
-                        maxTempTime = tempTime; //Set as max ephemeris time
-                    }
-                    S.setEphemeris(vector); //set ephemeris for each satellite
-                   // Set default 3d model and turn on the use of 3d models: CURRENTLY UNAVAILABLE
-                   // S.setThreeDModelPath("globalstar/Globalstar.3ds");
-                   // S.setUse3dModel(true);
-                    if (input.getModelCentered(i)) //BAD
-                    {
-                           //statusDisplay.setText("Can't do that yet!");
-                    }
-                    else
+                    });
+                }
+
+                public void loadFinished(EphemerisLoader.LoadBatch batch)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
                     {
-                            //dont do anything!
-                    }
+                        public void run()
+                        {
+                            finishInputSatellites();
+                        }
+                    });
+                }
+            });
+            }
+            catch(Exception e) //Input file could not be read
+            {
+                loadingSatellites = false;
+                noSatellitesFound();
+            }
+    }
+
+    //Adds a satellite once its ephemeris has been read (called on the Swing thread, in the order loads complete)
+    private void installSatellite(EphemerisLoader.LoadResult result, String color, int completed, int total)
+    {
+            if(stopped)
+            {
+                return; //Finished loading after the applet stopped
+            }
+            statusDisplay.setText("Loading Ephemerides: " + completed + "/" + total);
+
+            if(!result.isLoaded()) //URL given in input does not connect to STK ephemeris file
+            {
+                System.out.println("ERROR loading ephemeris for " + result.getName() + " (" + result.getLocation() + "): " + result.getError());
+                return;
+            }
+
+            if(result.getName() == null || result.getName().equalsIgnoreCase(""))
+            {
+                return; //No name given
+            }
+            //Set up completely before it is added to satHash, the clock thread may be propagating the others
+            CustomSatellite S = new CustomSatellite(result.getName(), this.getScenarioEpochDate());
+            S.setGroundTrackIni2False(); 
+            S.setPlot2DFootPrint(false); //No footprints (ugly)
+            S.setShow3DFootprint(false);
+            S.setSatColor(getSatColor(color)); //Set color
+
+            if(!overrideTime || ignoreOverride) //If not override time, then time needs to be updated
+            {
+                if(result.getScenarioEpochJulDate() < time) //If earlier ephemeris time
+                {
+                    time = result.getScenarioEpochJulDate(); //Set time to earlier time
+                }
+            }
+            double deltaTT2UTC = Time.deltaT(this.getCurrentJulTime() - AstroConst.JDminusMJD); // = TT - UTC
+            double tempTime = result.getEphemeris().getLastTime() - deltaTT2UTC;
+            if(tempTime > loadMaxTempTime) //If this ephemeris time is greater than others
+            {
+                loadMaxTempTime = tempTime; //Set as max ephemeris time
+            }
+            S.setEphemeris(result.getEphemeris()); //set ephemeris for each satellite
+           // Set default 3d model and turn on the use of 3d models: CURRENTLY UNAVAILABLE
+           // S.setThreeDModelPath("globalstar/Globalstar.3ds");
+           // S.setUse3dModel(true);
+
+            numSatellitesLoaded++;
+
+            //Show it right away
+            S.propogate2JulDate(this.getCurrentJulTime());
+            putSatellite(result.getName(), S); //Add satellite
+            forceRepainting();
+    }
+
+    //Color from the user input color string
+    private Color getSatColor(String color)
+    {
+            if (color.startsWith("b"))
+            {
+                    return Color.BLUE;
+            }
+            else if (color.startsWith("g"))
+            {
+                    return Color.GREEN;
+            }
+            else if (color.startsWith("r"))
+            {
+                    return Color.RED;
+            }
+            else if (color.startsWith("y"))
+            {
+                    return Color.YELLOW;
+            }
+            else if (color.startsWith("w"))
+            {
+                    return Color.WHITE;
+            }
+            else if (color.startsWith("p"))
+            {
+                    return Color.PINK;
+            }
+            else if (color.startsWith("o"))
+            {
+                    return Color.ORANGE;
+            }
+            return Color.MAGENTA;
+    }
+
+    //Called once every ephemeris has been read: checks the requested scenario time against the ephemerides
+    private void finishInputSatellites()
+    {
+            loadingSatellites = false;
+            updating = false;
+
+            if(numSatellitesLoaded == 0)
+            {
+                noSatellitesFound();
+                return;
             }
+
+            double maxTempTime = loadMaxTempTime;
             double scenarioTime = input.getTime(); //Get user input time
             if((scenarioTime>=time) && (scenarioTime < maxTempTime)) //If user input time is greater than time in ephemeris
             {
@@ -1544,7 +1948,7 @@ public void WWsetMJD(double mjd)
             updateTime();
             GregorianCalendar gc = Time.convertJD2Calendar(temp);
             setTime(gc.getTimeInMillis());
-            statusDisplay.setText("Satellites Added");
+            statusDisplay.setText(update ? "Ephemeris Updated" : "Satellites Added");
             inputSat = true;
             ignoreOverride = false;
             overrideTime = true;
@@ -1562,7 +1966,7 @@ public void WWsetMJD(double mjd)
                 ignoreOverride = true;
                 overrideTime = false;
                 try //Remove satellites that were added: don't display satellites if time is bad!
-                {satHash.clear();}
+                {clearSatellites();}
                 catch(Exception e)
                 {}
             }
@@ -1578,17 +1982,248 @@ public void WWsetMJD(double mjd)
                 ignoreOverride = true;
                 overrideTime = false;
             }
+
+            //If orbit traces are off they must stay hidden for the new satellites
+            orbitShown = orbitTrace.isSelected();
+            setOrbitTracesShown(orbitShown);
+            forceRepainting();
+    }
+
+    //Checks the input file and every loaded ephemeris for changes in the background (automatic update)
+    //Only changed ephemerides are read (only their new rows if they grew), nothing is cleared
+    private void refreshSatellites()
+    {
+            refreshingSatellites = true;
+
+            //Satellites currently shown and where their ephemerides come from
+            final Vector<String> names = new Vector<String>();
+            final Vector<String> locations = new Vector<String>();
+            for (int i = 0; i < input.getSize(); i++)
+            {
+                if(satHash.containsKey(input.getSatelliteName(i)))
+                {
+                    names.add(input.getSatelliteName(i));
+                    locations.add(input.getEphemerisLocation(i));
+                }
+            }
+
+            refreshThread = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    OnlineInput newInput = null;
+                    EphemerisRefresher.RefreshResult[] results = new EphemerisRefresher.RefreshResult[0];
+                    try
+                    {
+                        if(ephemerisLoader.getRefresher().isModified(INPUT_LOCATION))
+                        {
+                            newInput = new OnlineInput(INPUT_LOCATION); //Only read again if it changed
+                        }
+                        results = ephemerisLoader.refreshAll(locations.toArray(new String[locations.size()]));
+                    }
+                    catch(Exception e)
+                    {
+                        System.out.println("ERROR refreshing ephemerides: " + e.toString());
+                    }
+
+                    final OnlineInput changedInput = newInput;
+                    final EphemerisRefresher.RefreshResult[] refreshResults = results;
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        public void run()
+                        {
+                            applyRefresh(names, refreshResults, changedInput);
+                        }
+                    });
+                }
+            }, "Ephemeris Refresh");
+            refreshThread.setDaemon(true);
+            refreshThread.start();
+    }
+
+    //Applies the results of refreshSatellites (called on the Swing thread)
+    private void applyRefresh(Vector<String> names, EphemerisRefresher.RefreshResult[] results, OnlineInput newInput)
+    {
+            refreshingSatellites = false;
+            if(!update || stopped)
+            {
+                return; //Updating was turned off (or the applet stopped) while checking
+            }
+
+            boolean changed = false;
+            Hashtable<String,EphemerisTable> newEphemerides = new Hashtable<String,EphemerisTable>(); //Handed over, maybe not set yet
+            for (int i = 0; i < results.length; i++)
+            {
+                AbstractSatellite S = satHash.get(names.get(i));
+                if(S == null)
+                {
+                    continue; //Removed since the check started
+                }
+
+                EphemerisTable ephemeris = ephemerisLoader.getRefresher().apply(results[i]);
+                if(ephemeris != null) //Only changed satellites are touched, the rest keep their ground tracks
+                {
+                    setSatelliteEphemeris(S, ephemeris);
+                    newEphemerides.put(names.get(i), ephemeris);
+                    changed = true;
+                }
+                else if(results[i].getStatus() == EphemerisRefresher.FAILED)
+                {
+                    System.out.println("ERROR refreshing ephemeris for " + names.get(i) + " (" + results[i].getLocation() + "): " + results[i].getError());
+                }
+            }
+
+            if(newInput != null)
+            {
+                if(newInput.getTime() != input.getTime())
+                {
+                    //Requested time changed, check it against the ephemerides the same way as a first load
+                    updating = true;
+                    clearSatellites();
+                    inputSatellites();
+                    return;
+                }
+                changed |= applyInputChanges(newInput);
             }
-            catch(Exception e) //URL given in input does not connect to STK ephemeris file
-            {statusDisplay.setText("No satellites found");
+
+            if(changed)
+            {
+                playMaxTime = getMaxEphemerisTime(newEphemerides);
+                statusDisplay.setText("Ephemeris Updated");
+                forceRepainting();
+            }
+    }
+
+    //Gives a satellite a new ephemeris (on the clock thread while playing)
+    private void setSatelliteEphemeris(final AbstractSatellite S, final EphemerisTable ephemeris)
+    {
+            final double julDate = this.getCurrentJulTime();
+            simClock.changeSatellites(new Runnable()
+            {
+                public void run()
+                {
+                    S.setEphemeris(ephemeris);
+                    S.setGroundTrackIni2False();
+                    S.propogate2JulDate(julDate);
+                }
+            });
+    }
+
+    //Adds, removes and recolors satellites to match a changed input file (called on the Swing thread)
+    private boolean applyInputChanges(OnlineInput newInput)
+    {
+            boolean changed = false;
+            EphemerisRefresher refresher = ephemerisLoader.getRefresher();
+
+            Hashtable<String,Integer> newIndex = new Hashtable<String,Integer>();
+            for (int i = 0; i < newInput.getSize(); i++)
+            {
+                newIndex.put(newInput.getSatelliteName(i), i);
+            }
+
+            //Removed satellites (or ones whose ephemeris moved, those are added again below)
+            //While playing satHash only changes on the next tick, so the removed names are kept here
+            Vector<String> removed = new Vector<String>();
+            for (int i = 0; i < input.getSize(); i++)
+            {
+                String name = input.getSatelliteName(i);
+                Integer j = newIndex.get(name);
+                if(j == null || !newInput.getEphemerisLocation(j).equals(input.getEphemerisLocation(i)))
+                {
+                    if(satHash.containsKey(name))
+                    {
+                        removeSatellite(name);
+                        removed.add(name);
+                        changed = true;
+                    }
+                    refresher.forget(input.getEphemerisLocation(i));
+                }
+            }
+
+            //Color changes and new satellites
+            Vector<String> addNames = new Vector<String>();
+            Vector<String> addLocations = new Vector<String>();
+            final Vector<String> addColors = new Vector<String>();
+            for (int i = 0; i < newInput.getSize(); i++)
+            {
+                String name = newInput.getSatelliteName(i);
+                AbstractSatellite S = removed.contains(name) ? null : satHash.get(name);
+                if(S != null)
+                {
+                    final Color color = getSatColor(newInput.getColor(i));
+                    if(!color.equals(S.getSatColor()))
+                    {
+                        final AbstractSatellite recolored = S;
+                        simClock.changeSatellites(new Runnable()
+                        {
+                            public void run()
+                            {
+                                recolored.setSatColor(color);
+                            }
+                        });
+                        changed = true;
+                    }
+                }
+                else
+                {
+                    addNames.add(name);
+                    addLocations.add(newInput.getEphemerisLocation(i));
+                    addColors.add(newInput.getColor(i));
+                }
+            }
+
+            input = newInput;
+
+            if(!addNames.isEmpty())
+            {
+                loadingSatellites = true;
+                numSatellitesLoaded = 0;
+                ephemerisLoader.loadAll(addNames.toArray(new String[addNames.size()]), addLocations.toArray(new String[addLocations.size()]), new EphemerisLoader.LoadListener()
+                {
+                    public void ephemerisLoaded(final EphemerisLoader.LoadResult result, final int completed, final int total)
+                    {
+                        SwingUtilities.invokeLater(new Runnable()
+                        {
+                            public void run()
+                            {
+                                installSatellite(result, addColors.get(result.getIndex()), completed, total);
+                            }
+                        });
+                    }
+
+                    public void loadFinished(EphemerisLoader.LoadBatch batch)
+                    {
+                        SwingUtilities.invokeLater(new Runnable()
+                        {
+                            public void run()
+                            {
+                                loadingSatellites = false;
+                                setOrbitTracesShown(orbitShown); //New satellites follow the orbit trace setting
+                                playMaxTime = getMaxEphemerisTime();
+                                statusDisplay.setText("Ephemeris Updated");
+                                forceRepainting();
+                            }
+                        });
+                    }
+                });
+            }
+
+            return changed;
+    }
+
+    //No satellites could be read
+    private void noSatellitesFound()
+    {
+            statusDisplay.setText("No satellites found");
             inputSat = false; //No satellites
+            updating = false;
             if(!overrideTime || ignoreOverride) //If time needs to be updated
             {
             currentJulianDate.update2CurrentTime(); //Set to current time
             setTime(currentJulianDate.getJulianDate());
             }
             canBePlayed = false;
-            ignoreOverride = true;}
+            ignoreOverride = true;
     }
 } //End of program
 
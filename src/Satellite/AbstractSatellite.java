@@ -25,8 +25,7 @@ package Satellite;
 import java.awt.Color;
 import java.io.Serializable;
 //import jsattrak.utilities.TLE;
-import java.util.Vector;
-import Utilities.StateVector;
+import Utilities.EphemerisTable;
 
 /**
  *
@@ -83,6 +82,10 @@ public abstract class AbstractSatellite implements Serializable
 
     public abstract double[][] getTemePosLag();
 
+    public abstract double[][] getLatLongLag();
+
+    public abstract double[][] getLatLongLead();
+
     public abstract double[][] getTemePosLead();
 
     public abstract String getName();
@@ -185,9 +188,9 @@ public abstract class AbstractSatellite implements Serializable
     
     public abstract void setThreeDModelSizeFactor(double modelSizeFactor);
 
-    public abstract void setEphemeris(Vector<StateVector> e);
+    public abstract void setEphemeris(EphemerisTable e);
     
-    public abstract Vector<StateVector> getEphemeris();
+    public abstract EphemerisTable getEphemeris();
     
     public abstract boolean isDisplayed();
 }
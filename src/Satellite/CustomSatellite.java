@@ -24,11 +24,10 @@ package Satellite;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Position;
 import java.awt.Color;
-import java.util.Vector;
 //import jsattrak.customsat.InitialConditionsNode;
 //import jsattrak.customsat.PropogatorNode;
 //import jsattrak.customsat.StopNode;
-import Utilities.StateVector;
+import Utilities.EphemerisTable;
 //import jsattrak.utilities.TLE;
 import Utilities.AstroConst;
 import Utilities.GeoFunctions;
@@ -36,7 +35,7 @@ import Utilities.Kepler;
 import Utilities.Time;
 import Utilities.LagrangeInterp;
 //import name.gano.swingx.treetable.CustomTreeTableNode;
-import Utilities.J2kCoordinateConversion;
+import Utilities.TemeRotation;
 import net.java.joglutils.model.ModelFactory;
 
 /**
@@ -46,9 +45,12 @@ import net.java.joglutils.model.ModelFactory;
 public class CustomSatellite  extends AbstractSatellite
 {
     //====================================
-    private int ephemerisIncrement = 30; // number of rows added at a time to improve speed of memory allocation
     // internal ephemeris (Time stored in TT)
-    private Vector<StateVector> ephemeris = new Vector<StateVector>(ephemerisIncrement, ephemerisIncrement); // array to store ephemeris
+    private EphemerisTable ephemeris = new EphemerisTable(); // table to store ephemeris
+    private volatile EphemerisTable ephemerisView = ephemeris.asReadOnly(); // read only view given out by getEphemeris() (any thread)
+    // interpolation bracket lookups, one cursor for time playback and one for ground track / event searches
+    private EphemerisIndex playbackIndex = new EphemerisIndex(ephemeris);
+    private EphemerisIndex searchIndex = new EphemerisIndex(ephemeris);
     //====================================
     
     
@@ -179,7 +181,7 @@ public class CustomSatellite  extends AbstractSatellite
         // save date
         this.currentJulianDate = julDate; // UTC
         
-        double tempTime, maxTime, minTime;
+        double maxTime, minTime;
 		
 	double currentMJDtime = julDate - AstroConst.JDminusMJD;
         
@@ -194,63 +196,31 @@ public class CustomSatellite  extends AbstractSatellite
             //double epochkMJD = tleEpochJD - AstroConst.JDminusMJD;
 
             // in UTC
-            minTime = ephemeris.get(0).state[0] - deltaTT2UTC;
-            maxTime = ephemeris.get( ephemeris.size()-1).state[0] - deltaTT2UTC;
+            minTime = ephemeris.getFirstTime() - deltaTT2UTC;
+            maxTime = ephemeris.getLastTime() - deltaTT2UTC;
 
             // see if the current time is inside of the ephemeris range
             if (julDate <= maxTime && julDate >= minTime)
             {
 
-                /// very simple search (slow!)
-                StateVector tempState = ephemeris.elementAt(1); // first item
-                tempTime = ephemeris.get(1).state[0]- deltaTT2UTC;
-                
-                int i = 1;
-                // find where in the ephemeris to interpolate around
-                
-                while (tempTime < julDate) // not <= causes out of bounds errors
-                {
-                    i++;
-                    tempState = ephemeris.get(i); // first item
-                    tempTime = tempState.state[0]- deltaTT2UTC;
-                }
-
-                int i1, i2, i3; // indexes for interpolation
-                if (i == 1) // start case
-                {
-                    i1 = 0;
-                    i2 = 1;
-                    i3 = 2;
-                }
-                else if (i == ephemeris.size() - 1) // other end
-                {
-                    i3 = ephemeris.size() - 1;
-                    i2 = ephemeris.size() - 2;
-                    i1 = ephemeris.size() - 3;
-                }
-                else
-                {
-                    i1 = i - 1;
-                    i2 = i;
-                    i3 = i + 1;
-                }
+                // find where in the ephemeris to interpolate around (ephemeris times are TT)
+                int i1 = playbackIndex.findInterpolationStart(julDate + deltaTT2UTC); // indexes for interpolation
+                int i2 = i1 + 1;
+                int i3 = i1 + 2;
 
                 // X,Y,Z position
-                tempState = ephemeris.get(i1); // first item
-                double t1 = tempState.state[0];///86400+epochkMJD;
-                double x1 = tempState.state[1];
-                double y1 = tempState.state[2];
-                double z1 = tempState.state[3];
-                tempState = ephemeris.get(i2);
-                double t2 = tempState.state[0];///86400+epochkMJD;
-                double x2 = tempState.state[1];
-                double y2 = tempState.state[2];
-                double z2 = tempState.state[3];
-                tempState = ephemeris.get(i3);
-                double t3 = tempState.state[0];///86400+epochkMJD;
-                double x3 = tempState.state[1];
-                double y3 = tempState.state[2];
-                double z3 = tempState.state[3];
+                double t1 = ephemeris.getTime(i1);///86400+epochkMJD;
+                double x1 = ephemeris.get(i1, EphemerisTable.X);
+                double y1 = ephemeris.get(i1, EphemerisTable.Y);
+                double z1 = ephemeris.get(i1, EphemerisTable.Z);
+                double t2 = ephemeris.getTime(i2);///86400+epochkMJD;
+                double x2 = ephemeris.get(i2, EphemerisTable.X);
+                double y2 = ephemeris.get(i2, EphemerisTable.Y);
+                double z2 = ephemeris.get(i2, EphemerisTable.Z);
+                double t3 = ephemeris.getTime(i3);///86400+epochkMJD;
+                double x3 = ephemeris.get(i3, EphemerisTable.X);
+                double y3 = ephemeris.get(i3, EphemerisTable.Y);
+                double z3 = ephemeris.get(i3, EphemerisTable.Z);
 
                 double timeSecEpoch = julDate + deltaTT2UTC; // in TT 
                 
@@ -265,21 +235,18 @@ public class CustomSatellite  extends AbstractSatellite
 
                 // current j2K Velocity
                 // X,Y,Z velocity
-                tempState = ephemeris.get(i1); // first item
-                t1 = tempState.state[0];///86400+epochkMJD;
-                x1 = tempState.state[4];
-                y1 = tempState.state[5];
-                z1 = tempState.state[6];
-                tempState = ephemeris.get(i2);
-                t2 = tempState.state[0];///86400+epochkMJD;
-                x2 = tempState.state[4];
-                y2 = tempState.state[5];
-                z2 = tempState.state[6];
-                tempState = ephemeris.get(i3);
-                t3 = tempState.state[0];///86400+epochkMJD;
-                x3 = tempState.state[4];
-                y3 = tempState.state[5];
-                z3 = tempState.state[6];
+                t1 = ephemeris.getTime(i1);///86400+epochkMJD;
+                x1 = ephemeris.get(i1, EphemerisTable.DX);
+                y1 = ephemeris.get(i1, EphemerisTable.DY);
+                z1 = ephemeris.get(i1, EphemerisTable.DZ);
+                t2 = ephemeris.getTime(i2);///86400+epochkMJD;
+                x2 = ephemeris.get(i2, EphemerisTable.DX);
+                y2 = ephemeris.get(i2, EphemerisTable.DY);
+                z2 = ephemeris.get(i2, EphemerisTable.DZ);
+                t3 = ephemeris.getTime(i3);///86400+epochkMJD;
+                x3 = ephemeris.get(i3, EphemerisTable.DX);
+                y3 = ephemeris.get(i3, EphemerisTable.DY);
+                z3 = ephemeris.get(i3, EphemerisTable.DZ);
                 
                 if(j2kVel == null)
                 {
@@ -296,12 +263,11 @@ public class CustomSatellite  extends AbstractSatellite
                 //velMOD = CoordinateConversion.EquatorialEquinoxFromJ2K( currentMJDtime , j2kVel);
                 // See SatelliteTleSGP4.java explanation of MOD/TEME for calculating lat/long as TLE coordinate systems
                 // revised calculations:
+                // (rotation shared by all satellites, interpolated from a precomputed time grid)
                 double mjd = julDate-AstroConst.JDminusMJD;
-                double ttt = (mjd-AstroConst.MJD_J2000) /36525.0;
-                double[][] A = J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.from,ttt, 24, 2, 'a');
-                // rotate position and velocity
-                posTEME = J2kCoordinateConversion.matvecmult( A, j2kPos);
-                velTEME = J2kCoordinateConversion.matvecmult( A, j2kVel);
+                TemeRotation rotation = TemeRotation.getShared();
+                posTEME = rotation.J2000toTEME(mjd, j2kPos);
+                velTEME = rotation.J2000toTEME(mjd, j2kVel);
 
                 //System.out.println("Date: " + julDate +", MOD/TEME Pos: " + posMOD[0] + ", " + posMOD[1] + ", " + posMOD[2]);
 
@@ -384,7 +350,7 @@ public class CustomSatellite  extends AbstractSatellite
     {
         if(ephemeris.size() > 0)
         {
-            return ephemeris.firstElement().state[0]; // returns TT time
+            return ephemeris.getFirstTime(); // returns TT time
         }
         else
         {   
@@ -410,10 +376,7 @@ public class CustomSatellite  extends AbstractSatellite
                 // See SatelliteTleSGP4.java explanation of MOD/TEME for calculating lat/long as TLE coordinate systems
                 // revised calculations:
                 double mjd = julDate-AstroConst.JDminusMJD;
-                double ttt = (mjd-AstroConst.MJD_J2000) /36525.0;
-                double[][] A = J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.from,ttt, 24, 2, 'a');
-                // rotate position and velocity
-                ptPos = J2kCoordinateConversion.matvecmult( A, j2kPosTemp);
+                ptPos = TemeRotation.getShared().J2000toTEME(mjd, j2kPosTemp);
 
         } // if in time and ephemeris is generated
         
@@ -431,7 +394,7 @@ public class CustomSatellite  extends AbstractSatellite
     {
         double[] ptPos = new double[3];
 
-        double tempTime, maxTime, minTime;
+        double maxTime, minTime;
 
         // CAREFUL ON TIMES... TIME IN EPHMERIS IN TT NOT UTC!!  
         double deltaTT2UTC = Time.deltaT(julDate - AstroConst.JDminusMJD); // = TT - UTC
@@ -443,63 +406,31 @@ public class CustomSatellite  extends AbstractSatellite
             //double epochkMJD = tleEpochJD? - AstroConst.JDminusMJD;
 
             // in UTC
-            minTime = ephemeris.get(0).state[0] - deltaTT2UTC;
-            maxTime = ephemeris.get(ephemeris.size() - 1).state[0] - deltaTT2UTC;
+            minTime = ephemeris.getFirstTime() - deltaTT2UTC;
+            maxTime = ephemeris.getLastTime() - deltaTT2UTC;
 
             // see if the current time in inside of the ephemeris range
             if (julDate <= maxTime && julDate >= minTime)
             {
 
-                /// very simple search (slow!)
-                StateVector tempState = ephemeris.elementAt(1); // first item
-                tempTime = ephemeris.get(1).state[0] - deltaTT2UTC;
-
-                int i = 1;
-                // find where in the ephemeris to interpolate around
-
-                while (tempTime < julDate) // not <= causes out of bounds errors
-                {
-                    i++;
-                    tempState = ephemeris.get(i); // first item
-                    tempTime = tempState.state[0] - deltaTT2UTC;
-                }
-
-                int i1, i2, i3; // indexes for interpolation
-                if (i == 1) // start case
-                {
-                    i1 = 0;
-                    i2 = 1;
-                    i3 = 2;
-                }
-                else if (i == ephemeris.size() - 1) // other end
-                {
-                    i3 = ephemeris.size() - 1;
-                    i2 = ephemeris.size() - 2;
-                    i1 = ephemeris.size() - 3;
-                }
-                else
-                {
-                    i1 = i - 1;
-                    i2 = i;
-                    i3 = i + 1;
-                }
+                // find where in the ephemeris to interpolate around (ephemeris times are TT)
+                int i1 = searchIndex.findInterpolationStart(julDate + deltaTT2UTC); // indexes for interpolation
+                int i2 = i1 + 1;
+                int i3 = i1 + 2;
 
                 // X,Y,Z position
-                tempState = ephemeris.get(i1); // first item
-                double t1 = tempState.state[0];///86400+epochkMJD;
-                double x1 = tempState.state[1];
-                double y1 = tempState.state[2];
-                double z1 = tempState.state[3];
-                tempState = ephemeris.get(i2);
-                double t2 = tempState.state[0];///86400+epochkMJD;
-                double x2 = tempState.state[1];
-                double y2 = tempState.state[2];
-                double z2 = tempState.state[3];
-                tempState = ephemeris.get(i3);
-                double t3 = tempState.state[0];///86400+epochkMJD;
-                double x3 = tempState.state[1];
-                double y3 = tempState.state[2];
-                double z3 = tempState.state[3];
+                double t1 = ephemeris.getTime(i1);///86400+epochkMJD;
+                double x1 = ephemeris.get(i1, EphemerisTable.X);
+                double y1 = ephemeris.get(i1, EphemerisTable.Y);
+                double z1 = ephemeris.get(i1, EphemerisTable.Z);
+                double t2 = ephemeris.getTime(i2);///86400+epochkMJD;
+                double x2 = ephemeris.get(i2, EphemerisTable.X);
+                double y2 = ephemeris.get(i2, EphemerisTable.Y);
+                double z2 = ephemeris.get(i2, EphemerisTable.Z);
+                double t3 = ephemeris.getTime(i3);///86400+epochkMJD;
+                double x3 = ephemeris.get(i3, EphemerisTable.X);
+                double y3 = ephemeris.get(i3, EphemerisTable.Y);
+                double z3 = ephemeris.get(i3, EphemerisTable.Z);
 
                 double timeSecEpoch = julDate + deltaTT2UTC; // in TT 
 
@@ -596,13 +527,14 @@ public class CustomSatellite  extends AbstractSatellite
     
     // fill in the Ground Track given Jul Dates for 
     // 
+    // (filled into new arrays that replace the old ones at the end, arrays already handed out are never changed)
     private void fillGroundTrack(double lastAscendingNodeTime, double leadEndTime, double lagEndTime)
     {
         // points in the lead direction
         int ptsLead = (int)Math.ceil(grnTrkPointsPerPeriod*groundTrackLeadPeriodMultiplier);
-        latLongLead = new double[ptsLead][3];        
-        temePosLead =  new double[ptsLead][3];
-        timeLead = new double[ptsLead];
+        double[][] latLongLead = new double[ptsLead][3];        
+        double[][] temePosLead =  new double[ptsLead][3];
+        double[] timeLead = new double[ptsLead];
                 
         for(int i=0;i<ptsLead;i++)
         {
@@ -611,7 +543,7 @@ public class CustomSatellite  extends AbstractSatellite
             // make sure the time is in ephemeris -- TIMES IN ARE UTC epeheris time is TT
             // make that time correction
             double deltaTT2UTC = Time.deltaT(ptTime - AstroConst.JDminusMJD); // = TT - UTC
-            if (ptTime >= ephemeris.firstElement().state[0] - deltaTT2UTC && ptTime <= ephemeris.lastElement().state[0] - deltaTT2UTC)
+            if (ptTime >= ephemeris.getFirstTime() - deltaTT2UTC && ptTime <= ephemeris.getLastTime() - deltaTT2UTC)
             {
                 // PUT HERE calculate lat lon
                 double[] ptLlaXyz = calculateLatLongAltXyz(ptTime);
@@ -641,9 +573,9 @@ public class CustomSatellite  extends AbstractSatellite
         
         // points in the lag direction
         int ptsLag = (int)Math.ceil(grnTrkPointsPerPeriod*groundTrackLagPeriodMultiplier);
-        latLongLag = new double[ptsLag][3];
-        temePosLag = new double[ptsLag][3];
-        timeLag = new double[ptsLag];
+        double[][] latLongLag = new double[ptsLag][3];
+        double[][] temePosLag = new double[ptsLag][3];
+        double[] timeLag = new double[ptsLag];
         
         for(int i=0;i<ptsLag;i++)
         {
@@ -652,7 +584,7 @@ public class CustomSatellite  extends AbstractSatellite
             // make sure the time is in ephemeris -- TIMES IN ARE UTC epeheris time is TT
             // make that time correction
             double deltaTT2UTC = Time.deltaT(ptTime - AstroConst.JDminusMJD); // = TT - UTC
-            if (ptTime >= ephemeris.firstElement().state[0] - deltaTT2UTC && ptTime <= ephemeris.lastElement().state[0] - deltaTT2UTC)
+            if (ptTime >= ephemeris.getFirstTime() - deltaTT2UTC && ptTime <= ephemeris.getLastTime() - deltaTT2UTC)
             {
 
                 double[] ptLlaXyz = calculateLatLongAltXyz(ptTime);
@@ -679,6 +611,14 @@ public class CustomSatellite  extends AbstractSatellite
             timeLag[i] = ptTime;
             
         } // for each lag point
+
+        // swap in the new ground track
+        this.latLongLead = latLongLead;
+        this.temePosLead = temePosLead;
+        this.timeLead = timeLead;
+        this.latLongLag = latLongLag;
+        this.temePosLag = temePosLag;
+        this.timeLag = timeLag;
     } // fillGroundTrack
     
     // takes in JulDate
@@ -1084,6 +1024,20 @@ public class CustomSatellite  extends AbstractSatellite
         this.show3D = show3D;
     }
 
+    // leading lat/long/alt coordinates for ground track (not changed once returned)
+    @Override
+    public double[][] getLatLongLead()
+    {
+        return latLongLead;
+    }
+
+    // lagging lat/long/alt coordinates for ground track (not changed once returned)
+    @Override
+    public double[][] getLatLongLag()
+    {
+        return latLongLag;
+    }
+
     // lagging lat/long coordinates for ground track
     @Override
     public double[][] getTemePosLead()
@@ -1121,16 +1075,21 @@ public class CustomSatellite  extends AbstractSatellite
 //    }
 
     @Override
-    public Vector<StateVector> getEphemeris()
+    public EphemerisTable getEphemeris()
     {
-        return ephemeris;
+        return ephemerisView;
     }
     
     // set ephemeris
     @Override
-    public void setEphemeris(Vector<StateVector> e)
+    public void setEphemeris(EphemerisTable e)
     {
         this.ephemeris = e;
+        this.ephemerisView = e.asReadOnly();
+        
+        // new ephemeris -- cursors are no longer valid
+        playbackIndex = new EphemerisIndex(ephemeris);
+        searchIndex = new EphemerisIndex(ephemeris);
         
 //        // fill out all needed arrays (such as lead or lag etc) in MOD coordinates as needed
 //        // latLongLead // lla
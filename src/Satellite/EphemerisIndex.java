@@ -0,0 +1,136 @@
+/*
+ * EphemerisIndex.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Finds the interpolation bracket in an ephemeris (time sorted, TT julian date)
+ * Sequential access (animation / ground track filling) is answered by moving
+ * a remembered cursor one or two rows, anything else uses a binary search.
+ *
+ */
+
+package Satellite;
+
+import Utilities.EphemerisTable;
+
+public class EphemerisIndex
+{
+    // how many rows the cursor is allowed to walk before falling back to a binary search
+    private static final int MAX_CURSOR_STEPS = 2;
+
+    private EphemerisTable ephemeris;
+
+    private int cursor = -1; // last index returned (-1 = no cursor yet)
+
+    public EphemerisIndex(EphemerisTable ephemeris)
+    {
+        this.ephemeris = ephemeris;
+    }
+
+    /**
+     * Finds the index i of the first ephemeris row (i>=1) with time >= ttJulDate,
+     * this is the same index the old linear search "while(tempTime < julDate)" stopped on
+     * @param ttJulDate time to find (TT julian date -- same time system as the ephemeris)
+     * @return index i, with 1 <= i <= size-1 (time must be inside the ephemeris range)
+     */
+    public int findIndex(double ttJulDate)
+    {
+        int size = ephemeris.size();
+
+        // try to walk from the last location (sequential playback forward or backward)
+        if(cursor >= 1 && cursor < size)
+        {
+            int i = cursor;
+            int steps = 0;
+            while(steps <= MAX_CURSOR_STEPS)
+            {
+                if(ephemeris.getTime(i) < ttJulDate)
+                {
+                    if(i == size-1)
+                    {
+                        break; // past the end, let the binary search clamp
+                    }
+                    i++; // move forward
+                }
+                else if(i > 1 && ephemeris.getTime(i-1) >= ttJulDate)
+                {
+                    i--; // move backward
+                }
+                else
+                {
+                    cursor = i;
+                    return i; // found it
+                }
+                steps++;
+            }
+        } // cursor
+
+        // binary search -- lowest index in [1,size-1] with time >= ttJulDate
+        int low = 1;
+        int high = size-1;
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if(ephemeris.getTime(mid) < ttJulDate)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        cursor = low;
+        return low;
+
+    } // findIndex
+
+    /**
+     * Finds the first of the three ephemeris rows to use for 3 point Lagrange interpolation
+     * @param ttJulDate time to find (TT julian date)
+     * @return i1, interpolate using rows i1, i1+1, i1+2
+     */
+    public int findInterpolationStart(double ttJulDate)
+    {
+        int i = findIndex(ttJulDate);
+
+        if (i == 1) // start case
+        {
+            return 0;
+        }
+        else if (i == ephemeris.size() - 1) // other end
+        {
+            return ephemeris.size() - 3;
+        }
+
+        return i - 1;
+    } // findInterpolationStart
+
+    // forget the cursor (call if the ephemeris is changed)
+    public void reset()
+    {
+        cursor = -1;
+    }
+
+    public EphemerisTable getEphemeris()
+    {
+        return ephemeris;
+    }
+
+}
@@ -0,0 +1,363 @@
+/*
+ * EphemerisLoader.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Downloads and parses STK ephemerides concurrently on the applet's worker threads.
+ * Each satellite gets its own Future, and a listener is told about each one
+ * as it completes (in completion order, from a single loader thread).
+ * Loaded ephemerides are tracked by an EphemerisRefresher so later updates
+ * only need to read what changed (see refreshAll).
+ *
+ */
+
+package Satellite;
+
+import Utilities.EphemerisTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class EphemerisLoader
+{
+    private final ExecutorService executor;
+
+    // binary cache shared by all loads
+    private StkEphemerisCache binaryCache = new StkEphemerisCache();
+
+    // keeps track of loaded ephemerides for incremental updates (null = no tracking)
+    private EphemerisRefresher refresher = new EphemerisRefresher(binaryCache);
+
+    /**
+     * @param executor threads the ephemerides are read on (shared, e.g. WorkerPool.getExecutor,
+     * the loader never shuts it down)
+     */
+    public EphemerisLoader(ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts loading a set of ephemerides
+     * @param names satellite names
+     * @param locations ephemeris URLs (same order as names)
+     * @param listener told about each satellite as it finishes and when all are done (can be null)
+     * @return the batch (holds a Future for each satellite)
+     */
+    public LoadBatch loadAll(String[] names, String[] locations, final LoadListener listener)
+    {
+        final LoadBatch batch = new LoadBatch(executor);
+
+        for(int i = 0; i < names.length; i++)
+        {
+            batch.submit(new LoadTask(i, names[i], locations[i], binaryCache, refresher));
+        }
+
+        if(listener != null)
+        {
+            // single thread hands out the results so the listener sees them in order
+            Thread collector = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    int total = batch.size();
+                    try
+                    {
+                        for(int i = 0; i < total; i++)
+                        {
+                            listener.ephemerisLoaded(batch.take(), i + 1, total);
+                        }
+                    }
+                    catch(InterruptedException e)
+                    {
+                        batch.cancel();
+                    }
+                    catch(CancellationException e)
+                    {
+                        batch.cancel(); // e.g. the threads were shut down
+                    }
+                    catch(RuntimeException e)
+                    {
+                        System.out.println("ERROR collecting ephemerides: " + e.toString());
+                        batch.cancel();
+                    }
+                    finally
+                    {
+                        listener.loadFinished(batch); // always, the listener waits for it
+                    }
+                }
+            }, "Ephemeris Load Collector");
+            collector.setDaemon(true);
+            collector.start();
+        }
+
+        return batch;
+    } // loadAll
+
+    /**
+     * Checks already loaded ephemerides for changes (all at the same time on the loader threads),
+     * blocks until every check is done so call it from a background thread. Results are
+     * applied with getRefresher().apply, the tables are new and can be handed to the satellites
+     * on the thread that propagates them.
+     * @param locations ephemeris URLs
+     * @return one result for each location (same order)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public EphemerisRefresher.RefreshResult[] refreshAll(String[] locations) throws InterruptedException
+    {
+        if(refresher == null)
+        {
+            throw new IllegalStateException("Ephemeris refresh is turned off");
+        }
+        return refresher.checkAll(locations, executor);
+    } // refreshAll
+
+    public StkEphemerisCache getBinaryCache()
+    {
+        return binaryCache;
+    }
+
+    /**
+     * @param binaryCache cache for parsed ephemerides, null turns caching off
+     */
+    public void setBinaryCache(StkEphemerisCache binaryCache)
+    {
+        this.binaryCache = binaryCache;
+        if(refresher != null)
+        {
+            refresher.setBinaryCache(binaryCache);
+        }
+    }
+
+    public EphemerisRefresher getRefresher()
+    {
+        return refresher;
+    }
+
+    /**
+     * @param refresher tracks loaded ephemerides for refreshAll, null turns tracking off
+     */
+    public void setRefresher(EphemerisRefresher refresher)
+    {
+        this.refresher = refresher;
+    }
+
+    // =====================================================================
+
+    /**
+     * Receives the results of a batch, called from the loader's collector thread
+     * (NOT the Swing event thread)
+     */
+    public interface LoadListener
+    {
+        /**
+         * @param result loaded (or failed) satellite
+         * @param completed number of satellites finished so far (including this one)
+         * @param total number of satellites in the batch
+         */
+        public void ephemerisLoaded(LoadResult result, int completed, int total);
+
+        /**
+         * Called once after every satellite in the batch has been handed to ephemerisLoaded
+         */
+        public void loadFinished(LoadBatch batch);
+    }
+
+    /**
+     * Outcome of loading one satellite's ephemeris
+     */
+    public static class LoadResult
+    {
+        private final int index;
+        private final String name;
+        private final String location;
+        private EphemerisTable ephemeris; // null if failed
+        private double scenarioEpochJulDate; // UTC
+        private Exception error; // null if okay
+
+        LoadResult(int index, String name, String location)
+        {
+            this.index = index;
+            this.name = name;
+            this.location = location;
+        }
+
+        public boolean isLoaded()
+        {
+            return error == null && ephemeris != null && ephemeris.size() > 0;
+        }
+
+        // position of the satellite in the list given to loadAll
+        public int getIndex()
+        {
+            return index;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getLocation()
+        {
+            return location;
+        }
+
+        public EphemerisTable getEphemeris()
+        {
+            return ephemeris;
+        }
+
+        public double getScenarioEpochJulDate()
+        {
+            return scenarioEpochJulDate;
+        }
+
+        public Exception getError()
+        {
+            return error;
+        }
+    } // LoadResult
+
+    /**
+     * A set of satellites being loaded, one Future per satellite
+     */
+    public static class LoadBatch
+    {
+        private final ExecutorService executor;
+        private final CompletionService<LoadResult> completionService;
+        private final List<Future<LoadResult>> futures = new ArrayList<Future<LoadResult>>();
+
+        LoadBatch(ExecutorService executor)
+        {
+            this.executor = executor;
+            completionService = new ExecutorCompletionService<LoadResult>(executor);
+        }
+
+        void submit(LoadTask task)
+        {
+            futures.add(completionService.submit(task));
+        }
+
+        public int size()
+        {
+            return futures.size();
+        }
+
+        /**
+         * @param i satellite index (order given to loadAll)
+         * @return future for that satellite's result
+         */
+        public Future<LoadResult> getFuture(int i)
+        {
+            return futures.get(i);
+        }
+
+        /**
+         * Waits for the next satellite to finish (completion order)
+         * @return result
+         * @throws InterruptedException if interrupted while waiting
+         * @throws CancellationException if the satellite was cancelled or the threads were shut down before loading it
+         */
+        public LoadResult take() throws InterruptedException
+        {
+            try
+            {
+                Future<LoadResult> f;
+                while((f = completionService.poll(1, TimeUnit.SECONDS)) == null)
+                {
+                    if(executor.isShutdown())
+                    {
+                        // shutdownNow drops the tasks that haven't started, they never complete
+                        throw new CancellationException("Ephemeris loader threads were shut down");
+                    }
+                }
+                return f.get();
+            }
+            catch(ExecutionException e)
+            {
+                // LoadTask catches everything, this should not happen
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public boolean isDone()
+        {
+            for(Future<LoadResult> f : futures)
+            {
+                if(!f.isDone())
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public void cancel()
+        {
+            for(Future<LoadResult> f : futures)
+            {
+                f.cancel(true);
+            }
+        }
+    } // LoadBatch
+
+    // reads one ephemeris (each task has its own reader, the reader is not thread safe)
+    private static class LoadTask implements Callable<LoadResult>
+    {
+        private final LoadResult result;
+        private final StkEphemerisCache cache;
+        private final EphemerisRefresher refresher;
+
+        LoadTask(int index, String name, String location, StkEphemerisCache cache, EphemerisRefresher refresher)
+        {
+            result = new LoadResult(index, name, location);
+            this.cache = cache;
+            this.refresher = refresher;
+        }
+
+        public LoadResult call()
+        {
+            try
+            {
+                StkEphemerisReader reader = new StkEphemerisReader();
+                reader.setBinaryCache(cache);
+                result.ephemeris = reader.readStkEphemeris(result.location);
+                result.scenarioEpochJulDate = StkEphemerisReader.convertScenarioTimeString2JulianDate(reader.getScenarioEpoch() + " UTC");
+
+                if(refresher != null)
+                {
+                    refresher.track(result.location, reader, result.ephemeris, result.scenarioEpochJulDate);
+                }
+            }
+            catch(Exception e)
+            {
+                result.error = e;
+            }
+            return result;
+        }
+    } // LoadTask
+
+} // EphemerisLoader
@@ -0,0 +1,606 @@
+/*
+ * EphemerisRefresher.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Checks already loaded STK ephemerides for changes without downloading them again.
+ * Local files are checked by modification time and size, http sources with a
+ * conditional request (If-Modified-Since / If-None-Match). When an ephemeris has
+ * grown only the end of it is read (from the last known data line on, using a
+ * Range request over http) and a longer copy of the table is made with the new
+ * rows (the table a satellite uses is never changed). If the last known row
+ * is not found again where it was the file was rewritten and it is reloaded.
+ *
+ */
+
+package Satellite;
+
+import Utilities.EphemerisTable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class EphemerisRefresher
+{
+    // refresh outcomes
+    public static final int UNCHANGED = 0; // source not modified (or nothing new in it)
+    public static final int APPENDED = 1;  // new rows at the end of the source
+    public static final int RELOADED = 2;  // source was rewritten and read again in full
+    public static final int FAILED = 3;    // source could not be checked or read
+
+    // what is known about each tracked ephemeris source (by location)
+    private final Map<String,SourceState> sources = Collections.synchronizedMap(new HashMap<String,SourceState>());
+
+    // validators of other sources checked with isModified (e.g. the parameter file)
+    private final Map<String,SourceState> files = Collections.synchronizedMap(new HashMap<String,SourceState>());
+
+    // used for full reloads
+    private StkEphemerisCache binaryCache;
+
+    public EphemerisRefresher()
+    {
+        this(new StkEphemerisCache());
+    }
+
+    /**
+     * @param binaryCache cache used when an ephemeris has to be read again in full (can be null)
+     */
+    public EphemerisRefresher(StkEphemerisCache binaryCache)
+    {
+        this.binaryCache = binaryCache;
+    }
+
+    /**
+     * Starts tracking an ephemeris that has just been read
+     * @param location ephemeris URL
+     * @param reader reader that read it (source validators and last line offset are taken from it)
+     * @param ephemeris the ephemeris that was read
+     * @param jdStart scenario epoch of the ephemeris (UTC Julian Date)
+     */
+    public void track(String location, StkEphemerisReader reader, EphemerisTable ephemeris, double jdStart)
+    {
+        if(ephemeris == null || ephemeris.isEmpty())
+        {
+            sources.remove(location);
+            return;
+        }
+
+        SourceState s = new SourceState();
+        s.lastModified = reader.getSourceLastModified();
+        s.length = reader.getSourceLength();
+        s.eTag = reader.getSourceETag();
+        s.lastLineOffset = reader.getLastDataLineOffset();
+        s.jdStart = jdStart;
+        s.table = ephemeris;
+        ephemeris.getState(ephemeris.size() - 1, s.lastRow);
+        sources.put(location, s);
+    } // track
+
+    /**
+     * Stop tracking an ephemeris (e.g. its satellite was removed)
+     * @param location ephemeris URL
+     */
+    public void forget(String location)
+    {
+        sources.remove(location);
+    }
+
+    public boolean isTracked(String location)
+    {
+        return sources.containsKey(location);
+    }
+
+    /**
+     * Checks a source (any URL) for changes since the last call, only its validators are
+     * fetched (file modification time and size, or a conditional http request)
+     * @param location URL to check
+     * @return true if the source was modified or could not be checked, also true for the first check
+     */
+    public boolean isModified(String location)
+    {
+        SourceState old = files.get(location);
+        SourceState s = new SourceState();
+
+        try
+        {
+            URL url = new URL(location);
+            File file = getFile(url);
+            if(file != null)
+            {
+                s.lastModified = file.lastModified();
+                s.length = file.length();
+            }
+            else
+            {
+                URLConnection connection = url.openConnection();
+                connection.setUseCaches(false);
+                if(connection instanceof HttpURLConnection)
+                {
+                    HttpURLConnection http = (HttpURLConnection)connection;
+                    http.setRequestMethod("HEAD");
+                    if(old != null)
+                    {
+                        setConditions(http, old);
+                    }
+                    if(http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+                    {
+                        http.disconnect();
+                        return false;
+                    }
+                    s.eTag = http.getHeaderField("ETag");
+                }
+                s.lastModified = connection.getLastModified();
+                s.length = connection.getContentLength();
+                closeQuietly(connection);
+            }
+        }
+        catch(IOException e)
+        {
+            files.remove(location);
+            return true;
+        }
+
+        files.put(location, s);
+
+        if(old == null || (s.lastModified == 0 && s.eTag == null))
+        {
+            return true; // no validators, can't tell
+        }
+
+        return s.lastModified != old.lastModified || s.length != old.length
+                || (s.eTag != null && !s.eTag.equals(old.eTag));
+    } // isModified
+
+    /**
+     * Checks one tracked ephemeris for changes (call from a background thread),
+     * nothing is changed until the result is applied
+     * @param location ephemeris URL
+     * @return result of the check
+     */
+    public RefreshResult check(String location)
+    {
+        RefreshResult result = new RefreshResult(location);
+        SourceState s = sources.get(location);
+
+        try
+        {
+            if(s == null || s.lastLineOffset < 0)
+            {
+                return reload(result); // nothing to compare with
+            }
+
+            URL url = new URL(location);
+            File file = getFile(url);
+            if(file != null)
+            {
+                checkFile(file, s, result);
+            }
+            else
+            {
+                checkUrl(url, s, result);
+            }
+        }
+        catch(Exception e)
+        {
+            result.status = FAILED;
+            result.error = e;
+        }
+
+        return result;
+    } // check
+
+    /**
+     * Checks a set of tracked ephemerides at the same time
+     * @param locations ephemeris URLs
+     * @param executor threads to run the checks on
+     * @return one result for each location (same order)
+     * @throws InterruptedException if interrupted while waiting for the checks
+     */
+    public RefreshResult[] checkAll(String[] locations, ExecutorService executor) throws InterruptedException
+    {
+        List<Future<RefreshResult>> futures = new ArrayList<Future<RefreshResult>>();
+        for(final String location : locations)
+        {
+            futures.add(executor.submit(new Callable<RefreshResult>()
+            {
+                public RefreshResult call()
+                {
+                    return check(location);
+                }
+            }));
+        }
+
+        RefreshResult[] results = new RefreshResult[locations.length];
+        for(int i = 0; i < results.length; i++)
+        {
+            try
+            {
+                results[i] = futures.get(i).get();
+            }
+            catch(ExecutionException e)
+            {
+                // check catches everything, this should not happen
+                results[i] = new RefreshResult(locations[i]);
+                results[i].status = FAILED;
+                results[i].error = new Exception(e.getCause());
+            }
+        }
+
+        return results;
+    } // checkAll
+
+    /**
+     * Gets the ephemeris to give a satellite from a result, the table is new
+     * (built by the check) so it can be handed over from any thread
+     * @param result result of check
+     * @return ephemeris to give the satellite, null if nothing changed or it was forgotten since the check
+     */
+    public EphemerisTable apply(RefreshResult result)
+    {
+        if(!result.isChanged() || !sources.containsKey(result.location))
+        {
+            return null;
+        }
+        return result.ephemeris;
+    } // apply
+
+    // local file: size and modification time tell if anything changed
+    private void checkFile(File file, SourceState s, RefreshResult result) throws Exception
+    {
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        if(lastModified == s.lastModified && length == s.length)
+        {
+            result.status = UNCHANGED;
+            return;
+        }
+
+        if(length <= s.length || s.length < 0 || length < s.lastLineOffset)
+        {
+            reload(result); // not just appended to
+            return;
+        }
+
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            skipFully(in, s.lastLineOffset);
+            readTail(in, s, lastModified, length, null, result);
+        }
+        finally
+        {
+            in.close();
+        }
+    } // checkFile
+
+    // other urls (http): conditional request for the end of the file
+    private void checkUrl(URL url, SourceState s, RefreshResult result) throws Exception
+    {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+
+        if(!(connection instanceof HttpURLConnection))
+        {
+            // no conditional requests, compare what the connection reports
+            long lastModified = connection.getLastModified();
+            long length = connection.getContentLength();
+            closeQuietly(connection);
+            if(lastModified != 0 && lastModified == s.lastModified && length == s.length)
+            {
+                result.status = UNCHANGED;
+            }
+            else
+            {
+                reload(result);
+            }
+            return;
+        }
+
+        HttpURLConnection http = (HttpURLConnection)connection;
+        setConditions(http, s);
+        http.setRequestProperty("Range", "bytes=" + s.lastLineOffset + "-");
+
+        int code = http.getResponseCode();
+        if(code == HttpURLConnection.HTTP_NOT_MODIFIED)
+        {
+            http.disconnect();
+            result.status = UNCHANGED;
+            return;
+        }
+
+        long lastModified = http.getLastModified();
+        String eTag = http.getHeaderField("ETag");
+        long length;
+        long skip;
+
+        if(code == HttpURLConnection.HTTP_PARTIAL)
+        {
+            // Content-Range: bytes start-end/total
+            length = getRangeTotal(http.getHeaderField("Content-Range"));
+            skip = 0;
+        }
+        else if(code == HttpURLConnection.HTTP_OK)
+        {
+            // server ignored the range, skip what we already have
+            length = http.getContentLength();
+            skip = s.lastLineOffset;
+        }
+        else
+        {
+            closeQuietly(http);
+            reload(result); // e.g. 416 range not satisfiable, the file got shorter
+            return;
+        }
+
+        if(code == HttpURLConnection.HTTP_OK && eTag == null && lastModified != 0
+                && lastModified == s.lastModified && length == s.length)
+        {
+            closeQuietly(http); // no conditional support on the server, but nothing changed
+            result.status = UNCHANGED;
+            return;
+        }
+
+        if(length >= 0 && s.length >= 0 && length <= s.length)
+        {
+            closeQuietly(http); // modified but not longer, not just appended to
+            reload(result);
+            return;
+        }
+
+        InputStream in = http.getInputStream();
+        try
+        {
+            skipFully(in, skip);
+            readTail(in, s, lastModified, length, eTag, result);
+        }
+        finally
+        {
+            in.close();
+        }
+    } // checkUrl
+
+    // parses the end of an ephemeris starting at the last known data line
+    private void readTail(InputStream in, SourceState s, long lastModified, long length, String eTag, RefreshResult result) throws Exception
+    {
+        StkEphemerisParser parser = new StkEphemerisParser(in, s.lastLineOffset);
+        EphemerisTable tail = new EphemerisTable();
+        parser.readEphemeris(s.jdStart, tail);
+
+        if(tail.isEmpty() || !rowEquals(tail, 0, s.lastRow))
+        {
+            reload(result); // last row isn't where it was, file was rewritten
+            return;
+        }
+
+        synchronized(s)
+        {
+            s.lastModified = lastModified;
+            s.length = length;
+            s.eTag = eTag;
+            if(tail.size() < 2)
+            {
+                result.status = UNCHANGED; // only the row we already have
+                return;
+            }
+
+            // copy on write: the table in use is only read, the satellite gets the longer copy
+            EphemerisTable table = new EphemerisTable(s.table.size() + tail.size() - 1);
+            table.addAll(s.table, 0);
+            table.addAll(tail, 1); // everything but the row we already have
+            s.table = table;
+            s.lastLineOffset = parser.getLastDataLineOffset();
+            table.getState(table.size() - 1, s.lastRow);
+
+            result.status = APPENDED;
+            result.ephemeris = table;
+        }
+    } // readTail
+
+    // reads the whole ephemeris again
+    private RefreshResult reload(RefreshResult result) throws Exception
+    {
+        StkEphemerisReader reader = new StkEphemerisReader();
+        reader.setBinaryCache(binaryCache);
+        EphemerisTable ephemeris = reader.readStkEphemeris(result.location);
+        double jdStart = StkEphemerisReader.convertScenarioTimeString2JulianDate(reader.getScenarioEpoch() + " UTC");
+
+        if(ephemeris == null || ephemeris.isEmpty())
+        {
+            sources.remove(result.location);
+            result.status = FAILED;
+            return result;
+        }
+
+        track(result.location, reader, ephemeris, jdStart);
+
+        result.status = RELOADED;
+        result.ephemeris = ephemeris;
+        return result;
+    } // reload
+
+    private static void setConditions(HttpURLConnection http, SourceState s)
+    {
+        if(s.lastModified > 0)
+        {
+            http.setIfModifiedSince(s.lastModified);
+        }
+        if(s.eTag != null)
+        {
+            http.setRequestProperty("If-None-Match", s.eTag);
+        }
+    }
+
+    private static long getRangeTotal(String contentRange)
+    {
+        if(contentRange != null)
+        {
+            int slash = contentRange.lastIndexOf('/');
+            if(slash >= 0)
+            {
+                try
+                {
+                    return Long.parseLong(contentRange.substring(slash + 1).trim());
+                }
+                catch(NumberFormatException e)
+                {
+                    // "*" = unknown
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean rowEquals(EphemerisTable table, int row, double[] state)
+    {
+        for(int c = 0; c < EphemerisTable.NUM_COLUMNS; c++)
+        {
+            if(table.get(row, c) != state[c])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException
+    {
+        while(n > 0)
+        {
+            long skipped = in.skip(n);
+            if(skipped <= 0)
+            {
+                if(in.read() < 0)
+                {
+                    throw new IOException("Ephemeris ended before offset " + n);
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    // local file for file: urls (null for anything else)
+    private static File getFile(URL url)
+    {
+        if(!"file".equals(url.getProtocol()))
+        {
+            return null;
+        }
+        try
+        {
+            return new File(url.toURI());
+        }
+        catch(Exception e)
+        {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(URLConnection connection)
+    {
+        try
+        {
+            connection.getInputStream().close();
+        }
+        catch(IOException e)
+        {
+            // nothing to close
+        }
+    }
+
+    public StkEphemerisCache getBinaryCache()
+    {
+        return binaryCache;
+    }
+
+    public void setBinaryCache(StkEphemerisCache binaryCache)
+    {
+        this.binaryCache = binaryCache;
+    }
+
+    // =====================================================================
+
+    /**
+     * Outcome of checking one ephemeris
+     */
+    public static class RefreshResult
+    {
+        private final String location;
+        private int status = UNCHANGED;
+        private EphemerisTable ephemeris; // the whole new ephemeris (APPENDED or RELOADED)
+        private Exception error; // FAILED only
+
+        RefreshResult(String location)
+        {
+            this.location = location;
+        }
+
+        public String getLocation()
+        {
+            return location;
+        }
+
+        // UNCHANGED, APPENDED, RELOADED or FAILED
+        public int getStatus()
+        {
+            return status;
+        }
+
+        public boolean isChanged()
+        {
+            return status == APPENDED || status == RELOADED;
+        }
+
+        public EphemerisTable getEphemeris()
+        {
+            return ephemeris;
+        }
+
+        public Exception getError()
+        {
+            return error;
+        }
+    } // RefreshResult
+
+    // validators and the end of a tracked source
+    private static class SourceState
+    {
+        long lastModified = 0;    // 0 = unknown
+        long length = -1;         // -1 = unknown
+        String eTag = null;
+        long lastLineOffset = -1; // start of the last data line
+        double jdStart;           // scenario epoch (UTC Julian Date)
+        final double[] lastRow = new double[EphemerisTable.NUM_COLUMNS];
+        EphemerisTable table;     // table the satellite is using (never changed, replaced by a copy)
+    }
+
+} // EphemerisRefresher
@@ -0,0 +1,293 @@
+/*
+ * FleetPropagator.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Propagates a set of satellites to a time using all processors. The satellites
+ * are split into contiguous chunks run on the applet's WorkerPool (the calling
+ * thread takes part),
+ * each satellite's results are copied into its own slot of a FleetState and the
+ * call returns only once every chunk is done, so the state handed out is always
+ * for a single time.
+ *
+ * The newest FleetState is published with a single volatile write: the propagating
+ * thread fills a new state (the back buffer) while the renderers keep reading the one
+ * they got from getState (the front buffer), nothing is locked and a renderer never
+ * sees a mix of two times or a satellite list that is being changed.
+ *
+ */
+
+package Satellite;
+
+import Utilities.FrameProfiler;
+import Utilities.WorkerPool;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class FleetPropagator
+{
+    // one propagation step is only microseconds, smaller chunks would cost more to hand off than they save
+    private static final int MIN_CHUNK_SIZE = 32;
+
+    private static final FrameProfiler.Stage PROPAGATE_STAGE = FrameProfiler.getStage("Propagation");
+
+    private final WorkerPool workerPool; // null = propagate on the calling thread
+
+    private volatile FleetState state = snapshot(new ArrayList<AbstractSatellite>(), 0);
+
+    /**
+     * Propagator that works on the calling thread only
+     */
+    public FleetPropagator()
+    {
+        this(null);
+    }
+
+    /**
+     * @param workerPool threads shared with the rest of the applet (null = calling thread only)
+     */
+    public FleetPropagator(WorkerPool workerPool)
+    {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Propagates every satellite to a time, returns when all are done
+     * @param satellites satellites to propagate (must not change during the call)
+     * @param julDate time to propagate to (UTC Julian Date)
+     * @return state of the satellites at julDate (also available from getState)
+     */
+    public FleetState propagate(Collection<AbstractSatellite> satellites, double julDate)
+    {
+        long t0 = FrameProfiler.start();
+        final FleetState newState = new FleetState(satellites.toArray(new AbstractSatellite[0]), julDate); // one call, sized by toArray
+        int n = newState.size();
+
+        if(workerPool == null)
+        {
+            newState.propagate(0, n);
+        }
+        else
+        {
+            workerPool.runChunks(n, MIN_CHUNK_SIZE, new WorkerPool.ChunkTask()
+            {
+                public void run(int start, int end)
+                {
+                    newState.propagate(start, end);
+                }
+            });
+        }
+
+        newState.finish();
+        state = newState;
+        PROPAGATE_STAGE.stop(t0);
+        return newState;
+    } // propagate
+
+    /**
+     * Publishes the satellites as they are now, without propagating them (e.g. after
+     * satellites were added / removed or display options changed while time is stopped)
+     * @param satellites satellites to capture (must not change during the call)
+     * @param julDate time the satellites were last propagated to (UTC Julian Date)
+     * @return captured state (also available from getState)
+     */
+    public FleetState capture(Collection<AbstractSatellite> satellites, double julDate)
+    {
+        FleetState newState = snapshot(satellites, julDate);
+        state = newState;
+        return newState;
+    } // capture
+
+    /**
+     * State of the satellites as they are now, not published
+     * @param satellites satellites to capture (must not change during the call)
+     * @param julDate time the satellites were last propagated to (UTC Julian Date)
+     * @return captured state
+     */
+    public static FleetState snapshot(Collection<AbstractSatellite> satellites, double julDate)
+    {
+        FleetState newState = new FleetState(satellites.toArray(new AbstractSatellite[0]), julDate);
+        newState.capture(0, newState.size());
+        newState.finish();
+        return newState;
+    }
+
+    /**
+     * @return state from the last finished propagate (or capture) call
+     */
+    public FleetState getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return threads the propagation is shared out to (null if none)
+     */
+    public WorkerPool getWorkerPool()
+    {
+        return workerPool;
+    }
+
+    // =====================================================================
+
+    /**
+     * Positions of a set of satellites at one time, one slot per satellite
+     * (slot i holds satellites[i]). Not changed once it has been returned by propagate,
+     * so it can be read from any thread.
+     */
+    public static class FleetState
+    {
+        private final AbstractSatellite[] satellites;
+        private final double julDate; // UTC
+        private final boolean[] inTime; // false if the time is outside the satellite's ephemeris
+        private final double[] temePos; // x,y,z of each slot (meters, TEME)
+        private final double[] lla;     // lat,long (radians), alt (meters) of each slot
+        private final SatelliteState[] states; // what gets drawn of each slot
+        private List<SatelliteState> stateList; // set by finish
+
+        FleetState(AbstractSatellite[] satellites, double julDate)
+        {
+            this.satellites = satellites;
+            this.julDate = julDate;
+            inTime = new boolean[satellites.length];
+            temePos = new double[3 * satellites.length];
+            lla = new double[3 * satellites.length];
+            states = new SatelliteState[satellites.length];
+        }
+
+        // propagate slots start to end-1 and copy out their results (each slot is written by one thread)
+        void propagate(int start, int end)
+        {
+            for(int i = start; i < end; i++)
+            {
+                AbstractSatellite sat = satellites[i];
+                try
+                {
+                    sat.propogate2JulDate(julDate);
+                }
+                catch(Exception e)
+                {
+                    System.out.println("ERROR propagating " + ((sat == null) ? "null" : sat.getName()) + ": " + e.toString());
+                }
+                record(i);
+            }
+        } // propagate
+
+        // copy out the current results of slots start to end-1
+        void capture(int start, int end)
+        {
+            for(int i = start; i < end; i++)
+            {
+                record(i);
+            }
+        }
+
+        private void record(int i)
+        {
+            AbstractSatellite sat = satellites[i];
+            try
+            {
+                SatelliteState satState = new SatelliteState(sat);
+
+                double[] pos = satState.getTEMEPos();
+                double[] satLla = satState.getLLA();
+                if(pos != null && satLla != null)
+                {
+                    System.arraycopy(pos, 0, temePos, 3*i, 3);
+                    System.arraycopy(satLla, 0, lla, 3*i, 3);
+                    inTime[i] = true;
+                }
+                states[i] = satState;
+            }
+            catch(Exception e)
+            {
+                System.out.println("ERROR reading the state of " + ((sat == null) ? "null" : sat.getName()) + ": " + e.toString());
+            }
+        } // record
+
+        // called once every slot is filled, before the state is handed out
+        void finish()
+        {
+            List<SatelliteState> list = new ArrayList<SatelliteState>(states.length);
+            for(SatelliteState satState : states)
+            {
+                if(satState != null)
+                {
+                    list.add(satState);
+                }
+            }
+            stateList = Collections.unmodifiableList(list);
+        }
+
+        public int size()
+        {
+            return satellites.length;
+        }
+
+        public AbstractSatellite getSatellite(int i)
+        {
+            return satellites[i];
+        }
+
+        // copy of the satellite in slot i (null if it could not be read)
+        public SatelliteState getSatelliteState(int i)
+        {
+            return states[i];
+        }
+
+        /**
+         * @return state of every satellite that could be read, in slot order (read only)
+         */
+        public List<SatelliteState> getSatelliteStates()
+        {
+            return stateList;
+        }
+
+        // UTC Julian Date the satellites were propagated to
+        public double getJulianDate()
+        {
+            return julDate;
+        }
+
+        public boolean isInTime(int i)
+        {
+            return inTime[i];
+        }
+
+        /**
+         * @param i slot
+         * @param pos array of 3 to fill with the TEME position (meters)
+         */
+        public void getTEMEPos(int i, double[] pos)
+        {
+            System.arraycopy(temePos, 3*i, pos, 0, 3);
+        }
+
+        /**
+         * @param i slot
+         * @param out array of 3 to fill with lat, long (radians) and altitude (meters)
+         */
+        public void getLLA(int i, double[] out)
+        {
+            System.arraycopy(lla, 3*i, out, 0, 3);
+        }
+    } // FleetState
+
+} // FleetPropagator
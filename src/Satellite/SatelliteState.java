@@ -0,0 +1,270 @@
+/*
+ * SatelliteState.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Read only copy of what the 2D and 3D views draw of one satellite, taken right
+ * after it was propagated. The getters have the same names as the ones in
+ * AbstractSatellite so drawing code can use either. The ground track arrays are
+ * shared with the satellite (it replaces them as a whole instead of changing them).
+ *
+ */
+
+package Satellite;
+
+import java.awt.Color;
+
+public class SatelliteState
+{
+    private final AbstractSatellite satellite;
+    private final String name;
+    private final Color satColor;
+
+    // current state (null if the satellite has not been propagated)
+    private final double[] temePos;
+    private final double[] temeVel;
+    private final double[] lla;
+
+    // ground track, [point][lat,long,alt] and [point][x,y,z] (may be null)
+    private final double[][] latLongLead;
+    private final double[][] latLongLag;
+    private final double[][] temePosLead;
+    private final double[][] temePosLag;
+
+    // display options
+    private final boolean showGroundTrack;
+    private final boolean groundTrackIni;
+    private final boolean plot2D;
+    private final boolean plot2DFootPrint;
+    private final boolean fillFootPrint;
+    private final int numPtsFootPrint;
+    private final boolean showName2D;
+    private final boolean show3DName;
+    private final boolean show3DFootprint;
+    private final boolean show3DOrbitTrace;
+    private final boolean show3DOrbitTraceECI;
+    private final boolean showGroundTrack3d;
+    private final boolean use3dModel;
+
+    /**
+     * Copies the current state of a satellite (call from the thread that propagates it)
+     * @param sat satellite
+     */
+    public SatelliteState(AbstractSatellite sat)
+    {
+        satellite = sat;
+        name = sat.getName();
+        satColor = sat.getSatColor();
+
+        // these return copies
+        temePos = sat.getTEMEPos();
+        temeVel = sat.getTEMEVelocity();
+        lla = sat.getLLA();
+
+        latLongLead = sat.getLatLongLead();
+        latLongLag = sat.getLatLongLag();
+        temePosLead = sat.getTemePosLead();
+        temePosLag = sat.getTemePosLag();
+
+        showGroundTrack = sat.getShowGroundTrack();
+        groundTrackIni = sat.getGroundTrackIni();
+        plot2D = sat.getPlot2D();
+        plot2DFootPrint = sat.getPlot2DFootPrint();
+        fillFootPrint = sat.isFillFootPrint();
+        numPtsFootPrint = sat.getNumPtsFootPrint();
+        showName2D = sat.isShowName2D();
+        show3DName = sat.isShow3DName();
+        show3DFootprint = sat.isShow3DFootprint();
+        show3DOrbitTrace = sat.isShow3DOrbitTrace();
+        show3DOrbitTraceECI = sat.isShow3DOrbitTraceECI();
+        showGroundTrack3d = sat.isShowGroundTrack3d();
+        use3dModel = sat.isUse3dModel();
+    } // constructor
+
+    // satellite this state was taken from
+    public AbstractSatellite getSatellite()
+    {
+        return satellite;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Color getSatColor()
+    {
+        return satColor;
+    }
+
+    public double[] getTEMEPos()
+    {
+        return (temePos == null) ? null : temePos.clone();
+    }
+
+    public double[] getTEMEVelocity()
+    {
+        return (temeVel == null) ? null : temeVel.clone();
+    }
+
+    public double[] getLLA()
+    {
+        return (lla == null) ? null : lla.clone();
+    }
+
+    public double getLatitude()
+    {
+        return (lla == null) ? 180 : lla[0]; // not possible latitude
+    }
+
+    public double getLongitude()
+    {
+        return (lla == null) ? 270 : lla[1]; // not possible longitude
+    }
+
+    public double getAltitude()
+    {
+        return (lla == null) ? 0 : lla[2];
+    }
+
+    public int getNumGroundTrackLeadPts()
+    {
+        return (latLongLead == null) ? 0 : latLongLead.length;
+    }
+
+    public int getNumGroundTrackLagPts()
+    {
+        return (latLongLag == null) ? 0 : latLongLag.length;
+    }
+
+    public double[] getGroundTrackLlaLeadPt(int index)
+    {
+        return new double[] {latLongLead[index][0], latLongLead[index][1], latLongLead[index][2]};
+    }
+
+    public double[] getGroundTrackLlaLagPt(int index)
+    {
+        return new double[] {latLongLag[index][0], latLongLag[index][1], latLongLag[index][2]};
+    }
+
+    public double[] getGroundTrackXyzLeadPt(int index)
+    {
+        return new double[] {temePosLead[index][0], temePosLead[index][1], temePosLead[index][2]};
+    }
+
+    public double[] getGroundTrackXyzLagPt(int index)
+    {
+        return new double[] {temePosLag[index][0], temePosLag[index][1], temePosLag[index][2]};
+    }
+
+    // leading ground track points [point][lat,long,alt], the same array until the track is recomputed (do not change)
+    public double[][] getLatLongLead()
+    {
+        return latLongLead;
+    }
+
+    // lagging ground track points [point][lat,long,alt] (do not change)
+    public double[][] getLatLongLag()
+    {
+        return latLongLag;
+    }
+
+    // leading TEME ground track points [point][x,y,z], the same array until the track is recomputed (do not change)
+    public double[][] getTemePosLead()
+    {
+        return temePosLead;
+    }
+
+    // lagging TEME ground track points [point][x,y,z] (do not change)
+    public double[][] getTemePosLag()
+    {
+        return temePosLag;
+    }
+
+    public boolean getShowGroundTrack()
+    {
+        return showGroundTrack;
+    }
+
+    public boolean getGroundTrackIni()
+    {
+        return groundTrackIni;
+    }
+
+    public boolean getPlot2D()
+    {
+        return plot2D;
+    }
+
+    public boolean getPlot2DFootPrint()
+    {
+        return plot2DFootPrint;
+    }
+
+    public boolean isFillFootPrint()
+    {
+        return fillFootPrint;
+    }
+
+    public int getNumPtsFootPrint()
+    {
+        return numPtsFootPrint;
+    }
+
+    public boolean isShowName2D()
+    {
+        return showName2D;
+    }
+
+    public boolean isShow3DName()
+    {
+        return show3DName;
+    }
+
+    public boolean isShow3DFootprint()
+    {
+        return show3DFootprint;
+    }
+
+    public boolean isShow3DOrbitTrace()
+    {
+        return show3DOrbitTrace;
+    }
+
+    public boolean isShow3DOrbitTraceECI()
+    {
+        return show3DOrbitTraceECI;
+    }
+
+    public boolean isShowGroundTrack3d()
+    {
+        return showGroundTrack3d;
+    }
+
+    public boolean isUse3dModel()
+    {
+        return use3dModel;
+    }
+
+    // the model itself is not copied (it is only touched on the Swing / rendering thread)
+    public WWModel3D_new getThreeDModel()
+    {
+        return satellite.getThreeDModel();
+    }
+
+} // SatelliteState
@@ -0,0 +1,434 @@
+/*
+ * SimulationClock.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Runs the animation on its own thread instead of a Swing timer. Every tick
+ * (fixed wall clock period) the simulation time moves forward by a fixed step
+ * times the time warp factor and the satellites are propagated on this thread,
+ * then handed to the StatePreparer (if any) on the same thread so the views
+ * only draw. Each result is published as an immutable Frame; the listener is told about the
+ * newest frame on the Swing thread (frames it hasn't gotten to yet are skipped).
+ *
+ * While the clock runs it is the only thread that changes the satellites:
+ * anything else that needs to change them (new ephemeris, options, ground track
+ * resets) hands the change to changeSatellites, which runs it on the clock thread
+ * between ticks (or right away when the clock is stopped).
+ *
+ * Simulation time only depends on the number of ticks, so it is deterministic:
+ * if propagation falls behind, up to MAX_CATCH_UP missed ticks are made up in the
+ * next frame, beyond that the missed ticks are dropped (the simulation slows
+ * down instead of jumping) and counted in the frame.
+ *
+ */
+
+package Satellite;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.swing.SwingUtilities;
+
+public class SimulationClock implements Runnable
+{
+    // most ticks made up in one frame when propagation falls behind
+    private static final int MAX_CATCH_UP = 4;
+
+    private final FleetPropagator propagator;
+    private final Collection<AbstractSatellite> satellites;
+
+    private FrameListener listener;
+    private volatile StatePreparer preparer = null; // works out what the views draw from each state
+
+    // settings (changed from the Swing thread, read by the clock thread)
+    private volatile double stepSeconds = 60.0; // sim seconds per tick (at warp 1)
+    private volatile long tickNanos = 50000000L; // wall time per tick
+    private volatile double timeWarp = 1.0;
+
+    // sim time = baseJulDate + (tick - baseTick) * step * warp (rebased when a setting changes)
+    private double baseJulDate;
+    private long baseTick;
+    private long tick;
+    private double rebaseStepDays; // step * warp used since the last rebase
+    private volatile double jumpJulDate = Double.NaN; // pending setTime
+
+    private volatile Thread thread;
+    private volatile boolean running = false;
+
+    // satellite changes waiting for the next tick (only queued while running)
+    private final ConcurrentLinkedQueue<Runnable> satelliteChanges = new ConcurrentLinkedQueue<Runnable>();
+
+    private volatile Frame frame = null; // newest frame
+    private final Object pendingLock = new Object();
+    private boolean framePending = false; // a frame has been posted to the Swing thread and not consumed yet
+
+    /**
+     * @param propagator propagates the satellites each tick
+     * @param satellites satellites to propagate (a live collection, e.g. a Hashtable's values())
+     */
+    public SimulationClock(FleetPropagator propagator, Collection<AbstractSatellite> satellites)
+    {
+        this.propagator = propagator;
+        this.satellites = satellites;
+    }
+
+    /**
+     * Starts the clock (stops it first if it is already running)
+     * @param julDate simulation start time (UTC Julian Date), the first frame is one step later
+     * @param listener told about new frames on the Swing thread
+     */
+    public synchronized void start(double julDate, FrameListener listener)
+    {
+        stop();
+
+        this.listener = listener;
+        baseJulDate = julDate;
+        baseTick = 0;
+        tick = 0;
+        rebaseStepDays = stepSeconds * timeWarp / 86400.0;
+        jumpJulDate = Double.NaN;
+
+        running = true;
+        thread = new Thread(this, "Simulation Clock");
+        thread.setDaemon(true);
+        thread.start();
+    } // start
+
+    /**
+     * Stops the clock and waits for the current tick to finish
+     * @return the last frame (null if there was none)
+     */
+    public synchronized Frame stop()
+    {
+        Thread t = thread;
+        running = false;
+        thread = null;
+
+        if(t != null && t != Thread.currentThread())
+        {
+            t.interrupt();
+            try
+            {
+                t.join();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized(pendingLock)
+        {
+            framePending = false;
+        }
+
+        applySatelliteChanges(); // queued after the last tick, nothing else is propagating now
+
+        return frame;
+    } // stop
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    public void run()
+    {
+        long nextTickTime = System.nanoTime() + tickNanos;
+
+        while(running)
+        {
+            long now = System.nanoTime();
+            if(now < nextTickTime)
+            {
+                try
+                {
+                    long wait = nextTickTime - now;
+                    Thread.sleep(wait / 1000000L, (int)(wait % 1000000L));
+                }
+                catch(InterruptedException e)
+                {
+                    // stop() -- checked by the loop
+                }
+                continue;
+            }
+
+            // ticks that are due (more than one if the last frame took too long)
+            long period = tickNanos;
+            long due = (now - nextTickTime) / period + 1;
+            int steps = (int)Math.min(due, MAX_CATCH_UP);
+            nextTickTime += due * period;
+
+            double julDate = advance(steps);
+
+            try
+            {
+                applySatelliteChanges();
+                FleetPropagator.FleetState state = propagator.propagate(satellites, julDate);
+                if(!running)
+                {
+                    break; // stopped while propagating, don't publish
+                }
+
+                StatePreparer p = preparer;
+                if(p != null)
+                {
+                    p.prepare(state);
+                }
+
+                frame = new Frame(tick, julDate, state, (int)(due - steps));
+                post();
+            }
+            catch(RuntimeException e)
+            {
+                // skip this tick but keep the clock going, running is still true
+                System.out.println("ERROR in the simulation clock: " + e.toString());
+                e.printStackTrace();
+            }
+        }
+    } // run
+
+    // moves the tick counter and returns the simulation time for it
+    private double advance(int steps)
+    {
+        double stepDays = stepSeconds * timeWarp / 86400.0;
+        double jump = jumpJulDate;
+
+        if(!Double.isNaN(jump))
+        {
+            // setTime: continue from the requested time
+            jumpJulDate = Double.NaN;
+            baseJulDate = jump;
+            baseTick = tick;
+            rebaseStepDays = stepDays;
+        }
+        else if(stepDays != rebaseStepDays)
+        {
+            // step or warp changed: keep the current time, use the new rate from here on
+            baseJulDate = baseJulDate + (tick - baseTick) * rebaseStepDays;
+            baseTick = tick;
+            rebaseStepDays = stepDays;
+        }
+
+        tick += steps;
+        return baseJulDate + (tick - baseTick) * rebaseStepDays;
+    } // advance
+
+    /**
+     * Changes satellites without racing the propagation: while the clock runs the change
+     * is run on the clock thread before the next tick, otherwise it is run right away
+     * @param change reads / changes the satellites (must not wait on the Swing thread)
+     */
+    public void changeSatellites(Runnable change)
+    {
+        synchronized(this) // start and stop are synchronized
+        {
+            if(running)
+            {
+                satelliteChanges.add(change);
+                return;
+            }
+        }
+        runChange(change);
+    } // changeSatellites
+
+    // runs the queued satellite changes in order
+    private void applySatelliteChanges()
+    {
+        Runnable change;
+        while((change = satelliteChanges.poll()) != null)
+        {
+            runChange(change);
+        }
+    }
+
+    private static void runChange(Runnable change)
+    {
+        try
+        {
+            change.run();
+        }
+        catch(Exception e)
+        {
+            System.out.println("ERROR changing satellites: " + e.toString());
+        }
+    }
+
+    // hand the newest frame to the Swing thread, unless it hasn't picked up the last one yet
+    private void post()
+    {
+        synchronized(pendingLock)
+        {
+            if(framePending)
+            {
+                return; // it will get this frame when it gets to the pending one
+            }
+            framePending = true;
+        }
+
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                synchronized(pendingLock)
+                {
+                    if(!framePending)
+                    {
+                        return; // stopped meanwhile
+                    }
+                    framePending = false;
+                }
+
+                Frame f = frame;
+                if(f != null && running)
+                {
+                    listener.frameReady(f);
+                }
+            }
+        });
+    } // post
+
+    public StatePreparer getPreparer()
+    {
+        return preparer;
+    }
+
+    /**
+     * @param preparer told about each propagated state on the clock thread, before the frame is posted (null = none)
+     */
+    public void setPreparer(StatePreparer preparer)
+    {
+        this.preparer = preparer;
+    }
+
+    /**
+     * Jumps to a time, used from the next tick on
+     * @param julDate UTC Julian Date
+     */
+    public void setTime(double julDate)
+    {
+        jumpJulDate = julDate;
+    }
+
+    /**
+     * @return newest frame (null before the first tick)
+     */
+    public Frame getFrame()
+    {
+        return frame;
+    }
+
+    public double getStepSeconds()
+    {
+        return stepSeconds;
+    }
+
+    /**
+     * @param stepSeconds simulation seconds per tick (at a warp factor of 1)
+     */
+    public void setStepSeconds(double stepSeconds)
+    {
+        this.stepSeconds = stepSeconds;
+    }
+
+    public int getTickMillis()
+    {
+        return (int)(tickNanos / 1000000L);
+    }
+
+    /**
+     * @param tickMillis wall clock time between ticks (milliseconds)
+     */
+    public void setTickMillis(int tickMillis)
+    {
+        this.tickNanos = Math.max(1, tickMillis) * 1000000L;
+    }
+
+    public double getTimeWarp()
+    {
+        return timeWarp;
+    }
+
+    /**
+     * @param timeWarp multiplies the step (2 = twice as fast, negative runs backward)
+     */
+    public void setTimeWarp(double timeWarp)
+    {
+        this.timeWarp = timeWarp;
+    }
+
+    // =====================================================================
+
+    /**
+     * Told about new frames, always called on the Swing thread
+     */
+    public interface FrameListener
+    {
+        public void frameReady(Frame frame);
+    }
+
+    /**
+     * Works out what to draw from a propagated state, called on the clock thread
+     */
+    public interface StatePreparer
+    {
+        public void prepare(FleetPropagator.FleetState state);
+    }
+
+    /**
+     * State of the simulation after one tick, not changed once published
+     */
+    public static class Frame
+    {
+        private final long tick;
+        private final double julDate;
+        private final FleetPropagator.FleetState fleetState;
+        private final int droppedTicks;
+
+        Frame(long tick, double julDate, FleetPropagator.FleetState fleetState, int droppedTicks)
+        {
+            this.tick = tick;
+            this.julDate = julDate;
+            this.fleetState = fleetState;
+            this.droppedTicks = droppedTicks;
+        }
+
+        // number of ticks since start
+        public long getTick()
+        {
+            return tick;
+        }
+
+        // simulation time (UTC Julian Date)
+        public double getJulianDate()
+        {
+            return julDate;
+        }
+
+        public FleetPropagator.FleetState getFleetState()
+        {
+            return fleetState;
+        }
+
+        // ticks skipped before this frame because propagation fell behind
+        public int getDroppedTicks()
+        {
+            return droppedTicks;
+        }
+    } // Frame
+
+} // SimulationClock
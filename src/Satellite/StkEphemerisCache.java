@@ -0,0 +1,392 @@
+/*
+ * StkEphemerisCache.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Binary sidecar cache for parsed STK .e ephemeris files. Once a file has been
+ * parsed its header and data are written in a binary form (little-endian):
+ *
+ *   int    magic ('JSTE'), int version
+ *   long   source last modified time, long source length (-1 if unknown)
+ *   string stk version, central body, coordinate system, scenario epoch (int length + UTF-8)
+ *   long   source offset of the last data line
+ *   int    number of rows
+ *   padding to an 8 byte boundary
+ *   double t[rows], x[rows], y[rows], z[rows], dx[rows], dy[rows], dz[rows]  (t in TT Julian Date)
+ *
+ * Later reads memory map the cache (FileChannel.map) so the data never touches
+ * the java heap. The cache is only used if the source's modification time and length
+ * still match what was recorded.
+ *
+ * A file that is mapped can't be deleted or replaced on some systems (Windows),
+ * so a new cache never overwrites the old one: each is written under a new
+ * generation number (name.ebin, name.1.ebin, name.2.ebin, ...) and the newest is
+ * read. Older generations are deleted when they can be (once no longer mapped).
+ *
+ */
+
+package Satellite;
+
+import Utilities.EphemerisTable;
+import Utilities.MappedEphemerisTable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class StkEphemerisCache
+{
+    private static final int MAGIC = 0x4A535445; // "JSTE"
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".ebin";
+    private static final String CHARSET = "UTF-8";
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024; // bytes
+
+    // where caches of non-local (e.g. http) ephemerides are stored
+    private File cacheDirectory;
+
+    public StkEphemerisCache()
+    {
+        this(new File(System.getProperty("java.io.tmpdir"), "JSatTrak_ephemeris"));
+    }
+
+    public StkEphemerisCache(File cacheDirectory)
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Newest cache file of a given ephemeris, a sidecar next to a local (file:) ephemeris
+     * if that directory can be written to, otherwise in the cache directory
+     * @param url ephemeris location
+     * @return cache file (may not exist yet)
+     */
+    public File getCacheFile(URL url)
+    {
+        File first = getFirstCacheFile(url);
+        return getGenerationFile(first, getNewestGeneration(first));
+    }
+
+    // generation 0 cache file, the others are named after it
+    private File getFirstCacheFile(URL url)
+    {
+        if("file".equals(url.getProtocol()))
+        {
+            try
+            {
+                File source = new File(url.toURI());
+                File parent = source.getAbsoluteFile().getParentFile();
+                if(parent != null && parent.canWrite())
+                {
+                    return new File(parent, source.getName() + SUFFIX);
+                }
+            }
+            catch(Exception e)
+            {
+                // not a usable local path, use the cache directory
+            }
+        }
+
+        // name from the last part of the path plus a hash of the full url
+        String path = url.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+
+        return new File(cacheDirectory, name + "_" + Integer.toHexString(url.toString().hashCode()) + SUFFIX);
+    } // getFirstCacheFile
+
+    // name.ebin for generation 0, name.n.ebin after that
+    private static File getGenerationFile(File first, long generation)
+    {
+        if(generation <= 0)
+        {
+            return first;
+        }
+        String path = first.getPath();
+        return new File(path.substring(0, path.length() - SUFFIX.length()) + "." + generation + SUFFIX);
+    }
+
+    // generation of a cache file, -1 if it isn't one of first's generations
+    private static long getGeneration(File first, String fileName)
+    {
+        if(fileName.equals(first.getName()))
+        {
+            return 0;
+        }
+
+        String prefix = first.getName().substring(0, first.getName().length() - SUFFIX.length()) + ".";
+        if(!fileName.startsWith(prefix) || !fileName.endsWith(SUFFIX) || fileName.length() <= prefix.length() + SUFFIX.length())
+        {
+            return -1;
+        }
+        String number = fileName.substring(prefix.length(), fileName.length() - SUFFIX.length());
+        for(int i = 0; i < number.length(); i++)
+        {
+            if(!Character.isDigit(number.charAt(i)))
+            {
+                return -1;
+            }
+        }
+        try
+        {
+            return Long.parseLong(number);
+        }
+        catch(NumberFormatException e)
+        {
+            return -1;
+        }
+    } // getGeneration
+
+    // highest generation there is a file for (0 if none)
+    private static long getNewestGeneration(File first)
+    {
+        long newest = 0;
+        String[] names = (first.getParentFile() == null) ? null : first.getParentFile().list();
+        if(names != null)
+        {
+            for(String name : names)
+            {
+                newest = Math.max(newest, getGeneration(first, name));
+            }
+        }
+        return newest;
+    }
+
+    // deletes the generations older than keep, those still mapped (Windows) are left for the next store
+    private static void deleteOlderGenerations(File first, long keep)
+    {
+        String[] names = (first.getParentFile() == null) ? null : first.getParentFile().list();
+        if(names == null)
+        {
+            return;
+        }
+        for(String name : names)
+        {
+            long generation = getGeneration(first, name);
+            if(generation >= 0 && generation < keep)
+            {
+                new File(first.getParentFile(), name).delete();
+            }
+        }
+    }
+
+    /**
+     * Memory maps a cached ephemeris if there is one that matches the source
+     * @param url ephemeris location
+     * @param sourceLastModified source modification time (ms)
+     * @param sourceLength source length in bytes (-1 if unknown)
+     * @param reader header info (stk version, central body, ...) is set on this reader
+     * @return mapped ephemeris or null if there is no valid cache
+     */
+    public EphemerisTable load(URL url, long sourceLastModified, long sourceLength, StkEphemerisReader reader)
+    {
+        File file = null;
+        try
+        {
+            // in the try too: a cache that can't even be listed just means parsing the text
+            file = getCacheFile(url);
+            if(!file.isFile())
+            {
+                return null;
+            }
+
+            MappedByteBuffer buffer;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try
+            {
+                // mapping stays valid after the channel is closed
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            finally
+            {
+                raf.close();
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            {
+                return null; // not a cache (or an older format)
+            }
+            if(buffer.getLong() != sourceLastModified || buffer.getLong() != sourceLength)
+            {
+                return null; // stale
+            }
+
+            String stkVer = getString(buffer);
+            String centralBody = getString(buffer);
+            String coordSys = getString(buffer);
+            String scenarioEpoch = getString(buffer);
+            long lastDataLineOffset = buffer.getLong();
+
+            int rows = buffer.getInt();
+            int dataStart = align8(buffer.position());
+
+            // make sure the file wasn't truncated
+            if((long)dataStart + 8L * EphemerisTable.NUM_COLUMNS * rows != buffer.capacity())
+            {
+                return null;
+            }
+
+            buffer.position(dataStart);
+            ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN); // slice() resets the order
+
+            reader.setHeaderInfo(stkVer, centralBody, coordSys, scenarioEpoch);
+            reader.setLastDataLineOffset(lastDataLineOffset);
+
+            return new MappedEphemerisTable(data.asDoubleBuffer(), rows);
+        }
+        catch(Exception e)
+        {
+            System.out.println("Ephemeris cache could not be read (" + ((file == null) ? url.toString() : file.toString()) + "): " + e.toString());
+            return null;
+        }
+    } // load
+
+    /**
+     * Writes a new cache of an ephemeris (the next generation, the old one may still be mapped)
+     * @param url ephemeris location
+     * @param sourceLastModified source modification time (ms)
+     * @param sourceLength source length in bytes (-1 if unknown)
+     * @param reader reader that parsed the ephemeris (for the header info)
+     * @param ephemeris parsed ephemeris
+     * @throws IOException if the cache could not be written
+     */
+    public void store(URL url, long sourceLastModified, long sourceLength, StkEphemerisReader reader, EphemerisTable ephemeris) throws IOException
+    {
+        int rows = ephemeris.size();
+        if(8L * EphemerisTable.NUM_COLUMNS * rows > Integer.MAX_VALUE)
+        {
+            return; // too big to map in one piece, don't cache
+        }
+
+        File first = getFirstCacheFile(url);
+        File parent = first.getParentFile();
+        if(parent != null && !parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("Could not create ephemeris cache directory: " + parent);
+        }
+        long generation = getNewestGeneration(first);
+        if(getGenerationFile(first, generation).exists())
+        {
+            generation++; // never write over a file that may be mapped
+        }
+        File file = getGenerationFile(first, generation);
+
+        // write to a temp file first so a partly written cache is never seen
+        File temp = new File(file.getPath() + ".tmp");
+
+        RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+        try
+        {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(sourceLastModified);
+            out.putLong(sourceLength);
+            putString(out, reader.getStkVer());
+            putString(out, reader.getCentralBody());
+            putString(out, reader.getCoordSys());
+            putString(out, reader.getScenarioEpoch());
+            out.putLong(reader.getLastDataLineOffset());
+            out.putInt(rows);
+            while(out.position() % 8 != 0)
+            {
+                out.put((byte)0);
+            }
+
+            // columns
+            for(int c = 0; c < EphemerisTable.NUM_COLUMNS; c++)
+            {
+                for(int r = 0; r < rows; r++)
+                {
+                    if(out.remaining() < 8)
+                    {
+                        flush(channel, out);
+                    }
+                    out.putDouble(ephemeris.get(r, c));
+                }
+            }
+            flush(channel, out);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        if(!temp.renameTo(file))
+        {
+            temp.delete();
+            throw new IOException("Could not rename ephemeris cache: " + temp);
+        }
+
+        deleteOlderGenerations(first, generation);
+
+    } // store
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException
+    {
+        out.flip();
+        while(out.hasRemaining())
+        {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static void putString(ByteBuffer out, String s) throws IOException
+    {
+        byte[] bytes = s.getBytes(CHARSET);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) throws IOException
+    {
+        int length = in.getInt();
+        if(length < 0 || length > in.remaining())
+        {
+            throw new IOException("Corrupt ephemeris cache header");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static int align8(int position)
+    {
+        return (position + 7) & ~7;
+    }
+
+    public File getCacheDirectory()
+    {
+        return cacheDirectory;
+    }
+
+    public void setCacheDirectory(File cacheDirectory)
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+} // StkEphemerisCache
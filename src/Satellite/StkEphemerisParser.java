@@ -0,0 +1,403 @@
+/*
+ * StkEphemerisParser.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Streaming byte level reader for STK .e files. Lines are found in a reusable
+ * byte window over the input stream, data lines are split on any white space and
+ * numbers are parsed in place and written straight into an EphemerisTable
+ * (no String, String[] or double[] per line).
+ *
+ */
+
+package Satellite;
+
+import Utilities.AstroConst;
+import Utilities.EphemerisTable;
+import Utilities.Time;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StkEphemerisParser
+{
+    private static final int BUFFER_SIZE = 256 * 1024; // bytes
+
+    private static final int VALUES_PER_LINE = 7; // t,x,y,z,dx,dy,dz
+
+    private static final int MAX_DIGITS = 18; // significant digits that always fit in a long
+
+    // exactly representable powers of ten
+    private static final double[] POW10 =
+    {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos = 0;   // start of the next unread line
+    private int limit = 0; // end of the valid data in the buffer
+    private boolean eof = false;
+    private long bufferOffset = 0; // stream offset of buffer[0]
+
+    private long lastDataLineOffset = -1; // stream offset of the last data line read
+
+    private final double[] row = new double[VALUES_PER_LINE]; // reused for each data line
+    private boolean parseError = false; // set by parseDouble
+
+    private int skippedLines = 0; // data lines that could not be used
+
+    public StkEphemerisParser(InputStream in)
+    {
+        this(in, 0);
+    }
+
+    /**
+     * @param in stream to read
+     * @param streamOffset offset of the start of the stream within the file (if only the end of a file is read)
+     */
+    public StkEphemerisParser(InputStream in, long streamOffset)
+    {
+        this.in = in;
+        this.bufferOffset = streamOffset;
+    }
+
+    /**
+     * Reads the next line as a String (used for the header where speed doesn't matter)
+     * @return line without the line terminator, null at the end of the stream
+     * @throws IOException error reading the stream
+     */
+    public String readLine() throws IOException
+    {
+        int end = fillLine();
+        if(end < 0)
+        {
+            return null;
+        }
+
+        int start = pos;
+        pos = Math.min(end + 1, limit);
+
+        int len = end - start;
+        if(len > 0 && buffer[start + len - 1] == '\r')
+        {
+            len--;
+        }
+
+        return new String(buffer, start, len, "ISO-8859-1");
+    } // readLine
+
+    /**
+     * Reads data lines until "END" (or the end of the stream) converting STK
+     * seconds from the scenario epoch into TT Julian Dates
+     * @param jdStart scenario epoch (UTC Julian Date)
+     * @param ephemeris table to add rows to
+     * @return number of rows added
+     * @throws IOException error reading the stream
+     */
+    public int readEphemeris(double jdStart, EphemerisTable ephemeris) throws IOException
+    {
+        int rowsRead = 0;
+        int end;
+
+        while((end = fillLine()) >= 0)
+        {
+            int i = pos;
+            long lineOffset = bufferOffset + pos;
+            pos = Math.min(end + 1, limit);
+
+            // skip leading white space
+            while(i < end && isWhitespace(buffer[i]))
+            {
+                i++;
+            }
+
+            if(i == end)
+            {
+                continue; // no data on this line, ignore
+            }
+
+            if(end - i >= 3 && buffer[i] == 'E' && buffer[i+1] == 'N' && buffer[i+2] == 'D')
+            {
+                break; // no more data
+            }
+
+            // split on white space and parse each value
+            int n = 0;
+            boolean ok = true;
+            while(i < end)
+            {
+                int tokenStart = i;
+                while(i < end && !isWhitespace(buffer[i]))
+                {
+                    i++;
+                }
+
+                if(n == VALUES_PER_LINE)
+                {
+                    ok = false; // too many values
+                    break;
+                }
+
+                row[n++] = parseDouble(buffer, tokenStart, i);
+                if(parseError)
+                {
+                    ok = false;
+                    break;
+                }
+
+                while(i < end && isWhitespace(buffer[i]))
+                {
+                    i++;
+                }
+            } // for each value
+
+            if(!ok || n != VALUES_PER_LINE)
+            {
+                skippedLines++;
+                continue;
+            }
+
+            // UTC time (as STK file has UTC time in the file), converted to TT
+            double jd = jdStart + row[0]/86400.0;
+            jd = jd + Time.deltaT(jd - AstroConst.JDminusMJD);
+
+            ephemeris.add(jd, row[1], row[2], row[3], row[4], row[5], row[6]);
+            rowsRead++;
+            lastDataLineOffset = lineOffset;
+
+        } // while lines
+
+        return rowsRead;
+
+    } // readEphemeris
+
+    /**
+     * Makes sure the whole line starting at pos is in the buffer (refilling / growing it as needed)
+     * @return index of the end of the line ('\n' or the end of the data), -1 if there are no more lines
+     */
+    private int fillLine() throws IOException
+    {
+        int scan = pos;
+
+        while(true)
+        {
+            for(; scan < limit; scan++)
+            {
+                if(buffer[scan] == '\n')
+                {
+                    return scan;
+                }
+            }
+
+            if(eof)
+            {
+                return (pos < limit) ? limit : -1; // last line may not end with a newline
+            }
+
+            // move the partial line to the front of the buffer
+            if(pos > 0)
+            {
+                System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+                bufferOffset += pos;
+                scan -= pos;
+                limit -= pos;
+                pos = 0;
+            }
+
+            // very long line, make room
+            if(limit == buffer.length)
+            {
+                byte[] bigger = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, bigger, 0, limit);
+                buffer = bigger;
+            }
+
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if(read < 0)
+            {
+                eof = true;
+            }
+            else
+            {
+                limit += read;
+            }
+        }
+    } // fillLine
+
+    /**
+     * Parses a decimal number ([sign]digits[.digits][(e|E)[sign]digits]) from bytes.
+     * The result is exact (same as Double.parseDouble) when the significant digits fit in 2^53
+     * and the decimal exponent is within +/-22, longer mantissas (e.g. 17 digit STK output)
+     * are within 1 ulp. Anything else is handed to Double.parseDouble.
+     * Sets parseError if the token is not a number.
+     */
+    private double parseDouble(byte[] b, int start, int end)
+    {
+        parseError = false;
+
+        int i = start;
+        boolean negative = false;
+        if(i < end && (b[i] == '-' || b[i] == '+'))
+        {
+            negative = (b[i] == '-');
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;      // significant digits kept in mantissa
+        int exp10 = 0;       // decimal exponent correction
+        boolean anyDigits = false;
+
+        // integer part
+        for(; i < end && b[i] >= '0' && b[i] <= '9'; i++)
+        {
+            anyDigits = true;
+            if(digits < MAX_DIGITS)
+            {
+                mantissa = mantissa * 10 + (b[i] - '0');
+                if(mantissa != 0)
+                {
+                    digits++;
+                }
+            }
+            else
+            {
+                exp10++; // digit dropped
+            }
+        }
+
+        // fraction part
+        if(i < end && b[i] == '.')
+        {
+            i++;
+            for(; i < end && b[i] >= '0' && b[i] <= '9'; i++)
+            {
+                anyDigits = true;
+                if(digits < MAX_DIGITS)
+                {
+                    mantissa = mantissa * 10 + (b[i] - '0');
+                    if(mantissa != 0)
+                    {
+                        digits++;
+                    }
+                    exp10--;
+                }
+            }
+        }
+
+        if(!anyDigits)
+        {
+            return parseSlow(b, start, end);
+        }
+
+        // exponent
+        if(i < end && (b[i] == 'e' || b[i] == 'E'))
+        {
+            i++;
+            boolean expNegative = false;
+            if(i < end && (b[i] == '-' || b[i] == '+'))
+            {
+                expNegative = (b[i] == '-');
+                i++;
+            }
+
+            int exp = 0;
+            boolean expDigits = false;
+            for(; i < end && b[i] >= '0' && b[i] <= '9'; i++)
+            {
+                expDigits = true;
+                if(exp < 10000)
+                {
+                    exp = exp * 10 + (b[i] - '0');
+                }
+            }
+
+            if(!expDigits)
+            {
+                return parseSlow(b, start, end);
+            }
+
+            exp10 += expNegative ? -exp : exp;
+        }
+
+        if(i != end)
+        {
+            return parseSlow(b, start, end); // trailing characters (e.g. "NaN", "1.0d0")
+        }
+
+        double value;
+        if(mantissa == 0)
+        {
+            value = 0.0;
+        }
+        else if(exp10 >= 0 && exp10 < POW10.length)
+        {
+            value = (double)mantissa * POW10[exp10];
+        }
+        else if(exp10 < 0 && -exp10 < POW10.length)
+        {
+            value = (double)mantissa / POW10[-exp10];
+        }
+        else
+        {
+            return parseSlow(b, start, end); // very large / small numbers
+        }
+
+        return negative ? -value : value;
+
+    } // parseDouble
+
+    // rare cases, let java handle it
+    private double parseSlow(byte[] b, int start, int end)
+    {
+        try
+        {
+            return Double.parseDouble(new String(b, start, end - start, "ISO-8859-1"));
+        }
+        catch(Exception e)
+        {
+            parseError = true;
+            return Double.NaN;
+        }
+    } // parseSlow
+
+    private static boolean isWhitespace(byte c)
+    {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B;
+    }
+
+    /**
+     * @return stream offset of the start of the last data line added (-1 if none), re-reading
+     * from here gives the last row again followed by any rows appended to the file since
+     */
+    public long getLastDataLineOffset()
+    {
+        return lastDataLineOffset;
+    }
+
+    /**
+     * @return number of data lines that were skipped because they didn't have 7 numbers
+     */
+    public int getSkippedLines()
+    {
+        return skippedLines;
+    }
+
+} // StkEphemerisParser
@@ -28,11 +28,10 @@ import java.io.*;
 import java.text.SimpleDateFormat;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
-import java.util.Vector;
-import Utilities.StateVector;
-import Utilities.AstroConst;
+import Utilities.EphemerisTable;
 import Utilities.Time;
 import java.net.URL;
+import java.net.URLConnection;
 
 /**
  *
@@ -47,6 +46,15 @@ public class StkEphemerisReader
     private String scenarioEpoch = "";
     private String filename = "";
 
+    // source info of the last read ephemeris (for cache checks and incremental refreshes)
+    private long sourceLastModified = 0; // 0 = unknown
+    private long sourceLength = -1; // -1 = unknown
+    private String sourceETag = null; // http only
+    private long lastDataLineOffset = -1; // byte offset of the last data line
+
+    // binary cache of parsed ephemerides (null = don't cache)
+    private StkEphemerisCache binaryCache = new StkEphemerisCache();
+
     /**
      *
      */
@@ -62,7 +70,7 @@ public class StkEphemerisReader
         StkEphemerisReader r = new StkEphemerisReader();
         try
         {
-            Vector<StateVector> e = r.readStkEphemeris(file);
+            EphemerisTable e = r.readStkEphemeris(file);
              System.out.println( "Ephemeris Points Read: " + e.size() );
         }
         catch(Exception e)
@@ -77,10 +85,10 @@ public class StkEphemerisReader
     /**
      * Reads in an STK .e formated ephemeris file NOTE that time is returned in Terrestrial time not UTC!! As ephemeris data is typically stored in TT
      * @param filename
-     * @return ephemeris vector Julian Data, x,y,z, dx, dy, dz (meters, m/s) - can be null if file couldn't be read at all
+     * @return ephemeris table Julian Data, x,y,z, dx, dy, dz (meters, m/s) - can be null if file couldn't be read at all
      * @throws Exception error in reading file
      */
-    public Vector<StateVector> readStkEphemeris(String filename) throws Exception
+    public EphemerisTable readStkEphemeris(String filename) throws Exception
     {
         // clean up data
         stkVer = "";
@@ -88,8 +96,12 @@ public class StkEphemerisReader
         coordSys = "";
         scenarioEpoch = "";
         this.filename = filename;
+        sourceLastModified = 0;
+        sourceLength = -1;
+        sourceETag = null;
+        lastDataLineOffset = -1;
 
-       Vector<StateVector> ephemeris  = new Vector<StateVector>(50,50); // ini size, increment
+       EphemerisTable ephemeris = new EphemerisTable(); // grows as needed
 
         try
         {
@@ -98,23 +110,46 @@ public class StkEphemerisReader
             
             //Code for reading ephemeris from a URL (6/14/2011)
             URL url = new URL(filename);
-            InputStream is = url.openStream();
+            URLConnection connection = url.openConnection();
+
+            // used to check if a binary cache is still valid (both known for file: urls, http if the server sends them)
+            sourceLastModified = connection.getLastModified(); // 0 = unknown
+            sourceLength = connection.getContentLength(); // -1 = unknown
+            sourceETag = connection.getHeaderField("ETag");
+
+            if(binaryCache != null && sourceLastModified > 0)
+            {
+                EphemerisTable cached = null;
+                try
+                {
+                    cached = binaryCache.load(url, sourceLastModified, sourceLength, this);
+                }
+                catch(Exception ce)
+                {
+                    // cache is only an optimization, parse the text instead
+                    System.out.println("Ephemeris cache not read: " + ce.toString());
+                }
+                if(cached != null)
+                {
+                    try
+                    {
+                        connection.getInputStream().close(); // don't need the text
+                    }
+                    catch(IOException ignore)
+                    {
+                    }
+                    return cached;
+                }
+            }
+
+            InputStream is = connection.getInputStream();
             //ZipInputStream in = new ZipInputStream(is);
             //ZipEntry entry = in.getNextEntry();
-            BufferedReader input = new BufferedReader(new InputStreamReader(is));
+            StkEphemerisParser input = new StkEphemerisParser(is);
             
-            //BufferedReader input = new BufferedReader(new FileReader(filename));
             try
             {
                 String line = null; //not declared within while loop
-                
-        /*
-                 * readLine is a bit quirky :
-                 * it returns the content of a line MINUS the newline.
-                 * it returns null only for the END of the stream.
-                 * it returns an empty String if two newlines appear in a row.
-                 */
-                
 
                 boolean ephemerisBegin = false; // flag for when the ephemeris is about to begin
 
@@ -143,6 +178,18 @@ public class StkEphemerisReader
                     {
                         scenarioEpoch = line.substring(13).trim();
                     }
+                    else if(line.startsWith("NumberOfEphemerisPoints"))
+                    {
+                        try
+                        {
+                            // size the table once up front
+                            ephemeris.ensureCapacity(Integer.parseInt(line.substring(23).trim()));
+                        }
+                        catch(NumberFormatException nfe)
+                        {
+                            // just a hint
+                        }
+                    }
                     
                 } // while reading file
 
@@ -150,46 +197,36 @@ public class StkEphemerisReader
                 // format: 1 Jul 2007 12:00:00.00    (implied UTC)
                 double jdStart =  StkEphemerisReader.convertScenarioTimeString2JulianDate(scenarioEpoch + " UTC");
 
-                // read ephemeris
-                while((line = input.readLine()) != null && ephemerisBegin)
-                
+                // read ephemeris (time converted to TT)
+                if(ephemerisBegin)
                 {
-                    if(line.length() < 1)
-                    {
-                        // no data on this line, ignore
-                    }
-                    else if(line.startsWith("END"))
-                    {
-                        ephemerisBegin = false; // no more data
-                    }
-                    else //so far seems ok lets parse the line and see if it is valid
-                    {
-                        String[] data = line.split(" ");
-                        if(data.length  == 7) // data line has enough data points
-                        {
-                            // convert data to doubles and save to ephem vector
-                            double[] state = new double[7];
-
-                            // UTC time (as STK file has UTC time in the file
-                            state[0] = jdStart + Double.parseDouble(data[0])/(86400.0); // JD // can throw exception
-                            // convert to TT time
-                            state[0] = state[0] + Time.deltaT(state[0] - AstroConst.JDminusMJD);
-
-                            for(int i=1;i<7;i++)
-                            {
-                                state[i] = Double.parseDouble(data[i]); // can throw exception
-                            }
-
-                            ephemeris.add(new StateVector(state));
+                    input.readEphemeris(jdStart, ephemeris);
+                }
 
-                        } // enough points
-                    }
+                lastDataLineOffset = input.getLastDataLineOffset();
 
-                } // while reading file
+                if(input.getSkippedLines() > 0)
+                {
+                    System.out.println("WARNING: " + input.getSkippedLines() + " ephemeris lines without 7 values skipped in: " + filename);
+                }
 
             }finally
             {
-                input.close(); // always close file even if there is an exception
+                is.close(); // always close file even if there is an exception
+            }
+
+            // save binary version for next time
+            if(binaryCache != null && sourceLastModified > 0 && ephemeris.size() > 0)
+            {
+                try
+                {
+                    binaryCache.store(url, sourceLastModified, sourceLength, this, ephemeris);
+                }
+                catch(Exception ce)
+                {
+                    // cache is only an optimization (e.g. applets may not be allowed to write files)
+                    System.out.println("Ephemeris cache not written: " + ce.toString());
+                }
             }
         }
         catch(IOException ex)
@@ -197,10 +234,27 @@ public class StkEphemerisReader
             throw ex;
         }
 
+        ephemeris.trimToSize(); // done adding rows
+
         return ephemeris;
 
     } //readStkEphemeris
 
+    // offset of the last data line (used when it is loaded from the binary cache)
+    void setLastDataLineOffset(long lastDataLineOffset)
+    {
+        this.lastDataLineOffset = lastDataLineOffset;
+    }
+
+    // header info of the last read ephemeris (used when it is loaded from the binary cache)
+    void setHeaderInfo(String stkVer, String centralBody, String coordSys, String scenarioEpoch)
+    {
+        this.stkVer = stkVer;
+        this.centralBody = centralBody;
+        this.coordSys = coordSys;
+        this.scenarioEpoch = scenarioEpoch;
+    }
+
     /**
      * Prints info about last read ephemeris
      */
@@ -294,4 +348,52 @@ public class StkEphemerisReader
         return filename;
     }
 
+    /**
+     * @return modification time of the last read ephemeris source (ms, 0 if unknown)
+     */
+    public long getSourceLastModified()
+    {
+        return sourceLastModified;
+    }
+
+    /**
+     * @return length of the last read ephemeris source (bytes, -1 if unknown)
+     */
+    public long getSourceLength()
+    {
+        return sourceLength;
+    }
+
+    /**
+     * @return HTTP entity tag of the last read ephemeris source (null if none)
+     */
+    public String getSourceETag()
+    {
+        return sourceETag;
+    }
+
+    /**
+     * @return byte offset in the source of the start of the last data line (-1 if unknown)
+     */
+    public long getLastDataLineOffset()
+    {
+        return lastDataLineOffset;
+    }
+
+    /**
+     * @return the binary ephemeris cache (null if caching is off)
+     */
+    public StkEphemerisCache getBinaryCache()
+    {
+        return binaryCache;
+    }
+
+    /**
+     * @param binaryCache binary ephemeris cache to use, null turns caching off
+     */
+    public void setBinaryCache(StkEphemerisCache binaryCache)
+    {
+        this.binaryCache = binaryCache;
+    }
+
 } // StkEphemerisReader
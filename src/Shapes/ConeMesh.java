@@ -0,0 +1,109 @@
+/*
+ * ConeMesh.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Unit cone (tip at the origin, base of radius 1 at z = 1) with its base disk,
+ * as two triangle fans in one direct buffer: the side fan (tip then the base
+ * ring) followed by the base fan (base center then the ring). Same shape as
+ * Cone draws with gluCylinder and gluDisk; scale by ground range and height to
+ * get a footprint cone. Built once per number of slices and shared, no OpenGL
+ * calls.
+ *
+ */
+
+package Shapes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConeMesh
+{
+    private static final Map<Integer,ConeMesh> meshes = new HashMap<Integer,ConeMesh>();
+
+    private final int slices;
+    private final FloatBuffer vertices; // x,y,z
+
+    /**
+     * @param slices number of sides (3 or more)
+     * @return shared mesh
+     */
+    public static ConeMesh get(int slices)
+    {
+        Integer key = Integer.valueOf(Math.max(3, slices));
+        synchronized(meshes)
+        {
+            ConeMesh mesh = meshes.get(key);
+            if(mesh == null)
+            {
+                mesh = new ConeMesh(key.intValue());
+                meshes.put(key, mesh);
+            }
+            return mesh;
+        }
+    } // get
+
+    private ConeMesh(int slices)
+    {
+        this.slices = slices;
+        int fan = getFanSize();
+        vertices = ByteBuffer.allocateDirect(4 * 3 * 2 * fan).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        // side: tip, then the base ring (closed)
+        vertices.put(0f).put(0f).put(0f);
+        for(int i = 0; i <= slices; i++)
+        {
+            double a = 2.0 * Math.PI * (i % slices) / slices;
+            vertices.put((float)Math.cos(a)).put((float)Math.sin(a)).put(1f);
+        }
+
+        // base: center, then the ring the other way around (faces away from the tip)
+        vertices.put(0f).put(0f).put(1f);
+        for(int i = slices; i >= 0; i--)
+        {
+            double a = 2.0 * Math.PI * (i % slices) / slices;
+            vertices.put((float)Math.cos(a)).put((float)Math.sin(a)).put(1f);
+        }
+        vertices.flip();
+    } // constructor
+
+    public int getSlices()
+    {
+        return slices;
+    }
+
+    /**
+     * @return number of vertices in each fan (side fan starts at 0, base fan at getFanSize())
+     */
+    public int getFanSize()
+    {
+        return slices + 2;
+    }
+
+    /**
+     * @return x,y,z of the side fan followed by the base fan, do not change
+     */
+    public FloatBuffer getVertices()
+    {
+        return vertices;
+    }
+
+} // ConeMesh
@@ -0,0 +1,289 @@
+/*
+ * SphereMarkerBatch.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Draws many sphere markers from one shared SphereMesh. Markers are collected
+ * with add (center, radius, color) and all drawn by draw: the mesh is bound once
+ * (buffer objects if the card has them, vertex arrays otherwise) and each marker
+ * is only a translate/scale and one glDrawElements, instead of gluSphere
+ * tessellating the sphere again for every marker. The fixed x/y/z axes
+ * SphereObject can draw (red, green, blue, 3 radii long) are drawn the same way.
+ *
+ * Must only be used on the rendering thread.
+ *
+ */
+
+package Shapes;
+
+import java.awt.Color;
+import java.nio.IntBuffer;
+import javax.media.opengl.GL;
+import javax.media.opengl.GLContext;
+
+public class SphereMarkerBatch
+{
+    private static final int FIELDS = 7; // x, y, z, radius, red, green, blue
+
+    private int numDivisions = 8;
+    private boolean filled = true;
+    private boolean plotFixedAxis = false;
+
+    // markers added since the last draw
+    private double[] markers = new double[FIELDS * 64];
+    private int numMarkers = 0;
+
+    // buffer objects of the mesh (0 = not uploaded), they belong to one GL context
+    private GLContext context = null;
+    private boolean useVbo = false;
+    private SphereMesh uploadedMesh = null;
+    private int vertexVbo = 0;
+    private int triangleVbo = 0;
+    private int lineVbo = 0;
+
+    /**
+     * Adds a marker to draw
+     * @param x center
+     * @param y
+     * @param z
+     * @param radius radius (meters)
+     * @param color color
+     */
+    public void add(double x, double y, double z, double radius, Color color)
+    {
+        if(FIELDS * (numMarkers + 1) > markers.length)
+        {
+            double[] bigger = new double[2 * markers.length];
+            System.arraycopy(markers, 0, bigger, 0, FIELDS * numMarkers);
+            markers = bigger;
+        }
+
+        int k = FIELDS * numMarkers;
+        markers[k] = x;
+        markers[k+1] = y;
+        markers[k+2] = z;
+        markers[k+3] = radius;
+        markers[k+4] = color.getRed() / 255.0;
+        markers[k+5] = color.getGreen() / 255.0;
+        markers[k+6] = color.getBlue() / 255.0;
+        numMarkers++;
+    } // add
+
+    /**
+     * Draws every marker added since the last draw (and forgets them)
+     * @param gl current GL
+     */
+    public void draw(GL gl)
+    {
+        if(numMarkers == 0)
+        {
+            return;
+        }
+
+        SphereMesh mesh = SphereMesh.get(numDivisions);
+        checkContext(gl, mesh);
+
+        IntBuffer indices = filled ? mesh.getTriangles() : mesh.getLines();
+        int mode = filled ? GL.GL_TRIANGLES : GL.GL_LINES;
+        int numIndices = indices.limit();
+
+        gl.glPushAttrib(GL.GL_TEXTURE_BIT | GL.GL_ENABLE_BIT | GL.GL_CURRENT_BIT | GL.GL_LINE_BIT);
+        gl.glDisable(GL.GL_TEXTURE_2D);
+        gl.glEnable(GL.GL_NORMALIZE); // normals get scaled with the markers
+
+        gl.glPushClientAttrib(GL.GL_CLIENT_VERTEX_ARRAY_BIT);
+        gl.glEnableClientState(GL.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL.GL_NORMAL_ARRAY); // unit sphere, normals = vertices
+
+        if(useVbo)
+        {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexVbo);
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, 0L);
+            gl.glNormalPointer(GL.GL_FLOAT, 0, 0L);
+            gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, filled ? triangleVbo : lineVbo);
+        }
+        else
+        {
+            gl.glVertexPointer(3, GL.GL_FLOAT, 0, mesh.getVertices());
+            gl.glNormalPointer(GL.GL_FLOAT, 0, mesh.getVertices());
+        }
+
+        gl.glMatrixMode(GL.GL_MODELVIEW);
+        for(int i = 0; i < numMarkers; i++)
+        {
+            int k = FIELDS * i;
+            gl.glColor3d(markers[k+4], markers[k+5], markers[k+6]);
+
+            gl.glPushMatrix();
+            gl.glTranslated(markers[k], markers[k+1], markers[k+2]);
+            gl.glScaled(markers[k+3], markers[k+3], markers[k+3]);
+            if(useVbo)
+            {
+                gl.glDrawElements(mode, numIndices, GL.GL_UNSIGNED_INT, 0L);
+            }
+            else
+            {
+                gl.glDrawElements(mode, numIndices, GL.GL_UNSIGNED_INT, indices);
+            }
+            if(plotFixedAxis)
+            {
+                drawAxes(gl); // scaled with the marker
+            }
+            gl.glPopMatrix();
+        }
+
+        if(useVbo)
+        {
+            gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+            gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+        }
+        gl.glPopClientAttrib();
+        gl.glPopAttrib();
+
+        numMarkers = 0;
+    } // draw
+
+    // x, y and z axes of a unit marker, 3 radii long
+    private static void drawAxes(GL gl)
+    {
+        gl.glLineWidth(3.0f);
+        gl.glBegin(GL.GL_LINES);
+            gl.glColor3d(1, 0, 0);
+            gl.glVertex3d(3, 0, 0);
+            gl.glVertex3d(0, 0, 0);
+            gl.glColor3d(0, 1, 0);
+            gl.glVertex3d(0, 3, 0);
+            gl.glVertex3d(0, 0, 0);
+            gl.glColor3d(0, 0, 1);
+            gl.glVertex3d(0, 0, 3);
+            gl.glVertex3d(0, 0, 0);
+        gl.glEnd();
+    } // drawAxes
+
+    /**
+     * @return markers added since the last draw
+     */
+    public int getNumMarkers()
+    {
+        return numMarkers;
+    }
+
+    /**
+     * Gets a marker added since the last draw
+     * @param i marker index (0 to getNumMarkers()-1)
+     * @param out x, y, z, radius, red, green, blue (colors 0-1)
+     * @return out
+     */
+    public double[] getMarker(int i, double[] out)
+    {
+        if(i < 0 || i >= numMarkers)
+        {
+            throw new IndexOutOfBoundsException("Marker " + i + " of " + numMarkers);
+        }
+        System.arraycopy(markers, FIELDS * i, out, 0, FIELDS);
+        return out;
+    }
+
+    /**
+     * Forgets the markers added since the last draw
+     */
+    public void clear()
+    {
+        numMarkers = 0;
+    }
+
+    // (re)uploads the mesh if the context or mesh changed
+    private void checkContext(GL gl, SphereMesh mesh)
+    {
+        GLContext current = GLContext.getCurrent();
+        if(current != context)
+        {
+            context = current; // old buffers went with the old context
+            useVbo = gl.isFunctionAvailable("glGenBuffers") && gl.isFunctionAvailable("glBindBuffer")
+                    && gl.isFunctionAvailable("glBufferData") && gl.isFunctionAvailable("glDeleteBuffers");
+            uploadedMesh = null;
+            vertexVbo = triangleVbo = lineVbo = 0;
+        }
+
+        if(!useVbo || uploadedMesh == mesh)
+        {
+            return;
+        }
+
+        if(vertexVbo == 0)
+        {
+            int[] ids = new int[3];
+            gl.glGenBuffers(3, ids, 0);
+            vertexVbo = ids[0];
+            triangleVbo = ids[1];
+            lineVbo = ids[2];
+        }
+
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, vertexVbo);
+        gl.glBufferData(GL.GL_ARRAY_BUFFER, 4 * mesh.getVertices().limit(), mesh.getVertices(), GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, triangleVbo);
+        gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, 4 * mesh.getTriangles().limit(), mesh.getTriangles(), GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, lineVbo);
+        gl.glBufferData(GL.GL_ELEMENT_ARRAY_BUFFER, 4 * mesh.getLines().limit(), mesh.getLines(), GL.GL_STATIC_DRAW);
+        gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        uploadedMesh = mesh;
+    } // checkContext
+
+    public int getNumDivisions()
+    {
+        return numDivisions;
+    }
+
+    /**
+     * @param numDivisions slices and stacks of the sphere mesh
+     */
+    public void setNumDivisions(int numDivisions)
+    {
+        this.numDivisions = numDivisions;
+    }
+
+    public boolean isFilled()
+    {
+        return filled;
+    }
+
+    /**
+     * @param filled filled spheres, otherwise wireframe
+     */
+    public void setFilled(boolean filled)
+    {
+        this.filled = filled;
+    }
+
+    public boolean isPlotFixedAxis()
+    {
+        return plotFixedAxis;
+    }
+
+    /**
+     * @param plotFixedAxis also draw the x, y and z axes of each marker (as SphereObject does)
+     */
+    public void setPlotFixedAxis(boolean plotFixedAxis)
+    {
+        this.plotFixedAxis = plotFixedAxis;
+    }
+
+} // SphereMarkerBatch
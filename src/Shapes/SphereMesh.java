@@ -0,0 +1,174 @@
+/*
+ * SphereMesh.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Unit sphere tessellated the same way as gluSphere (numDivisions slices around
+ * the z axis and numDivisions stacks from pole to pole), built once per number
+ * of divisions and shared. Holds vertices (which are also the normals), triangle
+ * indices for filled spheres and line indices for wireframe ones, in direct
+ * buffers ready for vertex arrays / buffer objects. No OpenGL calls, so it can
+ * be built without a display.
+ *
+ */
+
+package Shapes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SphereMesh
+{
+    private static final Map<Integer,SphereMesh> meshes = new HashMap<Integer,SphereMesh>();
+
+    private final int numDivisions;
+    private final FloatBuffer vertices; // x,y,z of each vertex on the unit sphere
+    private final IntBuffer triangles;  // 3 indices per triangle
+    private final IntBuffer lines;      // 2 indices per line segment
+
+    /**
+     * @param numDivisions number of slices and stacks (3 or more)
+     * @return shared mesh
+     */
+    public static SphereMesh get(int numDivisions)
+    {
+        Integer key = Integer.valueOf(Math.max(3, numDivisions));
+        synchronized(meshes)
+        {
+            SphereMesh mesh = meshes.get(key);
+            if(mesh == null)
+            {
+                mesh = new SphereMesh(key.intValue());
+                meshes.put(key, mesh);
+            }
+            return mesh;
+        }
+    } // get
+
+    private SphereMesh(int numDivisions)
+    {
+        this.numDivisions = numDivisions;
+        int slices = numDivisions;
+        int stacks = numDivisions;
+
+        // (stacks+1) rings of (slices+1) vertices, the seam is repeated
+        int cols = slices + 1;
+        vertices = newFloatBuffer(3 * (stacks + 1) * cols);
+        for(int i = 0; i <= stacks; i++)
+        {
+            double rho = Math.PI * i / stacks; // from the +z pole
+            double sinRho = Math.sin(rho);
+            double z = Math.cos(rho);
+            for(int j = 0; j <= slices; j++)
+            {
+                double theta = (j == slices) ? 0.0 : 2.0 * Math.PI * j / slices;
+                vertices.put((float)(-Math.sin(theta) * sinRho));
+                vertices.put((float)(Math.cos(theta) * sinRho));
+                vertices.put((float)z);
+            }
+        }
+        vertices.flip();
+
+        // two triangles per quad (one at the poles)
+        triangles = newIntBuffer(3 * 2 * slices * (stacks - 1));
+        for(int i = 0; i < stacks; i++)
+        {
+            for(int j = 0; j < slices; j++)
+            {
+                int a = i * cols + j;     // this ring
+                int b = a + cols;         // next ring
+                if(i != 0)
+                {
+                    triangles.put(a).put(b).put(a + 1);
+                }
+                if(i != stacks - 1)
+                {
+                    triangles.put(a + 1).put(b).put(b + 1);
+                }
+            }
+        }
+        triangles.flip();
+
+        // quad edges: along each ring (not at the poles) and along each slice
+        lines = newIntBuffer(2 * slices * (stacks - 1) + 2 * slices * stacks);
+        for(int i = 1; i < stacks; i++)
+        {
+            for(int j = 0; j < slices; j++)
+            {
+                lines.put(i * cols + j).put(i * cols + j + 1);
+            }
+        }
+        for(int j = 0; j < slices; j++)
+        {
+            for(int i = 0; i < stacks; i++)
+            {
+                lines.put(i * cols + j).put((i + 1) * cols + j);
+            }
+        }
+        lines.flip();
+    } // constructor
+
+    private static FloatBuffer newFloatBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static IntBuffer newIntBuffer(int size)
+    {
+        return ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    public int getNumDivisions()
+    {
+        return numDivisions;
+    }
+
+    public int getNumVertices()
+    {
+        return vertices.limit() / 3;
+    }
+
+    /**
+     * @return x,y,z of each vertex (unit length, so also the normals), do not change
+     */
+    public FloatBuffer getVertices()
+    {
+        return vertices;
+    }
+
+    /**
+     * @return triangle indices (counter clockwise seen from outside), do not change
+     */
+    public IntBuffer getTriangles()
+    {
+        return triangles;
+    }
+
+    /**
+     * @return wireframe line segment indices, do not change
+     */
+    public IntBuffer getLines()
+    {
+        return lines;
+    }
+
+} // SphereMesh
@@ -513,6 +513,16 @@ public final class SphereObject implements Extent, Renderable
         this.sphereFilled = sphereFilled;
     }
 
+    public boolean isPlotFixedAxis()
+    {
+        return plotFixedAxis;
+    }
+
+    public void setPlotFixedAxis(boolean plotFixedAxis)
+    {
+        this.plotFixedAxis = plotFixedAxis;
+    }
+
     public Color getColor()
     {
         return sphereColor;
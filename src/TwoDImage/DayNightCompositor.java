@@ -0,0 +1,438 @@
+/*
+ * DayNightCompositor.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Blends the scaled day image and the scaled earth lights image of the 2D map
+ * into one image, pixel by pixel, from the angle between each pixel and the
+ * center of darkness (Sun.getCurrentDarkLLA). Pixels more than half the twilight
+ * band into the day side get the day image, the same into the night side get the
+ * lights image, in between a smooth ramp. Both rasters are kept as int[] and the
+ * result is written into the same image each time (no images are allocated per
+ * update).
+ *
+ * The image is split into tiles. Each update the bounds of the sun angle over
+ * every tile classify it as all day, all night or terminator; only terminator
+ * tiles and tiles that changed side since the last update are written, so
+ * between animation steps (the terminator moves a few pixels) most tiles are
+ * left alone. The tiles to write are shared out to the applet's WorkerPool.
+ *
+ */
+
+package TwoDImage;
+
+import Utilities.WorkerPool;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+public class DayNightCompositor
+{
+    /**
+     * tile width and height (pixels)
+     */
+    public static final int TILE_SIZE = 64;
+
+    // a tile is already TILE_SIZE x TILE_SIZE pixels, a few of them keep a thread busy
+    private static final int MIN_TILES_PER_CHUNK = 4;
+
+    // tile states
+    private static final byte UNKNOWN = 0; // contents not written for the current rasters
+    private static final byte DAY = 1;
+    private static final byte NIGHT = 2;
+    private static final byte TERMINATOR = 3;
+
+    private int width = 0, height = 0;
+
+    private int[] day = null;   // day image RGB
+    private int[] night = null; // lights image RGB (its alpha already applied over the day image)
+
+    // output image and its pixels (written in place)
+    private BufferedImage combinedImage = null;
+    private int[] combined = null;
+
+    // per column cos(longitude - dark longitude), per row sin/cos latitude
+    private double[] cosDeltaLon = new double[0];
+    private double[] sinLat = new double[0];
+    private double[] cosLat = new double[0];
+
+    // tiles, row major
+    private int numTileCols = 0, numTileRows = 0;
+    private byte[] tileState = new byte[0];     // state the tile was last written with
+    private double[] tileMinCos = new double[0]; // range of cosDeltaLon over each tile column
+    private double[] tileMaxCos = new double[0];
+    private double[] tileMinDark = new double[0]; // range of the darkness over each tile (scratch)
+    private double[] tileMaxDark = new double[0];
+    private int[] tilesToWrite = new int[0];
+    private int numTilesWritten = 0; // last update
+
+    // darkness band of the current update: darkness = a + b*cosDeltaLon, a/b per row
+    private double sinDarkLat, cosDarkLat;
+    private double halfBand, invBand;
+
+    private double twilightDegrees = 18.0; // width of the day to night ramp, centered on the terminator
+
+    private WorkerPool workerPool = null; // null = write on the calling thread
+
+    /**
+     * Sets the images to blend, both already scaled to the map size (same width
+     * and height). Called when the map is resized, zoomed or recentered.
+     * @param dayImage scaled day image
+     * @param lightsImage scaled earth lights image (alpha, if any, is used)
+     */
+    public void setRasters(BufferedImage dayImage, BufferedImage lightsImage)
+    {
+        int w = dayImage.getWidth();
+        int h = dayImage.getHeight();
+        if(lightsImage.getWidth() != w || lightsImage.getHeight() != h)
+        {
+            System.out.println("ERROR day and night images are not the same size");
+            return;
+        }
+
+        if(combinedImage == null || w != width || h != height)
+        {
+            width = w;
+            height = h;
+            day = new int[w*h];
+            night = new int[w*h];
+            combinedImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            combined = ((DataBufferInt)combinedImage.getRaster().getDataBuffer()).getData();
+            cosDeltaLon = new double[w];
+            sinLat = new double[h];
+            cosLat = new double[h];
+
+            numTileCols = (w + TILE_SIZE - 1) / TILE_SIZE;
+            numTileRows = (h + TILE_SIZE - 1) / TILE_SIZE;
+            int numTiles = numTileCols * numTileRows;
+            tileState = new byte[numTiles];
+            tileMinCos = new double[numTileCols];
+            tileMaxCos = new double[numTileCols];
+            tileMinDark = new double[numTileCols];
+            tileMaxDark = new double[numTileCols];
+            tilesToWrite = new int[numTiles];
+        }
+
+        dayImage.getRGB(0, 0, w, h, day, 0, w);
+        lightsImage.getRGB(0, 0, w, h, night, 0, w);
+
+        // lights drawn over the day image once here, so the blend only needs RGB
+        for(int i = 0; i < night.length; i++)
+        {
+            int n = night[i];
+            int a = n >>> 24;
+            if(a != 255)
+            {
+                night[i] = blend(day[i], n, (a * 256 + 127) / 255);
+            }
+        }
+
+        invalidateTiles(); // new pixels everywhere
+    } // setRasters
+
+    /**
+     * @return true once setRasters has been called
+     */
+    public boolean hasRasters()
+    {
+        return combinedImage != null;
+    }
+
+    /**
+     * Recomputes the combined image for a new position of the sun
+     * @param darkLLA lat/long of the center of darkness [rad] (Sun.getCurrentDarkLLA)
+     * @param centerLat latitude at the center of the map [deg]
+     * @param centerLong longitude at the center of the map [deg]
+     * @param zoomFactor map zoom (1 = whole earth)
+     * @return the combined image (same object every call until the size changes)
+     */
+    public BufferedImage compose(double[] darkLLA, double centerLat, double centerLong, double zoomFactor)
+    {
+        if(combinedImage == null)
+        {
+            return null;
+        }
+
+        final int w = width;
+        final int h = height;
+
+        // pixel centers, radians
+        double dLon = Math.toRadians(360.0 / zoomFactor) / w;
+        double dLat = Math.toRadians(180.0 / zoomFactor) / h;
+        double lon0 = Math.toRadians(centerLong) - dLon * (w / 2.0 - 0.5) - darkLLA[1];
+        double lat0 = Math.toRadians(centerLat) + dLat * (h / 2.0 - 0.5);
+
+        // incremental trig: cos/sin(a + k*d) from the previous step (angle addition)
+        double cosD = Math.cos(dLon), sinD = Math.sin(dLon);
+        double c = Math.cos(lon0), s = Math.sin(lon0);
+        for(int x = 0; x < w; x++)
+        {
+            cosDeltaLon[x] = c;
+            double cNext = c*cosD - s*sinD;
+            s = s*cosD + c*sinD;
+            c = cNext;
+        }
+
+        cosD = Math.cos(dLat);
+        sinD = Math.sin(dLat);
+        c = Math.cos(lat0);
+        s = Math.sin(lat0);
+        for(int y = 0; y < h; y++)
+        {
+            sinLat[y] = s;
+            cosLat[y] = c;
+            double cNext = c*cosD + s*sinD; // latitude decreases down the image
+            s = s*cosD - c*sinD;
+            c = cNext;
+        }
+
+        // cosine of the angle to the center of darkness = sin(-sun elevation), ramp between +/- half the band
+        sinDarkLat = Math.sin(darkLLA[0]);
+        cosDarkLat = Math.cos(darkLLA[0]);
+        halfBand = Math.sin(Math.toRadians(twilightDegrees / 2.0));
+        invBand = 1.0 / (2.0 * halfBand);
+
+        int numToWrite = classifyTiles();
+        writeTiles(numToWrite);
+        numTilesWritten = numToWrite;
+
+        return combinedImage;
+    } // compose
+
+    // finds the state of every tile, lists the ones that need writing, returns how many
+    private int classifyTiles()
+    {
+        // range of cos(delta longitude) over the columns of each tile column
+        for(int tc = 0; tc < numTileCols; tc++)
+        {
+            double min = 1.0, max = -1.0;
+            int x1 = Math.min(width, (tc + 1) * TILE_SIZE);
+            for(int x = tc * TILE_SIZE; x < x1; x++)
+            {
+                min = Math.min(min, cosDeltaLon[x]);
+                max = Math.max(max, cosDeltaLon[x]);
+            }
+            tileMinCos[tc] = min;
+            tileMaxCos[tc] = max;
+        }
+
+        int numToWrite = 0;
+        for(int tr = 0; tr < numTileRows; tr++)
+        {
+            // darkness is linear in cos(delta longitude) along a row (b >= 0), so its
+            // range over a tile is found from the ends of the cos range on each row
+            for(int tc = 0; tc < numTileCols; tc++)
+            {
+                tileMinDark[tc] = Double.MAX_VALUE;
+                tileMaxDark[tc] = -Double.MAX_VALUE;
+            }
+            int y1 = Math.min(height, (tr + 1) * TILE_SIZE);
+            for(int y = tr * TILE_SIZE; y < y1; y++)
+            {
+                double a = sinLat[y] * sinDarkLat;
+                double b = cosLat[y] * cosDarkLat;
+                for(int tc = 0; tc < numTileCols; tc++)
+                {
+                    tileMinDark[tc] = Math.min(tileMinDark[tc], a + b*tileMinCos[tc]);
+                    tileMaxDark[tc] = Math.max(tileMaxDark[tc], a + b*tileMaxCos[tc]);
+                }
+            }
+
+            for(int tc = 0; tc < numTileCols; tc++)
+            {
+                int t = tr * numTileCols + tc;
+                byte state;
+                if(tileMaxDark[tc] <= -halfBand)
+                {
+                    state = DAY;
+                }
+                else if(tileMinDark[tc] >= halfBand)
+                {
+                    state = NIGHT;
+                }
+                else
+                {
+                    state = TERMINATOR;
+                }
+
+                // all day / all night tiles already written that way stay as they are
+                if(state == TERMINATOR || state != tileState[t])
+                {
+                    tilesToWrite[numToWrite++] = t;
+                }
+                tileState[t] = state;
+            }
+        } // for each tile row
+
+        return numToWrite;
+    } // classifyTiles
+
+    // writes the listed tiles, returns when all are done
+    private void writeTiles(int numToWrite)
+    {
+        if(workerPool == null)
+        {
+            writeTiles(0, numToWrite);
+            return;
+        }
+
+        workerPool.runChunks(numToWrite, MIN_TILES_PER_CHUNK, new WorkerPool.ChunkTask()
+        {
+            public void run(int start, int end)
+            {
+                writeTiles(start, end);
+            }
+        });
+    } // writeTiles
+
+    // writes tilesToWrite[start..end-1] (tiles don't overlap, so threads can share the image)
+    private void writeTiles(int start, int end)
+    {
+        for(int k = start; k < end; k++)
+        {
+            int t = tilesToWrite[k];
+            int x0 = (t % numTileCols) * TILE_SIZE;
+            int y0 = (t / numTileCols) * TILE_SIZE;
+            int x1 = Math.min(width, x0 + TILE_SIZE);
+            int y1 = Math.min(height, y0 + TILE_SIZE);
+
+            switch(tileState[t])
+            {
+                case DAY:
+                    copyTile(day, x0, y0, x1, y1);
+                    break;
+                case NIGHT:
+                    copyTile(night, x0, y0, x1, y1);
+                    break;
+                default:
+                    blendTile(x0, y0, x1, y1);
+                    break;
+            }
+        }
+    } // writeTiles
+
+    private void copyTile(int[] source, int x0, int y0, int x1, int y1)
+    {
+        for(int y = y0; y < y1; y++)
+        {
+            System.arraycopy(source, y * width + x0, combined, y * width + x0, x1 - x0);
+        }
+    }
+
+    private void blendTile(int x0, int y0, int x1, int y1)
+    {
+        for(int y = y0; y < y1; y++)
+        {
+            double a = sinLat[y] * sinDarkLat;
+            double b = cosLat[y] * cosDarkLat; // >= 0
+
+            // band edges as cos(delta longitude) for this row, so most pixels only need a compare
+            double dayBelow = (-halfBand - a) / b;
+            double nightAbove = (halfBand - a) / b;
+            int row = y * width;
+            for(int x = x0; x < x1; x++)
+            {
+                int i = row + x;
+                double cosLon = cosDeltaLon[x];
+                if(cosLon <= dayBelow)
+                {
+                    combined[i] = day[i];
+                }
+                else if(cosLon >= nightAbove)
+                {
+                    combined[i] = night[i];
+                }
+                else
+                {
+                    double t = (a + b*cosLon + halfBand) * invBand;
+                    combined[i] = blend(day[i], night[i], (int)(t*t*(3.0 - 2.0*t) * 256.0)); // smoothstep
+                }
+            }
+        }
+    } // blendTile
+
+    // p + (q - p)*weight/256 per color channel, weight 0-256
+    private static int blend(int p, int q, int weight)
+    {
+        int r0 = (p >> 16) & 0xff, g0 = (p >> 8) & 0xff, b0 = p & 0xff;
+        int r = r0 + ((((q >> 16) & 0xff) - r0) * weight >> 8);
+        int g = g0 + ((((q >> 8) & 0xff) - g0) * weight >> 8);
+        int b = b0 + (((q & 0xff) - b0) * weight >> 8);
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    } // blend
+
+    // every tile is written on the next update
+    private void invalidateTiles()
+    {
+        for(int t = 0; t < tileState.length; t++)
+        {
+            tileState[t] = UNKNOWN;
+        }
+    }
+
+    /**
+     * @return the combined image (null before setRasters)
+     */
+    public BufferedImage getCombinedImage()
+    {
+        return combinedImage;
+    }
+
+    /**
+     * @return number of tiles written by the last update (terminator tiles and tiles that changed side)
+     */
+    public int getNumTilesWritten()
+    {
+        return numTilesWritten;
+    }
+
+    /**
+     * @return number of tiles in the image
+     */
+    public int getNumTiles()
+    {
+        return tileState.length;
+    }
+
+    public double getTwilightDegrees()
+    {
+        return twilightDegrees;
+    }
+
+    /**
+     * @param twilightDegrees width of the day/night ramp (degrees of arc, centered on the terminator)
+     */
+    public void setTwilightDegrees(double twilightDegrees)
+    {
+        this.twilightDegrees = Math.max(twilightDegrees, 0.01);
+        invalidateTiles(); // all day / all night tiles may have changed
+    }
+
+    public WorkerPool getWorkerPool()
+    {
+        return workerPool;
+    }
+
+    /**
+     * @param workerPool threads the tiles are shared out to (null = calling thread only)
+     */
+    public void setWorkerPool(WorkerPool workerPool)
+    {
+        this.workerPool = workerPool;
+    }
+
+} // DayNightCompositor
@@ -0,0 +1,569 @@
+/*
+ * FootprintEngine.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Footprints (visible area circles) of the satellites and the sun on the 2D map.
+ * The circle of points is a template per number of points (unit circle cos/sin),
+ * rotated to the sub point with one matrix and turned into lat/long in a single
+ * loop into double arrays. Each footprint is kept between paints: the outline
+ * is only recomputed when the sub point (or the cone size) moved by a pixel or
+ * more, and only re-projected when the map view changes. Footprints of many
+ * satellites are computed in parallel on the applet's WorkerPool.
+ *
+ * Outline and fill shapes follow the old drawing code: the outline is split where
+ * it crosses the date line; the fill is one polygon, one polygon closed over the
+ * pole (one crossing) or two polygons, one each side of the date line (two
+ * crossings).
+ *
+ */
+
+package TwoDImage;
+
+import Satellite.SatelliteState;
+import Utilities.AstroConst;
+import Utilities.FrameProfiler;
+import Utilities.WorkerPool;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class FootprintEngine
+{
+    // each footprint is a whole circle of points, a few of them are worth a thread
+    private static final int MIN_CHUNK_SIZE = 16;
+
+    private static final FrameProfiler.Stage FOOTPRINT_STAGE = FrameProfiler.getStage("2D footprints update");
+
+    // WGS84 constants as in GeoFunctions.ecef2lla_Fast
+    private static final double WGS_A = 6378137;
+    private static final double WGS_E = 8.1819190842622e-2;
+    private static final double WGS_B = Math.sqrt(WGS_A*WGS_A*(1 - WGS_E*WGS_E));
+    private static final double WGS_EP2 = (WGS_A*WGS_A - WGS_B*WGS_B)/(WGS_B*WGS_B);
+
+    // unit circle templates [cos, sin][point] by number of points
+    private static final Map<Integer,double[][]> templates = new HashMap<Integer,double[][]>();
+
+    private final Map<Object,Footprint> footprints = new HashMap<Object,Footprint>();
+
+    private MapProjection projection = null; // of the current paint
+    private int paint = 0; // footprints not drawn in a paint are dropped
+
+    private long numComputed = 0; // outlines computed (statistics)
+
+    private WorkerPool workerPool = null; // null = compute on the calling thread
+
+    /**
+     * Starts a paint of the map
+     * @param projection projection of the map for this paint
+     */
+    public void startPaint(MapProjection projection)
+    {
+        this.projection = projection;
+        paint++;
+    }
+
+    /**
+     * Brings the footprints of the satellites drawing one up to date (in parallel if there are many)
+     * @param sats satellite states, those without plot2D and plot2DFootPrint are skipped
+     */
+    public void updateFootprints(List<SatelliteState> sats)
+    {
+        long t0 = FrameProfiler.start();
+
+        // footprints that moved (looked up / created on this thread)
+        final List<Footprint> toUpdate = new ArrayList<Footprint>();
+        final List<SatelliteState> toUpdateSats = new ArrayList<SatelliteState>();
+        for(SatelliteState sat : sats)
+        {
+            if(sat.getPlot2D() && sat.getPlot2DFootPrint())
+            {
+                Footprint fp = getOrCreate(sat.getSatellite(), sat.getNumPtsFootPrint());
+                if(fp.isOutOfDate(sat.getLatitude(), sat.getLongitude(), sat.getAltitude(), projection))
+                {
+                    toUpdate.add(fp);
+                    toUpdateSats.add(sat);
+                }
+            }
+        }
+
+        final int n = toUpdate.size();
+        if(workerPool == null)
+        {
+            update(toUpdate, toUpdateSats, 0, n);
+        }
+        else
+        {
+            workerPool.runChunks(n, MIN_CHUNK_SIZE, new WorkerPool.ChunkTask()
+            {
+                public void run(int start, int end)
+                {
+                    update(toUpdate, toUpdateSats, start, end);
+                }
+            });
+        }
+        numComputed += n;
+
+        FOOTPRINT_STAGE.stop(t0);
+    } // updateFootprints
+
+    // updates footprints start..end-1 of the lists (any thread, each footprint on one thread)
+    private void update(List<Footprint> fps, List<SatelliteState> sats, int start, int end)
+    {
+        MapPolylines.Builder builder = new MapPolylines.Builder();
+        for(int i = start; i < end; i++)
+        {
+            SatelliteState sat = sats.get(i);
+            fps.get(i).update(sat.getLatitude(), sat.getLongitude(), sat.getAltitude(), projection, builder);
+        }
+    } // update
+
+    /**
+     * Footprint of a satellite or the sun for this paint, computed if it moved
+     * by a pixel or more since it was last computed (ellipsoidal Earth correction)
+     * @param key what the footprint belongs to (satellite, sun, ...)
+     * @param lat sub point latitude [rad]
+     * @param lon sub point longitude [rad]
+     * @param alt altitude [m]
+     * @param numPts number of points around the footprint
+     * @return the footprint (kept by the engine, do not change)
+     */
+    public Footprint getFootprint(Object key, double lat, double lon, double alt, int numPts)
+    {
+        Footprint fp = getOrCreate(key, numPts);
+        if(fp.isOutOfDate(lat, lon, alt, projection))
+        {
+            fp.update(lat, lon, alt, projection, new MapPolylines.Builder());
+            numComputed++;
+        }
+        return fp;
+    } // getFootprint
+
+    private Footprint getOrCreate(Object key, int numPts)
+    {
+        Footprint fp = footprints.get(key);
+        if(fp == null || fp.numPts != numPts)
+        {
+            fp = new Footprint(numPts, true);
+            footprints.put(key, fp);
+        }
+        fp.paint = paint;
+        return fp;
+    } // getOrCreate
+
+    /**
+     * Ends the paint, drops the footprints that weren't drawn
+     */
+    public void finishPaint()
+    {
+        for(Iterator<Footprint> it = footprints.values().iterator(); it.hasNext();)
+        {
+            if(it.next().paint != paint)
+            {
+                it.remove();
+            }
+        }
+    } // finishPaint
+
+    /**
+     * Computes a footprint once, not kept
+     * @param lat sub point latitude [rad]
+     * @param lon sub point longitude [rad]
+     * @param alt altitude [m]
+     * @param numPts number of points around the footprint
+     * @param ellipsoid true to correct for the Earth's flattening, false for a spherical Earth
+     * @param projection map projection for the pixel shapes
+     * @return the footprint
+     */
+    public static Footprint computeFootprint(double lat, double lon, double alt, int numPts, boolean ellipsoid, MapProjection projection)
+    {
+        Footprint fp = new Footprint(numPts, ellipsoid);
+        fp.update(lat, lon, alt, projection, new MapPolylines.Builder());
+        return fp;
+    }
+
+    // unit circle starting left of center going counter clockwise, last point = first point
+    private static double[][] getTemplate(int numPts)
+    {
+        synchronized(templates)
+        {
+            double[][] t = templates.get(numPts);
+            if(t == null)
+            {
+                t = new double[2][numPts];
+                double dt = 2.0*Math.PI/(numPts-1.0);
+                for(int j = 0; j < numPts; j++)
+                {
+                    double theta = j*dt + Math.PI/2.0; // offset so it starts at the side
+                    t[0][j] = Math.cos(theta);
+                    t[1][j] = Math.sin(theta);
+                }
+                templates.put(numPts, t);
+            }
+            return t;
+        }
+    } // getTemplate
+
+    public long getNumComputed()
+    {
+        return numComputed;
+    }
+
+    public WorkerPool getWorkerPool()
+    {
+        return workerPool;
+    }
+
+    /**
+     * @param workerPool threads footprints are computed on (null = calling thread only)
+     */
+    public void setWorkerPool(WorkerPool workerPool)
+    {
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * Footprint outline (lat/long) and its shapes on the map
+     */
+    public static class Footprint
+    {
+        private final int numPts;
+        private final boolean ellipsoid;
+
+        // sub point the outline is for (NaN = not computed)
+        private double lat = Double.NaN, lon = Double.NaN, alt = Double.NaN;
+        private double halfAngle; // cone half angle from the Earth's center [rad]
+        private double northPoleSide; // sub point latitude used to pick the pole when filling
+
+        // outline points [rad]
+        private final double[] ptLat;
+        private final double[] ptLon;
+
+        // pixel shapes and the projection they are for
+        private MapProjection projectedWith = null;
+        private MapPolylines outline = MapPolylines.EMPTY;
+        private Polygon[] fillPolygons = new Polygon[0];
+
+        private Color fillColor = null; // last fill color with its alpha
+        private Color fillColorBase = null;
+        private float fillAlpha = -1f;
+
+        int paint; // last paint it was used in
+
+        Footprint(int numPts, boolean ellipsoid)
+        {
+            this.numPts = Math.max(numPts, 0);
+            this.ellipsoid = ellipsoid;
+            ptLat = new double[this.numPts];
+            ptLon = new double[this.numPts];
+        }
+
+        // true if the footprint moved a pixel or more from what was computed, or the view changed
+        boolean isOutOfDate(double newLat, double newLon, double newAlt, MapProjection proj)
+        {
+            return Double.isNaN(lat) || projectedWith != proj || movedAPixel(newLat, newLon, newAlt, proj);
+        }
+
+        // outline recomputed only if it moved, shapes re-projected if it moved or the view changed
+        void update(double newLat, double newLon, double newAlt, MapProjection proj, MapPolylines.Builder builder)
+        {
+            if(Double.isNaN(lat) || movedAPixel(newLat, newLon, newAlt, proj))
+            {
+                computeOutline(newLat, newLon, newAlt);
+            }
+            project(proj, builder);
+        } // update
+
+        // sub point or cone size moved by a pixel or more on the map
+        private boolean movedAPixel(double newLat, double newLon, double newAlt, MapProjection proj)
+        {
+            double dLon = Math.abs(newLon - lon);
+            if(dLon > Math.PI)
+            {
+                dLon = 2.0*Math.PI - dLon; // across the date line
+            }
+            double pxPerRadX = proj.getPixelsPerDegreeX() * 180.0/Math.PI;
+            double pxPerRadY = proj.getPixelsPerDegreeY() * 180.0/Math.PI;
+            return Math.abs(newLat - lat) * pxPerRadY >= 1.0
+                    || dLon * pxPerRadX >= 1.0
+                    || Math.abs(sphericalHalfAngle(newAlt) - sphericalHalfAngle(alt)) * Math.max(pxPerRadX, pxPerRadY) >= 1.0;
+        } // movedAPixel
+
+        private static double sphericalHalfAngle(double alt)
+        {
+            return Math.acos(AstroConst.R_Earth/(AstroConst.R_Earth+alt));
+        }
+
+        // lat/long of the points around the footprint
+        private void computeOutline(double newLat, double newLon, double newAlt)
+        {
+            lat = newLat;
+            lon = newLon;
+            alt = newAlt;
+
+            double centerLat = newLat;
+            if(ellipsoid)
+            {
+                // correction to convert latitude from geographic to geo-centric because foot print is created and rotated about center so it uses geocentric rotations
+                // for conversion see: http://en.wikipedia.org/wiki/Latitude
+                double ratio = AstroConst.R_Earth_minor/AstroConst.R_Earth_major;
+                centerLat = Math.atan( ratio*ratio * Math.tan(newLat) );
+
+                // cone half angle from the center of the earth, using the radius of the earth at the latitude
+                double earthRadiusAtLat = AstroConst.R_Earth_major - (AstroConst.R_Earth_major-AstroConst.R_Earth_minor)*Math.sin(centerLat);
+                halfAngle = Math.acos(earthRadiusAtLat/(earthRadiusAtLat+newAlt));
+            }
+            else
+            {
+                halfAngle = sphericalHalfAngle(newAlt); // spherical Earth
+            }
+            northPoleSide = centerLat;
+
+            double beta = Math.PI/2.0 - centerLat; // latitude center (pitch)
+            double gamma = -newLon + Math.PI; // longitude (yaw)
+            double cb = Math.cos(beta), sb = Math.sin(beta);
+            double cg = Math.cos(gamma), sg = Math.sin(gamma);
+
+            // rotation matrix (rotates the circle around the north pole to the sub point)
+            double m00 = cb*cg, m01 = sg, m02 = -sb*cg;
+            double m10 = -cb*sg, m11 = cg, m12 = sb*sg;
+            double m20 = sb, m22 = cb;
+
+            double[][] template = getTemplate(numPts);
+            double[] cosT = template[0];
+            double[] sinT = template[1];
+            double rSin = AstroConst.R_Earth*Math.sin(halfAngle);
+            double z0 = AstroConst.R_Earth*Math.cos(halfAngle);
+
+            for(int j = 0; j < numPts; j++)
+            {
+                double x0 = rSin*cosT[j];
+                double y0 = rSin*sinT[j];
+
+                double x = m00*x0 + m01*y0 + m02*z0;
+                double y = m10*x0 + m11*y0 + m12*z0;
+                double z = m20*x0 + m22*z0;
+
+                // geodetic lat/long (as GeoFunctions.ecef2lla_Fast, sin/cos of th without trig)
+                double p = Math.sqrt(x*x + y*y);
+                double az = WGS_A*z, bp = WGS_B*p;
+                double r = Math.sqrt(az*az + bp*bp);
+                double sinTh = az/r, cosTh = bp/r;
+                ptLon[j] = Math.atan2(y, x);
+                ptLat[j] = Math.atan2(z + WGS_EP2*WGS_B*sinTh*sinTh*sinTh, p - WGS_E*WGS_E*WGS_A*cosTh*cosTh*cosTh);
+            }
+        } // computeOutline
+
+        // outline polylines and fill polygons in pixels
+        private void project(MapProjection proj, MapPolylines.Builder builder)
+        {
+            projectedWith = proj;
+            if(numPts < 2)
+            {
+                outline = MapPolylines.EMPTY;
+                fillPolygons = new Polygon[0];
+                return;
+            }
+
+            int[] px = new int[numPts];
+            int[] py = new int[numPts];
+            for(int j = 0; j < numPts; j++)
+            {
+                px[j] = proj.getX(ptLon[j]*180.0/Math.PI);
+                py[j] = proj.getY(ptLat[j]*180.0/Math.PI);
+            }
+            int xPos = proj.getX(180.0);
+            int xNeg = proj.getX(-180.0);
+
+            // date line crossings: index after the crossing and y at the edge
+            int disconnectCount = 0;
+            int disconnectIndex1 = 0, disconnectIndex2 = 0;
+            int disconnect1y = 0, disconnect2y = 0;
+
+            builder.add(px[0], py[0]);
+            for(int j = 1; j < numPts; j++)
+            {
+                if(Math.abs(ptLon[j] - ptLon[j-1]) < MapProjection.DATE_LINE_JUMP)
+                {
+                    builder.add(px[j], py[j]);
+                }
+                else
+                {
+                    // finish at one edge, start again at the other
+                    int yMid = proj.getY(MapProjection.dateLineLatitude(ptLat[j-1], ptLon[j-1], ptLat[j], ptLon[j])*180.0/Math.PI);
+                    boolean fromPositive = ptLon[j-1] > 0; // old point on the positive side
+                    builder.add(fromPositive ? xPos : xNeg, yMid);
+                    builder.breakLine();
+                    builder.add(fromPositive ? xNeg : xPos, yMid);
+                    builder.add(px[j], py[j]);
+
+                    disconnectCount++;
+                    if(disconnectCount == 1)
+                    {
+                        disconnectIndex1 = j;
+                        disconnect1y = yMid;
+                    }
+                    else if(disconnectCount == 2)
+                    {
+                        disconnectIndex2 = j;
+                        disconnect2y = yMid;
+                    }
+                }
+            }
+
+            // line from the last point back to the first (the last piece isn't drawn if that jumps)
+            if(Math.abs(ptLon[numPts-1] - ptLon[0]) < MapProjection.DATE_LINE_JUMP)
+            {
+                builder.add(px[0], py[0]);
+            }
+            else
+            {
+                builder.discardLine();
+            }
+            outline = builder.build();
+
+            // --- fill shapes ---
+            if(disconnectCount == 0)
+            {
+                // no disconnects fill like normal
+                fillPolygons = new Polygon[] {new Polygon(px, py, numPts)};
+            }
+            else if(disconnectCount == 1)
+            {
+                // a pole is inside, add the map edges up/down to it (counter clockwise)
+                Polygon full = new Polygon();
+                addPoints(full, px, py, 0, disconnectIndex1);
+                if(northPoleSide > 0)
+                {
+                    int yPole = proj.getY(90.0);
+                    full.addPoint(xPos, disconnect1y);
+                    full.addPoint(xPos, yPole);
+                    full.addPoint(xNeg, yPole);
+                    full.addPoint(xNeg, disconnect1y);
+                }
+                else
+                {
+                    int yPole = proj.getY(-90.0);
+                    full.addPoint(xNeg, disconnect1y);
+                    full.addPoint(xNeg, yPole);
+                    full.addPoint(xPos, yPole);
+                    full.addPoint(xPos, disconnect1y);
+                }
+                addPoints(full, px, py, disconnectIndex1, numPts);
+                fillPolygons = new Polygon[] {full};
+            }
+            else if(disconnectCount == 2)
+            {
+                // spans the date line, one polygon each side
+                Polygon left = new Polygon();
+                Polygon right = new Polygon();
+                if(disconnect1y >= disconnect2y) // crossing 1 is lower (y is backwards in java)
+                {
+                    left.addPoint(xNeg, disconnect1y);
+                    addPoints(left, px, py, disconnectIndex1, disconnectIndex2);
+                    left.addPoint(xNeg, disconnect2y);
+
+                    addPoints(right, px, py, 0, disconnectIndex1);
+                    right.addPoint(xPos, disconnect1y);
+                    right.addPoint(xPos, disconnect2y);
+                    addPoints(right, px, py, disconnectIndex2, numPts);
+                }
+                else
+                {
+                    addPoints(left, px, py, 0, disconnectIndex1);
+                    left.addPoint(xNeg, disconnect1y);
+                    left.addPoint(xNeg, disconnect2y);
+                    addPoints(left, px, py, disconnectIndex2, numPts);
+
+                    right.addPoint(xPos, disconnect1y);
+                    addPoints(right, px, py, disconnectIndex1, disconnectIndex2);
+                    right.addPoint(xPos, disconnect2y);
+                }
+                fillPolygons = new Polygon[] {left, right};
+            }
+            else
+            {
+                fillPolygons = new Polygon[0]; // not handled, outline only
+            }
+        } // project
+
+        private static void addPoints(Polygon p, int[] px, int[] py, int start, int end)
+        {
+            for(int k = start; k < end; k++)
+            {
+                p.addPoint(px[k], py[k]);
+            }
+        }
+
+        /**
+         * Draws the outline and, if wanted, the fill
+         * @param g2
+         * @param fill true to fill the footprint
+         * @param outlineColor
+         * @param fillColor color of the fill (made transparent with alpha)
+         * @param alpha 0-1 opacity of the fill (~0.2f)
+         */
+        public void draw(Graphics2D g2, boolean fill, Color outlineColor, Color fillColor, float alpha)
+        {
+            g2.setPaint(outlineColor);
+            outline.draw(g2);
+
+            if(fill && fillPolygons.length > 0)
+            {
+                g2.setPaint(getFillColor(fillColor, alpha));
+                for(Polygon p : fillPolygons)
+                {
+                    g2.fill(p);
+                }
+            }
+        } // draw
+
+        private Color getFillColor(Color base, float alpha)
+        {
+            if(fillColor == null || !base.equals(fillColorBase) || alpha != fillAlpha)
+            {
+                fillColorBase = base;
+                fillAlpha = alpha;
+                fillColor = new Color(base.getRed()/255.0f, base.getGreen()/255.0f, base.getBlue()/255.0f, alpha);
+            }
+            return fillColor;
+        } // getFillColor
+
+        /**
+         * @return outline in pixels, split at the date line
+         */
+        public MapPolylines getOutline()
+        {
+            return outline;
+        }
+
+        /**
+         * @return polygons to fill (empty if the footprint crosses the date line more than twice), do not change
+         */
+        public Polygon[] getFillPolygons()
+        {
+            return fillPolygons;
+        }
+    } // Footprint
+
+} // FootprintEngine
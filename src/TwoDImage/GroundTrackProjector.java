@@ -0,0 +1,135 @@
+/*
+ * GroundTrackProjector.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Keeps the lead and lag ground tracks of each satellite projected onto the 2D
+ * map as pixel polylines. A track is projected again only when the satellite's
+ * track arrays are recomputed or the map projection changes (resize, zoom,
+ * pan); other repaints just draw the kept polylines. Satellites not drawn in a
+ * paint are dropped.
+ *
+ */
+
+package TwoDImage;
+
+import Satellite.AbstractSatellite;
+import Satellite.SatelliteState;
+import java.awt.Graphics2D;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class GroundTrackProjector
+{
+    private final Map<AbstractSatellite,ProjectedTrack> tracks = new HashMap<AbstractSatellite,ProjectedTrack>();
+    private final MapPolylines.Builder builder = new MapPolylines.Builder();
+
+    private MapProjection projection = null; // of the current paint
+    private int paint = 0; // tracks not drawn in a paint are dropped
+
+    private long numProjections = 0;
+
+    /**
+     * Starts a paint of the map
+     * @param projection projection of the map for this paint
+     */
+    public void startPaint(MapProjection projection)
+    {
+        this.projection = projection;
+        paint++;
+    }
+
+    /**
+     * Draws the ground track of a satellite (with the current paint), projecting it first if needed
+     * @param g2
+     * @param sat satellite state (track arrays are compared by identity)
+     */
+    public void draw(Graphics2D g2, SatelliteState sat)
+    {
+        ProjectedTrack track = tracks.get(sat.getSatellite());
+        if(track == null || track.projection != projection
+                || track.lead != sat.getLatLongLead() || track.lag != sat.getLatLongLag())
+        {
+            track = project(sat);
+            tracks.put(sat.getSatellite(), track);
+        }
+        track.paint = paint;
+
+        track.leadLines.draw(g2);
+        track.lagLines.draw(g2);
+    } // draw
+
+    /**
+     * Ends the paint, drops the tracks of satellites that weren't drawn
+     */
+    public void finishPaint()
+    {
+        for(Iterator<ProjectedTrack> it = tracks.values().iterator(); it.hasNext();)
+        {
+            if(it.next().paint != paint)
+            {
+                it.remove();
+            }
+        }
+    } // finishPaint
+
+    private ProjectedTrack project(SatelliteState sat)
+    {
+        numProjections++;
+
+        double[][] lead = sat.getLatLongLead();
+        double[][] lag = sat.getLatLongLag();
+
+        projection.projectTrack(lead, builder);
+        MapPolylines leadLines = builder.build();
+        projection.projectTrack(lag, builder);
+        MapPolylines lagLines = builder.build();
+
+        return new ProjectedTrack(projection, lead, lag, leadLines, lagLines);
+    } // project
+
+    /**
+     * @return number of satellite tracks projected so far
+     */
+    public long getNumProjections()
+    {
+        return numProjections;
+    }
+
+    // pixel polylines of one satellite's tracks
+    private static class ProjectedTrack
+    {
+        final MapProjection projection; // what they were projected from
+        final double[][] lead;
+        final double[][] lag;
+        final MapPolylines leadLines;
+        final MapPolylines lagLines;
+        int paint;
+
+        ProjectedTrack(MapProjection projection, double[][] lead, double[][] lag, MapPolylines leadLines, MapPolylines lagLines)
+        {
+            this.projection = projection;
+            this.lead = lead;
+            this.lag = lag;
+            this.leadLines = leadLines;
+            this.lagLines = lagLines;
+        }
+    } // ProjectedTrack
+
+} // GroundTrackProjector
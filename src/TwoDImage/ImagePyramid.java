@@ -0,0 +1,210 @@
+/*
+ * ImagePyramid.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Mipmap pyramid of a full resolution map image (day or earth lights) for the
+ * 2D map: level 0 is the image itself, each level after it half the size of the
+ * one before (2x2 box filter). A viewport (part of the full image scaled to the
+ * window) is drawn from the level closest to the final scale, and Java2D only
+ * samples the source pixels inside the viewport. The last few viewports are
+ * kept (least recently used dropped first, up to a pixel budget), so zooming
+ * back and forth or resizing to a previous size costs nothing.
+ *
+ */
+
+package TwoDImage;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ImagePyramid
+{
+    // levels stop once the image is narrower than this
+    private static final int MIN_LEVEL_WIDTH = 128;
+
+    private final BufferedImage sourceImage;
+    private final List<BufferedImage> levels = new ArrayList<BufferedImage>(); // 0 = source
+
+    // viewports drawn lately, in order of use (oldest first)
+    private final LinkedHashMap<String,BufferedImage> viewports = new LinkedHashMap<String,BufferedImage>(16, 0.75f, true);
+    private long cachedPixels = 0;
+    private long maxCachedPixels = 4L*1024*1024; // about 16 MB of int pixels
+
+    /**
+     * Builds the levels of an image
+     * @param sourceImage full resolution image (level 0, not copied)
+     */
+    public ImagePyramid(BufferedImage sourceImage)
+    {
+        this.sourceImage = sourceImage;
+        levels.add(sourceImage);
+
+        int w = sourceImage.getWidth();
+        int h = sourceImage.getHeight();
+        boolean hasAlpha = sourceImage.getColorModel().hasAlpha();
+        int[] pixels = sourceImage.getRGB(0, 0, w, h, null, 0, w);
+
+        while(w / 2 >= MIN_LEVEL_WIDTH && h / 2 >= 1)
+        {
+            int hw = w / 2;
+            int hh = h / 2;
+            int[] half = new int[hw * hh];
+            for(int y = 0; y < hh; y++)
+            {
+                int row0 = 2 * y * w;
+                int row1 = row0 + w;
+                for(int x = 0; x < hw; x++)
+                {
+                    half[y * hw + x] = average(pixels[row0 + 2*x], pixels[row0 + 2*x + 1],
+                            pixels[row1 + 2*x], pixels[row1 + 2*x + 1]);
+                }
+            }
+
+            BufferedImage level = new BufferedImage(hw, hh, hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            level.setRGB(0, 0, hw, hh, half, 0, hw);
+            levels.add(level);
+
+            pixels = half;
+            w = hw;
+            h = hh;
+        }
+    } // constructor
+
+    // mean of four ARGB pixels, per channel
+    private static int average(int p0, int p1, int p2, int p3)
+    {
+        int a = ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2;
+        int r = (((p0 >> 16) & 0xff) + ((p1 >> 16) & 0xff) + ((p2 >> 16) & 0xff) + ((p3 >> 16) & 0xff) + 2) >> 2;
+        int g = (((p0 >> 8) & 0xff) + ((p1 >> 8) & 0xff) + ((p2 >> 8) & 0xff) + ((p3 >> 8) & 0xff) + 2) >> 2;
+        int b = ((p0 & 0xff) + (p1 & 0xff) + (p2 & 0xff) + (p3 & 0xff) + 2) >> 2;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    } // average
+
+    /**
+     * Part of the full resolution image scaled to a size. The image returned may be
+     * shared with later calls, do not draw on it (copy it first).
+     * @param x upper left corner of the part, full resolution pixels
+     * @param y
+     * @param width size of the part, full resolution pixels
+     * @param height
+     * @param outWidth size of the scaled image
+     * @param outHeight
+     * @param imageType BufferedImage type of the scaled image
+     * @param smooth true for bilinear filtering, false for nearest neighbor
+     * @return scaled image
+     */
+    public BufferedImage getViewport(int x, int y, int width, int height, int outWidth, int outHeight, int imageType, boolean smooth)
+    {
+        String key = x + "," + y + "," + width + "," + height + "," + outWidth + "," + outHeight + "," + imageType + "," + smooth;
+        BufferedImage viewport = viewports.get(key);
+        if(viewport != null)
+        {
+            return viewport;
+        }
+
+        // coarsest level that still has at least one pixel per output pixel
+        double shrink = Math.min(width / (double)outWidth, height / (double)outHeight);
+        int levelNum = 0;
+        while(levelNum + 1 < levels.size() && shrink >= 2.0)
+        {
+            shrink /= 2.0;
+            levelNum++;
+        }
+        BufferedImage level = levels.get(levelNum);
+        double levelScale = level.getWidth() / (double)sourceImage.getWidth();
+
+        viewport = new BufferedImage(outWidth, outHeight, imageType);
+        Graphics2D g2 = viewport.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, smooth ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+                : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.clipRect(0, 0, outWidth, outHeight);
+
+        // full res part -> output, through the level's pixels
+        AffineTransform at = new AffineTransform();
+        at.scale(outWidth / (width * levelScale), outHeight / (height * levelScale));
+        at.translate(-x * levelScale, -y * levelScale);
+        g2.drawImage(level, at, null);
+        g2.dispose();
+
+        viewports.put(key, viewport);
+        cachedPixels += (long)outWidth * outHeight;
+        trimCache();
+
+        return viewport;
+    } // getViewport
+
+    // drops the least recently used viewports until within the budget (keeps the newest)
+    private void trimCache()
+    {
+        Iterator<Map.Entry<String,BufferedImage>> it = viewports.entrySet().iterator();
+        while(cachedPixels > maxCachedPixels && viewports.size() > 1 && it.hasNext())
+        {
+            BufferedImage old = it.next().getValue();
+            cachedPixels -= (long)old.getWidth() * old.getHeight();
+            it.remove();
+        }
+    } // trimCache
+
+    /**
+     * Drops the kept viewports
+     */
+    public void clearCache()
+    {
+        viewports.clear();
+        cachedPixels = 0;
+    }
+
+    /**
+     * @return the full resolution image the pyramid was built from
+     */
+    public BufferedImage getSourceImage()
+    {
+        return sourceImage;
+    }
+
+    /**
+     * @return number of levels, including the full resolution one
+     */
+    public int getNumLevels()
+    {
+        return levels.size();
+    }
+
+    public long getMaxCachedPixels()
+    {
+        return maxCachedPixels;
+    }
+
+    /**
+     * @param maxCachedPixels total pixels of the viewports kept (the newest is always kept)
+     */
+    public void setMaxCachedPixels(long maxCachedPixels)
+    {
+        this.maxCachedPixels = maxCachedPixels;
+        trimCache();
+    }
+
+} // ImagePyramid
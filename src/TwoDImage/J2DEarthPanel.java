@@ -35,9 +35,13 @@ import java.io.File;
 import java.util.Hashtable;
 import java.util.Vector;
 import Satellite.AbstractSatellite;
+import Satellite.FleetPropagator;
+import Satellite.SatelliteState;
 import Bodies.LandMassRegions;
 import Bodies.Sun;
+import Utilities.FrameProfiler;
 import Utilities.Time;
+import Utilities.WorkerPool;
 
 public class J2DEarthPanel extends JPanel implements ComponentListener , java.io.Serializable
 {
@@ -57,6 +61,7 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
     
     private transient BufferedImage bimage; // stores full res Earth image map
     private transient BufferedImage bimageScaled; // stores scaled Earth image map - added for Earth Lights Option
+    private transient ImagePyramid bimagePyramid; // levels of bimage for zooming / resizing
     
     private String backgroundImagePath = "/images/Earth_PE_small.jpg"; // default image
     
@@ -89,7 +94,12 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
     // Earth Lights Mask data
     private transient BufferedImage earthLightsFullRes; // full res image stored
     private transient BufferedImage earthLightsCurrentMask; // current mask of earth lights
+    private transient ImagePyramid earthLightsPyramid; // levels of earthLightsFullRes
     private String earthLightsMaskImagePath = "/images/earth_lights_lrg.jpg"; //saves path to earth lights image in JAR
+    private transient DayNightCompositor dayNightCompositor = new DayNightCompositor(); // blends day and lights images
+    private transient ImageIcon combinedIcon = null; // icon showing the compositor's image
+    
+    private static final FrameProfiler.Stage COMPOSITE_STAGE = FrameProfiler.getStage("2D day/night blend");
     
     // bean -- no inputs
     public J2DEarthPanel()
@@ -253,6 +263,19 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         
     } // TwoDFrame
     
+    // satellite states to draw come from here (instead of reading the satellites while painting)
+    public void setFleetPropagator(FleetPropagator fleetPropagator)
+    {
+        imageMap.setFleetPropagator(fleetPropagator);
+    }
+    
+    // threads shared with the rest of the applet for the day/night blend and the footprints
+    public void setWorkerPool(WorkerPool workerPool)
+    {
+        dayNightCompositor.setWorkerPool(workerPool);
+        imageMap.setWorkerPool(workerPool);
+    }
+    
     // called when component is repainted
  /*   public void paintComponent(Graphics g)
     {
@@ -364,79 +387,30 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         //return dimg;
     } // makeBlueChannelAlphaValue
    
-   // assumes both day and night image are already scaled properly, 
-   // this just computes a new image mask based on the current time and saves the image to
-   // icon setting.
-   // THIS IS VERY SLOW (AND MEMORY CONSUMING) -- SEEMS LIKE THERE SHOULD BE A WAY TO IMPROVE
+   // assumes both day and night image are already scaled properly (and given to the compositor),
+   // this just recomputes the day/night blend for the current time and saves the image to
+   // icon setting. The blend is written into the same image every time.
    public void updateEarthLightMaskAndRecombineImage()
    {
        // this better be true if called
-       if(this.isShowEarthLightsMask()) // need to scale Earth Lights mask 
+       if(this.isShowEarthLightsMask() && dayNightCompositor.hasRasters())
        {
-           // copy earthLightsCurrentMask so mask isn't applied over and over
-           BufferedImage earthLightsCurrentMaskTemp  = new BufferedImage(earthLightsCurrentMask.getWidth(), 
-                                                   earthLightsCurrentMask.getHeight(),
-                                                   BufferedImage.TYPE_INT_ARGB);
-           Graphics2D gg = earthLightsCurrentMaskTemp.createGraphics();
-           gg.drawImage(earthLightsCurrentMask, 0, 0, null);
-           gg.dispose();
-           
-            // --- create day/night mask ---
-            BufferedImage dayNightMask = new BufferedImage(earthLightsCurrentMask.getWidth(), 
-                                                   earthLightsCurrentMask.getHeight(),
-                                                   BufferedImage.TYPE_INT_ARGB);
-            Graphics2D maskG2D = dayNightMask.createGraphics();
-            maskG2D.setColor(new Color(255, 255, 255)); // white
-            // fill background with white
-            maskG2D.fillRect(0, 0, earthLightsCurrentMask.getWidth(), earthLightsCurrentMask.getHeight());
+            long t0 = FrameProfiler.start();
             
-            // get the shape of the dark region
-            double[] lla = sun.getCurrentDarkLLA();
-            Polygon[] pgons = imageMap.getFootPrintPolygons(lla[0], lla[1], lla[2], imageMap.getNumPtsSunFootPrint());
+            BufferedImage combinedImage = dayNightCompositor.compose(sun.getCurrentDarkLLA(), 
+                    imageMap.getCenterLat(), imageMap.getCenterLong(), imageMap.getZoomFactor());
             
-            // draw lines around edges
-            int shadowThickness = (int)(imageMap.getZoomFactor()*earthLightsCurrentMask.getWidth()/20.0);// MAKE THIS SETABLE
-            for(Polygon p : pgons)
+            // --- set image icon --- (only when the image itself changed, otherwise it is already showing)
+            if(combinedIcon == null || combinedIcon.getImage() != combinedImage)
             {
-                drawFuzzyLine(maskG2D, p, shadowThickness);
+                combinedIcon = new ImageIcon(combinedImage);
             }
-            // fill in polygons with black
-            maskG2D.setColor(Color.BLACK);
-            for(Polygon p : pgons)
+            if(imageMap.getIcon() != combinedIcon)
             {
-                maskG2D.fill(p);
+                imageMap.setIcon(combinedIcon);
             }
             
-            // done with the 2d graphics object - clean it
-            maskG2D.dispose();
-            
-            // last step, now take black and white image and make alpha channel that matches black intensity
-            // had to do this because otherwise when drawing fuzzy line (over and over) tansparency adds up
-            makeBlueChannelAlphaValue(dayNightMask);
-            
-            // --- apply mask to night image ---  
-            Graphics2D topG2D = earthLightsCurrentMaskTemp.createGraphics();
-            AlphaComposite ac =
-                    AlphaComposite.getInstance(AlphaComposite.DST_OUT);
-            topG2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
-            topG2D.setComposite(ac);
-            topG2D.drawImage(dayNightMask, 0, 0, earthLightsCurrentMask.getWidth(), earthLightsCurrentMask.getHeight(), null);
-            topG2D.dispose();      
-            
-            // --- combine day/night images --- 
-            BufferedImage combinedImage = new BufferedImage(earthLightsCurrentMask.getWidth(), 
-                                                   earthLightsCurrentMask.getHeight(),
-                                                   BufferedImage.TYPE_INT_RGB);
-            Graphics2D g =  combinedImage.createGraphics();
-            g.drawImage(bimageScaled, 0, 0, null);
-            g.drawImage(earthLightsCurrentMaskTemp, 0, 0, null);
-            //g.drawImage(dayNightMask,0,0,null);
-            //g.drawImage(earthLightsCurrentMask,0,0,null); //earthLightsCurrentMask ,earthLightsFullRes
-            g.dispose();
-            
-            // --- set image icon --- 
-            imageMap.setIcon(new ImageIcon(combinedImage));
+            COMPOSITE_STAGE.stop(t0);
        } // if show earth light mask
    } // updateEarthLightMaskAndRecombineImage
     
@@ -451,9 +425,11 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
             // first rescale lights image - insure it has an alpha channel
             earthLightsCurrentMask = this.scaleImageMap(earthLightsFullRes,BufferedImage.TYPE_INT_ARGB);
             //earthLightsCurrentMask = this.scaleImageMap(earthLightsFullRes);
+            dayNightCompositor.setRasters(bimageScaled, earthLightsCurrentMask);
             
             // does most of the work :] and sets image to Icon
-            updateEarthLightMaskAndRecombineImage();    
+            updateEarthLightMaskAndRecombineImage();
+            imageMap.repaint(); // image may be the same object with new pixels
         }
         else
         {
@@ -573,45 +549,29 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
                 midYupLeft = (int)Math.round( (fullResImage.getHeight()-midHeight)/2.0 - fullResImage.getHeight()*imageMap.getCenterLat()/180.0);
             }
             
-            // get sub image that will be scaled to fit window
-            BufferedImage midImage = fullResImage.getSubimage(midXupLeft, midYupLeft, midWidth, midHeight);
-            
-            
-//            // draw region outlines if required:
-//            if(showLandMassOutlines)
-//            {
-//                Graphics2D g2 = (Graphics2D)midImage.getGraphics();
-//                drawLandMasses(g2, midImage.getWidth(), midImage.getHeight());
-//            }
+            // scaled sub image, drawn from the closest level of the image pyramid (may be
+            // shared with later calls, so copied before anything is drawn on it)
+            boolean smooth = (imageScalingOption & (Image.SCALE_SMOOTH | Image.SCALE_AREA_AVERAGING)) != 0;
+            BufferedImage viewport = getImagePyramid(fullResImage).getViewport(midXupLeft, midYupLeft, midWidth, midHeight,
+                    newWidth, newHeight, imageType, smooth);
             
-            // incon image used to set icon with
-            //ImageIcon im; 
             // buffered image that will be returned            
             BufferedImage bim;
             
             // draw region outlines if required:
             if(landMass.isShowLandMassOutlines())
             {
-                // get a scaled version of them image to workwith
-                Image scaledImage = midImage.getScaledInstance(newWidth,newHeight,imageScalingOption);
+                // copy of the scaled image to draw on
                 bim = new BufferedImage(newWidth, newHeight, imageType);
-                bim.createGraphics().drawImage(scaledImage, 0, 0, null);
-                
-                Graphics2D g2 = (Graphics2D)bim.getGraphics();
+                Graphics2D g2 = bim.createGraphics();
+                g2.drawImage(viewport, 0, 0, null);
                 drawLandMasses(g2, newWidth, newHeight);
                 g2.dispose(); // done drawing.
-                
-                //im = new ImageIcon(bim); // create image icon
             }
             else // no land mass drawing
             {
-                // is this slow?
-                Image scaledImage = midImage.getScaledInstance(newWidth,newHeight,imageScalingOption);
-                bim = new BufferedImage(newWidth, newHeight, imageType);
-                bim.createGraphics().drawImage(scaledImage, 0, 0, null);
-                
-                // just resize buffered image and get going
-                //im = new ImageIcon(bim);
+                // just use the scaled image and get going
+                bim = viewport;
             }
              
             // let the imageMap know the current width and height for scale
@@ -634,6 +594,28 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
         //return
     } // ScaleImageMap
     
+    // pyramid of one of the full res images (built the first time it is scaled)
+    private ImagePyramid getImagePyramid(BufferedImage fullResImage)
+    {
+        if(fullResImage == earthLightsFullRes)
+        {
+            if(earthLightsPyramid == null || earthLightsPyramid.getSourceImage() != fullResImage)
+            {
+                earthLightsPyramid = new ImagePyramid(fullResImage);
+            }
+            return earthLightsPyramid;
+        }
+        if(fullResImage == bimage)
+        {
+            if(bimagePyramid == null || bimagePyramid.getSourceImage() != fullResImage)
+            {
+                bimagePyramid = new ImagePyramid(fullResImage); // new background map
+            }
+            return bimagePyramid;
+        }
+        return new ImagePyramid(fullResImage); // some other image, not kept
+    } // getImagePyramid
+    
     public BufferedImage getBufferedImage(ImageIcon img)
     {
         //Component c = e.getComponent();
@@ -745,7 +727,11 @@ public class J2DEarthPanel extends JPanel implements ComponentListener , java.io
                 double[] ll =  imageMap.findLLfromXY(e.getX(), e.getY(), imageMap.getLastTotalWidth(), imageMap.getLastTotalHeight(), imageMap.getImageWidth(), imageMap.getImageHeight());
                 
                 // in degrees
-                System.out.println("Loc (l,l): " + ll[0] + ", " + ll[1] +"\n");
+                System.out.println("Loc (l,l): " + ll[0] + ", " + ll[1]);
+                
+                // satellite drawn there (if any)
+                SatelliteState sat = imageMap.findSatelliteAt(e.getX(), e.getY(), 10);
+                System.out.println("Satellite: " + ((sat == null) ? "none" : sat.getName()) + "\n");
             }
             
 //            if(e.getButton() == 1 && zoomInToggleButton.isSelected())
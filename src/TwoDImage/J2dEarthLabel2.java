@@ -30,8 +30,13 @@ import java.util.Hashtable;
 import java.util.Vector;
 import javax.swing.*;
 import Satellite.AbstractSatellite;
+import Satellite.FleetPropagator;
+import Satellite.SatelliteState;
 import Utilities.AstroConst;
 import Utilities.GeoFunctions;
+import Utilities.FrameProfiler;
+import Utilities.PointGridIndex;
+import Utilities.WorkerPool;
 import Bodies.Sun;
 import Utilities.Time;
 
@@ -52,9 +57,29 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
     // hastable of all the satellites currently processing
     private transient Hashtable<String,AbstractSatellite> satHash = new Hashtable<String,AbstractSatellite>();
     
+    // publishes the satellite states to draw (if null the satellites in satHash are copied when they or the time change)
+    private transient FleetPropagator fleetPropagator;
+    
+    // copy of the satellites in satHash used while there is no fleetPropagator, and what it was taken for
+    private transient FleetPropagator.FleetState snapshotState;
+    private transient double snapshotJulDate;
+    private transient int snapshotSatHashCode;
+    
+    private static final FrameProfiler.Stage PAINT_STAGE = FrameProfiler.getStage("2D map paint");
+    
+    // longitude/latitude grid of the satellites drawn, for picking (rebuilt when the fleet state changes)
+    private transient PointGridIndex<SatelliteState> satelliteIndex;
+    private transient FleetPropagator.FleetState indexedState;
+    private double satelliteIndexCellDeg = 5.0;
+    
     // rendering hints
     private transient RenderingHints renderHints;
     
+    // pixel mapping of the last paint, and the ground tracks projected with it
+    private transient MapProjection mapProjection;
+    private transient GroundTrackProjector trackProjector = new GroundTrackProjector();
+    private transient FootprintEngine footprintEngine = new FootprintEngine();
+    
     // zooming data
     private double centerLat = 0; // center latitude
     private double centerLong = 0; // center longitude
@@ -135,10 +160,79 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
     public void setSatHashTable(Hashtable<String,AbstractSatellite> satHash)
     {
          this.satHash = satHash;
+         snapshotState = null;
+    }
+    
+    public void setFleetPropagator(FleetPropagator fleetPropagator)
+    {
+        this.fleetPropagator = fleetPropagator;
+    }
+    
+    // threads the footprints are computed on (null = painting thread only)
+    public void setWorkerPool(WorkerPool workerPool)
+    {
+        footprintEngine.setWorkerPool(workerPool);
     }
     
+    // satellite states to draw, the same set is used for the whole paint
+    private FleetPropagator.FleetState getFleetState()
+    {
+        if(fleetPropagator != null)
+        {
+            return fleetPropagator.getState();
+        }
+        
+        // copy again only if the time or the satellites changed
+        double julDate = currentTime.getJulianDate();
+        int satHashCode = satHash.hashCode(); // satellites hash by identity
+        if(snapshotState == null || julDate != snapshotJulDate || satHashCode != snapshotSatHashCode
+                || snapshotState.size() != satHash.size())
+        {
+            snapshotState = FleetPropagator.snapshot(satHash.values(), julDate);
+            snapshotJulDate = julDate;
+            snapshotSatHashCode = satHashCode;
+        }
+        return snapshotState;
+    }
+    
+    // lon/lat grid of the satellites plotted in 2D, built once per published state
+    private synchronized PointGridIndex<SatelliteState> getSatelliteIndex()
+    {
+        FleetPropagator.FleetState fleetState = getFleetState();
+        if(satelliteIndex == null || fleetState != indexedState)
+        {
+            PointGridIndex<SatelliteState> index = new PointGridIndex<SatelliteState>(-180, -90, 180, 90, satelliteIndexCellDeg, fleetState.size(), true); // longitude wraps
+            for(SatelliteState sat : fleetState.getSatelliteStates())
+            {
+                if(sat.getPlot2D() && sat.getLLA() != null)
+                {
+                    index.add(sat.getLongitude()*180.0/Math.PI, sat.getLatitude()*180.0/Math.PI, sat);
+                }
+            }
+            satelliteIndex = index.build();
+            indexedState = fleetState;
+        }
+        return satelliteIndex;
+    } // getSatelliteIndex
+    
+    /**
+     * Satellite drawn nearest to a point on the map
+     * @param x pixels (mouse coordinates)
+     * @param y
+     * @param maxPixels farthest away to look
+     * @return satellite state, null if none is close enough
+     */
+    public SatelliteState findSatelliteAt(int x, int y, int maxPixels)
+    {
+        double[] ll = findLLfromXY(x, y, lastTotalWidth, lastTotalHeight, imageWidth, imageHeight);
+        double degPerPixel = 360.0 / (zoomFactor * Math.max(imageWidth, 1)); // same in latitude (2:1 map)
+        return getSatelliteIndex().nearest(ll[1], ll[0], maxPixels * degPerPixel);
+    } // findSatelliteAt
+    
     public void paintComponent(Graphics g)
     {
+        long t0 = FrameProfiler.start();
+        
         // paint the "Earth Lights" where the earth is in shadow - if effect is choosen
         // use Scaling Options from J2DEarthPath
         if(showEarthLightsMask)
@@ -157,6 +251,7 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         
         finishPainting(g); // for profiling (otherwise move method back to this point
         
+        PAINT_STAGE.stop(t0);
     } //paintComponent
     
     // method to do all the painting so profiler accounts for it correctly
@@ -184,6 +279,11 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         int[] xy = new int[2];
         int[] xy_old = new int[2];
         
+        MapProjection projection = getMapProjection();
+        
+        // footprints are kept between paints, recomputed only when they move a pixel (see FootprintEngine)
+        footprintEngine.startPaint(projection);
+        
         // draw sun if desired
         // draw the foot print
         if(drawSun)
@@ -193,7 +293,7 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
             // calculate Lat,Long,Alt 
             //double[] lla = GeoFunctions.GeodeticJulDate( sun.getOpositeSunPositionMOD() ,currentTime.getJulianDate());
             double[] lla = sun.getCurrentDarkLLA();
-            drawFootPrint(g2, lla[0], lla[1], lla[2], true, sunColor, sunColor, sunAlpha, numPtsSunFootPrint ); // draw footprint
+            footprintEngine.getFootprint(sun, lla[0], lla[1], lla[2], numPtsSunFootPrint).draw(g2, true, sunColor, sunColor, sunAlpha); // draw footprint
             //System.out.println("Sun -x = " + sun.getOpositeSunPosition()[0]);
         }
         
@@ -231,262 +331,23 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         g2.setStroke(new BasicStroke());  // standard line, no fancy stuff
         
         // paint Groundtracks of all the SATS that have LLA Stored -----
-        double[] LLA = new double[2];
-        double[] LLA_old = new double[2];
+        // (projected to pixels only when a track or the view changes, see GroundTrackProjector)
+        FleetPropagator.FleetState fleetState = getFleetState();
         
-        Double nanDbl = new Double(Double.NaN);
-                
-        for(AbstractSatellite sat : satHash.values() ) // search through all sat nodes
+        trackProjector.startPaint(projection);
+        for(SatelliteState sat : fleetState.getSatelliteStates() ) // search through all sat nodes
         {
             if( sat.getShowGroundTrack() && sat.getGroundTrackIni() && sat.getPlot2D())
-            {                
-                //System.out.println("Plotting node:"+i);
+            {
                 // okay plot LLA's of the satellite
                 g2.setPaint( sat.getSatColor() );
-                
-                ///// LEAD track:
-                // first Lead point
-                if(sat.getNumGroundTrackLeadPts() > 1)
-                {
-                    LLA = sat.getGroundTrackLlaLeadPt(0);
-                    
-                    xy_old = findXYfromLL(LLA[0]*180.0/Math.PI, LLA[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-                    LLA_old[0] = LLA[0];
-                    LLA_old[1] = LLA[1];
-                    //LLA_old[2] = LLA[2];
-                    
-                    // faster performance to draw allpoints at once useing drawPolyLine
-                    int[] xPts = new int[sat.getNumGroundTrackLeadPts()];
-                    int[] yPts = new int[sat.getNumGroundTrackLeadPts()];
-                    int ptsCount = 0; // points to draw stored up (reset when discontinutiy is hit)
-                    
-                    // first point
-                    xPts[ptsCount] = xy_old[0];
-                    yPts[ptsCount] = xy_old[1];
-                    ptsCount++;
-                    
-                    for(int j=1;j<sat.getNumGroundTrackLeadPts();j++)
-                    {
-                        LLA = sat.getGroundTrackLlaLeadPt(j);
-                        
-                        xy = findXYfromLL(LLA[0]*180.0/Math.PI, LLA[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-                        
-                        // check to see if Longitude flipped sign But not near origin
-                        //if( (LLA[1] > 0 && LLA_old[1] > 0) || (LLA[1] < 0 && LLA_old[1] < 0) || Math.abs(LLA[1]) < 1.0  )
-                        if ( !(nanDbl.equals(LLA_old[0]) || nanDbl.equals(LLA[0]))) // make sure they are not NAN (not in time)
-                        {
- 
-                            // line segment is normal (doesn't span map disconnect)
-                            if (Math.abs(LLA[1] - LLA_old[1]) < 4.0)
-                            {
-                                // old slow way:
-                                //g2.drawLine(xy_old[0], xy_old[1], xy[0], xy[1]); // draw a line across the map
-                                
-                                // add points to the array (after NaN check)
-                                xPts[ptsCount] = xy[0];
-                                yPts[ptsCount] = xy[1];
-                                ptsCount++;
-                            
-                            }
-                            else
-                            {
-                                // draw this line segment next time, jump from side to side
-                                double newLat = linearInterpDiscontLat(LLA_old[0], LLA_old[1], LLA[0], LLA[1]);
-
-                                // get xy points for both the old and new side (positive and negative long)
-                                int[] xyMid_pos = findXYfromLL(newLat * 180.0 / Math.PI, 180.0, w, h, imageWidth, imageHeight);
-                                int[] xyMid_neg = findXYfromLL(newLat * 180.0 / Math.PI, -180.0, w, h, imageWidth, imageHeight);
-
-                                // draw 2 lines - one for each side of the date line
-                                if (LLA_old[1] > 0) // then the old one is on the positive side
-                                {
-                                    // old slow way
-                                    //g2.drawLine(xy_old[0], xy_old[1], xyMid_pos[0], xyMid_pos[1]);
-                                    //g2.drawLine(xy[0], xy[1], xyMid_neg[0], xyMid_neg[1]);
-                                    
-                                    // new way
-                                    // add final point to positive side
-                                    xPts[ptsCount] = xyMid_pos[0];
-                                    yPts[ptsCount] = xyMid_pos[1];
-                                    ptsCount++;
-                                    // draw the polyline
-                                    g2.drawPolyline(xPts, yPts, ptsCount);
-                                    // clear the arrays (just reset the counter)
-                                    ptsCount = 0;
-                                    // add the new points to the cleared array
-                                    xPts[ptsCount] = xyMid_neg[0];
-                                    yPts[ptsCount] = xyMid_neg[1];
-                                    ptsCount++;
-                                    xPts[ptsCount] = xy[0];
-                                    yPts[ptsCount] = xy[1];
-                                    ptsCount++;
-                                    
-                                }
-                                else // the new one is on the positive side
-                                {
-                                    // old slow way
-                                    //g2.drawLine(xy[0], xy[1], xyMid_pos[0], xyMid_pos[1]);
-                                    //g2.drawLine(xy_old[0], xy_old[1], xyMid_neg[0], xyMid_neg[1]);
-                                    
-                                     // new way
-                                    // add final point to neg side
-                                    xPts[ptsCount] = xyMid_neg[0];
-                                    yPts[ptsCount] = xyMid_neg[1];
-                                    ptsCount++;
-                                    // draw the polyline
-                                    g2.drawPolyline(xPts, yPts, ptsCount);
-                                    // clear the arrays (just reset the counter)
-                                    ptsCount = 0;
-                                    // add the new points to the cleared array
-                                    xPts[ptsCount] = xyMid_pos[0];
-                                    yPts[ptsCount] = xyMid_pos[1];
-                                    ptsCount++;
-                                    xPts[ptsCount] = xy[0];
-                                    yPts[ptsCount] = xy[1];
-                                    ptsCount++;
-                                }
-
-
-                            } // jump in footprint
-                        } // NaN check
-                        
-                        
-                        xy_old[0]=xy[0];
-                        xy_old[1]=xy[1];
-                        LLA_old[0] = LLA[0];
-                        LLA_old[1] = LLA[1];
-                        //LLA_old[2] = LLA[2];
-                    } // lead track drawing
-                    
-                    // draw remainder of lead segment
-                    g2.drawPolyline(xPts, yPts, ptsCount);
-                     
-                }// lead track
-                
-                 ///// Lag track:
-                // first Lag point
-                if(sat.getNumGroundTrackLagPts() > 0)
-                {
-                    LLA = sat.getGroundTrackLlaLagPt(0);
-                    
-                    xy_old = findXYfromLL(LLA[0]*180.0/Math.PI, LLA[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-                    LLA_old[0] = LLA[0];
-                    LLA_old[1] = LLA[1];
-                    //LLA_old[2] = LLA[2];
-                    
-                    // faster performance to draw allpoints at once useing drawPolyLine
-                    int[] xPts = new int[sat.getNumGroundTrackLeadPts()];
-                    int[] yPts = new int[sat.getNumGroundTrackLeadPts()];
-                    int ptsCount = 0; // points to draw stored up (reset when discontinutiy is hit)
-                    
-                    // first point
-                    xPts[ptsCount] = xy_old[0];
-                    yPts[ptsCount] = xy_old[1];
-                    ptsCount++;
-                    
-                    for(int j=1;j<sat.getNumGroundTrackLagPts();j++)
-                    {
-                        LLA = sat.getGroundTrackLlaLagPt(j);
-                        
-                        xy = findXYfromLL(LLA[0]*180.0/Math.PI, LLA[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-                        
-                        // check to see if Longitude flipped sign But not near origin
-                        //if( (LLA[1] > 0 && LLA_old[1] > 0) || (LLA[1] < 0 && LLA_old[1] < 0) || Math.abs(LLA[1]) < 1.0  ) 
-                        if ( !(nanDbl.equals(LLA_old[0]) || nanDbl.equals(LLA[0]))) // make sure they are not NAN (not in time)
-                        {
-                            if (Math.abs(LLA[1] - LLA_old[1]) < 4.0)
-                            {
-                                // old slow way
-                                //g2.drawLine(xy_old[0], xy_old[1], xy[0], xy[1]); // draw a line across the map
-                                
-                                // add points to the array (after NaN check)
-                                xPts[ptsCount] = xy[0];
-                                yPts[ptsCount] = xy[1];
-                                ptsCount++;
-                                
-                            //System.out.println("xy: (" + xy_old[0] +"," +xy_old[1] +"),(" +xy[0] +"," +xy[1]+"), j=" + j + "LLA_old,new:" +LLA_old[1] + ", " +LLA[1] ); // draw a line across the map
-                            }
-                            else
-                            {
-                                // draw this line segment next time, jump from side to side
-                                double newLat = linearInterpDiscontLat(LLA_old[0], LLA_old[1], LLA[0], LLA[1]);
-
-                                // get xy points for both the old and new side (positive and negative long)
-                                int[] xyMid_pos = findXYfromLL(newLat * 180.0 / Math.PI, 180.0, w, h, imageWidth, imageHeight);   
-                                int[] xyMid_neg = findXYfromLL(newLat * 180.0 / Math.PI, -180.0, w, h, imageWidth, imageHeight);
-                                
-
-                                // draw 2 lines - one for each side of the date line
-                                if (LLA_old[1] > 0) // then the old one is on the positive side
-                                {
-                                    // old slow way
-                                    //g2.drawLine(xy_old[0], xy_old[1], xyMid_pos[0], xyMid_pos[1]);
-                                    //g2.drawLine(xy[0], xy[1], xyMid_neg[0], xyMid_neg[1]);
-                                    
-                                    // new way
-                                    // add final point to positive side
-                                    xPts[ptsCount] = xyMid_pos[0];
-                                    yPts[ptsCount] = xyMid_pos[1];
-                                    ptsCount++;
-                                    // draw the polyline
-                                    g2.drawPolyline(xPts, yPts, ptsCount);
-                                    // clear the arrays (just reset the counter)
-                                    ptsCount = 0;
-                                    // add the new points to the cleared array
-                                    xPts[ptsCount] = xyMid_neg[0];
-                                    yPts[ptsCount] = xyMid_neg[1];
-                                    ptsCount++;
-                                    xPts[ptsCount] = xy[0];
-                                    yPts[ptsCount] = xy[1];
-                                    ptsCount++;
-                                //System.out.println("here2");
-                                }
-                                else // the new one is on the positive side
-                                {
-                                    // old slow way
-                                    //g2.drawLine(xy[0], xy[1], xyMid_pos[0], xyMid_pos[1]);
-                                    //g2.drawLine(xy_old[0], xy_old[1], xyMid_neg[0], xyMid_neg[1]);
-                                    
-                                    // new way
-                                    // add final point to neg side
-                                    xPts[ptsCount] = xyMid_neg[0];
-                                    yPts[ptsCount] = xyMid_neg[1];
-                                    ptsCount++;
-                                    // draw the polyline
-                                    g2.drawPolyline(xPts, yPts, ptsCount);
-                                    // clear the arrays (just reset the counter)
-                                    ptsCount = 0;
-                                    // add the new points to the cleared array
-                                    xPts[ptsCount] = xyMid_pos[0];
-                                    yPts[ptsCount] = xyMid_pos[1];
-                                    ptsCount++;
-                                    xPts[ptsCount] = xy[0];
-                                    yPts[ptsCount] = xy[1];
-                                    ptsCount++;
-                                //System.out.println("here3");
-                                }
-                            }
-                        } // NaN check
-                        
-                        
-                        xy_old[0]=xy[0];
-                        xy_old[1]=xy[1];
-                        LLA_old[0] = LLA[0];
-                        LLA_old[1] = LLA[1];
-                        //LLA_old[2] = LLA[2];
-                    } // lag track drawing
-                    
-                    // draw remainder of lead segment
-                    g2.drawPolyline(xPts, yPts, ptsCount);
-                    
-                } // lag track
-                
-                
+                trackProjector.draw(g2, sat);
             }
         } // ground tracks
+        trackProjector.finishPaint();
         
         // draw current positions
-        for(AbstractSatellite sat : satHash.values() ) // search through all sat nodes
+        for(SatelliteState sat : fleetState.getSatelliteStates() ) // search through all sat nodes
         {
             if( sat.getPlot2D() ) // if option to plot is on
             {
@@ -500,15 +361,16 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
                 //System.out.println("Lat/Lon =" + lat*180.0/Math.PI + "/" + lon*180.0/Math.PI);
                 
                 // find the drawing location
-                xy = findXYfromLL(lat*180.0/Math.PI, lon*180.0/Math.PI, w, h, imageWidth, imageHeight);
+                int x = projection.getX(lon*180.0/Math.PI);
+                int y = projection.getY(lat*180.0/Math.PI);
                 
                 // drawOval
-                g2.fillOval(xy[0]-5,xy[1]-5,10,10); // not sure what the arguments are?
+                g2.fillOval(x-5,y-5,10,10); // not sure what the arguments are?
                 
                 // add name if required
                 if(sat.isShowName2D())
                 {
-                    g2.drawString(sat.getName().trim(),xy[0]+10,xy[1]+3);
+                    g2.drawString(sat.getName().trim(),x+10,y+3);
                 }
                 
                 
@@ -516,7 +378,8 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         } // draw current positions
         
                         
-        for( AbstractSatellite sat : satHash.values() ) // search through all sat nodes
+        footprintEngine.updateFootprints(fleetState.getSatelliteStates()); // those that moved, in parallel
+        for( SatelliteState sat : fleetState.getSatelliteStates() ) // search through all sat nodes
         {
             if( sat.getPlot2D() && sat.getPlot2DFootPrint() )
             {
@@ -528,11 +391,11 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
                 double alt =  sat.getAltitude();
                 
                 // draw the foot print
-                drawFootPrint(g2, lat, lon, alt, sat.isFillFootPrint(), sat.getSatColor(), sat.getSatColor(), 0.2f, sat.getNumPtsFootPrint() ); // draw footprint
-                //Graphics2D g2, double lat, double lon, double alt, boolean fillFootPrint, Color outlineColor, Color FillColor, alpha(0.2f) int numPtsFootPrint
+                footprintEngine.getFootprint(sat.getSatellite(), lat, lon, alt, sat.getNumPtsFootPrint()).draw(g2, sat.isFillFootPrint(), sat.getSatColor(), sat.getSatColor(), 0.2f); // draw footprint
                 
             } // if sat
         } // sat footprints
+        footprintEngine.finishPaint();
         
         if(zoomFactor > 1.0001)
         {
@@ -573,24 +436,6 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         }
     } // finish painting
     
-    // function to find the Linearly interpolated latitude at long = +/- 180
-    // this is used to correct discontinutities in the plots
-    // return double = latitude for the longitude of +/- 180 (both)
-    private double linearInterpDiscontLat(double lat1, double long1, double lat2, double long2)
-    {
-        // one longitude should be negative one positive, make them both positive
-        if(long1 > long2)
-        {
-            long2 += 2*Math.PI; // in radians
-        }
-        else
-        {
-            long1 += 2*Math.PI;
-        }
-        
-        return  ( lat1+(Math.PI - long1)*(lat2-lat1)/(long2-long1) );
-    }
-        
     public void setImageWidth(int w)
     {
         imageWidth = w;
@@ -601,6 +446,21 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
         imageHeight = h;
     }
     
+    /**
+     * @return lat/long to pixel mapping for the current size, zoom and center
+     * (the same object until one of those changes)
+     */
+    public MapProjection getMapProjection()
+    {
+        int w = getWidth();
+        int h = getHeight();
+        if(mapProjection == null || !mapProjection.isFor(w, h, imageWidth, imageHeight, zoomFactor, centerLat, centerLong))
+        {
+            mapProjection = new MapProjection(w, h, imageWidth, imageHeight, zoomFactor, centerLat, centerLong);
+        }
+        return mapProjection;
+    } // getMapProjection
+    
     // assumes local zoom factor centered centerLat, centerLong
     public int[] findXYfromLL(double lat, double lon, int totWidth, int totHeight, int imgWidth, int imgHeight)
     {
@@ -717,417 +577,6 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
     } // mult 3x3 matrices
     
     
-// ==============================================================================================
-///  FUNCTION TO DRAW A FOOT PRINT ==============================================================
-     // alpha = 0-1 amount of transparency in footprint (~0.2f)
-    // Assumes a spherical Earth? - maybe not see ecef2lla()
-    private void drawFootPrint(Graphics2D g2, double lat, double lon, double alt, boolean fillFootPrint, Color outlineColor, Color FillColor, float alpha, int numPtsFootPrint)
-    {
-        
-        // vars: ===============================
-        // draw footprints of satellites
-        Polygon footprint;
-        // varaibles for fixing disconnect around international date line (for filled footprints)
-        int disconnectCount = 0; // how many disconnect points, 0=good, 1= far away sat, sees north/south pole, 2= spans date line
-        int disconnectIndex1 = 0; // first index of disconnect
-        int disconnectIndex2 = 0; // second index of disconnect
-        int[] disconnect1pos = new int[2]; // corrected x,y point at each discontinutiy
-        int[] disconnect1neg = new int[2];
-        int[] disconnect2pos = new int[2];
-        int[] disconnect2neg = new int[2];
-        
-        // size
-        // save last width/height
-        int w = lastTotalWidth;
-        int h = lastTotalHeight;
-        
-        //========================================
-        
-        //disconnectCount = 0; // reset disconnect count
-        
-        // set color -- outline
-        g2.setPaint( outlineColor  );
-        
-        // Polygon shape -- for filling?
-        footprint = new Polygon();
-
-        // correction to convert latitude from geographic to geo-centric because foot print is created and rotated about center so it uses geocentric rotations
-        // for conversion see: http://en.wikipedia.org/wiki/Latitude
-        lat = Math.atan( Math.pow(AstroConst.R_Earth_minor/AstroConst.R_Earth_major,2.0) * Math.tan(lat) );
-
-        // assumes a spherical Earth - cone half angle from the center of the earth
-        // an improvement could find the radius of the earth at the given latitude
-        //double lambda0 = Math.acos(AstroConst.R_Earth/(AstroConst.R_Earth+alt));
-        // improvement - 31 March 2009 - SEG (though still assumes that the visible area is a perfect circle, but that is very close
-        // improves accuracy by about 0.02 deg at extremes of a 51.6 deg inclination LEO 
-        double earthRadiusAtLat = AstroConst.R_Earth_major - (AstroConst.R_Earth_major-AstroConst.R_Earth_minor)*Math.sin(lat);
-        double lambda0 = Math.acos(earthRadiusAtLat/(earthRadiusAtLat+alt));
-
-        
-        double beta = (90*Math.PI/180.0-lat); // latitude center (pitch)
-        double gamma = -lon+180.0*Math.PI/180.0; // longitude (yaw)
-        
-        // rotation matrix - 20-March 2009 SEG -- may want to convert LLA from geographic to geocentric -- See correction Above
-        // for conversion see: http://en.wikipedia.org/wiki/Latitude
-        double[][] M = new double[][] {{Math.cos(beta)*Math.cos(gamma), Math.sin(gamma), -Math.sin(beta)*Math.cos(gamma)},
-        {-Math.cos(beta)*Math.sin(gamma),Math.cos(gamma), Math.sin(beta)*Math.sin(gamma)},
-        {Math.sin(beta), 0.0, Math.cos(beta)}};
-        double theta = 0+Math.PI/2.0; // with extra offset of pi/2 so circle starts left of center going counter clockwise
-        double phi = lambda0;
-        
-        // position - on the surface of the Earth (spherical approx) - depending on how LLA is calculated geodetic or geographic
-        // uses the parametric equation of a sphere, around( varies by theta) the bottom of the sphere with the radius of the earth up an angle phi 
-        // maybe should use mean radius here instead of equatorial?? - doesn't make much difference in the pixel noise
-        double[] pos = new double[3];
-        pos[0] = AstroConst.R_Earth*Math.cos(theta)*Math.sin(phi);
-        pos[1] = AstroConst.R_Earth*Math.sin(theta)*Math.sin(phi);
-        pos[2] = AstroConst.R_Earth*Math.cos(phi);
-        
-        // rotate to center around satellite sub point
-        pos = mult(M,pos);
-        
-        // calculate Lat Long of point (first time save it)
-        double[] llaOld = GeoFunctions.ecef2lla_Fast(pos);
-        //llaOld[1] = llaOld[1] - 90.0*Math.PI/180.0;
-        double[] lla = new double[3]; // prepare array
-        
-        // copy of orginal point
-        double[] lla0 = new double[3];
-        int[] xy0 = new int[2];
-        lla0[0] = llaOld[0];
-        lla0[1] = llaOld[1];
-        lla0[2] = llaOld[2];
-        
-        // point
-        int[] xy;
-        
-        // original point
-        int[] xy_old = findXYfromLL(lla0[0]*180.0/Math.PI, lla0[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-        xy0[0] = xy_old[0];
-        xy0[1] = xy_old[1];
-        
-        // add to polygon
-        if( fillFootPrint )
-        {
-            footprint.addPoint(xy_old[0],xy_old[1]);
-        }
-        
-        // footprint parameters
-        double dt = 2.0*Math.PI/(numPtsFootPrint-1.0);
-        
-        // faster performance to draw allpoints at once useing drawPolyLine
-        int[] xPts = new int[numPtsFootPrint+1];
-        int[] yPts = new int[numPtsFootPrint+1];
-        int ptsCount = 0; // points to draw stored up (reset when discontinutiy is hit)
-        // first point
-        xPts[ptsCount] = xy_old[0];
-        yPts[ptsCount] = xy_old[1];
-        ptsCount++;
-        
-        for(int j=1;j<numPtsFootPrint;j++)
-        {
-            theta = j*dt+Math.PI/2.0; // +Math.PI/2.0 // offset so it starts at the side
-            //phi = lambda0;
-            
-            // find position - unrotated about north pole
-            pos[0] = AstroConst.R_Earth*Math.cos(theta)*Math.sin(phi);
-            pos[1] = AstroConst.R_Earth*Math.sin(theta)*Math.sin(phi);
-            pos[2] = AstroConst.R_Earth*Math.cos(phi);
-            
-            // rotate to center around satellite sub point
-            pos = mult(M,pos);
-            
-            // find lla
-            lla = GeoFunctions.ecef2lla_Fast(pos);
-            //lla[1] = lla[1]-90.0*Math.PI/180.0;
-            //System.out.println("ll=" +lla[0]*180.0/Math.PI + "," + (lla[1]*180.0/Math.PI));
-            
-            xy = findXYfromLL(lla[0]*180.0/Math.PI, lla[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-            
-            // draw line (only if not accross the screen)
-            if( Math.abs(lla[1] - llaOld[1]) < 4.0)
-            {
-                // old slow way
-                //g2.drawLine(xy_old[0],xy_old[1],xy[0],xy[1]);
-                
-                // add points to the array (after NaN check)
-                xPts[ptsCount] = xy[0];
-                yPts[ptsCount] = xy[1];
-                ptsCount++;
-                
-                //System.out.println("" +lla[0] + " " + lla[1]);
-            }
-            else
-            {
-                // draw line in correctly ======================
-                double newLat = linearInterpDiscontLat(llaOld[0], llaOld[1], lla[0], lla[1]);
-                
-                // get xy points for both the old and new side (positive and negative long)
-                int[] xyMid_pos = findXYfromLL(newLat*180.0/Math.PI, 180.0, w, h, imageWidth, imageHeight);
-                int[] xyMid_neg = findXYfromLL(newLat*180.0/Math.PI, -180.0, w, h, imageWidth, imageHeight);
-                
-                // draw 2 lines - one for each side of the date line
-                if(llaOld[1] > 0) // then the old one is on the positive side
-                {
-                    // old slow way
-                    //g2.drawLine(xy_old[0],xy_old[1],xyMid_pos[0],xyMid_pos[1]);
-                    //g2.drawLine(xy[0],xy[1],xyMid_neg[0],xyMid_neg[1]);
-                    
-                    // new way
-                    // add final point to positive side
-                    xPts[ptsCount] = xyMid_pos[0];
-                    yPts[ptsCount] = xyMid_pos[1];
-                    ptsCount++;
-                    // draw the polyline
-                    g2.drawPolyline(xPts, yPts, ptsCount);
-                    // clear the arrays (just reset the counter)
-                    ptsCount = 0;
-                    // add the new points to the cleared array
-                    xPts[ptsCount] = xyMid_neg[0];
-                    yPts[ptsCount] = xyMid_neg[1];
-                    ptsCount++;
-                    xPts[ptsCount] = xy[0];
-                    yPts[ptsCount] = xy[1];
-                    ptsCount++;
-                }
-                else // the new one is on the positive side
-                {
-                    // old slow way
-                    //g2.drawLine(xy[0],xy[1],xyMid_pos[0],xyMid_pos[1]);
-                    //g2.drawLine(xy_old[0],xy_old[1],xyMid_neg[0],xyMid_neg[1]);
-                    
-                    // new way
-                    // add final point to neg side
-                    xPts[ptsCount] = xyMid_neg[0];
-                    yPts[ptsCount] = xyMid_neg[1];
-                    ptsCount++;
-                    // draw the polyline
-                    g2.drawPolyline(xPts, yPts, ptsCount);
-                    // clear the arrays (just reset the counter)
-                    ptsCount = 0;
-                    // add the new points to the cleared array
-                    xPts[ptsCount] = xyMid_pos[0];
-                    yPts[ptsCount] = xyMid_pos[1];
-                    ptsCount++;
-                    xPts[ptsCount] = xy[0];
-                    yPts[ptsCount] = xy[1];
-                    ptsCount++;
-                }
-                //==============================================
-                
-                // save info about disconnect
-                disconnectCount++;
-                if(disconnectCount == 1)
-                {
-                    disconnectIndex1 = j;
-                    //System.out.println("Disconnect 1 found:"+disconnectIndex1);
-                    disconnect1pos = xyMid_pos; // save this point
-                    disconnect1neg = xyMid_neg;
-                }
-                else if(disconnectCount == 2)
-                {
-                    disconnectIndex2 = j;
-                    //System.out.println("Disconnect 2 found:"+disconnectIndex2);
-                    disconnect2pos = xyMid_pos; // save this point
-                    disconnect2neg = xyMid_neg;
-                }
-                
-            } // disconnect in line
-            
-            // save point
-            xy_old[0]=xy[0];
-            xy_old[1]=xy[1];
-            llaOld[0] = lla[0];
-            llaOld[1] = lla[1];
-            llaOld[2] = lla[2];
-            
-            // add point to polygon
-            if( fillFootPrint )
-            {
-                footprint.addPoint(xy_old[0],xy_old[1]);
-            }
-            
-        } // for each point around footprint
-        
-        // draw point from last point back to first
-        if( Math.abs(llaOld[1]-lla0[1]) < 4.0)
-        {
-            // old slow way
-            //g2.drawLine(xy_old[0],xy_old[1],xy0[0],xy0[1]);
-           
-            // new way
-             xPts[ptsCount] = xy0[0];
-            yPts[ptsCount] = xy0[1];
-            ptsCount++;
-            
-            // draw remainder of lead segment
-            g2.drawPolyline(xPts, yPts, ptsCount);
-        }
-        
-        // draw polygon -- won't work when part of the foot print is on other side
-        // seems not to work for GEO sats too, fills wrong side at times
-        // see if polygon should be split into two polygons
-        // -- could be divited up 4 seperate peices!
-        // NEED to make this very transparent (works now)
-        // still some issues with fill side: see sun /- one minute around - 23 Mar 2009 01:14:12.000 MDT
-        if( fillFootPrint )
-        {
-            Color satCol = FillColor;
-            Color transColor = new Color(satCol.getRed()/255.0f,satCol.getGreen()/255.0f,satCol.getBlue()/255.0f,alpha);
-            g2.setPaint( transColor );
-            
-            if(disconnectCount == 0)
-            {
-                // no disconnects fill like normal
-                g2.fill(footprint);
-            }
-            else if(disconnectCount == 1)
-            {
-                // okay this is at a pole, add in edges and fill in
-                // figure out N or S based on sat position ( lat > 0 or < 0)
-                boolean northPoleVisible = ( lat > 0);
-                
-                int[] ptPos = new int[2];
-                int[] ptNeg = new int[2];
-                
-                Polygon fullFootPrint = new Polygon();
-                
-                if(northPoleVisible)
-                {
-                    
-                    ptPos = findXYfromLL(90.0, 180.0, w, h, imageWidth, imageHeight);
-                    ptNeg = findXYfromLL(90.0, -180.0, w, h, imageWidth, imageHeight);
-                    
-                    // counter clockwise - add points
-                    for(int k=0; k<disconnectIndex1;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    fullFootPrint.addPoint(disconnect1pos[0],disconnect1pos[1]);
-                    fullFootPrint.addPoint(ptPos[0],ptPos[1]);
-                    fullFootPrint.addPoint(ptNeg[0],ptNeg[1]);
-                    fullFootPrint.addPoint(disconnect1neg[0],disconnect1neg[1]);
-                    for(int k=disconnectIndex1; k<footprint.npoints;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    
-                }
-                else
-                {
-                    // counter clockwise - add points
-                    ptPos = findXYfromLL(-90.0, 180.0, w, h, imageWidth, imageHeight);
-                    ptNeg = findXYfromLL(-90.0, -180.0, w, h, imageWidth, imageHeight);
-                    
-                    for(int k=0; k<disconnectIndex1;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    
-                    fullFootPrint.addPoint(disconnect1neg[0],disconnect1neg[1]);
-                    fullFootPrint.addPoint(ptNeg[0],ptNeg[1]);
-                    fullFootPrint.addPoint(ptPos[0],ptPos[1]);
-                    fullFootPrint.addPoint(disconnect1pos[0],disconnect1pos[1]);
-                    
-                    for(int k=disconnectIndex1; k<footprint.npoints;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    
-                }// south pole visible
-                
-                // fill full print
-                g2.fill(fullFootPrint);
-                
-                
-            }
-            else if(disconnectCount == 2)
-            {
-                // this is the case when a sat spans the international dateline
-                // make two polygons to fill
-                
-                // polygon starts left of center and goes counter clockwise
-                
-                // check to see if this is a standard case (discontinuity
-                // 1 is vertically lower than discon #2) (y is backwards in java)
-                if( disconnect1neg[1]  >= disconnect2neg[1])
-                {
-                    // STANDARD drawing case for 2 discontinuities
-                    
-                    
-                    
-                    // new polygon - part on left side
-                    Polygon footprintPartLeft = new Polygon();
-                    
-                    // get both sides of discontinuity 1
-                    footprintPartLeft.addPoint( disconnect1neg[0], disconnect1neg[1]); // first point at left edge
-                    for(int k=disconnectIndex1;k<disconnectIndex2;k++)
-                    {
-                        
-                        footprintPartLeft.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    footprintPartLeft.addPoint( disconnect2neg[0], disconnect2neg[1]);
-                    
-                    g2.fill(footprintPartLeft);
-                    
-                    // now create Right side of the polygon
-                    Polygon footprintPartRight = new Polygon();
-                    // fill in first part
-                    for(int k=0;k<disconnectIndex1;k++)
-                    {
-                        
-                        footprintPartRight.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    // add disconnect points
-                    footprintPartRight.addPoint( disconnect1pos[0], disconnect1pos[1]);
-                    footprintPartRight.addPoint( disconnect2pos[0], disconnect2pos[1]);
-                    // fill in last part
-                    for(int k=disconnectIndex2;k<footprint.npoints;k++)
-                    {
-                        
-                        footprintPartRight.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    g2.fill(footprintPartRight);
-                }// standard 2-discont drawing
-                else  // non standard discont 1 is above discont 2
-                {
-                    // new polygon - part on left side
-                    Polygon footprintPartLeft = new Polygon();
-                    
-                    for(int k=0;k<disconnectIndex1;k++)
-                    {
-                        
-                        footprintPartLeft.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    footprintPartLeft.addPoint( disconnect1neg[0], disconnect1neg[1]); // left edge top
-                    footprintPartLeft.addPoint( disconnect2neg[0], disconnect2neg[1]); // left edge bottom
-                    for(int k=disconnectIndex2;k<footprint.npoints;k++)
-                    {
-                        
-                        footprintPartLeft.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    g2.fill(footprintPartLeft);
-                    
-                    // Right part of foot print
-                    Polygon footprintPartRight = new Polygon();
-                    footprintPartRight.addPoint( disconnect1pos[0], disconnect1pos[1]);
-                    for(int k=disconnectIndex1;k<disconnectIndex2;k++)
-                    {
-                        
-                        footprintPartRight.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    footprintPartRight.addPoint( disconnect2pos[0], disconnect2pos[1]);
-                    g2.fill(footprintPartRight);
-                    
-                    
-                }// non standard 2-discont drawing
-                
-            } // 2 disconnect points
-            
-        } // fill foot print
-        
-    } // drawFootPrint
-    
 // ========= FOOTPRINT ===========================================================================
 //================================================================================================
     
@@ -1135,350 +584,17 @@ public class J2dEarthLabel2 extends JLabel  implements java.io.Serializable
     // Get footprint polygons - gets the shape(s) of the foot prints - similar to drawFootprint but no drawing
     // Assumes total width and total height match image size, doesn't take into account placement on page...
     //  the above assumption is for J2DEarthPanel!! because it on't draws on the image exactly
+    // spherical Earth, returns null if the footprint crosses the date line more than twice
     public Polygon[] getFootPrintPolygons(double lat, double lon, double alt, int numPtsFootPrint)
     {
+        MapProjection imageProjection = new MapProjection(imageWidth, imageHeight, imageWidth, imageHeight, zoomFactor, centerLat, centerLong);
+        Polygon[] polygons = FootprintEngine.computeFootprint(lat, lon, alt, numPtsFootPrint, false, imageProjection).getFillPolygons();
         
-        // vars: ===============================
-        // draw footprints of satellites
-        Polygon footprint;
-        // varaibles for fixing disconnect around international date line (for filled footprints)
-        int disconnectCount = 0; // how many disconnect points, 0=good, 1= far away sat, sees north/south pole, 2= spans date line
-        int disconnectIndex1 = 0; // first index of disconnect
-        int disconnectIndex2 = 0; // second index of disconnect
-        int[] disconnect1pos = new int[2]; // corrected x,y point at each discontinutiy
-        int[] disconnect1neg = new int[2];
-        int[] disconnect2pos = new int[2];
-        int[] disconnect2neg = new int[2];
-        
-        // size
-        // save last width/height
-        // READ ASSUMPTION NEAR FUNCTION START
-        int w = imageWidth;//lastTotalWidth;
-        int h = imageHeight;//lastTotalHeight;
-        
-        //========================================
-        
-        //disconnectCount = 0; // reset disconnect count
-        
-        // Polygon shape -- for filling?
-        footprint = new Polygon();
-        
-        double lambda0 = Math.acos(AstroConst.R_Earth/(AstroConst.R_Earth+alt));
-        
-        double beta = (90*Math.PI/180.0-lat); // latitude center (pitch)
-        double gamma = -lon+180.0*Math.PI/180.0; // longitude (yaw)
-        
-        // rotation matrix
-        double[][] M = new double[][] {{Math.cos(beta)*Math.cos(gamma), Math.sin(gamma), -Math.sin(beta)*Math.cos(gamma)},
-        {-Math.cos(beta)*Math.sin(gamma),Math.cos(gamma), Math.sin(beta)*Math.sin(gamma)},
-        {Math.sin(beta), 0.0, Math.cos(beta)}};
-        double theta = 0+Math.PI/2.0; // with extra offset of pi/2 so circle starts left of center going counter clockwise
-        double phi = lambda0;
-        
-        // position
-        double[] pos = new double[3];
-        pos[0] = AstroConst.R_Earth*Math.cos(theta)*Math.sin(phi);
-        pos[1] = AstroConst.R_Earth*Math.sin(theta)*Math.sin(phi);
-        pos[2] = AstroConst.R_Earth*Math.cos(phi);
-        
-        // rotate to center around satellite sub point
-        pos = mult(M,pos);
-        
-        // calculate Lat Long of point (first time save it)
-        double[] llaOld = GeoFunctions.ecef2lla_Fast(pos);
-        //llaOld[1] = llaOld[1] - 90.0*Math.PI/180.0;
-        double[] lla = new double[3]; // prepare array
-        
-        // copy of orginal point
-        double[] lla0 = new double[3];
-        int[] xy0 = new int[2];
-        lla0[0] = llaOld[0];
-        lla0[1] = llaOld[1];
-        lla0[2] = llaOld[2];
-        
-        // point
-        int[] xy;
-        
-        // original point
-        int[] xy_old = findXYfromLL(lla0[0]*180.0/Math.PI, lla0[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-        xy0[0] = xy_old[0];
-        xy0[1] = xy_old[1];
-        
-        // add to polygon
-        footprint.addPoint(xy_old[0],xy_old[1]);
-        
-        // footprint parameters
-        double dt = 2.0*Math.PI/(numPtsFootPrint-1.0);
-        
-        for(int j=1;j<numPtsFootPrint;j++)
-        {
-            theta = j*dt+Math.PI/2.0; // +Math.PI/2.0 // offset so it starts at the side
-            //phi = lambda0;
-            
-            // find position - unrotated about north pole
-            pos[0] = AstroConst.R_Earth*Math.cos(theta)*Math.sin(phi);
-            pos[1] = AstroConst.R_Earth*Math.sin(theta)*Math.sin(phi);
-            pos[2] = AstroConst.R_Earth*Math.cos(phi);
-            
-            // rotate to center around satellite sub point
-            pos = mult(M,pos);
-            
-            // find lla
-            lla = GeoFunctions.ecef2lla_Fast(pos);
-            //lla[1] = lla[1]-90.0*Math.PI/180.0;
-            //System.out.println("ll=" +lla[0]*180.0/Math.PI + "," + (lla[1]*180.0/Math.PI));
-            
-            xy = findXYfromLL(lla[0]*180.0/Math.PI, lla[1]*180.0/Math.PI, w, h, imageWidth, imageHeight);
-            
-            // draw line (only if not accross the screen)
-            if( Math.abs(lla[1] - llaOld[1]) < 4.0)
-            {
-                
-                //g2.drawLine(xy_old[0],xy_old[1],xy[0],xy[1]);
-                //System.out.println("" +lla[0] + " " + lla[1]);
-            }
-            else
-            {
-                // draw line in correctly ======================
-                double newLat = linearInterpDiscontLat(llaOld[0], llaOld[1], lla[0], lla[1]);
-                
-                // get xy points for both the old and new side (positive and negative long)
-                int[] xyMid_pos = findXYfromLL(newLat*180.0/Math.PI, 180.0, w, h, imageWidth, imageHeight);
-                int[] xyMid_neg = findXYfromLL(newLat*180.0/Math.PI, -180.0, w, h, imageWidth, imageHeight);
-                
-                // draw 2 lines - one for each side of the date line
-//                if(llaOld[1] > 0) // then the old one is on the positive side
-//                {
-//                    g2.drawLine(xy_old[0],xy_old[1],xyMid_pos[0],xyMid_pos[1]);
-//                    g2.drawLine(xy[0],xy[1],xyMid_neg[0],xyMid_neg[1]);
-//                }
-//                else // the new one is on the positive side
-//                {
-//                    g2.drawLine(xy[0],xy[1],xyMid_pos[0],xyMid_pos[1]);
-//                    g2.drawLine(xy_old[0],xy_old[1],xyMid_neg[0],xyMid_neg[1]);
-//                }
-                //==============================================
-                
-                // save info about disconnect
-                disconnectCount++;
-                if(disconnectCount == 1)
-                {
-                    disconnectIndex1 = j;
-                    //System.out.println("Disconnect 1 found:"+disconnectIndex1);
-                    disconnect1pos = xyMid_pos; // save this point
-                    disconnect1neg = xyMid_neg;
-                }
-                else if(disconnectCount == 2)
-                {
-                    disconnectIndex2 = j;
-                    //System.out.println("Disconnect 2 found:"+disconnectIndex2);
-                    disconnect2pos = xyMid_pos; // save this point
-                    disconnect2neg = xyMid_neg;
-                }
-                
-            } // disconnect in line
-            
-            // save point
-            xy_old[0]=xy[0];
-            xy_old[1]=xy[1];
-            llaOld[0] = lla[0];
-            llaOld[1] = lla[1];
-            llaOld[2] = lla[2];
-            
-            // add point to polygon
-            footprint.addPoint(xy_old[0],xy_old[1]);
-            
-        } // for each point around footprint
-        
-        // draw point from last point back to first
-//        if( Math.abs(llaOld[1]-lla0[1]) < 4.0)
-//        {
-//            g2.drawLine(xy_old[0],xy_old[1],xy0[0],xy0[1]);
-//        }
-        
-        // draw polygon -- won't work when part of the foot print is on other side
-        // seems not to work for GEO sats too, fills wrong side at times
-        // see if polygon should be split into two polygons
-        // -- could be divited up 4 seperate peices!
-        // NEED to make this very transparent
-        if( true ) 
+        if(polygons.length == 0)
         {
-//            Color satCol = FillColor;
-//            Color transColor = new Color(satCol.getRed()/255.0f,satCol.getGreen()/255.0f,satCol.getBlue()/255.0f,alpha);
-//            g2.setPaint( transColor );
-            
-            if(disconnectCount == 0)
-            {
-                // no disconnects fill like normal
-                //g2.fill(footprint);
-                Polygon[] pgons = new Polygon[1];
-                pgons[0] = footprint;
-                
-                return pgons; // return normal
-            }
-            else if(disconnectCount == 1)
-            {
-                // okay this is at a pole, add in edges and fill in
-                // figure out N or S based on sat position ( lat > 0 or < 0)
-                boolean northPoleVisible = ( lat > 0);
-                
-                int[] ptPos = new int[2];
-                int[] ptNeg = new int[2];
-                
-                Polygon fullFootPrint = new Polygon();
-                
-                if(northPoleVisible)
-                {
-                    
-                    ptPos = findXYfromLL(90.0, 180.0, w, h, imageWidth, imageHeight);
-                    ptNeg = findXYfromLL(90.0, -180.0, w, h, imageWidth, imageHeight);
-                    
-                    // counter clockwise - add points
-                    for(int k=0; k<disconnectIndex1;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    fullFootPrint.addPoint(disconnect1pos[0],disconnect1pos[1]);
-                    fullFootPrint.addPoint(ptPos[0],ptPos[1]);
-                    fullFootPrint.addPoint(ptNeg[0],ptNeg[1]);
-                    fullFootPrint.addPoint(disconnect1neg[0],disconnect1neg[1]);
-                    for(int k=disconnectIndex1; k<footprint.npoints;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    
-                }
-                else
-                {
-                    // counter clockwise - add points
-                    ptPos = findXYfromLL(-90.0, 180.0, w, h, imageWidth, imageHeight);
-                    ptNeg = findXYfromLL(-90.0, -180.0, w, h, imageWidth, imageHeight);
-                    
-                    for(int k=0; k<disconnectIndex1;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    
-                    fullFootPrint.addPoint(disconnect1neg[0],disconnect1neg[1]);
-                    fullFootPrint.addPoint(ptNeg[0],ptNeg[1]);
-                    fullFootPrint.addPoint(ptPos[0],ptPos[1]);
-                    fullFootPrint.addPoint(disconnect1pos[0],disconnect1pos[1]);
-                    
-                    for(int k=disconnectIndex1; k<footprint.npoints;k++)
-                    {
-                        fullFootPrint.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    
-                }// south pole visible
-                
-                // fill full print
-                //g2.fill(fullFootPrint);
-                Polygon[] pgons = new Polygon[1];
-                pgons[0] = fullFootPrint;
-                
-                return pgons; // return normal
-                
-                
-            }
-            else if(disconnectCount == 2)
-            {
-                // two polygons for this shape
-                Polygon[] pgons = new Polygon[2];
-                
-                // this is the case when a sat spans the international dateline
-                // make two polygons to fill
-                
-                // polygon starts left of center and goes counter clockwise
-                
-                // check to see if this is a standard case (discontinuity
-                // 1 is vertically lower than discon #2) (y is backwards in java)
-                if( disconnect1neg[1]  >= disconnect2neg[1])
-                {
-                    // STANDARD drawing case for 2 discontinuities
-                    
-                    
-                    
-                    // new polygon - part on left side
-                    Polygon footprintPartLeft = new Polygon();
-                    
-                    // get both sides of discontinuity 1
-                    footprintPartLeft.addPoint( disconnect1neg[0], disconnect1neg[1]); // first point at left edge
-                    for(int k=disconnectIndex1;k<disconnectIndex2;k++)
-                    {
-                        
-                        footprintPartLeft.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    footprintPartLeft.addPoint( disconnect2neg[0], disconnect2neg[1]);
-                    
-                    //g2.fill(footprintPartLeft);
-                    pgons[0] = footprintPartLeft;
-                    
-                    // now create Right side of the polygon
-                    Polygon footprintPartRight = new Polygon();
-                    // fill in first part
-                    for(int k=0;k<disconnectIndex1;k++)
-                    {
-                        
-                        footprintPartRight.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    // add disconnect points
-                    footprintPartRight.addPoint( disconnect1pos[0], disconnect1pos[1]);
-                    footprintPartRight.addPoint( disconnect2pos[0], disconnect2pos[1]);
-                    // fill in last part
-                    for(int k=disconnectIndex2;k<footprint.npoints;k++)
-                    {
-                        
-                        footprintPartRight.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    //g2.fill(footprintPartRight);
-                    pgons[1] = footprintPartRight;
-                    
-                    return pgons; // done!
-                    
-                }// standard 2-discont drawing
-                else  // non standard discont 1 is above discont 2
-                {
-                    // new polygon - part on left side
-                    Polygon footprintPartLeft = new Polygon();
-                    
-                    for(int k=0;k<disconnectIndex1;k++)
-                    {
-                        
-                        footprintPartLeft.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    footprintPartLeft.addPoint( disconnect1neg[0], disconnect1neg[1]); // left edge top
-                    footprintPartLeft.addPoint( disconnect2neg[0], disconnect2neg[1]); // left edge bottom
-                    for(int k=disconnectIndex2;k<footprint.npoints;k++)
-                    {
-                        
-                        footprintPartLeft.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    //g2.fill(footprintPartLeft);
-                    pgons[0] = footprintPartLeft;
-                    
-                    // Right part of foot print
-                    Polygon footprintPartRight = new Polygon();
-                    footprintPartRight.addPoint( disconnect1pos[0], disconnect1pos[1]);
-                    for(int k=disconnectIndex1;k<disconnectIndex2;k++)
-                    {
-                        
-                        footprintPartRight.addPoint(footprint.xpoints[k],footprint.ypoints[k]);
-                    }
-                    footprintPartRight.addPoint( disconnect2pos[0], disconnect2pos[1]);
-                    //g2.fill(footprintPartRight);
-                    pgons[1] = footprintPartRight;
-                    
-                    return pgons;
-                    
-                }// non standard 2-discont drawing
-                
-            } // 2 disconnect points
-            
-        } // fill foot print
-        
-        // shouldn't get to this point
-        return null;
-        
+            return null;
+        }
+        return polygons;
     } // getFootPrintPolygons
 
      // ======================================================
@@ -0,0 +1,156 @@
+/*
+ * MapPolylines.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Pixel polylines already projected onto the 2D map (e.g. a ground track split
+ * at the date line), kept between repaints and drawn with one drawPolyline per
+ * part. Made with a Builder, whose buffers are reused from one track to the
+ * next. Read only.
+ *
+ */
+
+package TwoDImage;
+
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MapPolylines
+{
+    public static final MapPolylines EMPTY = new MapPolylines(new int[0][], new int[0][]);
+
+    private final int[][] xParts; // x pixels of each part
+    private final int[][] yParts;
+
+    private MapPolylines(int[][] xParts, int[][] yParts)
+    {
+        this.xParts = xParts;
+        this.yParts = yParts;
+    }
+
+    /**
+     * Draws every part with the current paint and stroke
+     * @param g2
+     */
+    public void draw(Graphics2D g2)
+    {
+        for(int i = 0; i < xParts.length; i++)
+        {
+            g2.drawPolyline(xParts[i], yParts[i], xParts[i].length);
+        }
+    }
+
+    public int getNumParts()
+    {
+        return xParts.length;
+    }
+
+    /**
+     * @param part part index
+     * @return x pixels of the part (do not change)
+     */
+    public int[] getX(int part)
+    {
+        return xParts[part];
+    }
+
+    /**
+     * @param part part index
+     * @return y pixels of the part (do not change)
+     */
+    public int[] getY(int part)
+    {
+        return yParts[part];
+    }
+
+    /**
+     * Collects points into parts (not thread safe, reuse one per thread)
+     */
+    public static class Builder
+    {
+        private int[] x = new int[256]; // points of the part being built
+        private int[] y = new int[256];
+        private int numPts = 0;
+
+        private final List<int[]> xDone = new ArrayList<int[]>();
+        private final List<int[]> yDone = new ArrayList<int[]>();
+
+        /**
+         * Adds a point to the current part
+         */
+        public void add(int px, int py)
+        {
+            if(numPts == x.length)
+            {
+                int[] bigger = new int[2 * x.length];
+                System.arraycopy(x, 0, bigger, 0, numPts);
+                x = bigger;
+                bigger = new int[2 * y.length];
+                System.arraycopy(y, 0, bigger, 0, numPts);
+                y = bigger;
+            }
+            x[numPts] = px;
+            y[numPts] = py;
+            numPts++;
+        } // add
+
+        /**
+         * Ends the current part, the next point starts a new one (parts of fewer
+         * than 2 points are dropped)
+         */
+        public void breakLine()
+        {
+            if(numPts > 1)
+            {
+                int[] px = new int[numPts];
+                int[] py = new int[numPts];
+                System.arraycopy(x, 0, px, 0, numPts);
+                System.arraycopy(y, 0, py, 0, numPts);
+                xDone.add(px);
+                yDone.add(py);
+            }
+            numPts = 0;
+        } // breakLine
+
+        /**
+         * Drops the points of the current part
+         */
+        public void discardLine()
+        {
+            numPts = 0;
+        }
+
+        /**
+         * @return the parts added since the last build, the builder is then empty
+         */
+        public MapPolylines build()
+        {
+            breakLine();
+            if(xDone.isEmpty())
+            {
+                return EMPTY;
+            }
+            MapPolylines lines = new MapPolylines(xDone.toArray(new int[xDone.size()][]), yDone.toArray(new int[yDone.size()][]));
+            xDone.clear();
+            yDone.clear();
+            return lines;
+        } // build
+    } // Builder
+
+} // MapPolylines
@@ -0,0 +1,184 @@
+/*
+ * MapProjection.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Latitude/longitude to pixel mapping of the 2D map for one window size, zoom
+ * and center (same results as J2dEarthLabel2.findXYfromLL, without allocating
+ * an array per point). Read only: the map makes a new one when the view
+ * changes, so anything projected with an older one is out of date.
+ *
+ */
+
+package TwoDImage;
+
+public class MapProjection
+{
+    // longitude jump (radians) between points that means the line crossed the date line
+    public static final double DATE_LINE_JUMP = 4.0;
+
+    private final int totWidth, totHeight, imgWidth, imgHeight;
+    private final double zoomFac, cLat, cLong;
+
+    // x = scaleX*(lon - cLong) + midX, y = scaleY*(lat - cLat) + midY (degrees)
+    private final double scaleX, midX, scaleY, midY;
+
+    /**
+     * @param totWidth size of the map component
+     * @param totHeight
+     * @param imgWidth size of the map image (centered in the component)
+     * @param imgHeight
+     * @param zoomFac zoom factor (>= 1)
+     * @param cLat latitude at the center [deg]
+     * @param cLong longitude at the center [deg]
+     */
+    public MapProjection(int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+    {
+        this.totWidth = totWidth;
+        this.totHeight = totHeight;
+        this.imgWidth = imgWidth;
+        this.imgHeight = imgHeight;
+        this.zoomFac = zoomFac;
+        this.cLat = cLat;
+        this.cLong = cLong;
+
+        double longSpan = 360.0/zoomFac; // span of longitude
+        double latSpan = 180.0/zoomFac;
+
+        int mx = totWidth/2;
+        int my = totHeight/2;
+
+        int leftX = mx - imgWidth/2;
+        int rightX = mx + imgWidth/2;
+
+        int topY = my - imgHeight/2;
+        int botY = my + imgHeight/2;
+
+        scaleX = (rightX-leftX)/longSpan;
+        midX = (rightX+leftX)/2.0;
+        scaleY = (topY-botY)/latSpan;
+        midY = (topY+botY)/2.0;
+    } // constructor
+
+    /**
+     * @return true if this projection is for the given view
+     */
+    public boolean isFor(int totWidth, int totHeight, int imgWidth, int imgHeight, double zoomFac, double cLat, double cLong)
+    {
+        return this.totWidth == totWidth && this.totHeight == totHeight && this.imgWidth == imgWidth
+                && this.imgHeight == imgHeight && this.zoomFac == zoomFac && this.cLat == cLat && this.cLong == cLong;
+    }
+
+    /**
+     * @param lonDeg longitude [deg]
+     * @return x pixel
+     */
+    public int getX(double lonDeg)
+    {
+        return (int)( scaleX*(lonDeg-cLong) + midX );
+    }
+
+    /**
+     * @param latDeg latitude [deg]
+     * @return y pixel
+     */
+    public int getY(double latDeg)
+    {
+        return (int)( scaleY*(latDeg-cLat) + midY );
+    }
+
+    /**
+     * @return pixels per degree of longitude
+     */
+    public double getPixelsPerDegreeX()
+    {
+        return Math.abs(scaleX);
+    }
+
+    /**
+     * @return pixels per degree of latitude
+     */
+    public double getPixelsPerDegreeY()
+    {
+        return Math.abs(scaleY);
+    }
+
+    /**
+     * Latitude where the line between two points crosses the date line (linear in lat/long)
+     * @param lat1 first point [rad]
+     * @param long1
+     * @param lat2 second point [rad] (longitude on the other side of the date line)
+     * @param long2
+     * @return latitude at +/-180 deg [rad]
+     */
+    public static double dateLineLatitude(double lat1, double long1, double lat2, double long2)
+    {
+        // one longitude should be negative one positive, make them both positive
+        if(long1 > long2)
+        {
+            long2 += 2*Math.PI; // in radians
+        }
+        else
+        {
+            long1 += 2*Math.PI;
+        }
+
+        return  ( lat1+(Math.PI - long1)*(lat2-lat1)/(long2-long1) );
+    } // dateLineLatitude
+
+    /**
+     * Projects a track of points into polylines, split where it crosses the date
+     * line (ended at one edge, restarted at the other) and at NaN points (no time data)
+     * @param lla points [point][lat,long,...] [rad], may be null
+     * @param out polylines are added to this (not cleared)
+     */
+    public void projectTrack(double[][] lla, MapPolylines.Builder out)
+    {
+        boolean prevValid = false;
+        double prevLat = 0, prevLon = 0;
+        for(int j = 0; lla != null && j < lla.length; j++)
+        {
+            double lat = lla[j][0];
+            double lon = lla[j][1];
+            if(Double.isNaN(lat) || Double.isNaN(lon))
+            {
+                out.breakLine(); // gap in the track
+                prevValid = false;
+                continue;
+            }
+
+            if(prevValid && Math.abs(lon - prevLon) >= DATE_LINE_JUMP)
+            {
+                // jump from side to side: finish at one edge, start again at the other
+                int yMid = getY(dateLineLatitude(prevLat, prevLon, lat, lon)*180.0/Math.PI);
+                int xFrom = getX(prevLon > 0 ? 180.0 : -180.0);
+                int xTo = getX(prevLon > 0 ? -180.0 : 180.0);
+                out.add(xFrom, yMid);
+                out.breakLine();
+                out.add(xTo, yMid);
+            }
+
+            out.add(getX(lon*180.0/Math.PI), getY(lat*180.0/Math.PI));
+            prevLat = lat;
+            prevLon = lon;
+            prevValid = true;
+        }
+        out.breakLine();
+    } // projectTrack
+
+} // MapProjection
@@ -33,7 +33,7 @@ public class CoordinateConversion
 
     /**
      * Coverts a vector in J2000.0 coordinates to TEME (true equator, mean equinox) of Date
-     * If you have more than one vector to transform you might want to do this manually to save calculating rotation matrix many times
+     * The rotation comes from the shared TemeRotation (cached / interpolated, see TemeRotation.setStep for accuracy)
      * @param mjd modified julian date of the desired coordinate transformation
      * @param vecJ2k
      * @return teme vector
@@ -41,10 +41,8 @@ public class CoordinateConversion
     public static double[] J2000toTEME(double mjd, double[] vecJ2k)
     {
         //double mjd = julDate - AstroConst.JDminusMJD;
-        double ttt = (mjd - AstroConst.MJD_J2000) / 36525.0;
-        double[][] A = J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.from, ttt, 24, 2, 'a'); // 24 = order(about what STK uses) 2 = all terms, 'a' full nutation matrix
-        // rotate vector
-        return J2kCoordinateConversion.matvecmult( A, vecJ2k);
+        // shared rotation (24 = order(about what STK uses) 2 = all terms, 'a' full nutation matrix), interpolated on a time grid
+        return TemeRotation.getShared().J2000toTEME(mjd, vecJ2k);
     }
 
     /**
@@ -56,10 +54,7 @@ public class CoordinateConversion
     public static double[] TEMEtoJ2000(double mjd, double[] vecTEME)
     {
         //double mjd = julDate - AstroConst.JDminusMJD;
-        double ttt = (mjd - AstroConst.MJD_J2000) / 36525.0;
-        double[][] A = J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.to, ttt, 24, 2, 'a');
-        // rotate vector
-        return J2kCoordinateConversion.matvecmult( A, vecTEME);
+        return TemeRotation.getShared().TEMEtoJ2000(mjd, vecTEME);
     }
 
     /**
@@ -0,0 +1,280 @@
+/*
+ * EphemerisTable.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Compact ephemeris storage, one primitive double[] column for each of
+ * t,x,y,z,dx,dy,dz (same order as StateVector.state) instead of a
+ * Vector of StateVector objects.  Not synchronized.
+ *
+ */
+
+package Utilities;
+
+import java.io.Serializable;
+
+public class EphemerisTable implements Serializable
+{
+    // column indexes - same as StateVector.state
+    public static final int TIME = 0;
+    public static final int X = 1;
+    public static final int Y = 2;
+    public static final int Z = 3;
+    public static final int DX = 4;
+    public static final int DY = 5;
+    public static final int DZ = 6;
+    public static final int NUM_COLUMNS = 7;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private double[][] columns; // [column][row]
+    private int size = 0;
+
+    public EphemerisTable()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EphemerisTable(int initialCapacity)
+    {
+        columns = new double[NUM_COLUMNS][Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * For read only subclasses that keep their rows elsewhere, no columns are allocated
+     * (they must override size, get and every method that changes the table)
+     * @param rowsElsewhere marker, the value is not used
+     */
+    protected EphemerisTable(boolean rowsElsewhere)
+    {
+        // columns stay null
+    }
+
+    // number of rows
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    // time of a row (TT Julian Date)
+    public double getTime(int row)
+    {
+        return get(row, TIME);
+    }
+
+    public double get(int row, int column)
+    {
+        if(row >= size)
+        {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+        return columns[column][row];
+    }
+
+    public double getFirstTime()
+    {
+        return getTime(0);
+    }
+
+    public double getLastTime()
+    {
+        return getTime(size() - 1);
+    }
+
+    /**
+     * Copies a row into a given array (no allocation)
+     * @param row row index
+     * @param state array of at least 7 elements (t,x,y,z,dx,dy,dz)
+     */
+    public void getState(int row, double[] state)
+    {
+        for(int c = 0; c < NUM_COLUMNS; c++)
+        {
+            state[c] = get(row, c);
+        }
+    }
+
+    // row as a new StateVector object (convenience, allocates)
+    public StateVector getStateVector(int row)
+    {
+        StateVector sv = new StateVector();
+        getState(row, sv.state);
+        return sv;
+    }
+
+    public void add(double t, double x, double y, double z, double dx, double dy, double dz)
+    {
+        ensureCapacity(size + 1);
+
+        columns[TIME][size] = t;
+        columns[X][size] = x;
+        columns[Y][size] = y;
+        columns[Z][size] = z;
+        columns[DX][size] = dx;
+        columns[DY][size] = dy;
+        columns[DZ][size] = dz;
+
+        size++;
+    }
+
+    // add a row given (t,x,y,z,dx,dy,dz)
+    public void add(double[] state)
+    {
+        add(state[0], state[1], state[2], state[3], state[4], state[5], state[6]);
+    }
+
+    public void add(StateVector sv)
+    {
+        add(sv.state);
+    }
+
+    /**
+     * Appends rows of another table
+     * @param other table to copy rows from
+     * @param fromRow first row of other to copy (rows fromRow to other.size()-1 are added)
+     */
+    public void addAll(EphemerisTable other, int fromRow)
+    {
+        int n = other.size();
+        ensureCapacity(size + Math.max(0, n - fromRow));
+
+        double[] state = new double[NUM_COLUMNS];
+        for(int r = fromRow; r < n; r++)
+        {
+            other.getState(r, state);
+            add(state);
+        }
+    } // addAll
+
+    // grows the columns (by at least half their size) so they can hold minCapacity rows
+    public void ensureCapacity(int minCapacity)
+    {
+        int capacity = columns[TIME].length;
+        if(minCapacity > capacity)
+        {
+            int newCapacity = Math.max(capacity + (capacity >> 1) + 1, minCapacity);
+            for(int c = 0; c < NUM_COLUMNS; c++)
+            {
+                double[] newColumn = new double[newCapacity];
+                System.arraycopy(columns[c], 0, newColumn, 0, size);
+                columns[c] = newColumn;
+            }
+        }
+    } // ensureCapacity
+
+    // release any unused capacity (call once the table is done being filled)
+    public void trimToSize()
+    {
+        if(columns[TIME].length > size && size > 0)
+        {
+            for(int c = 0; c < NUM_COLUMNS; c++)
+            {
+                double[] newColumn = new double[size];
+                System.arraycopy(columns[c], 0, newColumn, 0, size);
+                columns[c] = newColumn;
+            }
+        }
+    } // trimToSize
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    // false if rows can not be added to this table (views and mapped tables)
+    public boolean isReadOnly()
+    {
+        return false;
+    }
+
+    /**
+     * A view of this table that can not be modified, changes to this table
+     * (e.g. rows being appended) are seen through the view
+     * @return read only view
+     */
+    public EphemerisTable asReadOnly()
+    {
+        return new ReadOnlyView(this);
+    }
+
+    // read only view, all reads go to the backing table
+    private static class ReadOnlyView extends EphemerisTable
+    {
+        private final EphemerisTable table;
+
+        ReadOnlyView(EphemerisTable table)
+        {
+            super(true); // reads go to table
+            this.table = table;
+        }
+
+        @Override
+        public int size()
+        {
+            return table.size();
+        }
+
+        @Override
+        public double get(int row, int column)
+        {
+            return table.get(row, column);
+        }
+
+        @Override
+        public void add(double t, double x, double y, double z, double dx, double dy, double dz)
+        {
+            throw new UnsupportedOperationException("Ephemeris table is read only");
+        }
+
+        @Override
+        public void ensureCapacity(int minCapacity)
+        {
+            throw new UnsupportedOperationException("Ephemeris table is read only");
+        }
+
+        @Override
+        public void trimToSize()
+        {
+            throw new UnsupportedOperationException("Ephemeris table is read only");
+        }
+
+        @Override
+        public void clear()
+        {
+            throw new UnsupportedOperationException("Ephemeris table is read only");
+        }
+
+        @Override
+        public boolean isReadOnly()
+        {
+            return true;
+        }
+
+        @Override
+        public EphemerisTable asReadOnly()
+        {
+            return this;
+        }
+    } // ReadOnlyView
+
+}
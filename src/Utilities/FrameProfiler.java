@@ -0,0 +1,319 @@
+/*
+ * FrameProfiler.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Timing probes for the stages of a frame (propagation, layer updates, 3D and
+ * 2D drawing). Each stage keeps its last WINDOW times for percentiles plus
+ * all-time count, mean and max. Usage:
+ *
+ *     private static final FrameProfiler.Stage RENDER_STAGE = FrameProfiler.getStage("ECI layer render");
+ *     ...
+ *     long t0 = FrameProfiler.start();
+ *     ... work ...
+ *     RENDER_STAGE.stop(t0);
+ *
+ * When disabled start() returns 0 and stop() does nothing. Summaries are shown
+ * by PerformanceHudLayer and written out with writeCsv.
+ *
+ */
+
+package Utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class FrameProfiler
+{
+    /**
+     * number of most recent times kept per stage for the percentiles
+     */
+    public static final int WINDOW = 512;
+
+    private static final Map<String,Stage> stages = new LinkedHashMap<String,Stage>(); // in order of creation
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * @param name stage name (shown in the HUD and CSV)
+     * @return the stage, created the first time
+     */
+    public static Stage getStage(String name)
+    {
+        synchronized(stages)
+        {
+            Stage s = stages.get(name);
+            if(s == null)
+            {
+                s = new Stage(name);
+                stages.put(name, s);
+            }
+            return s;
+        }
+    } // getStage
+
+    /**
+     * @return start time for Stage.stop, 0 if profiling is off
+     */
+    public static long start()
+    {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * @return summaries of every stage (in order of creation)
+     */
+    public static List<Summary> getSummaries()
+    {
+        Stage[] all;
+        synchronized(stages)
+        {
+            all = stages.values().toArray(new Stage[stages.size()]);
+        }
+
+        List<Summary> summaries = new ArrayList<Summary>(all.length);
+        for(Stage s : all)
+        {
+            summaries.add(s.getSummary());
+        }
+        return summaries;
+    } // getSummaries
+
+    /**
+     * Clears the times of every stage
+     */
+    public static void reset()
+    {
+        synchronized(stages)
+        {
+            for(Stage s : stages.values())
+            {
+                s.reset();
+            }
+        }
+    } // reset
+
+    /**
+     * Writes one line per stage: name, count, mean, p50, p99, max of the window, all-time max (milliseconds)
+     * @param out where to write (not closed)
+     * @throws IOException
+     */
+    public static void writeCsv(Writer out) throws IOException
+    {
+        out.write("stage,count,mean_ms,p50_ms,p99_ms,window_max_ms,max_ms\n");
+        for(Summary s : getSummaries())
+        {
+            out.write(String.format(Locale.US, "\"%s\",%d,%.4f,%.4f,%.4f,%.4f,%.4f\n",
+                    s.getName().replace("\"", "\"\""), s.getCount(), s.getMeanMillis(), s.getP50Millis(),
+                    s.getP99Millis(), s.getWindowMaxMillis(), s.getMaxMillis()));
+        }
+        out.flush();
+    } // writeCsv
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * @param enabled false to turn the probes off (stages keep their times)
+     */
+    public static void setEnabled(boolean enabled)
+    {
+        FrameProfiler.enabled = enabled;
+    }
+
+    /**
+     * Times of one stage
+     */
+    public static class Stage
+    {
+        private final String name;
+
+        private final long[] window = new long[WINDOW]; // ring of the last times (ns)
+        private int next = 0;
+        private int numInWindow = 0;
+
+        private long count = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+
+        private Stage(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Records the time since start
+         * @param startNanos from FrameProfiler.start() (0 = profiling was off, nothing recorded)
+         */
+        public void stop(long startNanos)
+        {
+            if(startNanos != 0L)
+            {
+                record(System.nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * @param nanos time taken by the stage (nanoseconds)
+         */
+        public synchronized void record(long nanos)
+        {
+            window[next] = nanos;
+            next = (next + 1) % WINDOW;
+            if(numInWindow < WINDOW)
+            {
+                numInWindow++;
+            }
+
+            count++;
+            totalNanos += nanos;
+            if(nanos > maxNanos)
+            {
+                maxNanos = nanos;
+            }
+        } // record
+
+        public synchronized void reset()
+        {
+            next = 0;
+            numInWindow = 0;
+            count = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+        }
+
+        /**
+         * @return statistics right now
+         */
+        public Summary getSummary()
+        {
+            long[] times;
+            long n, total, max;
+            synchronized(this)
+            {
+                times = Arrays.copyOf(window, numInWindow);
+                n = count;
+                total = totalNanos;
+                max = maxNanos;
+            }
+            Arrays.sort(times);
+            return new Summary(name, n, (n == 0) ? 0 : total / (double)n, percentile(times, 0.50), percentile(times, 0.99),
+                    (times.length == 0) ? 0 : times[times.length - 1], max);
+        } // getSummary
+
+        public String getName()
+        {
+            return name;
+        }
+
+        // nearest rank percentile of sorted times
+        private static long percentile(long[] sorted, double p)
+        {
+            if(sorted.length == 0)
+            {
+                return 0;
+            }
+            int rank = (int)Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+    } // Stage
+
+    /**
+     * Statistics of a stage at one moment, times in milliseconds
+     */
+    public static class Summary
+    {
+        private final String name;
+        private final long count;
+        private final double meanNanos;
+        private final long p50Nanos, p99Nanos, windowMaxNanos, maxNanos;
+
+        private Summary(String name, long count, double meanNanos, long p50Nanos, long p99Nanos, long windowMaxNanos, long maxNanos)
+        {
+            this.name = name;
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.windowMaxNanos = windowMaxNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return times recorded since the start (or last reset)
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * @return mean of all times recorded
+         */
+        public double getMeanMillis()
+        {
+            return meanNanos / 1.0e6;
+        }
+
+        /**
+         * @return median of the last WINDOW times
+         */
+        public double getP50Millis()
+        {
+            return p50Nanos / 1.0e6;
+        }
+
+        /**
+         * @return 99th percentile of the last WINDOW times
+         */
+        public double getP99Millis()
+        {
+            return p99Nanos / 1.0e6;
+        }
+
+        /**
+         * @return longest of the last WINDOW times
+         */
+        public double getWindowMaxMillis()
+        {
+            return windowMaxNanos / 1.0e6;
+        }
+
+        /**
+         * @return longest time recorded
+         */
+        public double getMaxMillis()
+        {
+            return maxNanos / 1.0e6;
+        }
+    } // Summary
+
+} // FrameProfiler
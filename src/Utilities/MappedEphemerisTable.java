@@ -0,0 +1,117 @@
+/*
+ * MappedEphemerisTable.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Read only ephemeris table whose columns live outside the java heap in a
+ * (memory mapped) DoubleBuffer, stored column after column:
+ * t[0..n-1], x[0..n-1], ... dz[0..n-1]
+ *
+ * It is serialized as a read only copy on the heap (the buffer itself is not
+ * serializable), so satellites holding one can still be saved.
+ *
+ */
+
+package Utilities;
+
+import java.io.ObjectStreamException;
+import java.nio.DoubleBuffer;
+
+public class MappedEphemerisTable extends EphemerisTable
+{
+    private final transient DoubleBuffer data; // all columns
+    private final int rows;
+
+    /**
+     * @param data column ordered data, must hold at least 7*rows values starting at index 0
+     * @param rows number of rows in the table
+     */
+    public MappedEphemerisTable(DoubleBuffer data, int rows)
+    {
+        super(true); // rows are in data
+
+        if(data.capacity() < (long)rows * NUM_COLUMNS)
+        {
+            throw new IllegalArgumentException("Buffer too small for " + rows + " ephemeris rows");
+        }
+
+        this.data = data;
+        this.rows = rows;
+    }
+
+    @Override
+    public int size()
+    {
+        return rows;
+    }
+
+    @Override
+    public double get(int row, int column)
+    {
+        if(row >= rows)
+        {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + rows);
+        }
+        return data.get(column * rows + row);
+    }
+
+    @Override
+    public void add(double t, double x, double y, double z, double dx, double dy, double dz)
+    {
+        throw new UnsupportedOperationException("Mapped ephemeris table is read only");
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity)
+    {
+        throw new UnsupportedOperationException("Mapped ephemeris table is read only");
+    }
+
+    @Override
+    public void trimToSize()
+    {
+        // nothing to trim
+    }
+
+    @Override
+    public void clear()
+    {
+        throw new UnsupportedOperationException("Mapped ephemeris table is read only");
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
+
+    @Override
+    public EphemerisTable asReadOnly()
+    {
+        return this; // already read only
+    }
+
+    // the mapped buffer can't be serialized, a (read only) copy on the heap is written instead
+    private Object writeReplace() throws ObjectStreamException
+    {
+        EphemerisTable copy = new EphemerisTable(rows);
+        copy.addAll(this, 0);
+        return copy.asReadOnly();
+    }
+
+} // MappedEphemerisTable
@@ -0,0 +1,345 @@
+/*
+ * PointGridIndex.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Uniform grid over 2D points (screen pixels, or longitude/latitude) for picking:
+ * nearest point to the cursor and all points in a rectangle only look at the
+ * grid cells around the query instead of every object. Points are added, then
+ * build() sorts them into the cells; after that the index is read only and can
+ * be handed to other threads (e.g. built while rendering, queried on the Swing
+ * thread).
+ *
+ * x can wrap around (longitude): the right edge of the area then meets the left
+ * one, distances are measured the short way around and queries near one edge
+ * also find the points near the other.
+ *
+ */
+
+package Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PointGridIndex<T>
+{
+    private final double minX, minY;
+    private final double width; // maxX - minX
+    private final double cellWidth, cellHeight;
+    private final int numCols, numRows;
+    private final boolean wrapX;
+
+    // points as added
+    private double[] xy;
+    private Object[] objects;
+    private int numPoints = 0;
+
+    // after build: points of cell c are order[cellStart[c]] .. order[cellStart[c+1]-1]
+    private int[] cellStart = null;
+    private int[] order = null;
+
+    /**
+     * @param minX area covered (points outside are put in the edge cells)
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param cellSize cell width and height, about the size of a typical query
+     * @param capacity expected number of points
+     */
+    public PointGridIndex(double minX, double minY, double maxX, double maxY, double cellSize, int capacity)
+    {
+        this(minX, minY, maxX, maxY, cellSize, capacity, false);
+    }
+
+    /**
+     * @param minX area covered (points outside are put in the edge cells, or wrapped around in x)
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param cellSize cell width and height, about the size of a typical query
+     * @param capacity expected number of points
+     * @param wrapX x is periodic with a period of maxX - minX (e.g. longitude from -180 to 180)
+     */
+    public PointGridIndex(double minX, double minY, double maxX, double maxY, double cellSize, int capacity, boolean wrapX)
+    {
+        this.minX = minX;
+        this.minY = minY;
+        this.width = maxX - minX;
+        this.wrapX = wrapX;
+        numCols = Math.max(1, (int)Math.ceil(width / cellSize));
+        numRows = Math.max(1, (int)Math.ceil((maxY - minY) / cellSize));
+        cellWidth = wrapX ? width / numCols : cellSize; // whole cells around when wrapping
+        cellHeight = cellSize;
+
+        capacity = Math.max(capacity, 16);
+        xy = new double[2 * capacity];
+        objects = new Object[capacity];
+    } // constructor
+
+    /**
+     * Adds a point (before build)
+     * @param x
+     * @param y
+     * @param obj object at the point
+     */
+    public void add(double x, double y, T obj)
+    {
+        if(cellStart != null)
+        {
+            throw new IllegalStateException("Index already built");
+        }
+        if(numPoints == objects.length)
+        {
+            double[] biggerXY = new double[4 * objects.length];
+            System.arraycopy(xy, 0, biggerXY, 0, 2 * numPoints);
+            xy = biggerXY;
+            Object[] biggerObjects = new Object[2 * objects.length];
+            System.arraycopy(objects, 0, biggerObjects, 0, numPoints);
+            objects = biggerObjects;
+        }
+        xy[2*numPoints] = x;
+        xy[2*numPoints+1] = y;
+        objects[numPoints] = obj;
+        numPoints++;
+    } // add
+
+    /**
+     * Sorts the points into the grid cells (counting sort), no more points can be added
+     * @return this index
+     */
+    public PointGridIndex<T> build()
+    {
+        if(cellStart != null)
+        {
+            return this;
+        }
+
+        int numCells = numCols * numRows;
+        int[] start = new int[numCells + 1];
+        int[] cellOf = new int[numPoints];
+        for(int i = 0; i < numPoints; i++)
+        {
+            cellOf[i] = getCell(xy[2*i], xy[2*i+1]);
+            start[cellOf[i] + 1]++;
+        }
+        for(int c = 0; c < numCells; c++)
+        {
+            start[c + 1] += start[c];
+        }
+
+        int[] next = new int[numCells];
+        System.arraycopy(start, 0, next, 0, numCells);
+        int[] sorted = new int[numPoints];
+        for(int i = 0; i < numPoints; i++)
+        {
+            sorted[next[cellOf[i]]++] = i;
+        }
+
+        order = sorted;
+        cellStart = start;
+        return this;
+    } // build
+
+    /**
+     * Nearest point to (x,y) within a distance (index must be built)
+     * @param x
+     * @param y
+     * @param maxDistance largest distance to look
+     * @return object at the nearest point, null if none is close enough
+     */
+    @SuppressWarnings("unchecked")
+    public T nearest(double x, double y, double maxDistance)
+    {
+        checkBuilt();
+
+        x = wrap(x);
+        int col = getCol(x);
+        int row = getRow(y);
+        double cellSize = Math.min(cellWidth, cellHeight); // a ring is at least this much farther out
+        int maxRing = (int)Math.ceil(maxDistance / cellSize) + 1;
+
+        int best = -1;
+        double bestDist2 = maxDistance * maxDistance;
+
+        // rings of cells around the query cell, stop once a ring can't be closer
+        for(int ring = 0; ring <= maxRing; ring++)
+        {
+            if(best >= 0 && (ring - 1) * cellSize > Math.sqrt(bestDist2))
+            {
+                break;
+            }
+            boolean allCols = wrapX ? (2 * ring + 1 >= numCols) : (col - ring < 0 && col + ring >= numCols);
+            if(allCols && row - ring < 0 && row + ring >= numRows)
+            {
+                break; // whole grid searched
+            }
+
+            for(int r = row - ring; r <= row + ring; r++)
+            {
+                if(r < 0 || r >= numRows)
+                {
+                    continue;
+                }
+                boolean edgeRow = (r == row - ring || r == row + ring);
+                int step = edgeRow ? 1 : 2 * ring; // inside rows only have the two end cells on the ring
+                for(int cc = col - ring; cc <= col + ring; cc += Math.max(step, 1))
+                {
+                    int c = wrapX ? ((cc % numCols) + numCols) % numCols : cc; // cells seen twice once the ring wraps are harmless
+                    if(c < 0 || c >= numCols)
+                    {
+                        continue;
+                    }
+                    int cell = r * numCols + c;
+                    for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++)
+                    {
+                        int i = order[k];
+                        double dx = wrapDelta(xy[2*i] - x);
+                        double dy = xy[2*i+1] - y;
+                        double d2 = dx*dx + dy*dy;
+                        if(d2 <= bestDist2)
+                        {
+                            bestDist2 = d2;
+                            best = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        return (best < 0) ? null : (T)objects[best];
+    } // nearest
+
+    /**
+     * All points in a rectangle, edges included (index must be built). When x wraps the
+     * rectangle goes from the smaller x to the larger one, across the edge if it is past it
+     * (e.g. longitude 170 to 190 also finds -180 to -170).
+     * @param x0 corner
+     * @param y0
+     * @param x1 opposite corner
+     * @param y1
+     * @param out objects found are added to this list
+     * @return out
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> inRectangle(double x0, double y0, double x1, double y1, List<T> out)
+    {
+        checkBuilt();
+
+        double left = Math.min(x0, x1), right = Math.max(x0, x1);
+        double top = Math.min(y0, y1), bottom = Math.max(y0, y1);
+
+        int c0, c1;
+        if(wrapX)
+        {
+            double span = right - left;
+            left = wrap(left);
+            right = left + span;
+            c0 = getCol(left);
+            c1 = Math.min((int)Math.floor((right - minX) / cellWidth), c0 + numCols - 1); // past the edge, each column once
+        }
+        else
+        {
+            c0 = getCol(left);
+            c1 = getCol(right);
+        }
+
+        int r0 = getRow(top), r1 = getRow(bottom);
+        for(int r = r0; r <= r1; r++)
+        {
+            for(int cc = c0; cc <= c1; cc++)
+            {
+                int cell = r * numCols + (cc % numCols);
+                for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++)
+                {
+                    int i = order[k];
+                    double px = xy[2*i], py = xy[2*i+1];
+                    if(wrapX)
+                    {
+                        double d = (px - left) % width;
+                        px = left + ((d < 0) ? d + width : d); // left <= px < left + width
+                    }
+                    if(px >= left && px <= right && py >= top && py <= bottom)
+                    {
+                        out.add((T)objects[i]);
+                    }
+                }
+            }
+        }
+        return out;
+    } // inRectangle
+
+    /**
+     * @return all points in a rectangle (index must be built)
+     */
+    public List<T> inRectangle(double x0, double y0, double x1, double y1)
+    {
+        return inRectangle(x0, y0, x1, y1, new ArrayList<T>());
+    }
+
+    public int size()
+    {
+        return numPoints;
+    }
+
+    private void checkBuilt()
+    {
+        if(cellStart == null)
+        {
+            throw new IllegalStateException("Index not built");
+        }
+    }
+
+    private int getCell(double x, double y)
+    {
+        return getRow(y) * numCols + getCol(wrap(x));
+    }
+
+    private int getCol(double x)
+    {
+        int c = (int)Math.floor((x - minX) / cellWidth);
+        return (c < 0) ? 0 : (c >= numCols ? numCols - 1 : c);
+    }
+
+    private int getRow(double y)
+    {
+        int r = (int)Math.floor((y - minY) / cellHeight);
+        return (r < 0) ? 0 : (r >= numRows ? numRows - 1 : r);
+    }
+
+    // x moved into minX .. minX + width if it wraps
+    private double wrap(double x)
+    {
+        if(!wrapX)
+        {
+            return x;
+        }
+        double w = (x - minX) % width;
+        return minX + ((w < 0) ? w + width : w);
+    }
+
+    // difference in x the short way around if it wraps (-width/2 .. width/2)
+    private double wrapDelta(double dx)
+    {
+        if(!wrapX)
+        {
+            return dx;
+        }
+        return dx - width * Math.floor(dx / width + 0.5);
+    }
+
+} // PointGridIndex
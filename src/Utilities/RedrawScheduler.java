@@ -0,0 +1,224 @@
+/*
+ * RedrawScheduler.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Collects redraw requests for the views of the applet (3D globe, 2D map, date
+ * box) as dirty flags and redraws each dirty view at most once per interval
+ * (about one screen refresh), on the Swing thread. Views that aren't showing
+ * are skipped and stay dirty until they are shown again, so e.g. the 2D map
+ * isn't repainted while the 3D view is up, and nothing is redrawn while nothing
+ * changes.
+ *
+ */
+
+package Utilities;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+public class RedrawScheduler
+{
+    // views (bit flags)
+    public static final int VIEW_3D = 1;
+    public static final int VIEW_2D = 2;
+    public static final int VIEW_DATE = 4;
+    public static final int ALL_VIEWS = VIEW_3D | VIEW_2D | VIEW_DATE;
+
+    private static final int NUM_VIEWS = 3;
+
+    private final View[] views = new View[NUM_VIEWS];
+
+    private int dirty = 0; // views waiting to be redrawn (guarded by this)
+    private final Timer timer; // fires once per batch of requests, Swing thread
+
+    // statistics
+    private long numRequests = 0;
+    private long numRedraws = 0;
+
+    /**
+     * A view the scheduler redraws
+     */
+    public interface View
+    {
+        /**
+         * @return false to skip redrawing it (it stays dirty)
+         */
+        public boolean isShowing();
+
+        /**
+         * Redraws it, called on the Swing thread
+         */
+        public void redraw();
+    }
+
+    /**
+     * Scheduler redrawing about 60 times a second at most
+     */
+    public RedrawScheduler()
+    {
+        this(16);
+    }
+
+    /**
+     * @param intervalMillis requests within this time are redrawn together
+     */
+    public RedrawScheduler(int intervalMillis)
+    {
+        timer = new Timer(intervalMillis, new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                redrawDirtyViews();
+            }
+        });
+        timer.setRepeats(false);
+    }
+
+    /**
+     * @param view one of VIEW_3D, VIEW_2D or VIEW_DATE
+     * @param v the view (null to remove it)
+     */
+    public void setView(int view, View v)
+    {
+        views[getIndex(view)] = v;
+    }
+
+    /**
+     * Marks views as changed, they are redrawn with the next batch (any thread)
+     * @param viewFlags views, OR of VIEW_ flags
+     */
+    public void invalidate(int viewFlags)
+    {
+        synchronized(this)
+        {
+            numRequests++;
+            dirty |= viewFlags;
+        }
+
+        if(SwingUtilities.isEventDispatchThread())
+        {
+            schedule();
+        }
+        else
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
+                {
+                    schedule();
+                }
+            });
+        }
+    } // invalidate
+
+    /**
+     * Redraws the dirty views right away (Swing thread), e.g. just before showing a view
+     */
+    public void flush()
+    {
+        timer.stop();
+        redrawDirtyViews();
+    }
+
+    // starts the timer unless a batch is already waiting (Swing thread)
+    private void schedule()
+    {
+        if(!timer.isRunning())
+        {
+            timer.start();
+        }
+    }
+
+    // redraws every dirty view that is showing, the rest stay dirty (Swing thread)
+    private void redrawDirtyViews()
+    {
+        int toDraw;
+        synchronized(this)
+        {
+            toDraw = dirty;
+        }
+
+        for(int i = 0; i < NUM_VIEWS; i++)
+        {
+            int flag = 1 << i;
+            View v = views[i];
+            if((toDraw & flag) == 0 || v == null || !v.isShowing())
+            {
+                continue;
+            }
+
+            synchronized(this)
+            {
+                dirty &= ~flag; // a request made while redrawing marks it dirty again
+                numRedraws++;
+            }
+            try
+            {
+                v.redraw();
+            }
+            catch(Exception e)
+            {
+                System.out.println("ERROR redrawing view " + flag + ": " + e.toString());
+            }
+        }
+    } // redrawDirtyViews
+
+    private static int getIndex(int view)
+    {
+        switch(view)
+        {
+            case VIEW_3D:
+                return 0;
+            case VIEW_2D:
+                return 1;
+            case VIEW_DATE:
+                return 2;
+            default:
+                throw new IllegalArgumentException("Unknown view: " + view);
+        }
+    } // getIndex
+
+    /**
+     * @param view one of VIEW_3D, VIEW_2D or VIEW_DATE
+     * @return true if the view is waiting to be redrawn
+     */
+    public synchronized boolean isDirty(int view)
+    {
+        return (dirty & view) != 0;
+    }
+
+    /**
+     * @return number of invalidate calls
+     */
+    public synchronized long getNumRequests()
+    {
+        return numRequests;
+    }
+
+    /**
+     * @return number of view redraws done
+     */
+    public synchronized long getNumRedraws()
+    {
+        return numRedraws;
+    }
+
+} // RedrawScheduler
@@ -0,0 +1,307 @@
+/*
+ * TemeRotation.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * Shared J2000 <-> TEME rotation. J2kCoordinateConversion.teme_j2k evaluates
+ * precession and a 24 term nutation series (and allocates several matrices)
+ * on every call, but the rotation only changes noticeably over hours. This class
+ * evaluates it exactly on a fixed time grid (nodes are computed as needed and
+ * kept) and interpolates the matrix elements linearly between nodes.
+ * A step of 0 evaluates it exactly, remembering only the last epoch (all satellites
+ * propagated to the same time then share one evaluation).
+ *
+ * With the default 1/8 day step the interpolated matrix elements are within
+ * about 3e-10 of the exact ones (about a centimeter at GEO distance), 1/2 day
+ * steps give about 5e-9 (20 cm).
+ *
+ */
+
+package Utilities;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TemeRotation
+{
+    public static final double DEFAULT_STEP = 1.0 / 8.0; // days
+
+    // same options used everywhere in JSatTrak: 24 = order (about what STK uses) 2 = all terms, 'a' full nutation matrix
+    private static final int NUTATION_ORDER = 24;
+    private static final int EQE_TERMS = 2;
+    private static final char OPT_TEME = 'a';
+
+    private static final int MAX_NODES = 4096; // grid nodes kept (512 days at the default step)
+
+    // rotation shared by all satellites
+    private static final TemeRotation shared = new TemeRotation(DEFAULT_STEP);
+
+    // grid step and its nodes, replaced as a whole by setStep so a node is never kept for the wrong step
+    private volatile Grid grid = new Grid(0);
+
+    // last grid interval and epoch used (each replaced as a whole so threads always see matching values)
+    private volatile Interval lastInterval = null;
+    private volatile Epoch lastEpoch = null;
+
+    /**
+     * @param step grid step in days, 0 for exact evaluation
+     */
+    public TemeRotation(double step)
+    {
+        setStep(step);
+    }
+
+    /**
+     * @return rotation shared by all satellites
+     */
+    public static TemeRotation getShared()
+    {
+        return shared;
+    }
+
+    /**
+     * J2000 -> TEME rotation matrix
+     * @param mjd modified julian date of the transformation
+     * @param A 3x3 matrix to fill in
+     */
+    public void getJ2000toTEME(double mjd, double[][] A)
+    {
+        double[] m = lookup(mjd);
+        for(int i = 0; i < 3; i++)
+        {
+            A[i][0] = m[3*i];
+            A[i][1] = m[3*i+1];
+            A[i][2] = m[3*i+2];
+        }
+    }
+
+    /**
+     * Rotates a J2000 vector to TEME
+     * @param mjd modified julian date of the transformation
+     * @param vecJ2k J2000 vector
+     * @param vecTEME result (can not be vecJ2k)
+     */
+    public void J2000toTEME(double mjd, double[] vecJ2k, double[] vecTEME)
+    {
+        double[] m = lookup(mjd);
+        vecTEME[0] = m[0]*vecJ2k[0] + m[1]*vecJ2k[1] + m[2]*vecJ2k[2];
+        vecTEME[1] = m[3]*vecJ2k[0] + m[4]*vecJ2k[1] + m[5]*vecJ2k[2];
+        vecTEME[2] = m[6]*vecJ2k[0] + m[7]*vecJ2k[1] + m[8]*vecJ2k[2];
+    }
+
+    public double[] J2000toTEME(double mjd, double[] vecJ2k)
+    {
+        double[] vecTEME = new double[3];
+        J2000toTEME(mjd, vecJ2k, vecTEME);
+        return vecTEME;
+    }
+
+    /**
+     * Rotates a TEME vector to J2000 (transpose of the J2000 -> TEME rotation)
+     * @param mjd modified julian date of the transformation
+     * @param vecTEME TEME vector
+     * @param vecJ2k result (can not be vecTEME)
+     */
+    public void TEMEtoJ2000(double mjd, double[] vecTEME, double[] vecJ2k)
+    {
+        double[] m = lookup(mjd);
+        vecJ2k[0] = m[0]*vecTEME[0] + m[3]*vecTEME[1] + m[6]*vecTEME[2];
+        vecJ2k[1] = m[1]*vecTEME[0] + m[4]*vecTEME[1] + m[7]*vecTEME[2];
+        vecJ2k[2] = m[2]*vecTEME[0] + m[5]*vecTEME[1] + m[8]*vecTEME[2];
+    }
+
+    public double[] TEMEtoJ2000(double mjd, double[] vecTEME)
+    {
+        double[] vecJ2k = new double[3];
+        TEMEtoJ2000(mjd, vecTEME, vecJ2k);
+        return vecJ2k;
+    }
+
+    /**
+     * J2000 -> TEME matrix (row by row) at a time, interpolated or exact depending on the step
+     * @param mjd modified julian date
+     * @param m array of 9 to fill in
+     * @return m
+     */
+    public double[] getMatrix(double mjd, double[] m)
+    {
+        System.arraycopy(lookup(mjd), 0, m, 0, 9);
+        return m;
+    }
+
+    // matrix at a time (must not be changed), the last epoch asked for is remembered
+    // as every satellite is usually propagated to the same time
+    private double[] lookup(double mjd)
+    {
+        Grid g = grid;
+        double h = g.step;
+
+        Epoch epoch = lastEpoch;
+        if(epoch != null && epoch.mjd == mjd && epoch.step == h)
+        {
+            return epoch.m;
+        }
+
+        double[] m;
+
+        if(h <= 0)
+        {
+            m = evaluate(mjd); // exact
+        }
+        else
+        {
+            double x = mjd / h;
+            long i = (long)Math.floor(x);
+
+            Interval interval = lastInterval;
+            if(interval == null || interval.step != h || interval.index != i)
+            {
+                interval = new Interval(h, i, g.getNode(i), g.getNode(i + 1));
+                lastInterval = interval;
+            }
+
+            // linear interpolation of each element between the two nodes
+            double f = x - i;
+            double[] m0 = interval.m0;
+            double[] m1 = interval.m1;
+            m = new double[9];
+            for(int k = 0; k < 9; k++)
+            {
+                m[k] = m0[k] + f * (m1[k] - m0[k]);
+            }
+        }
+
+        lastEpoch = new Epoch(h, mjd, m);
+        return m;
+    } // lookup
+
+    // exact J2000 -> TEME matrix
+    private static double[] evaluate(double mjd)
+    {
+        double ttt = (mjd - AstroConst.MJD_J2000) / 36525.0;
+        double[][] A = J2kCoordinateConversion.teme_j2k(J2kCoordinateConversion.Direction.from, ttt, NUTATION_ORDER, EQE_TERMS, OPT_TEME);
+
+        double[] m = new double[9];
+        for(int r = 0; r < 3; r++)
+        {
+            m[3*r] = A[r][0];
+            m[3*r+1] = A[r][1];
+            m[3*r+2] = A[r][2];
+        }
+        return m;
+    }
+
+    /**
+     * @return grid step (days), 0 = exact evaluation
+     */
+    public double getStep()
+    {
+        return grid.step;
+    }
+
+    /**
+     * Sets the accuracy, smaller steps are more accurate (error grows with the square of the step)
+     * @param step grid step in days, 0 (or less) for exact evaluation at every epoch
+     */
+    public void setStep(double step)
+    {
+        step = Math.max(0, step);
+        if(step != grid.step)
+        {
+            grid = new Grid(step); // lookups still using the old grid only fill in its own nodes
+            lastInterval = null;
+            lastEpoch = null;
+        }
+    }
+
+    // grid with one step, node i is at mjd = i*step
+    private static class Grid
+    {
+        final double step; // days, 0 = exact
+
+        // J2000 -> TEME matrices at the nodes by index, stored row by row
+        private final Map<Long,double[]> nodes = new LinkedHashMap<Long,double[]>(64, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,double[]> eldest)
+            {
+                return size() > MAX_NODES;
+            }
+        };
+
+        Grid(double step)
+        {
+            this.step = step;
+        }
+
+        // exact matrix at a node (computed once)
+        double[] getNode(long i)
+        {
+            Long key = Long.valueOf(i);
+            synchronized(nodes)
+            {
+                double[] m = nodes.get(key);
+                if(m != null)
+                {
+                    return m;
+                }
+            }
+
+            double[] m = evaluate(i * step); // outside the lock, two threads may both compute it (same result)
+
+            synchronized(nodes)
+            {
+                nodes.put(key, m);
+            }
+            return m;
+        } // getNode
+    } // Grid
+
+    // two neighboring grid nodes, immutable
+    private static class Interval
+    {
+        final double step;
+        final long index; // grid index of m0
+        final double[] m0;
+        final double[] m1;
+
+        Interval(double step, long index, double[] m0, double[] m1)
+        {
+            this.step = step;
+            this.index = index;
+            this.m0 = m0;
+            this.m1 = m1;
+        }
+    } // Interval
+
+    // matrix at one epoch, immutable
+    private static class Epoch
+    {
+        final double step;
+        final double mjd;
+        final double[] m;
+
+        Epoch(double step, double mjd, double[] m)
+        {
+            this.step = step;
+            this.mjd = mjd;
+            this.m = m;
+        }
+    } // Epoch
+
+} // TemeRotation
@@ -0,0 +1,196 @@
+/*
+ * WorkerPool.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ *
+ * The one set of background threads of the applet, shared by everything that
+ * works in parallel (ephemeris loading, propagation, frame preparation, 2D map
+ * blending and footprints) so the processors aren't oversubscribed. The applet
+ * owns it and shuts it down when it is stopped.
+ *
+ * runChunks splits a range of work into contiguous chunks, the calling thread
+ * runs the first one and then every chunk no pool thread has started yet, so a
+ * caller never sits waiting behind other jobs queued on the pool (e.g. slow
+ * downloads); it only waits for chunks that are already running.
+ *
+ */
+
+package Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+public class WorkerPool
+{
+    private final int numThreads;
+    private final ExecutorService executor;
+
+    /**
+     * Pool with one thread per processor (at least 2, loading also waits on the network)
+     */
+    public WorkerPool()
+    {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param numThreads threads in the pool
+     */
+    public WorkerPool(int numThreads)
+    {
+        this.numThreads = Math.max(1, numThreads);
+
+        executor = Executors.newFixedThreadPool(this.numThreads, new ThreadFactory()
+        {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "Worker " + (++count));
+                t.setDaemon(true); // don't keep the applet / app alive
+                return t;
+            }
+        });
+    } // constructor
+
+    /**
+     * Runs task over 0..n-1 split into chunks, returns when every chunk is done (also when
+     * the calling thread is interrupted, its interrupt flag is set again afterwards)
+     * @param n number of items
+     * @param minChunkSize fewer items than this per chunk aren't worth handing to another thread
+     * @param task work for one chunk (called on the pool threads and the calling thread)
+     */
+    public void runChunks(int n, int minChunkSize, final ChunkTask task)
+    {
+        int numChunks = Math.min(numThreads + 1, n / Math.max(1, minChunkSize));
+        if(numChunks <= 1 || executor.isShutdown())
+        {
+            task.run(0, n); // not worth splitting
+            return;
+        }
+
+        // chunks 1..numChunks-1 go to the pool, the calling thread does chunk 0
+        List<FutureTask<Object>> chunks = new ArrayList<FutureTask<Object>>(numChunks - 1);
+        for(int c = 1; c < numChunks; c++)
+        {
+            final int start = (int)((long)n * c / numChunks);
+            final int end = (int)((long)n * (c + 1) / numChunks);
+            FutureTask<Object> chunk = new FutureTask<Object>(new Runnable()
+            {
+                public void run()
+                {
+                    task.run(start, end);
+                }
+            }, null);
+            chunks.add(chunk);
+            try
+            {
+                executor.execute(chunk);
+            }
+            catch(RejectedExecutionException e)
+            {
+                // shut down meanwhile, run below on this thread
+            }
+        }
+
+        task.run(0, n / numChunks);
+
+        // callers use the results right after, so every chunk is finished even if interrupted
+        boolean interrupted = false;
+        for(int c = 1; c < numChunks; c++)
+        {
+            FutureTask<Object> chunk = chunks.get(c - 1);
+            if(chunk.cancel(false))
+            {
+                // no pool thread got to it, do it here
+                task.run((int)((long)n * c / numChunks), (int)((long)n * (c + 1) / numChunks));
+                continue;
+            }
+
+            while(true)
+            {
+                try
+                {
+                    chunk.get();
+                    break;
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true; // the chunk is already running, keep waiting for it
+                }
+                catch(ExecutionException e)
+                {
+                    System.out.println("ERROR in a parallel task: " + e.getCause());
+                    break;
+                }
+            }
+        }
+
+        if(interrupted)
+        {
+            Thread.currentThread().interrupt(); // for the caller to see
+        }
+    } // runChunks
+
+    /**
+     * @return executor for independent jobs (e.g. reading ephemerides), shut down with the pool
+     */
+    public ExecutorService getExecutor()
+    {
+        return executor;
+    }
+
+    public int getNumThreads()
+    {
+        return numThreads;
+    }
+
+    /**
+     * Stops the threads (running jobs are interrupted), later runChunks calls run on the calling thread
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    public boolean isShutdown()
+    {
+        return executor.isShutdown();
+    }
+
+    // =====================================================================
+
+    /**
+     * Work on a range of items
+     */
+    public interface ChunkTask
+    {
+        /**
+         * @param start first item
+         * @param end one past the last item
+         */
+        public void run(int start, int end);
+    }
+
+} // WorkerPool
@@ -0,0 +1,183 @@
+/*
+ * OrbitTraceGeometryTest.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ */
+
+package Layers;
+
+import java.nio.FloatBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class OrbitTraceGeometryTest
+{
+    // n points on a circle of radius r in the TEME x-y plane, NaN at the given indexes
+    private static double[][] trace(int n, double r, int... nanIndexes)
+    {
+        double[][] pts = new double[n][3];
+        for(int i = 0; i < n; i++)
+        {
+            double a = 2.0 * Math.PI * i / n;
+            pts[i][0] = r * Math.cos(a);
+            pts[i][1] = r * Math.sin(a);
+            pts[i][2] = 0.001 * r * i;
+        }
+        for(int i : nanIndexes)
+        {
+            pts[i][0] = pts[i][1] = pts[i][2] = Double.NaN;
+        }
+        return pts;
+    }
+
+    @Test
+    public void vertexCountAndRuns()
+    {
+        OrbitTraceGeometry g = new OrbitTraceGeometry(trace(10, 7000.0), trace(5, 7000.0));
+
+        assertEquals(15, g.getNumVertices());
+        assertEquals(3 * 15, g.getVertices().limit());
+        assertEquals(2, g.getNumRuns());
+        assertArrayEquals(new int[] {0, 10}, g.getRunFirst());
+        assertArrayEquals(new int[] {10, 5}, g.getRunCount());
+    }
+
+    @Test
+    public void verticesAreInEciLayerAxes()
+    {
+        double[][] lag = {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}};
+        FloatBuffer v = new OrbitTraceGeometry(lag, null).getVertices();
+
+        // -x, z, y
+        assertEquals(-1.0f, v.get(0), 0.0f);
+        assertEquals(3.0f, v.get(1), 0.0f);
+        assertEquals(2.0f, v.get(2), 0.0f);
+        assertEquals(-4.0f, v.get(3), 0.0f);
+        assertEquals(6.0f, v.get(4), 0.0f);
+        assertEquals(5.0f, v.get(5), 0.0f);
+    }
+
+    @Test
+    public void emptyTrace()
+    {
+        OrbitTraceGeometry g = new OrbitTraceGeometry(null, new double[0][]);
+
+        assertEquals(0, g.getNumVertices());
+        assertEquals(0, g.getNumRuns());
+        assertEquals(0.0, g.getBoundingRadius(), 0.0);
+    }
+
+    @Test
+    public void nanSplitsRuns()
+    {
+        // 0-2 | NaN | 4 (single point, dropped) | NaN | 6-9
+        OrbitTraceGeometry g = new OrbitTraceGeometry(trace(10, 7000.0, 3, 5), null);
+
+        assertEquals(7, g.getNumVertices());
+        assertEquals(2, g.getNumRuns());
+        assertArrayEquals(new int[] {0, 3}, g.getRunFirst());
+        assertArrayEquals(new int[] {3, 4}, g.getRunCount());
+
+        FloatBuffer v = g.getVertices();
+        for(int i = 0; i < v.limit(); i++)
+        {
+            assertFalse(Float.isNaN(v.get(i)));
+        }
+    }
+
+    @Test
+    public void leadingAndTrailingNaN()
+    {
+        OrbitTraceGeometry g = new OrbitTraceGeometry(trace(6, 7000.0, 0, 1), trace(6, 7000.0, 4, 5));
+
+        assertEquals(8, g.getNumVertices());
+        assertArrayEquals(new int[] {0, 4}, g.getRunFirst());
+        assertArrayEquals(new int[] {4, 4}, g.getRunCount());
+    }
+
+    @Test
+    public void allNaN()
+    {
+        OrbitTraceGeometry g = new OrbitTraceGeometry(trace(4, 7000.0, 0, 1, 2, 3), null);
+
+        assertEquals(0, g.getNumVertices());
+        assertEquals(0, g.getNumRuns());
+    }
+
+    @Test
+    public void decimateKeepsEndsOfEachRun()
+    {
+        // runs of 10 and 11 points
+        OrbitTraceGeometry full = new OrbitTraceGeometry(trace(10, 7000.0), trace(11, 7000.0));
+        OrbitTraceGeometry d = full.decimate(3);
+
+        // 0,3,6,9 and 0,3,6,9 + 10
+        assertEquals(2, d.getNumRuns());
+        assertArrayEquals(new int[] {0, 4}, d.getRunFirst());
+        assertArrayEquals(new int[] {4, 5}, d.getRunCount());
+        assertEquals(9, d.getNumVertices());
+        assertEquals(3 * 9, d.getVertices().limit());
+
+        FloatBuffer fv = full.getVertices();
+        FloatBuffer dv = d.getVertices();
+        for(int r = 0; r < 2; r++)
+        {
+            int fullFirst = full.getRunFirst()[r];
+            int fullLast = fullFirst + full.getRunCount()[r] - 1;
+            int first = d.getRunFirst()[r];
+            int last = first + d.getRunCount()[r] - 1;
+            for(int c = 0; c < 3; c++)
+            {
+                assertEquals(fv.get(3*fullFirst + c), dv.get(3*first + c), 0.0f);
+                assertEquals(fv.get(3*fullLast + c), dv.get(3*last + c), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void decimateByOneIsACopy()
+    {
+        OrbitTraceGeometry full = new OrbitTraceGeometry(trace(10, 7000.0, 4), null);
+        OrbitTraceGeometry d = full.decimate(1);
+
+        assertEquals(full.getNumVertices(), d.getNumVertices());
+        assertArrayEquals(full.getRunCount(), d.getRunCount());
+        assertEquals(full.getVertices(), d.getVertices());
+    }
+
+    @Test
+    public void boundingSphereHoldsEveryVertex()
+    {
+        OrbitTraceGeometry g = new OrbitTraceGeometry(trace(50, 7000.0, 10), trace(50, 42000.0));
+        double[] c = g.getBoundingCenter();
+        double r = g.getBoundingRadius();
+
+        FloatBuffer v = g.getVertices();
+        for(int i = 0; i < v.limit(); i += 3)
+        {
+            double dx = v.get(i) - c[0], dy = v.get(i+1) - c[1], dz = v.get(i+2) - c[2];
+            assertTrue(Math.sqrt(dx*dx + dy*dy + dz*dz) <= r * (1 + 1e-9));
+        }
+
+        // decimated trace keeps the same sphere
+        OrbitTraceGeometry d = g.decimate(4);
+        assertArrayEquals(c, d.getBoundingCenter(), 0.0);
+        assertEquals(r, d.getBoundingRadius(), 0.0);
+    }
+
+} // OrbitTraceGeometryTest
@@ -0,0 +1,88 @@
+/*
+ * SphereMarkerBatchTest.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ */
+
+package Shapes;
+
+import java.awt.Color;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SphereMarkerBatchTest
+{
+    @Test
+    public void storesEachMarker()
+    {
+        SphereMarkerBatch batch = new SphereMarkerBatch();
+        batch.add(1.0, -2.0, 3.5, 100000, new Color(255, 0, 51));
+        batch.add(-7.0, 8.0, 9.0, 250, Color.GREEN);
+
+        assertEquals(2, batch.getNumMarkers());
+        assertArrayEquals(new double[] {1.0, -2.0, 3.5, 100000, 1.0, 0.0, 0.2}, batch.getMarker(0, new double[7]), 1e-12);
+        assertArrayEquals(new double[] {-7.0, 8.0, 9.0, 250, 0.0, 1.0, 0.0}, batch.getMarker(1, new double[7]), 1e-12);
+    }
+
+    @Test
+    public void growingKeepsEarlierMarkers()
+    {
+        // more than the initial capacity
+        SphereMarkerBatch batch = new SphereMarkerBatch();
+        for(int i = 0; i < 1000; i++)
+        {
+            batch.add(i, 2*i, 3*i, 10 + i, Color.RED);
+        }
+
+        assertEquals(1000, batch.getNumMarkers());
+        double[] m = new double[7];
+        for(int i = 0; i < 1000; i++)
+        {
+            batch.getMarker(i, m);
+            assertEquals(i, m[0], 0.0);
+            assertEquals(2*i, m[1], 0.0);
+            assertEquals(3*i, m[2], 0.0);
+            assertEquals(10 + i, m[3], 0.0);
+        }
+    }
+
+    @Test
+    public void clearStartsOver()
+    {
+        SphereMarkerBatch batch = new SphereMarkerBatch();
+        batch.add(1, 2, 3, 4, Color.RED);
+        batch.add(5, 6, 7, 8, Color.RED);
+        batch.clear();
+        assertEquals(0, batch.getNumMarkers());
+
+        // new markers replace the old ones from the start
+        batch.add(9, 10, 11, 12, Color.BLUE);
+        assertEquals(1, batch.getNumMarkers());
+        assertArrayEquals(new double[] {9, 10, 11, 12, 0.0, 0.0, 1.0}, batch.getMarker(0, new double[7]), 0.0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void clearedMarkersAreGone()
+    {
+        SphereMarkerBatch batch = new SphereMarkerBatch();
+        batch.add(1, 2, 3, 4, Color.RED);
+        batch.clear();
+        batch.getMarker(0, new double[7]);
+    }
+
+} // SphereMarkerBatchTest
@@ -0,0 +1,134 @@
+/*
+ * SphereMeshTest.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ */
+
+package Shapes;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SphereMeshTest
+{
+    private static final int[] DIVISIONS = {3, 4, 8, 15, 32};
+
+    @Test
+    public void counts()
+    {
+        for(int n : DIVISIONS)
+        {
+            SphereMesh mesh = SphereMesh.get(n);
+            assertEquals(n, mesh.getNumDivisions());
+
+            // (n+1) rings of (n+1) vertices, the seam is repeated
+            assertEquals((n + 1) * (n + 1), mesh.getNumVertices());
+            assertEquals(3 * (n + 1) * (n + 1), mesh.getVertices().limit());
+
+            // two triangles per quad, one per quad at each pole
+            assertEquals(3 * 2 * n * (n - 1), mesh.getTriangles().limit());
+
+            // ring edges (not at the poles) plus slice edges
+            assertEquals(2 * n * (n - 1) + 2 * n * n, mesh.getLines().limit());
+        }
+    }
+
+    @Test
+    public void unitRadius()
+    {
+        for(int n : DIVISIONS)
+        {
+            FloatBuffer v = SphereMesh.get(n).getVertices();
+            for(int i = 0; i < v.limit(); i += 3)
+            {
+                double r = Math.sqrt(v.get(i)*v.get(i) + v.get(i+1)*v.get(i+1) + v.get(i+2)*v.get(i+2));
+                assertEquals("divisions " + n + " vertex " + i/3, 1.0, r, 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void polesAndSeam()
+    {
+        int n = 8;
+        SphereMesh mesh = SphereMesh.get(n);
+        FloatBuffer v = mesh.getVertices();
+        int cols = n + 1;
+
+        // first ring at +z, last at -z
+        assertEquals(1.0, v.get(2), 1e-6);
+        assertEquals(-1.0, v.get(3 * n * cols + 2), 1e-6);
+
+        // last vertex of each ring is the first one again
+        for(int i = 0; i <= n; i++)
+        {
+            for(int c = 0; c < 3; c++)
+            {
+                assertEquals(v.get(3 * i * cols + c), v.get(3 * (i * cols + n) + c), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void indicesInRange()
+    {
+        for(int n : DIVISIONS)
+        {
+            SphereMesh mesh = SphereMesh.get(n);
+            checkRange(mesh.getTriangles(), mesh.getNumVertices());
+            checkRange(mesh.getLines(), mesh.getNumVertices());
+        }
+    }
+
+    private static void checkRange(IntBuffer indices, int numVertices)
+    {
+        for(int i = 0; i < indices.limit(); i++)
+        {
+            assertTrue(indices.get(i) >= 0 && indices.get(i) < numVertices);
+        }
+    }
+
+    @Test
+    public void trianglesFaceOutward()
+    {
+        SphereMesh mesh = SphereMesh.get(8);
+        FloatBuffer v = mesh.getVertices();
+        IntBuffer t = mesh.getTriangles();
+        for(int k = 0; k < t.limit(); k += 3)
+        {
+            int a = 3 * t.get(k), b = 3 * t.get(k+1), c = 3 * t.get(k+2);
+            double ux = v.get(b) - v.get(a), uy = v.get(b+1) - v.get(a+1), uz = v.get(b+2) - v.get(a+2);
+            double wx = v.get(c) - v.get(a), wy = v.get(c+1) - v.get(a+1), wz = v.get(c+2) - v.get(a+2);
+
+            // counter clockwise seen from outside: normal points the same way as the vertices
+            double nx = uy*wz - uz*wy, ny = uz*wx - ux*wz, nz = ux*wy - uy*wx;
+            double mx = v.get(a) + v.get(b) + v.get(c), my = v.get(a+1) + v.get(b+1) + v.get(c+1), mz = v.get(a+2) + v.get(b+2) + v.get(c+2);
+            assertTrue(nx*mx + ny*my + nz*mz > 0);
+        }
+    }
+
+    @Test
+    public void sharedPerDivisions()
+    {
+        assertSame(SphereMesh.get(8), SphereMesh.get(8));
+        assertSame(SphereMesh.get(3), SphereMesh.get(1)); // at least 3
+    }
+
+} // SphereMeshTest
@@ -0,0 +1,248 @@
+/*
+ * PointGridIndexTest.java
+ *
+ * =====================================================================
+ * This file is part of JSatTrak.
+ *
+ * JSatTrak is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * JSatTrak is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with JSatTrak.  If not, see <http://www.gnu.org/licenses/>.
+ * =====================================================================
+ */
+
+package Utilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PointGridIndexTest
+{
+    // longitude / latitude grid like the 2D map's
+    private static PointGridIndex<Integer> lonLat(double[][] pts, boolean wrap)
+    {
+        PointGridIndex<Integer> index = new PointGridIndex<Integer>(-180, -90, 180, 90, 5.0, pts.length, wrap);
+        for(int i = 0; i < pts.length; i++)
+        {
+            index.add(pts[i][0], pts[i][1], Integer.valueOf(i));
+        }
+        return index.build();
+    }
+
+    private static double[][] randomPoints(Random random, int n)
+    {
+        double[][] pts = new double[n][2];
+        for(int i = 0; i < n; i++)
+        {
+            pts[i][0] = -180 + 360 * random.nextDouble();
+            pts[i][1] = -90 + 180 * random.nextDouble();
+        }
+        return pts;
+    }
+
+    private static double dLon(double a, double b, boolean wrap)
+    {
+        double d = Math.abs(a - b);
+        return wrap ? Math.min(d, 360 - d) : d;
+    }
+
+    // index of the nearest point by looking at all of them, -1 if none within maxDistance
+    private static int bruteNearest(double[][] pts, double x, double y, double maxDistance, boolean wrap)
+    {
+        int best = -1;
+        double bestDist = maxDistance;
+        for(int i = 0; i < pts.length; i++)
+        {
+            double dx = dLon(pts[i][0], x, wrap), dy = pts[i][1] - y;
+            double d = Math.sqrt(dx*dx + dy*dy);
+            if(d <= bestDist)
+            {
+                bestDist = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double distance(double[][] pts, int i, double x, double y, boolean wrap)
+    {
+        double dx = dLon(pts[i][0], x, wrap), dy = pts[i][1] - y;
+        return Math.sqrt(dx*dx + dy*dy);
+    }
+
+    @Test
+    public void nearestMatchesBruteForce()
+    {
+        Random random = new Random(1);
+        for(boolean wrap : new boolean[] {false, true})
+        {
+            double[][] pts = randomPoints(random, 500);
+            PointGridIndex<Integer> index = lonLat(pts, wrap);
+            for(int q = 0; q < 2000; q++)
+            {
+                double x = -180 + 360 * random.nextDouble();
+                double y = -90 + 180 * random.nextDouble();
+                double maxDistance = 40 * random.nextDouble();
+
+                int expected = bruteNearest(pts, x, y, maxDistance, wrap);
+                Integer found = index.nearest(x, y, maxDistance);
+                if(expected < 0)
+                {
+                    assertNull(found);
+                }
+                else
+                {
+                    // ties may pick either point, compare distances
+                    assertNotNull(found);
+                    assertEquals(distance(pts, expected, x, y, wrap), distance(pts, found.intValue(), x, y, wrap), 1e-12);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearestOutsideMaxDistance()
+    {
+        PointGridIndex<Integer> index = lonLat(new double[][] {{10, 10}}, false);
+
+        assertNull(index.nearest(20, 10, 9.99));
+        assertEquals(Integer.valueOf(0), index.nearest(20, 10, 10.0));
+    }
+
+    @Test
+    public void nearestInOuterRing()
+    {
+        // nothing in the cells around the query, the closer of two far points is found
+        // and the farther one (in a later ring) doesn't replace it
+        PointGridIndex<Integer> index = lonLat(new double[][] {{-40, 0}, {33, 0}, {0, 60}}, false);
+
+        assertEquals(Integer.valueOf(1), index.nearest(0, 0, 180));
+        assertEquals(Integer.valueOf(0), index.nearest(-30, 0, 180));
+        assertEquals(Integer.valueOf(2), index.nearest(0, 50, 180));
+    }
+
+    @Test
+    public void nearestWrapsLongitude()
+    {
+        double[][] pts = {{-179.5, 0}, {170, 0}};
+
+        // across 180 the point at -179.5 is 1 degree away, 170 is 9 away
+        assertEquals(Integer.valueOf(0), lonLat(pts, true).nearest(179.5, 0, 5));
+        assertEquals(Integer.valueOf(0), lonLat(pts, true).nearest(-180, 0, 1));
+        assertEquals(Integer.valueOf(0), lonLat(pts, true).nearest(180, 0, 1));
+
+        // without wrapping it is 359 degrees away
+        assertNull(lonLat(pts, false).nearest(179.5, 0, 5));
+        assertEquals(Integer.valueOf(1), lonLat(pts, false).nearest(179.5, 0, 20));
+    }
+
+    @Test
+    public void rectangleMatchesBruteForce()
+    {
+        Random random = new Random(2);
+        double[][] pts = randomPoints(random, 500);
+        PointGridIndex<Integer> index = lonLat(pts, false);
+        for(int q = 0; q < 500; q++)
+        {
+            double x0 = -180 + 360 * random.nextDouble(), x1 = -180 + 360 * random.nextDouble();
+            double y0 = -90 + 180 * random.nextDouble(), y1 = -90 + 180 * random.nextDouble();
+
+            List<Integer> expected = new ArrayList<Integer>();
+            for(int i = 0; i < pts.length; i++)
+            {
+                if(pts[i][0] >= Math.min(x0, x1) && pts[i][0] <= Math.max(x0, x1)
+                        && pts[i][1] >= Math.min(y0, y1) && pts[i][1] <= Math.max(y0, y1))
+                {
+                    expected.add(Integer.valueOf(i));
+                }
+            }
+
+            List<Integer> found = index.inRectangle(x0, y0, x1, y1);
+            Collections.sort(found);
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void rectangleEdgesIncluded()
+    {
+        PointGridIndex<Integer> index = lonLat(new double[][] {{10, 10}, {20, 20}, {20.001, 20}}, false);
+
+        List<Integer> found = index.inRectangle(20, 20, 10, 10); // any two corners
+        Collections.sort(found);
+        assertEquals(2, found.size());
+        assertEquals(Integer.valueOf(0), found.get(0));
+        assertEquals(Integer.valueOf(1), found.get(1));
+    }
+
+    @Test
+    public void rectangleWrapsLongitude()
+    {
+        double[][] pts = {{175, 0}, {-175, 0}, {0, 0}, {-170.5, 0}};
+        PointGridIndex<Integer> index = lonLat(pts, true);
+
+        // 170 .. 190 = 170 .. 180 and -180 .. -170
+        List<Integer> found = index.inRectangle(170, -10, 190, 10);
+        Collections.sort(found);
+        assertEquals(3, found.size());
+        assertEquals(Integer.valueOf(0), found.get(0));
+        assertEquals(Integer.valueOf(1), found.get(1));
+        assertEquals(Integer.valueOf(3), found.get(2));
+
+        // the same area given from the other side
+        found = index.inRectangle(-190, -10, -170, 10);
+        assertEquals(3, found.size());
+
+        // wider than the map: everything, once
+        assertEquals(4, index.inRectangle(-200, -10, 200, 10).size());
+    }
+
+    @Test
+    public void emptyIndex()
+    {
+        PointGridIndex<Integer> index = lonLat(new double[0][], true);
+
+        assertEquals(0, index.size());
+        assertNull(index.nearest(0, 0, 360));
+        assertTrue(index.inRectangle(-180, -90, 180, 90).isEmpty());
+    }
+
+    @Test
+    public void growsPastCapacity()
+    {
+        PointGridIndex<Integer> index = new PointGridIndex<Integer>(0, 0, 100, 100, 10, 1);
+        for(int i = 0; i < 100; i++)
+        {
+            index.add(i, i, Integer.valueOf(i));
+        }
+        index.build();
+
+        assertEquals(100, index.size());
+        assertEquals(Integer.valueOf(42), index.nearest(42.2, 41.9, 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterBuild()
+    {
+        lonLat(new double[][] {{0, 0}}, false).add(1, 1, Integer.valueOf(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void queryBeforeBuild()
+    {
+        new PointGridIndex<Integer>(0, 0, 10, 10, 1, 4).nearest(0, 0, 1);
+    }
+
+} // PointGridIndexTest